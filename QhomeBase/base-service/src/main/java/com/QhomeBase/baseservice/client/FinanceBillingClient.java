@@ -1,6 +1,8 @@
 package com.QhomeBase.baseservice.client;
 
 import com.QhomeBase.baseservice.dto.BillingImportedReadingDto;
+import com.QhomeBase.baseservice.dto.MeterReadingImportChunkRequest;
+import com.QhomeBase.baseservice.dto.MeterReadingImportChunkResponse;
 import com.QhomeBase.baseservice.dto.MeterReadingImportResponse;
 import com.QhomeBase.baseservice.dto.VehicleActivatedEvent;
 import com.QhomeBase.baseservice.dto.finance.BillingCycleDto;
@@ -77,6 +79,41 @@ public class FinanceBillingClient {
         }
     }
 
+    /**
+     * Gửi một chunk chỉ số với Idempotency-Key: gửi lại cùng key sau lỗi mạng không tạo hóa đơn trùng.
+     * 409 (chunk đang được xử lý ở request khác) và 503 (có hóa đơn không ghi được) được trả về như kết quả
+     * IN_PROGRESS / FAILED thay vì lỗi.
+     */
+    public Mono<MeterReadingImportChunkResponse> importMeterReadingChunk(String idempotencyKey,
+                                                                        MeterReadingImportChunkRequest request) {
+        return financeWebClient
+                .post()
+                .uri("/api/meter-readings/import/chunks")
+                .header("Idempotency-Key", idempotencyKey)
+                .bodyValue(request)
+                .exchangeToMono(response -> response.statusCode().is2xxSuccessful()
+                        || response.statusCode().value() == 409
+                        || response.statusCode().value() == 503
+                        ? response.bodyToMono(MeterReadingImportChunkResponse.class)
+                        : response.createException().flatMap(Mono::error))
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(2))
+                        .filter(throwable -> throwable instanceof WebClientRequestException)
+                        .doBeforeRetry(retrySignal ->
+                            log.warn("Retrying import chunk {} (attempt {}/3): {}", request.getChunkNo(),
+                                retrySignal.totalRetries() + 1, retrySignal.failure().getMessage())));
+    }
+
+    public MeterReadingImportChunkResponse importMeterReadingChunkSync(String idempotencyKey,
+                                                                      MeterReadingImportChunkRequest request) {
+        try {
+            return importMeterReadingChunk(idempotencyKey, request).block();
+        } catch (Exception e) {
+            log.error("❌ FAILED to import meter reading chunk {} to finance-billing", request.getChunkNo(), e);
+            throw new RuntimeException("Failed to import meter reading chunk " + request.getChunkNo()
+                    + " to finance-billing: " + e.getMessage(), e);
+        }
+    }
+
     public Mono<BillingCycleDto> createBillingCycle(CreateBillingCycleRequest request) {
         log.debug("Calling finance service to create billing cycle: {}", request);
         return financeWebClient
@@ -0,0 +1,26 @@
+package com.QhomeBase.baseservice.config;
+
+import com.QhomeBase.scheduling.JobLeaseManager;
+import com.QhomeBase.scheduling.LeasedJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Monitor và scheduler của base-service chỉ chạy ở một replica mỗi lần (lease trong data.job_leases)
+ */
+@Configuration
+public class JobLeaseConfig {
+
+    @Bean
+    public JobLeaseManager jobLeaseManager(DataSource dataSource) {
+        return new JobLeaseManager(dataSource, "data.job_leases");
+    }
+
+    @Bean
+    public LeasedJobRunner leasedJobRunner(JobLeaseManager jobLeaseManager, MeterRegistry meterRegistry) {
+        return new LeasedJobRunner(jobLeaseManager, meterRegistry);
+    }
+}
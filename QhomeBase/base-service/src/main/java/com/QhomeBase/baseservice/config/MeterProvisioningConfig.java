@@ -0,0 +1,28 @@
+package com.QhomeBase.baseservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor dùng chung cho mọi lần tạo công tơ hàng loạt: mỗi chunk tòa nhà là một task,
+ * số luồng = {@code meter.provisioning.parallelism}
+ */
+@Configuration
+public class MeterProvisioningConfig {
+
+    @Bean(name = "meterProvisioningExecutor")
+    public ThreadPoolTaskExecutor meterProvisioningExecutor(
+            @Value("${meter.provisioning.parallelism:4}") int parallelism) {
+        int threads = Math.max(1, parallelism);
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("meter-provisioning-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
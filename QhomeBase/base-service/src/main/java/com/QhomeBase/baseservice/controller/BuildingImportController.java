@@ -1,8 +1,11 @@
 package com.QhomeBase.baseservice.controller;
 
 import com.QhomeBase.baseservice.dto.imports.BuildingImportResponse;
+import com.QhomeBase.baseservice.dto.imports.ImportJobDto;
+import com.QhomeBase.baseservice.model.ImportJobType;
 import com.QhomeBase.baseservice.service.imports.BuildingImportService;
 import com.QhomeBase.baseservice.service.imports.BuildingExportService;
+import com.QhomeBase.baseservice.service.imports.ImportJobService;
 import com.QhomeBase.baseservice.security.UserPrincipal;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +17,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/api/buildings")
 @RequiredArgsConstructor
@@ -22,6 +27,7 @@ public class BuildingImportController {
 
     private final BuildingImportService buildingImportService;
     private final BuildingExportService buildingExportService;
+    private final ImportJobService importJobService;
 
     @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("@authz.canCreateBuilding()")
@@ -52,6 +58,36 @@ public class BuildingImportController {
         }
     }
 
+    @PostMapping(value = "/import/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("@authz.canCreateBuilding()")
+    public ResponseEntity<?> startImportJob(
+            @RequestParam("file") MultipartFile file,
+            Authentication auth
+    ) {
+        try {
+            String createdBy = "import";
+            if (auth != null && auth.getPrincipal() instanceof UserPrincipal up) {
+                createdBy = up.username();
+            }
+            ImportJobDto job = importJobService.start(ImportJobType.BUILDING, file, createdBy);
+            return ResponseEntity.accepted().body(job);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("[ImportBuilding] Cannot start import job: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage(), "error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/import/jobs/{jobId}")
+    @PreAuthorize("@authz.canViewBuildings()")
+    public ResponseEntity<ImportJobDto> getImportJob(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(importJobService.get(jobId, ImportJobType.BUILDING));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping(value = "/import/template", produces = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     @PreAuthorize("@authz.canViewBuildings()")
     public ResponseEntity<byte[]> downloadTemplate() {
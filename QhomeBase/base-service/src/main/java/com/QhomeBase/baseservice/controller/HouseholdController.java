@@ -93,6 +93,13 @@ public class HouseholdController {
         }
     }
 
+    @PostMapping("/units/current/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'RESIDENT')")
+    public ResponseEntity<List<HouseholdDto>> getCurrentHouseholdsByUnitIds(@RequestBody List<UUID> unitIds) {
+        List<HouseholdDto> result = householdService.getCurrentHouseholdsByUnitIds(unitIds);
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/units/{unitId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'RESIDENT')")
     public ResponseEntity<List<HouseholdDto>> getAllHouseholdsByUnitId(@PathVariable UUID unitId) {
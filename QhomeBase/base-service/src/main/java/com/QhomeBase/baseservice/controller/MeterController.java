@@ -2,8 +2,10 @@ package com.QhomeBase.baseservice.controller;
 
 import com.QhomeBase.baseservice.dto.MeterCreateReq;
 import com.QhomeBase.baseservice.dto.MeterDto;
+import com.QhomeBase.baseservice.dto.MeterProvisioningSummary;
 import com.QhomeBase.baseservice.dto.MeterUpdateReq;
 import com.QhomeBase.baseservice.dto.UnitWithoutMeterDto;
+import com.QhomeBase.baseservice.service.MeterProvisioningService;
 import com.QhomeBase.baseservice.service.MeterService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -19,6 +21,7 @@ import java.util.UUID;
 public class MeterController {
 
     private final MeterService meterService;
+    private final MeterProvisioningService meterProvisioningService;
 
     @PostMapping
     public ResponseEntity<MeterDto> createMeter(@Valid @RequestBody MeterCreateReq req) {
@@ -83,12 +86,12 @@ public class MeterController {
     }
 
     @PostMapping("/missing")
-    public ResponseEntity<List<MeterDto>> createMissingMeters(
+    public ResponseEntity<MeterProvisioningSummary> createMissingMeters(
             @RequestParam UUID serviceId,
             @RequestParam(required = false) UUID buildingId) {
         try {
-            List<MeterDto> created = meterService.createMissingMeters(serviceId, buildingId);
-            return ResponseEntity.ok(created);
+            MeterProvisioningSummary summary = meterProvisioningService.provisionMissingMeters(serviceId, buildingId);
+            return ResponseEntity.ok(summary);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -1,6 +1,10 @@
 package com.QhomeBase.baseservice.controller;
 
+import com.QhomeBase.baseservice.dto.imports.ImportJobDto;
 import com.QhomeBase.baseservice.dto.imports.MeterImportResponse;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.security.UserPrincipal;
+import com.QhomeBase.baseservice.service.imports.ImportJobService;
 import com.QhomeBase.baseservice.service.imports.MeterImportService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,9 +12,12 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.UUID;
+
 @RestController
 @RequestMapping("/api/meters/import")
 @PreAuthorize("@authz.canViewUnits()")
@@ -19,6 +26,7 @@ import org.springframework.web.multipart.MultipartFile;
 public class MeterImportController {
 
     private final MeterImportService meterImportService;
+    private final ImportJobService importJobService;
 
     @PostMapping
     public ResponseEntity<MeterImportResponse> importMeters(@RequestParam("file") MultipartFile file) {
@@ -34,6 +42,34 @@ public class MeterImportController {
         }
     }
 
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> startImportJob(
+            @RequestParam("file") MultipartFile file,
+            Authentication auth
+    ) {
+        try {
+            String createdBy = "import";
+            if (auth != null && auth.getPrincipal() instanceof UserPrincipal up) {
+                createdBy = up.username();
+            }
+            ImportJobDto job = importJobService.start(ImportJobType.METER, file, createdBy);
+            return ResponseEntity.accepted().body(job);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("[MeterImport] Cannot start import job: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage(), "error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ImportJobDto> getImportJob(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(importJobService.get(jobId, ImportJobType.METER));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping("/template")
     public ResponseEntity<byte[]> downloadTemplate() {
         byte[] bytes = meterImportService.generateTemplateWorkbook();
@@ -5,16 +5,22 @@ import com.QhomeBase.baseservice.dto.MeterReadingAssignmentCreateReq;
 import com.QhomeBase.baseservice.dto.MeterReadingAssignmentDto;
 import com.QhomeBase.baseservice.dto.AssignmentProgressDto;
 import com.QhomeBase.baseservice.dto.MeterWithReadingDto;
+import com.QhomeBase.baseservice.dto.StaffWorklistDto;
 import com.QhomeBase.baseservice.security.UserPrincipal;
 import com.QhomeBase.baseservice.service.MeterReadingAssignmentService;
 import com.QhomeBase.baseservice.service.MeterService;
+import com.QhomeBase.baseservice.service.StaffWorklistService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,6 +31,7 @@ public class MeterReadingAssignmentController {
 
     private final MeterReadingAssignmentService assignmentService;
     private final MeterService meterService;
+    private final StaffWorklistService staffWorklistService;
 
     @PostMapping
     public ResponseEntity<MeterReadingAssignmentDto> createAssignment(
@@ -143,6 +150,39 @@ public class MeterReadingAssignmentController {
         return ResponseEntity.ok(meters);
     }
 
+    @GetMapping("/staff/{staffId}/cycle/{cycleId}/worklist")
+    public ResponseEntity<StaffWorklistDto> getWorklistByStaffAndCycle(
+            @PathVariable UUID staffId,
+            @PathVariable UUID cycleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime since,
+            WebRequest request) {
+        return worklistResponse(staffWorklistService.getWorklist(staffId, cycleId, since), request);
+    }
+
+    @GetMapping("/my-worklist/cycle/{cycleId}")
+    public ResponseEntity<StaffWorklistDto> getMyWorklist(
+            @PathVariable UUID cycleId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime since,
+            WebRequest request,
+            Authentication authentication) {
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+        return worklistResponse(staffWorklistService.getWorklist(principal.uid(), cycleId, since), request);
+    }
+
+    // If-None-Match khớp với ETag hiện tại thì trả 304 không kèm body; checkNotModified so sánh theo RFC 9110
+    // (so sánh yếu nên W/"..." cũng khớp, danh sách nhiều ETag phân tách bằng dấu phẩy, và "*")
+    private ResponseEntity<StaffWorklistDto> worklistResponse(StaffWorklistDto worklist, WebRequest request) {
+        if (request.checkNotModified(worklist.etag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(worklist.etag())
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .eTag(worklist.etag())
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(worklist);
+    }
+
     @DeleteMapping("/{assignmentId}")
     public ResponseEntity<Void> deleteAssignment(@PathVariable UUID assignmentId) {
         assignmentService.delete(assignmentId);
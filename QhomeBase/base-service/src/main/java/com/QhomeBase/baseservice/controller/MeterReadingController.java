@@ -1,8 +1,11 @@
 package com.QhomeBase.baseservice.controller;
 
+import com.QhomeBase.baseservice.dto.MeterReadingBatchReq;
+import com.QhomeBase.baseservice.dto.MeterReadingBatchResultDto;
 import com.QhomeBase.baseservice.dto.MeterReadingCreateReq;
 import com.QhomeBase.baseservice.dto.MeterReadingDto;
 import com.QhomeBase.baseservice.dto.MeterReadingUpdateReq;
+import com.QhomeBase.baseservice.service.MeterReadingBatchService;
 import com.QhomeBase.baseservice.service.MeterReadingService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +23,7 @@ import java.util.UUID;
 public class MeterReadingController {
 
     private final MeterReadingService meterReadingService;
+    private final MeterReadingBatchService meterReadingBatchService;
 
     @PostMapping
     public ResponseEntity<MeterReadingDto> create(@Valid @RequestBody MeterReadingCreateReq request,
@@ -28,6 +32,12 @@ public class MeterReadingController {
         return ResponseEntity.status(HttpStatus.CREATED).body(dto);
     }
 
+    @PostMapping("/batch")
+    public ResponseEntity<MeterReadingBatchResultDto> submitBatch(@Valid @RequestBody MeterReadingBatchReq request,
+                                                                  Authentication authentication) {
+        return ResponseEntity.ok(meterReadingBatchService.submit(request, authentication));
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<MeterReadingDto> update(
             @PathVariable UUID id,
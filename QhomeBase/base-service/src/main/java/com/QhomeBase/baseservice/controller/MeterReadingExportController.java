@@ -19,10 +19,11 @@ public class MeterReadingExportController {
     private final MeterReadingExportService exportService;
 
     @PostMapping("/cycle/{cycleId}")
-    public ResponseEntity<MeterReadingImportResponse> exportByCycle(@PathVariable UUID cycleId) {
+    public ResponseEntity<MeterReadingImportResponse> exportByCycle(@PathVariable UUID cycleId,
+                                                                    @RequestParam(required = false) UUID afterUnitId) {
         try {
-            log.info("Received export request for cycle {}", cycleId);
-            MeterReadingImportResponse response = exportService.exportReadingsByCycle(cycleId);
+            log.info("Received export request for cycle {} (after unit {})", cycleId, afterUnitId);
+            MeterReadingImportResponse response = exportService.exportReadingsByCycle(cycleId, afterUnitId);
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Failed to export readings from cycle: {}", cycleId, e);
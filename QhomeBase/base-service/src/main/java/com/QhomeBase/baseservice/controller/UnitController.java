@@ -67,6 +67,13 @@ public class UnitController {
         }
     }
 
+    @PostMapping("/batch")
+    @PreAuthorize("@authz.canViewUnits()")
+    public ResponseEntity<List<UnitDto>> getUnitsByIds(@RequestBody List<UUID> ids) {
+        List<UnitDto> result = unitService.getUnitsByIds(ids);
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/building/{buildingId}")
     @PreAuthorize("@authz.canViewUnitsByBuilding(#buildingId)")
     public ResponseEntity<List<UnitDto>> getUnitsByBuildingId(@PathVariable UUID buildingId) {
@@ -1,6 +1,10 @@
 package com.QhomeBase.baseservice.controller;
 
+import com.QhomeBase.baseservice.dto.imports.ImportJobDto;
 import com.QhomeBase.baseservice.dto.imports.UnitImportResponse;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.security.UserPrincipal;
+import com.QhomeBase.baseservice.service.imports.ImportJobService;
 import com.QhomeBase.baseservice.service.imports.UnitImportService;
 import com.QhomeBase.baseservice.service.imports.UnitExportService;
 import lombok.RequiredArgsConstructor;
@@ -9,6 +13,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -22,6 +27,7 @@ public class UnitImportController {
 
     private final UnitImportService unitImportService;
     private final UnitExportService unitExportService;
+    private final ImportJobService importJobService;
 
     @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     @PreAuthorize("@authz.canCreateUnits() || @authz.canViewUnits()")
@@ -45,6 +51,36 @@ public class UnitImportController {
         }
     }
 
+    @PostMapping(value = "/import/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("@authz.canCreateUnits() || @authz.canViewUnits()")
+    public ResponseEntity<?> startImportJob(
+            @RequestParam("file") MultipartFile file,
+            Authentication auth
+    ) {
+        try {
+            String createdBy = "import";
+            if (auth != null && auth.getPrincipal() instanceof UserPrincipal up) {
+                createdBy = up.username();
+            }
+            ImportJobDto job = importJobService.start(ImportJobType.UNIT, file, createdBy);
+            return ResponseEntity.accepted().body(job);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            log.warn("[ImportUnit] Cannot start import job: {}", e.getMessage());
+            return ResponseEntity.badRequest()
+                    .body(java.util.Map.of("message", e.getMessage(), "error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/import/jobs/{jobId}")
+    @PreAuthorize("@authz.canViewUnits()")
+    public ResponseEntity<ImportJobDto> getImportJob(@PathVariable UUID jobId) {
+        try {
+            return ResponseEntity.ok(importJobService.get(jobId, ImportJobType.UNIT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
     @GetMapping(value = "/import/template", produces = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     @PreAuthorize("@authz.canViewUnits()")
     public ResponseEntity<byte[]> downloadTemplate() {
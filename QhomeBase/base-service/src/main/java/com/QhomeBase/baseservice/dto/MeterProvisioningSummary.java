@@ -0,0 +1,14 @@
+package com.QhomeBase.baseservice.dto;
+
+import java.util.List;
+import java.util.UUID;
+
+public record MeterProvisioningSummary(
+        UUID serviceId,
+        String serviceCode,
+        int buildingsProcessed,
+        int unitsWithoutMeter,
+        int metersCreated,
+        int unitsSkipped,
+        List<String> errors
+) {}
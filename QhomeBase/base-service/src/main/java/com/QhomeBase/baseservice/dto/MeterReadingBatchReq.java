@@ -0,0 +1,29 @@
+package com.QhomeBase.baseservice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Nộp nhiều chỉ số của một assignment. Từng dòng được kiểm tra ở service và trả kết quả riêng,
+ * nên dòng sai không làm hỏng cả lô (không dùng @Valid cho {@link Item}).
+ */
+public record MeterReadingBatchReq(
+        @NotNull UUID assignmentId,
+        UUID cycleId,
+        UUID readerId,
+        @NotEmpty List<Item> readings
+) {
+    public record Item(
+            UUID meterId,
+            LocalDate readingDate,
+            BigDecimal prevIndex,
+            BigDecimal currIndex,
+            UUID photoFileId,
+            String note
+    ) {}
+}
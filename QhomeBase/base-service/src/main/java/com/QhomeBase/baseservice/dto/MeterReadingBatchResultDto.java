@@ -0,0 +1,32 @@
+package com.QhomeBase.baseservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+public record MeterReadingBatchResultDto(
+        UUID assignmentId,
+        UUID cycleId,
+        int total,
+        int created,
+        int updated,
+        int rejected,
+        List<Row> results
+) {
+    public static final String CREATED = "CREATED";
+    public static final String UPDATED = "UPDATED";
+    public static final String REJECTED = "REJECTED";
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Row(
+            int index,
+            UUID meterId,
+            String status,
+            UUID readingId,
+            BigDecimal prevIndex,
+            BigDecimal consumption,
+            String error
+    ) {}
+}
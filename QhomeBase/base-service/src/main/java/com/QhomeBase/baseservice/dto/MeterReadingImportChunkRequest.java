@@ -0,0 +1,19 @@
+package com.QhomeBase.baseservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeterReadingImportChunkRequest {
+    private UUID readingCycleId;
+    private int chunkNo;
+    private List<BillingImportedReadingDto> readings;
+}
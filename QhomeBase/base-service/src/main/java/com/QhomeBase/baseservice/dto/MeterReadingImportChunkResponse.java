@@ -0,0 +1,22 @@
+package com.QhomeBase.baseservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeterReadingImportChunkResponse {
+    public static final String IMPORTED = "IMPORTED";
+    public static final String REPLAYED = "REPLAYED";
+    public static final String IN_PROGRESS = "IN_PROGRESS";
+    public static final String FAILED = "FAILED";
+
+    private String idempotencyKey;
+    private int chunkNo;
+    private String status;
+    private MeterReadingImportResponse result;
+}
@@ -15,6 +15,14 @@ import java.util.UUID;
 public class MeterReadingImportResponse {
     private int totalReadings;
     private int invoicesCreated;
+    private int invoicesSkipped;
+    private int invoicesFailed;
     private List<UUID> invoiceIds;
+    private List<String> errors;
     private String message;
+    /** Kết quả từng chunk khi export theo chunk */
+    private List<MeterReadingImportChunkResponse> chunks;
+    /** Căn hộ cuối cùng đã export xong — gửi lại làm afterUnitId để tiếp tục khi export bị dừng giữa chừng */
+    private UUID resumeAfterUnitId;
+    private Boolean completed;
 }
@@ -0,0 +1,24 @@
+package com.QhomeBase.baseservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Danh sách công việc ghi chỉ số của nhân viên trong một chu kỳ.
+ * {@code delta = true}: chỉ chứa công tơ thay đổi sau {@code since} và {@code removedMeterIds};
+ * app lưu {@code syncedAt} làm {@code since} cho lần đồng bộ sau. Khi tập {@code assignmentIds} khác bản đang lưu,
+ * app nên tải lại toàn bộ (không gửi since).
+ */
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public record StaffWorklistDto(
+        UUID cycleId,
+        String etag,
+        OffsetDateTime syncedAt,
+        boolean delta,
+        List<UUID> assignmentIds,
+        List<WorklistMeterDto> meters,
+        List<UUID> removedMeterIds
+) {}
@@ -0,0 +1,26 @@
+package com.QhomeBase.baseservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+/**
+ * Một dòng gọn của danh sách công việc trên app ghi chỉ số; trường null không được serialize
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record WorklistMeterDto(
+        UUID meterId,
+        String meterCode,
+        UUID unitId,
+        String unitCode,
+        Integer floor,
+        String buildingCode,
+        String serviceCode,
+        UUID assignmentId,
+        BigDecimal prevIndex,
+        BigDecimal currIndex,
+        UUID readingId,
+        LocalDate readingDate
+) {}
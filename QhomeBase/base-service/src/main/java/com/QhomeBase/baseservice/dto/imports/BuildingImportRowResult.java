@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class BuildingImportRowResult {
+public class BuildingImportRowResult implements ImportRowOutcome {
     private int rowNumber;
     private boolean success;
     private String message;
@@ -0,0 +1,26 @@
+package com.QhomeBase.baseservice.dto.imports;
+
+import com.QhomeBase.baseservice.model.ImportJobStatus;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.model.imports.ImportRowError;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+public record ImportJobDto(
+        UUID id,
+        ImportJobType type,
+        ImportJobStatus status,
+        String fileName,
+        Integer totalRows,
+        int processedRows,
+        int successCount,
+        int errorCount,
+        Integer progressPercent,
+        String failureMessage,
+        List<ImportRowError> rowErrors,
+        OffsetDateTime createdAt,
+        OffsetDateTime startedAt,
+        OffsetDateTime finishedAt
+) {}
@@ -0,0 +1,12 @@
+package com.QhomeBase.baseservice.dto.imports;
+
+/**
+ * Phần chung của kết quả từng dòng import (building / unit / meter)
+ */
+public interface ImportRowOutcome {
+    int getRowNumber();
+
+    boolean isSuccess();
+
+    String getMessage();
+}
@@ -9,7 +9,7 @@ import lombok.AllArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class MeterImportRowResult {
+public class MeterImportRowResult implements ImportRowOutcome {
     private int rowNumber;
     private boolean success;
     private String message;
@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-public class UnitImportRowResult {
+public class UnitImportRowResult implements ImportRowOutcome {
     private int rowNumber;
     private boolean success;
     private String message;
@@ -0,0 +1,78 @@
+package com.QhomeBase.baseservice.model;
+
+import com.QhomeBase.baseservice.model.imports.ImportRowError;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Entity
+@Table(name = "import_jobs", schema = "data")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportJob {
+
+    @Id
+    private UUID id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false, length = 32)
+    private ImportJobType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 32)
+    @Builder.Default
+    private ImportJobStatus status = ImportJobStatus.PENDING;
+
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "total_rows")
+    private Integer totalRows;
+
+    @Column(name = "processed_rows", nullable = false)
+    @Builder.Default
+    private int processedRows = 0;
+
+    @Column(name = "success_count", nullable = false)
+    @Builder.Default
+    private int successCount = 0;
+
+    @Column(name = "error_count", nullable = false)
+    @Builder.Default
+    private int errorCount = 0;
+
+    /** Các dòng lỗi (giới hạn số lượng), ghi khi job kết thúc */
+    @Column(name = "row_errors", columnDefinition = "jsonb")
+    @JdbcTypeCode(SqlTypes.JSON)
+    private List<ImportRowError> rowErrors;
+
+    @Column(name = "failure_message", columnDefinition = "TEXT")
+    private String failureMessage;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private OffsetDateTime createdAt;
+
+    @Column(name = "started_at")
+    private OffsetDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private OffsetDateTime finishedAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private OffsetDateTime updatedAt;
+}
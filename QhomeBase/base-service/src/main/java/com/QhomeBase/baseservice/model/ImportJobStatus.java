@@ -0,0 +1,5 @@
+package com.QhomeBase.baseservice.model;
+
+public enum ImportJobStatus {
+    PENDING, RUNNING, COMPLETED, FAILED
+}
@@ -0,0 +1,5 @@
+package com.QhomeBase.baseservice.model;
+
+public enum ImportJobType {
+    BUILDING, UNIT, METER
+}
@@ -0,0 +1,4 @@
+package com.QhomeBase.baseservice.model.imports;
+
+public record ImportRowError(int rowNumber, String message) {
+}
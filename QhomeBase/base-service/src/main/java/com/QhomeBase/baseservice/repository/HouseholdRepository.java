@@ -6,6 +6,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -15,6 +17,10 @@ public interface HouseholdRepository extends JpaRepository<Household, UUID> {
     @Query("SELECT h FROM Household h " +
             "WHERE h.unitId = :unitId AND (h.endDate IS NULL OR h.endDate >= CURRENT_DATE) ORDER BY h.startDate DESC")
     Optional<Household> findCurrentHouseholdByUnitId(@Param("unitId") UUID unitId);
+
+    @Query("SELECT h FROM Household h " +
+            "WHERE h.unitId IN :unitIds AND (h.endDate IS NULL OR h.endDate >= CURRENT_DATE) ORDER BY h.startDate DESC")
+    List<Household> findCurrentHouseholdsByUnitIds(@Param("unitIds") Collection<UUID> unitIds);
 }
 
 
@@ -0,0 +1,116 @@
+package com.QhomeBase.baseservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Ghi tòa nhà / căn hộ từ import Excel bằng JDBC batch; trùng mã (ON CONFLICT) trả về 0 dòng cho phần tử đó
+ */
+@Repository
+@RequiredArgsConstructor
+public class ImportBatchRepository {
+
+    private static final String INSERT_BUILDING = """
+            INSERT INTO data.buildings (id, code, name, address, number_of_floors, status, is_deleted,
+                                        created_by, created_at, updated_at)
+            VALUES (:id, :code, :name, :address, :numberOfFloors, 'ACTIVE', FALSE, :createdBy, :now, :now)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String INSERT_UNIT = """
+            INSERT INTO data.units (id, building_id, code, floor, area_m2, bedrooms, status, created_at, updated_at)
+            VALUES (:id, :buildingId, :code, :floor, :areaM2, :bedrooms, 'ACTIVE', :now, :now)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String SELECT_BUILDING_IDS = "SELECT id FROM data.buildings WHERE id IN (:ids)";
+
+    private static final String SELECT_UNIT_IDS = "SELECT id FROM data.units WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return số dòng được chèn (0 hoặc 1) cho từng phần tử của {@code buildings}, theo đúng thứ tự
+     */
+    public int[] insertBuildings(List<NewBuilding> buildings, OffsetDateTime now) {
+        if (buildings.isEmpty()) {
+            return new int[0];
+        }
+        MapSqlParameterSource[] batch = buildings.stream()
+                .map(building -> new MapSqlParameterSource()
+                        .addValue("id", building.id())
+                        .addValue("code", building.code())
+                        .addValue("name", building.name())
+                        .addValue("address", building.address())
+                        .addValue("numberOfFloors", building.numberOfFloors())
+                        .addValue("createdBy", building.createdBy())
+                        .addValue("now", now))
+                .toArray(MapSqlParameterSource[]::new);
+        return resolveCounts(jdbcTemplate.batchUpdate(INSERT_BUILDING, batch),
+                buildings.stream().map(NewBuilding::id).toList(), SELECT_BUILDING_IDS);
+    }
+
+    /**
+     * @return số dòng được chèn (0 hoặc 1) cho từng phần tử của {@code units}, theo đúng thứ tự
+     */
+    public int[] insertUnits(List<NewUnit> units, OffsetDateTime now) {
+        if (units.isEmpty()) {
+            return new int[0];
+        }
+        MapSqlParameterSource[] batch = units.stream()
+                .map(unit -> new MapSqlParameterSource()
+                        .addValue("id", unit.id())
+                        .addValue("buildingId", unit.buildingId())
+                        .addValue("code", unit.code())
+                        .addValue("floor", unit.floor())
+                        .addValue("areaM2", unit.areaM2())
+                        .addValue("bedrooms", unit.bedrooms())
+                        .addValue("now", now))
+                .toArray(MapSqlParameterSource[]::new);
+        return resolveCounts(jdbcTemplate.batchUpdate(INSERT_UNIT, batch),
+                units.stream().map(NewUnit::id).toList(), SELECT_UNIT_IDS);
+    }
+
+    /**
+     * Driver có thể trả {@link Statement#SUCCESS_NO_INFO} (vd. reWriteBatchedInserts=true) nên không biết dòng nào
+     * bị ON CONFLICT bỏ qua; id là UUID mới sinh nên id có trong bảng nghĩa là dòng đó vừa được chèn
+     */
+    private int[] resolveCounts(int[] counts, List<UUID> ids, String selectIds) {
+        List<UUID> unknown = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(ids.get(i));
+            }
+        }
+        if (unknown.isEmpty()) {
+            return counts;
+        }
+        Set<UUID> inserted = new HashSet<>(jdbcTemplate.queryForList(selectIds,
+                new MapSqlParameterSource("ids", unknown), UUID.class));
+        int[] resolved = counts.clone();
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] == Statement.SUCCESS_NO_INFO) {
+                resolved[i] = inserted.contains(ids.get(i)) ? 1 : 0;
+            }
+        }
+        return resolved;
+    }
+
+    public record NewBuilding(UUID id, String code, String name, String address, Integer numberOfFloors,
+                              String createdBy) {
+    }
+
+    public record NewUnit(UUID id, UUID buildingId, String code, Integer floor, BigDecimal areaM2, Integer bedrooms) {
+    }
+}
@@ -0,0 +1,26 @@
+package com.QhomeBase.baseservice.repository;
+
+import com.QhomeBase.baseservice.model.ImportJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Repository
+public interface ImportJobRepository extends JpaRepository<ImportJob, UUID> {
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE ImportJob j SET j.processedRows = :processed, j.successCount = :success, " +
+           "j.errorCount = :errors, j.updatedAt = :now WHERE j.id = :id")
+    int updateProgress(@Param("id") UUID id,
+                       @Param("processed") int processed,
+                       @Param("success") int success,
+                       @Param("errors") int errors,
+                       @Param("now") OffsetDateTime now);
+}
@@ -0,0 +1,79 @@
+package com.QhomeBase.baseservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Ghi công tơ hàng loạt bằng JDBC batch, không đi qua persistence context như {@link MeterRepository#saveAll}
+ */
+@Repository
+@RequiredArgsConstructor
+public class MeterBatchRepository {
+
+    // Bỏ qua dòng trùng mã công tơ (ON CONFLICT) hoặc căn hộ vừa có công tơ hoạt động (NOT EXISTS);
+    // số dòng = 0 cho biết dòng đó cần sinh lại mã / kiểm tra lại
+    private static final String INSERT_METER = """
+            INSERT INTO data.meters (id, unit_id, service_id, meter_code, active, installed_at, created_at, updated_at)
+            SELECT :id, :unitId, :serviceId, :meterCode, TRUE, :installedAt, :now, :now
+            WHERE NOT EXISTS (
+                SELECT 1 FROM data.meters m
+                WHERE m.unit_id = :unitId AND m.service_id = :serviceId AND m.active = TRUE)
+            ON CONFLICT DO NOTHING
+            """;
+
+    private static final String SELECT_METER_IDS = "SELECT id FROM data.meters WHERE id IN (:ids)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return số dòng được chèn (0 hoặc 1) cho từng phần tử của {@code meters}, theo đúng thứ tự
+     */
+    public int[] insertMeters(List<NewMeter> meters, OffsetDateTime now) {
+        if (meters.isEmpty()) {
+            return new int[0];
+        }
+        MapSqlParameterSource[] batch = meters.stream()
+                .map(meter -> new MapSqlParameterSource()
+                        .addValue("id", meter.id())
+                        .addValue("unitId", meter.unitId())
+                        .addValue("serviceId", meter.serviceId())
+                        .addValue("meterCode", meter.meterCode())
+                        .addValue("installedAt", meter.installedAt())
+                        .addValue("now", now))
+                .toArray(MapSqlParameterSource[]::new);
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_METER, batch);
+        // SUCCESS_NO_INFO không cho biết dòng nào bị bỏ qua: kiểm tra lại theo id (UUID mới sinh cho mỗi dòng)
+        List<UUID> unknown = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(meters.get(i).id());
+            }
+        }
+        if (unknown.isEmpty()) {
+            return counts;
+        }
+        Set<UUID> inserted = new HashSet<>(jdbcTemplate.queryForList(SELECT_METER_IDS,
+                new MapSqlParameterSource("ids", unknown), UUID.class));
+        int[] resolved = counts.clone();
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] == Statement.SUCCESS_NO_INFO) {
+                resolved[i] = inserted.contains(meters.get(i).id()) ? 1 : 0;
+            }
+        }
+        return resolved;
+    }
+
+    public record NewMeter(UUID id, UUID unitId, UUID serviceId, String meterCode, LocalDate installedAt) {
+    }
+}
@@ -3,12 +3,17 @@ package com.QhomeBase.baseservice.repository;
 import com.QhomeBase.baseservice.model.MeterReadingAssignment;
 import com.QhomeBase.baseservice.model.MeterReadingAssignmentStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Repository
@@ -42,6 +47,11 @@ public interface MeterReadingAssignmentRepository extends JpaRepository<MeterRea
         List<MeterReadingAssignmentStatus> statuses
     );
 
+    @Query("SELECT a FROM MeterReadingAssignment a " +
+           "LEFT JOIN FETCH a.cycle LEFT JOIN FETCH a.building LEFT JOIN FETCH a.service " +
+           "WHERE a.id = :id")
+    Optional<MeterReadingAssignment> findWithScopeById(@Param("id") UUID id);
+
     @Query("SELECT a FROM MeterReadingAssignment a WHERE a.assignedTo = :staffId AND a.cycle.id = :cycleId")
     List<MeterReadingAssignment> findByAssignedToAndCycleId(
         @Param("staffId") UUID staffId,
@@ -64,4 +74,154 @@ public interface MeterReadingAssignmentRepository extends JpaRepository<MeterRea
             @Param("today") LocalDate today
     );
 
+    /**
+     * Assignment theo trạng thái có hạn trong khoảng [from, to], không xét ngày đã nhắc (dùng cho màn debug)
+     */
+    @Query("""
+            SELECT a FROM MeterReadingAssignment a
+            WHERE a.status IN :statuses
+              AND a.endDate BETWEEN :from AND :to
+            ORDER BY a.endDate
+            """)
+    List<MeterReadingAssignment> findDueBetween(
+            @Param("statuses") List<MeterReadingAssignmentStatus> statuses,
+            @Param("from") LocalDate from,
+            @Param("to") LocalDate to
+    );
+
+    @Modifying
+    @Query("UPDATE MeterReadingAssignment a SET a.reminderLastSentDate = :sentDate, a.updatedAt = :now WHERE a.id IN :ids")
+    int markReminderSent(
+            @Param("ids") Collection<UUID> ids,
+            @Param("sentDate") LocalDate sentDate,
+            @Param("now") OffsetDateTime now
+    );
+
+    /**
+     * Căn hộ cần hiển thị trên dashboard của chu kỳ trong một truy vấn: căn hộ có công tơ đang hoạt động của dịch vụ
+     * nhưng chưa nằm trong assignment nào của chu kỳ (theo unit_ids, hoặc theo tòa nhà / tầng khi không có unit_ids),
+     * và căn hộ chưa có công tơ ({@code missingMeter = true}).
+     * {@code onlyWithOwner} chỉ giữ căn hộ mà hộ hiện tại có chủ hộ.
+     */
+    @Query(value = """
+            SELECT u.id AS "unitId",
+                   u.code AS "unitCode",
+                   u.floor AS "floor",
+                   b.id AS "buildingId",
+                   b.code AS "buildingCode",
+                   b.name AS "buildingName",
+                   NOT mt.has_meter AS "missingMeter"
+            FROM data.units u
+            JOIN data.buildings b ON b.id = u.building_id
+            CROSS JOIN LATERAL (
+                SELECT EXISTS (
+                    SELECT 1 FROM data.meters m
+                    WHERE m.unit_id = u.id AND m.service_id = :serviceId AND m.active = TRUE
+                ) AS has_meter
+            ) mt
+            WHERE (NOT mt.has_meter OR NOT EXISTS (
+                      SELECT 1 FROM data.meter_reading_assignments a
+                      WHERE a.cycle_id = :cycleId
+                        AND a.service_id = :serviceId
+                        AND CASE
+                                WHEN cardinality(a.unit_ids) > 0 THEN u.id = ANY (a.unit_ids)
+                                ELSE a.building_id = u.building_id AND (a.floor IS NULL OR a.floor = u.floor)
+                            END))
+              AND (:onlyWithOwner = FALSE OR (
+                      SELECT h.primary_resident_id FROM data.households h
+                      WHERE h.unit_id = u.id AND (h.end_date IS NULL OR h.end_date >= CURRENT_DATE)
+                      ORDER BY h.start_date DESC
+                      LIMIT 1) IS NOT NULL)
+            """, nativeQuery = true)
+    List<UnassignedUnitRow> findUnassignedUnits(
+            @Param("cycleId") UUID cycleId,
+            @Param("serviceId") UUID serviceId,
+            @Param("onlyWithOwner") boolean onlyWithOwner
+    );
+
+    interface UnassignedUnitRow {
+        UUID getUnitId();
+        String getUnitCode();
+        Integer getFloor();
+        UUID getBuildingId();
+        String getBuildingCode();
+        String getBuildingName();
+        Boolean getMissingMeter();
+    }
+
+    /**
+     * Danh sách công việc của nhân viên trong chu kỳ bằng một truy vấn: công tơ thuộc phạm vi các assignment
+     * (unit_ids, hoặc tòa nhà / tầng), căn hộ, chỉ số của chu kỳ và chỉ số cuối trước chu kỳ.
+     * Công tơ đã ngừng hoạt động vẫn được trả về ({@code active = false}) để đồng bộ delta xóa khỏi máy.
+     * {@code changedAtMillis} là thời điểm thay đổi muộn nhất của công tơ / căn hộ / assignment / chỉ số.
+     */
+    @Query(value = """
+            SELECT DISTINCT ON (m.id)
+                   m.id AS "meterId",
+                   m.meter_code AS "meterCode",
+                   m.active AS "active",
+                   u.id AS "unitId",
+                   u.code AS "unitCode",
+                   u.floor AS "floor",
+                   b.code AS "buildingCode",
+                   s.code AS "serviceCode",
+                   a.id AS "assignmentId",
+                   cr.id AS "readingId",
+                   cr.reading_date AS "readingDate",
+                   COALESCE(cr.prev_index, pr.curr_index) AS "prevIndex",
+                   cr.curr_index AS "currIndex",
+                   CAST(EXTRACT(EPOCH FROM GREATEST(m.updated_at, u.updated_at, a.updated_at, cr.updated_at)) * 1000 AS BIGINT)
+                       AS "changedAtMillis"
+            FROM data.meter_reading_assignments a
+            JOIN data.reading_cycles c ON c.id = a.cycle_id
+            JOIN data.units u ON u.building_id = a.building_id
+                 AND (a.floor IS NULL OR u.floor = a.floor)
+                 AND (COALESCE(cardinality(a.unit_ids), 0) = 0 OR u.id = ANY (a.unit_ids))
+            JOIN data.meters m ON m.unit_id = u.id AND m.service_id = a.service_id
+            JOIN data.buildings b ON b.id = u.building_id
+            JOIN data.services s ON s.id = m.service_id
+            LEFT JOIN LATERAL (
+                SELECT r.id, r.reading_date, r.prev_index, r.curr_index, r.updated_at
+                FROM data.meter_readings r
+                WHERE r.meter_id = m.id AND r.cycle_id = a.cycle_id
+                ORDER BY r.reading_date DESC, r.created_at DESC
+                LIMIT 1
+            ) cr ON TRUE
+            LEFT JOIN LATERAL (
+                SELECT r.curr_index
+                FROM data.meter_readings r
+                WHERE r.meter_id = m.id AND r.reading_date < c.period_from
+                ORDER BY r.reading_date DESC, r.created_at DESC
+                LIMIT 1
+            ) pr ON cr.id IS NULL
+            WHERE a.assigned_to = :staffId AND a.cycle_id = :cycleId
+            ORDER BY m.id, m.active DESC, a.created_at
+            """, nativeQuery = true)
+    List<WorklistRow> findWorklist(@Param("staffId") UUID staffId, @Param("cycleId") UUID cycleId);
+
+    interface WorklistRow {
+        UUID getMeterId();
+        String getMeterCode();
+        Boolean getActive();
+        UUID getUnitId();
+        String getUnitCode();
+        Integer getFloor();
+        String getBuildingCode();
+        String getServiceCode();
+        UUID getAssignmentId();
+        UUID getReadingId();
+        LocalDate getReadingDate();
+        BigDecimal getPrevIndex();
+        BigDecimal getCurrIndex();
+        Long getChangedAtMillis();
+    }
+
+    @Query("SELECT a.id AS id, a.updatedAt AS updatedAt FROM MeterReadingAssignment a " +
+           "WHERE a.assignedTo = :staffId AND a.cycle.id = :cycleId ORDER BY a.id")
+    List<AssignmentVersion> findVersionsByStaffAndCycle(@Param("staffId") UUID staffId, @Param("cycleId") UUID cycleId);
+
+    interface AssignmentVersion {
+        UUID getId();
+        OffsetDateTime getUpdatedAt();
+    }
 }
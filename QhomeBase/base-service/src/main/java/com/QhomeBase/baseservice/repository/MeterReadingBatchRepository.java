@@ -0,0 +1,191 @@
+package com.QhomeBase.baseservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Đọc / ghi chỉ số hàng loạt bằng JDBC cho luồng nộp theo lô: mỗi loại dữ liệu một truy vấn cho cả lô
+ * và ghi bằng JDBC batch, không đi qua persistence context
+ */
+@Repository
+@RequiredArgsConstructor
+public class MeterReadingBatchRepository {
+
+    private static final String FIND_ASSIGNMENT_READINGS = """
+            SELECT DISTINCT ON (mr.meter_id) mr.meter_id, mr.id
+            FROM data.meter_readings mr
+            WHERE mr.assignment_id = :assignmentId AND mr.meter_id IN (:meterIds)
+            ORDER BY mr.meter_id, mr.updated_at DESC
+            """;
+
+    // Chỉ số cuối của mỗi công tơ, bỏ qua chỉ số của chính assignment (sẽ bị ghi đè)
+    private static final String FIND_LATEST_INDEXES = """
+            SELECT DISTINCT ON (mr.meter_id) mr.meter_id, mr.curr_index
+            FROM data.meter_readings mr
+            WHERE mr.meter_id IN (:meterIds)
+              AND mr.assignment_id IS DISTINCT FROM :assignmentId
+            ORDER BY mr.meter_id, mr.reading_date DESC, mr.created_at DESC
+            """;
+
+    // Trùng (meter_id, reading_date, cycle_id) với chỉ số khác thì bỏ qua; số dòng = 0 báo dòng đó bị từ chối
+    private static final String INSERT_READING = """
+            INSERT INTO data.meter_readings (id, meter_id, unit_id, assignment_id, cycle_id, reading_date,
+                                             prev_index, curr_index, photo_file_id, note, reader_id, read_at,
+                                             verified, disputed, created_at, updated_at)
+            VALUES (:id, :meterId, :unitId, :assignmentId, :cycleId, :readingDate,
+                    :prevIndex, :currIndex, :photoFileId, :note, :readerId, :now,
+                    FALSE, FALSE, :now, :now)
+            ON CONFLICT ON CONSTRAINT uq_meter_reading_meter_date_cycle DO NOTHING
+            """;
+
+    private static final String UPDATE_READING = """
+            UPDATE data.meter_readings r
+            SET reading_date = :readingDate,
+                prev_index = :prevIndex,
+                curr_index = :currIndex,
+                photo_file_id = :photoFileId,
+                note = :note,
+                reader_id = :readerId,
+                read_at = :now,
+                cycle_id = :cycleId,
+                updated_at = :now
+            WHERE r.id = :id
+              AND NOT EXISTS (
+                  SELECT 1 FROM data.meter_readings o
+                  WHERE o.meter_id = r.meter_id AND o.reading_date = :readingDate
+                    AND o.cycle_id = :cycleId AND o.id <> r.id)
+            """;
+
+    // Dòng vừa chèn / cập nhật trong lô có updated_at = :now
+    private static final String FIND_WRITTEN_IDS = """
+            SELECT id FROM data.meter_readings WHERE id IN (:ids) AND updated_at = :now
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return meterId → id chỉ số đã nộp trong assignment
+     */
+    public Map<UUID, UUID> findAssignmentReadingIds(UUID assignmentId, Collection<UUID> meterIds) {
+        Map<UUID, UUID> readingIds = new HashMap<>();
+        if (meterIds.isEmpty()) {
+            return readingIds;
+        }
+        jdbcTemplate.query(FIND_ASSIGNMENT_READINGS, new MapSqlParameterSource()
+                        .addValue("assignmentId", assignmentId)
+                        .addValue("meterIds", meterIds),
+                rs -> {
+                    readingIds.put(rs.getObject("meter_id", UUID.class), rs.getObject("id", UUID.class));
+                });
+        return readingIds;
+    }
+
+    /**
+     * @return meterId → chỉ số cuối ngoài assignment; công tơ chưa có chỉ số nào không có trong map
+     */
+    public Map<UUID, BigDecimal> findLatestIndexes(Collection<UUID> meterIds, UUID assignmentId) {
+        Map<UUID, BigDecimal> indexes = new HashMap<>();
+        if (meterIds.isEmpty()) {
+            return indexes;
+        }
+        jdbcTemplate.query(FIND_LATEST_INDEXES, new MapSqlParameterSource()
+                        .addValue("meterIds", meterIds)
+                        .addValue("assignmentId", assignmentId),
+                rs -> {
+                    indexes.put(rs.getObject("meter_id", UUID.class), rs.getBigDecimal("curr_index"));
+                });
+        return indexes;
+    }
+
+    /**
+     * @return số dòng được chèn (0 hoặc 1) cho từng phần tử của {@code readings}, theo đúng thứ tự
+     */
+    public int[] insertReadings(List<ReadingRow> readings, OffsetDateTime now) {
+        return write(INSERT_READING, readings, now);
+    }
+
+    /**
+     * @return số dòng được cập nhật (0 hoặc 1) cho từng phần tử của {@code readings}, theo đúng thứ tự
+     */
+    public int[] updateReadings(List<ReadingRow> readings, OffsetDateTime now) {
+        return write(UPDATE_READING, readings, now);
+    }
+
+    private int[] write(String sql, List<ReadingRow> readings, OffsetDateTime now) {
+        if (readings.isEmpty()) {
+            return new int[0];
+        }
+        MapSqlParameterSource[] batch = readings.stream()
+                .map(reading -> new MapSqlParameterSource()
+                        .addValue("id", reading.id())
+                        .addValue("meterId", reading.meterId())
+                        .addValue("unitId", reading.unitId())
+                        .addValue("assignmentId", reading.assignmentId())
+                        .addValue("cycleId", reading.cycleId())
+                        .addValue("readingDate", reading.readingDate())
+                        .addValue("prevIndex", reading.prevIndex())
+                        .addValue("currIndex", reading.currIndex())
+                        .addValue("photoFileId", reading.photoFileId())
+                        .addValue("note", reading.note())
+                        .addValue("readerId", reading.readerId())
+                        .addValue("now", now))
+                .toArray(MapSqlParameterSource[]::new);
+        return resolveCounts(jdbcTemplate.batchUpdate(sql, batch), readings, now);
+    }
+
+    /**
+     * Driver có thể trả {@link Statement#SUCCESS_NO_INFO} thay cho số dòng (vd. reWriteBatchedInserts=true),
+     * khi đó không biết dòng nào bị ON CONFLICT / NOT EXISTS bỏ qua nên kiểm tra lại theo id
+     */
+    private int[] resolveCounts(int[] counts, List<ReadingRow> readings, OffsetDateTime now) {
+        List<UUID> unknown = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unknown.add(readings.get(i).id());
+            }
+        }
+        if (unknown.isEmpty()) {
+            return counts;
+        }
+        Set<UUID> written = new HashSet<>(jdbcTemplate.queryForList(FIND_WRITTEN_IDS, new MapSqlParameterSource()
+                .addValue("ids", unknown)
+                .addValue("now", now), UUID.class));
+        int[] resolved = counts.clone();
+        for (int i = 0; i < resolved.length; i++) {
+            if (resolved[i] == Statement.SUCCESS_NO_INFO) {
+                resolved[i] = written.contains(readings.get(i).id()) ? 1 : 0;
+            }
+        }
+        return resolved;
+    }
+
+    public record ReadingRow(
+            UUID id,
+            UUID meterId,
+            UUID unitId,
+            UUID assignmentId,
+            UUID cycleId,
+            LocalDate readingDate,
+            BigDecimal prevIndex,
+            BigDecimal currIndex,
+            UUID photoFileId,
+            String note,
+            UUID readerId
+    ) {
+    }
+}
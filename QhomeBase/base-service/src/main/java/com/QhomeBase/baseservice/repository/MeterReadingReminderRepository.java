@@ -2,7 +2,10 @@ package com.QhomeBase.baseservice.repository;
 
 import com.QhomeBase.baseservice.model.MeterReadingReminder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -16,5 +19,19 @@ public interface MeterReadingReminderRepository extends JpaRepository<MeterReadi
     Optional<MeterReadingReminder> findByIdAndUserId(UUID id, UUID userId);
 
     List<MeterReadingReminder> findByAssignment_Id(UUID assignmentId);
+
+    /**
+     * Assignment (trong danh sách) có nhắc nhở gần nhất chưa được xác nhận
+     */
+    @Query("""
+            SELECT r.assignment.id FROM MeterReadingReminder r
+            WHERE r.assignment.id IN :assignmentIds
+              AND r.acknowledgedAt IS NULL
+              AND r.createdAt = (
+                  SELECT MAX(r2.createdAt) FROM MeterReadingReminder r2
+                  WHERE r2.assignment.id = r.assignment.id)
+            """)
+    List<UUID> findAssignmentIdsWithUnacknowledgedLatestReminder(
+            @Param("assignmentIds") Collection<UUID> assignmentIds);
 }
 
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,6 +23,31 @@ public interface MeterReadingRepository extends JpaRepository<MeterReading, UUID
            "LEFT JOIN FETCH a.cycle c " +
            "WHERE mr.cycleId = :cycleId OR (c.id IS NOT NULL AND c.id = :cycleId)")
     List<MeterReading> findByCycleId(@Param("cycleId") UUID cycleId);
+
+    /**
+     * Trang căn hộ (keyset theo unit_id) có chỉ số trong kỳ — mỗi chunk export chứa trọn chỉ số của các căn hộ này
+     */
+    @Query(value = """
+            SELECT DISTINCT mr.unit_id
+            FROM data.meter_readings mr
+            LEFT JOIN data.meter_reading_assignments a ON a.id = mr.assignment_id
+            WHERE (mr.cycle_id = :cycleId OR a.cycle_id = :cycleId)
+              AND mr.unit_id > :afterUnitId
+            ORDER BY mr.unit_id
+            LIMIT :limit
+            """, nativeQuery = true)
+    List<UUID> findUnitIdsByCycleAfter(@Param("cycleId") UUID cycleId,
+                                       @Param("afterUnitId") UUID afterUnitId,
+                                       @Param("limit") int limit);
+
+    @Query("SELECT DISTINCT mr FROM MeterReading mr " +
+           "JOIN FETCH mr.unit u " +
+           "JOIN FETCH mr.meter m " +
+           "LEFT JOIN FETCH m.service " +
+           "LEFT JOIN FETCH mr.assignment a " +
+           "LEFT JOIN FETCH a.cycle c " +
+           "WHERE u.id IN :unitIds AND (mr.cycleId = :cycleId OR (c.id IS NOT NULL AND c.id = :cycleId))")
+    List<MeterReading> findForExport(@Param("cycleId") UUID cycleId, @Param("unitIds") Collection<UUID> unitIds);
     
     @Query("SELECT mr FROM MeterReading mr " +
            "WHERE mr.meter.id = :meterId " +
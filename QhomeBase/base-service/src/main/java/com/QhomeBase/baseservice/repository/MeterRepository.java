@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -76,5 +77,76 @@ public interface MeterRepository extends JpaRepository<Meter, UUID> {
 
     @Query("SELECT DISTINCT m.unit.id FROM Meter m WHERE m.service.id = :serviceId AND m.active = true")
     List<UUID> findUnitIdsByServiceId(@Param("serviceId") UUID serviceId);
+
+    /**
+     * Căn hộ chưa có công tơ đang hoạt động cho dịch vụ (anti-join, dùng idx_meters_unit_service_active);
+     * {@code buildingId = null} lấy mọi tòa nhà
+     */
+    @Query(value = """
+            SELECT u.id AS "unitId",
+                   u.code AS "unitCode",
+                   u.floor AS "floor",
+                   b.id AS "buildingId",
+                   b.code AS "buildingCode",
+                   b.name AS "buildingName"
+            FROM data.units u
+            JOIN data.buildings b ON b.id = u.building_id
+            WHERE (CAST(:buildingId AS uuid) IS NULL OR u.building_id = CAST(:buildingId AS uuid))
+              AND NOT EXISTS (
+                  SELECT 1 FROM data.meters m
+                  WHERE m.unit_id = u.id AND m.service_id = :serviceId AND m.active = TRUE)
+            ORDER BY b.code, u.code
+            """, nativeQuery = true)
+    List<UnitWithoutMeterRow> findUnitsWithoutActiveMeter(@Param("serviceId") UUID serviceId,
+                                                          @Param("buildingId") UUID buildingId);
+
+    @Query(value = """
+            SELECT u.id AS "unitId",
+                   u.code AS "unitCode",
+                   u.floor AS "floor",
+                   b.id AS "buildingId",
+                   b.code AS "buildingCode",
+                   b.name AS "buildingName"
+            FROM data.units u
+            JOIN data.buildings b ON b.id = u.building_id
+            WHERE u.building_id IN (:buildingIds)
+              AND NOT EXISTS (
+                  SELECT 1 FROM data.meters m
+                  WHERE m.unit_id = u.id AND m.service_id = :serviceId AND m.active = TRUE)
+            ORDER BY b.code, u.code
+            """, nativeQuery = true)
+    List<UnitWithoutMeterRow> findUnitsWithoutActiveMeterInBuildings(@Param("serviceId") UUID serviceId,
+                                                                     @Param("buildingIds") Collection<UUID> buildingIds);
+
+    @Query(value = """
+            SELECT DISTINCT u.building_id
+            FROM data.units u
+            WHERE NOT EXISTS (
+                SELECT 1 FROM data.meters m
+                WHERE m.unit_id = u.id AND m.service_id = :serviceId AND m.active = TRUE)
+            ORDER BY u.building_id
+            """, nativeQuery = true)
+    List<UUID> findBuildingIdsWithUnitsMissingMeter(@Param("serviceId") UUID serviceId);
+
+    @Query("SELECT m.meterCode FROM Meter m WHERE m.meterCode IN :codes")
+    List<String> findExistingMeterCodes(@Param("codes") Collection<String> codes);
+
+    @Query("""
+        SELECT m FROM Meter m
+        LEFT JOIN FETCH m.unit u
+        LEFT JOIN FETCH u.building
+        LEFT JOIN FETCH m.service
+        WHERE m.id IN :ids
+    """)
+    List<Meter> findAllWithUnitByIdIn(@Param("ids") Collection<UUID> ids);
+
+    interface UnitWithoutMeterRow {
+        UUID getUnitId();
+        String getUnitCode();
+        Integer getFloor();
+        UUID getBuildingId();
+        String getBuildingCode();
+        String getBuildingName();
+    }
 }
 
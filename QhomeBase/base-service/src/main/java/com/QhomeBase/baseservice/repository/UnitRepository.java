@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,6 +20,9 @@ public interface UnitRepository extends JpaRepository<Unit, UUID> {
     @Query("SELECT u FROM Unit u JOIN FETCH u.building WHERE u.id = :id")
     Unit findByIdWithBuilding(@Param("id") UUID id);
 
+    @Query("SELECT u FROM Unit u JOIN FETCH u.building WHERE u.id IN :ids")
+    List<Unit> findAllByIdInWithBuilding(@Param("ids") Collection<UUID> ids);
+
     @Query("SELECT DISTINCT u FROM Unit u " +
            "JOIN FETCH u.building " +
            "JOIN Household h ON h.unitId = u.id " +
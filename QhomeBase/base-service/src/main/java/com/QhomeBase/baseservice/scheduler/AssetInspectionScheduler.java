@@ -1,11 +1,14 @@
 package com.QhomeBase.baseservice.scheduler;
 
 import com.QhomeBase.baseservice.service.AssetInspectionService;
+import com.QhomeBase.scheduling.LeasedJobRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.ZoneId;
@@ -15,21 +18,29 @@ import java.time.ZoneId;
 @Slf4j
 public class AssetInspectionScheduler {
 
+    private static final String JOB_NAME = "base.asset-inspection-creation";
+
     private final AssetInspectionService assetInspectionService;
+    private final LeasedJobRunner leasedJobRunner;
     private final ZoneId zoneId = ZoneId.systemDefault();
 
+    @Value("${scheduling.lease.ttl:PT2M}")
+    private Duration leaseTtl;
+
     @Scheduled(cron = "${asset-inspection.scheduler.cron:0 0 0 28 * *}")
     public void createInspectionsForExpiredContracts() {
         try {
-            log.info("Starting scheduled job: Create inspections for expired contracts");
-            
-            YearMonth currentMonth = YearMonth.now(zoneId);
-            LocalDate endOfMonth = currentMonth.atEndOfMonth();
-            
-            log.info("Creating inspections for contracts expired in month: {}", currentMonth);
-            int createdCount = assetInspectionService.createInspectionsForExpiredContracts(endOfMonth);
-            
-            log.info("Completed scheduled job: Created {} inspections for expired contracts", createdCount);
+            leasedJobRunner.runExclusive(JOB_NAME, leaseTtl, () -> {
+                log.info("Starting scheduled job: Create inspections for expired contracts");
+
+                YearMonth currentMonth = YearMonth.now(zoneId);
+                LocalDate endOfMonth = currentMonth.atEndOfMonth();
+
+                log.info("Creating inspections for contracts expired in month: {}", currentMonth);
+                int createdCount = assetInspectionService.createInspectionsForExpiredContracts(endOfMonth);
+
+                log.info("Completed scheduled job: Created {} inspections for expired contracts", createdCount);
+            });
         } catch (Exception e) {
             log.error("Error in scheduled job to create inspections for expired contracts", e);
         }
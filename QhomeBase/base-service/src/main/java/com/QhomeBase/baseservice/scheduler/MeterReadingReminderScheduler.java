@@ -1,6 +1,7 @@
 package com.QhomeBase.baseservice.scheduler;
 
 import com.QhomeBase.baseservice.service.MeterReadingReminderService;
+import com.QhomeBase.scheduling.LeasedJobRunner;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -8,6 +9,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.ZoneId;
 
@@ -16,7 +18,13 @@ import java.time.ZoneId;
 @Slf4j
 public class MeterReadingReminderScheduler {
 
+    private static final String JOB_NAME = "base.meter-reading-reminders";
+
     private final MeterReadingReminderService reminderService;
+    private final LeasedJobRunner leasedJobRunner;
+
+    @Value("${scheduling.lease.ttl:PT2M}")
+    private Duration leaseTtl;
 
     @Value("${meter-reading.reminder.timezone:Asia/Ho_Chi_Minh}")
     private String timezoneId;
@@ -33,8 +41,10 @@ public class MeterReadingReminderScheduler {
 
     private void runReminderJob(LocalDate today) {
         try {
-            reminderService.processReminders(today);
-            log.debug("[MeterReminder] Processed reminders for {}", today);
+            // Chạy cả lúc khởi động lẫn theo cron trên mọi replica; chỉ replica giữ lease gửi nhắc nhở
+            boolean ran = leasedJobRunner.runExclusive(JOB_NAME, leaseTtl,
+                    () -> reminderService.processReminders(today));
+            log.debug("[MeterReminder] Processed reminders for {}: {}", today, ran ? "done" : "skipped (other replica)");
         } catch (Exception ex) {
             log.error("[MeterReminder] Reminder job failed", ex);
         }
@@ -3,12 +3,16 @@ package com.QhomeBase.baseservice.scheduler;
 import com.QhomeBase.baseservice.model.ReadingCycle;
 import com.QhomeBase.baseservice.repository.ServiceRepository;
 import com.QhomeBase.baseservice.service.ReadingCycleService;
+import com.QhomeBase.scheduling.JobLease;
+import com.QhomeBase.scheduling.LeasedJobRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
+import java.time.Duration;
 import java.time.YearMonth;
 import java.time.ZoneId;
 import java.util.List;
@@ -18,10 +22,16 @@ import java.util.List;
 @Slf4j
 public class ReadingCycleScheduler {
 
+    private static final String JOB_NAME = "base.reading-cycle-generation";
+
     private final ReadingCycleService readingCycleService;
     private final ServiceRepository serviceRepository;
+    private final LeasedJobRunner leasedJobRunner;
     private final ZoneId zoneId = ZoneId.systemDefault();
 
+    @Value("${scheduling.lease.ttl:PT2M}")
+    private Duration leaseTtl;
+
     @PostConstruct
     public void initializeCycles() {
         // Delay initialization to allow other services (especially finance-billing) to start
@@ -29,7 +39,7 @@ public class ReadingCycleScheduler {
         new Thread(() -> {
             try {
                 Thread.sleep(10000); // Wait 10 seconds for other services to start
-                ensureCurrentAndNextCycles();
+                leasedJobRunner.runAsLeader(JOB_NAME, leaseTtl, this::ensureCurrentAndNextCycles);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 log.warn("Cycle initialization interrupted", e);
@@ -41,10 +51,10 @@ public class ReadingCycleScheduler {
 
     @Scheduled(cron = "${meter-reading.cycle.cron:0 0 1 * * *}")
     public void scheduledCycleGeneration() {
-        ensureCurrentAndNextCycles();
+        leasedJobRunner.runAsLeader(JOB_NAME, leaseTtl, this::ensureCurrentAndNextCycles);
     }
 
-    private void ensureCurrentAndNextCycles() {
+    private void ensureCurrentAndNextCycles(JobLease lease) {
         YearMonth currentMonth = YearMonth.now(zoneId);
         YearMonth nextMonth = currentMonth.plusMonths(1);
 
@@ -57,6 +67,7 @@ public class ReadingCycleScheduler {
         }
 
         for (com.QhomeBase.baseservice.model.Service service : servicesRequiringMeter) {
+            lease.ensureHeld();
             try {
                 ReadingCycle currentCycle = readingCycleService.ensureMonthlyCycle(currentMonth, service.getId());
                 ReadingCycle nextCycle = readingCycleService.ensureMonthlyCycle(nextMonth, service.getId());
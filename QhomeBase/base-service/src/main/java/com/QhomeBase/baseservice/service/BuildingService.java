@@ -14,6 +14,7 @@ import jakarta.transaction.Transactional;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
@@ -44,6 +45,22 @@ public class BuildingService {
     }
 
     private String generateNextCode() {
+        return buildAlphabeticCode(maxCodeIndex() + 1);
+    }
+
+    /**
+     * {@code count} mã kế tiếp liên tiếp nhau (import nhiều tòa nhà), chỉ đọc danh sách tòa nhà một lần
+     */
+    public List<String> generateNextCodes(int count) {
+        int maxIndex = maxCodeIndex();
+        List<String> codes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            codes.add(buildAlphabeticCode(maxIndex + i));
+        }
+        return codes;
+    }
+
+    private int maxCodeIndex() {
         List<Building> buildings = respo.findAllByOrderByCodeAsc();
 
         int maxIndex = -1;
@@ -57,8 +74,7 @@ public class BuildingService {
                 maxIndex = idx;
             }
         }
-
-        return buildAlphabeticCode(maxIndex + 1);
+        return maxIndex;
     }
 
     private int parseAlphabeticCode(String code) {
@@ -5,6 +5,8 @@ import com.QhomeBase.baseservice.model.CleaningRequest;
 import com.QhomeBase.baseservice.model.Unit;
 import com.QhomeBase.baseservice.repository.CleaningRequestRepository;
 import com.QhomeBase.baseservice.repository.UnitRepository;
+import com.QhomeBase.scheduling.JobLease;
+import com.QhomeBase.scheduling.LeasedJobRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -23,6 +25,7 @@ import java.util.UUID;
 @Slf4j
 public class CleaningRequestMonitor {
 
+    private static final String JOB_NAME = "base.cleaning-request-monitor";
     private static final String STATUS_PENDING = "PENDING";
     private static final String STATUS_CANCELLED = "CANCELLED";
     private static final ZoneId DEFAULT_TIMEZONE = ZoneId.of("Asia/Ho_Chi_Minh");
@@ -33,17 +36,23 @@ public class CleaningRequestMonitor {
     private final CleaningRequestRepository cleaningRequestRepository;
     private final UnitRepository unitRepository;
     private final NotificationClient notificationClient;
+    private final LeasedJobRunner leasedJobRunner;
+    private final Duration leaseTtl;
 
     public CleaningRequestMonitor(
             CleaningRequestRepository cleaningRequestRepository,
             UnitRepository unitRepository,
             NotificationClient notificationClient,
+            LeasedJobRunner leasedJobRunner,
             @Value("${cleaning.request.reminder.threshold:PT5M}") Duration reminderThreshold,
             @Value("${cleaning.request.resend.cancel.threshold:PT5M}") Duration resendCancelThreshold,
-            @Value("${cleaning.request.no.resend.cancel.threshold:PT6M}") Duration noResendCancelThreshold) {
+            @Value("${cleaning.request.no.resend.cancel.threshold:PT6M}") Duration noResendCancelThreshold,
+            @Value("${scheduling.lease.ttl:PT2M}") Duration leaseTtl) {
         this.cleaningRequestRepository = cleaningRequestRepository;
         this.unitRepository = unitRepository;
         this.notificationClient = notificationClient;
+        this.leasedJobRunner = leasedJobRunner;
+        this.leaseTtl = leaseTtl;
         this.reminderThreshold = reminderThreshold;
         this.resendCancelThreshold = resendCancelThreshold;
         this.noResendCancelThreshold = noResendCancelThreshold;
@@ -57,8 +66,13 @@ public class CleaningRequestMonitor {
         );
     }
 
+    // Chạy trên mọi replica nhưng chỉ replica giữ lease gửi thông báo / tự hủy yêu cầu
     @Scheduled(fixedDelayString = "${cleaning.request.monitor.delay:60000}")
     public void checkPendingRequests() {
+        leasedJobRunner.runAsLeader(JOB_NAME, leaseTtl, this::checkPendingRequests);
+    }
+
+    private void checkPendingRequests(JobLease lease) {
         OffsetDateTime now = OffsetDateTime.now(DEFAULT_TIMEZONE);
         LocalDate today = now.toLocalDate();
         
@@ -67,6 +81,7 @@ public class CleaningRequestMonitor {
         OffsetDateTime reminderDeadline = now.minus(reminderThreshold);
         List<CleaningRequest> reminderCandidates =
                 cleaningRequestRepository.findPendingRequestsForReminder(STATUS_PENDING, reminderDeadline, today);
+        lease.ensureHeld();
         reminderCandidates.forEach(this::notifyResendReminder);
         cleaningRequestRepository.saveAll(reminderCandidates);
 
@@ -75,6 +90,7 @@ public class CleaningRequestMonitor {
         OffsetDateTime resendCancelDeadline = now.minus(resendCancelThreshold);
         List<CleaningRequest> resentCancelCandidates =
                 cleaningRequestRepository.findResentRequestsForAutoCancel(STATUS_PENDING, resendCancelDeadline, today);
+        lease.ensureHeld();
         resentCancelCandidates.forEach(this::autoCancelRequest);
         cleaningRequestRepository.saveAll(resentCancelCandidates);
 
@@ -84,6 +100,7 @@ public class CleaningRequestMonitor {
         OffsetDateTime noResendCancelDeadline = now.minus(noResendCancelThreshold);
         List<CleaningRequest> noResendCancelCandidates =
                 cleaningRequestRepository.findNonResentRequestsForAutoCancel(STATUS_PENDING, noResendCancelDeadline, today);
+        lease.ensureHeld();
         noResendCancelCandidates.forEach(this::autoCancelRequest);
         cleaningRequestRepository.saveAll(noResendCancelCandidates);
     }
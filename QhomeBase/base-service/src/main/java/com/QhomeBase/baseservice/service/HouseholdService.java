@@ -19,8 +19,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -197,6 +202,55 @@ public class HouseholdService {
         return toDto(household);
     }
 
+    /**
+     * Hộ gia đình hiện tại của nhiều căn hộ, dùng cho các service khác tra cứu hàng loạt.
+     * Không gọi contract-service nên các trường hợp đồng để trống; căn hộ không có hộ gia đình bị bỏ qua.
+     */
+    @Transactional(readOnly = true)
+    public List<HouseholdDto> getCurrentHouseholdsByUnitIds(Collection<UUID> unitIds) {
+        if (unitIds == null || unitIds.isEmpty()) {
+            return List.of();
+        }
+
+        // Kết quả đã sắp theo startDate giảm dần nên bản ghi đầu tiên của mỗi unit là hộ hiện tại
+        Map<UUID, Household> currentByUnit = new LinkedHashMap<>();
+        for (Household household : householdRepository.findCurrentHouseholdsByUnitIds(unitIds)) {
+            currentByUnit.putIfAbsent(household.getUnitId(), household);
+        }
+        if (currentByUnit.isEmpty()) {
+            return List.of();
+        }
+
+        Map<UUID, String> unitCodes = unitRepository.findAllById(currentByUnit.keySet()).stream()
+                .collect(Collectors.toMap(Unit::getId, unit -> unit.getCode() != null ? unit.getCode() : ""));
+        Set<UUID> residentIds = currentByUnit.values().stream()
+                .map(Household::getPrimaryResidentId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<UUID, String> residentNames = residentRepository.findAllById(residentIds).stream()
+                .collect(Collectors.toMap(Resident::getId, r -> r.getFullName() != null ? r.getFullName() : ""));
+
+        return currentByUnit.values().stream()
+                .map(household -> new HouseholdDto(
+                        household.getId(),
+                        household.getUnitId(),
+                        unitCodes.get(household.getUnitId()),
+                        household.getKind(),
+                        household.getPrimaryResidentId(),
+                        household.getPrimaryResidentId() != null ? residentNames.get(household.getPrimaryResidentId()) : null,
+                        household.getStartDate(),
+                        household.getEndDate(),
+                        household.getContractId(),
+                        null,
+                        null,
+                        null,
+                        null,
+                        household.getCreatedAt(),
+                        household.getUpdatedAt()
+                ))
+                .collect(Collectors.toList());
+    }
+
     @Transactional(readOnly = true)
     public List<HouseholdDto> getAllHouseholdsByUnitId(UUID unitId) {
         List<Household> households = householdRepository.findAll()
@@ -5,6 +5,8 @@ import com.QhomeBase.baseservice.model.MaintenanceRequest;
 import com.QhomeBase.baseservice.model.Unit;
 import com.QhomeBase.baseservice.repository.MaintenanceRequestRepository;
 import com.QhomeBase.baseservice.repository.UnitRepository;
+import com.QhomeBase.scheduling.JobLease;
+import com.QhomeBase.scheduling.LeasedJobRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -22,6 +24,7 @@ import java.util.UUID;
 @Slf4j
 public class MaintenanceRequestMonitor {
 
+    private static final String JOB_NAME = "base.maintenance-request-monitor";
     private static final String STATUS_PENDING = "PENDING";
     private static final String ADMIN_PHONE = "0984000036";
     private static final ZoneId DEFAULT_TIMEZONE = ZoneId.of("Asia/Ho_Chi_Minh");
@@ -31,18 +34,24 @@ public class MaintenanceRequestMonitor {
     private final MaintenanceRequestRepository maintenanceRequestRepository;
     private final UnitRepository unitRepository;
     private final NotificationClient notificationClient;
+    private final LeasedJobRunner leasedJobRunner;
+    private final Duration leaseTtl;
 
     public MaintenanceRequestMonitor(
             MaintenanceRequestRepository maintenanceRequestRepository,
             UnitRepository unitRepository,
             NotificationClient notificationClient,
+            LeasedJobRunner leasedJobRunner,
             @Value("${maintenance.request.reminder.threshold:PT30M}") Duration reminderThreshold,
-            @Value("${maintenance.request.call.threshold:PT60M}") Duration callThreshold) {
+            @Value("${maintenance.request.call.threshold:PT60M}") Duration callThreshold,
+            @Value("${scheduling.lease.ttl:PT2M}") Duration leaseTtl) {
         this.maintenanceRequestRepository = maintenanceRequestRepository;
         this.unitRepository = unitRepository;
         this.notificationClient = notificationClient;
+        this.leasedJobRunner = leasedJobRunner;
         this.reminderThreshold = reminderThreshold;
         this.callThreshold = callThreshold;
+        this.leaseTtl = leaseTtl;
     }
 
     public MaintenanceRequestConfigDto getConfig() {
@@ -53,8 +62,13 @@ public class MaintenanceRequestMonitor {
         );
     }
 
+    // Chạy trên mọi replica nhưng chỉ replica giữ lease gửi thông báo, tránh cư dân nhận trùng
     @Scheduled(fixedDelayString = "${maintenance.request.monitor.delay:60000}")
     public void checkPendingRequests() {
+        leasedJobRunner.runAsLeader(JOB_NAME, leaseTtl, this::checkPendingRequests);
+    }
+
+    private void checkPendingRequests(JobLease lease) {
         OffsetDateTime now = OffsetDateTime.now(DEFAULT_TIMEZONE);
         
         // Check for reminder: requests created more than reminderThreshold ago (30 phút)
@@ -62,6 +76,7 @@ public class MaintenanceRequestMonitor {
         OffsetDateTime reminderDeadline = now.minus(reminderThreshold);
         List<MaintenanceRequest> reminderCandidates =
                 maintenanceRequestRepository.findPendingRequestsForReminder(STATUS_PENDING, reminderDeadline, now);
+        lease.ensureHeld();
         reminderCandidates.forEach(this::notifyResendReminder);
         maintenanceRequestRepository.saveAll(reminderCandidates);
 
@@ -70,6 +85,7 @@ public class MaintenanceRequestMonitor {
         OffsetDateTime callDeadline = now.minus(callThreshold);
         List<MaintenanceRequest> callAlertCandidates =
                 maintenanceRequestRepository.findPendingRequestsForCallAlert(STATUS_PENDING, callDeadline, now);
+        lease.ensureHeld();
         callAlertCandidates.forEach(this::notifyCallAdmin);
         maintenanceRequestRepository.saveAll(callAlertCandidates);
     }
@@ -0,0 +1,53 @@
+package com.QhomeBase.baseservice.service;
+
+import com.QhomeBase.baseservice.repository.MeterRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Mã công tơ duy nhất cho cả lô: thêm hậu tố {@code -n} khi trùng như {@code MeterService.create},
+ * nhưng kiểm tra trùng bằng một truy vấn mỗi vòng cho cả lô thay vì một truy vấn cho mỗi ứng viên
+ */
+@Component
+@RequiredArgsConstructor
+public class MeterCodeAllocator {
+
+    private final MeterRepository meterRepository;
+
+    public static String baseCode(String unitCode, String serviceCode) {
+        return (unitCode + "-" + serviceCode).toUpperCase().replaceAll("\\s+", "");
+    }
+
+    /**
+     * @return mã cho từng phần tử của {@code bases}, theo đúng thứ tự; không trùng nhau và không trùng mã trong DB
+     */
+    public List<String> allocate(List<String> bases) {
+        int n = bases.size();
+        String[] candidates = bases.toArray(new String[0]);
+        int[] suffixes = new int[n];
+        List<Integer> unresolved = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            unresolved.add(i);
+        }
+
+        Set<String> assigned = new HashSet<>();
+        while (!unresolved.isEmpty()) {
+            List<String> checking = unresolved.stream().map(i -> candidates[i]).distinct().toList();
+            Set<String> taken = new HashSet<>(meterRepository.findExistingMeterCodes(checking));
+            List<Integer> next = new ArrayList<>();
+            for (int i : unresolved) {
+                if (taken.contains(candidates[i]) || !assigned.add(candidates[i])) {
+                    candidates[i] = bases.get(i) + "-" + ++suffixes[i];
+                    next.add(i);
+                }
+            }
+            unresolved = next;
+        }
+        return List.of(candidates);
+    }
+}
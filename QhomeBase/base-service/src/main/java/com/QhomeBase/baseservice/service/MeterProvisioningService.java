@@ -0,0 +1,189 @@
+package com.QhomeBase.baseservice.service;
+
+import com.QhomeBase.baseservice.dto.MeterProvisioningSummary;
+import com.QhomeBase.baseservice.model.Service;
+import com.QhomeBase.baseservice.repository.MeterBatchRepository;
+import com.QhomeBase.baseservice.repository.MeterBatchRepository.NewMeter;
+import com.QhomeBase.baseservice.repository.MeterRepository;
+import com.QhomeBase.baseservice.repository.MeterRepository.UnitWithoutMeterRow;
+import com.QhomeBase.baseservice.repository.ServiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Tạo công tơ cho các căn hộ còn thiếu: tìm căn hộ bằng anti-join, sinh mã công tơ theo lô
+ * ({@link MeterCodeAllocator}) rồi chèn bằng JDBC batch. Khi không chỉ định tòa nhà, các tòa nhà
+ * được chia thành chunk, mỗi chunk một transaction và các chunk chạy song song trên {@code meterProvisioningExecutor}.
+ */
+@Slf4j
+@org.springframework.stereotype.Service
+public class MeterProvisioningService {
+
+    // Dòng không chèn được (trùng mã do chunk khác vừa ghi) được sinh lại mã tối đa số lần này
+    private static final int MAX_INSERT_ATTEMPTS = 3;
+
+    private final MeterRepository meterRepository;
+    private final MeterBatchRepository meterBatchRepository;
+    private final ServiceRepository serviceRepository;
+    private final MeterCodeAllocator meterCodeAllocator;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor meterProvisioningExecutor;
+
+    @Value("${meter.provisioning.buildings-per-chunk:5}")
+    private int buildingsPerChunk;
+
+    public MeterProvisioningService(MeterRepository meterRepository,
+                                    MeterBatchRepository meterBatchRepository,
+                                    ServiceRepository serviceRepository,
+                                    MeterCodeAllocator meterCodeAllocator,
+                                    TransactionTemplate transactionTemplate,
+                                    @Qualifier("meterProvisioningExecutor") AsyncTaskExecutor meterProvisioningExecutor) {
+        this.meterRepository = meterRepository;
+        this.meterBatchRepository = meterBatchRepository;
+        this.serviceRepository = serviceRepository;
+        this.meterCodeAllocator = meterCodeAllocator;
+        this.transactionTemplate = transactionTemplate;
+        this.meterProvisioningExecutor = meterProvisioningExecutor;
+    }
+
+    public MeterProvisioningSummary provisionMissingMeters(UUID serviceId, UUID buildingId) {
+        Service service = serviceRepository.findById(serviceId)
+                .orElseThrow(() -> new IllegalArgumentException("Service not found: " + serviceId));
+
+        List<UUID> buildingIds = buildingId != null
+                ? List.of(buildingId)
+                : meterRepository.findBuildingIdsWithUnitsMissingMeter(serviceId);
+        if (buildingIds.isEmpty()) {
+            return new MeterProvisioningSummary(service.getId(), service.getCode(), 0, 0, 0, 0, List.of());
+        }
+
+        int size = Math.max(1, buildingsPerChunk);
+        List<List<UUID>> chunks = new ArrayList<>();
+        for (int i = 0; i < buildingIds.size(); i += size) {
+            chunks.add(buildingIds.subList(i, Math.min(i + size, buildingIds.size())));
+        }
+        List<ChunkResult> results = processChunks(service, chunks);
+
+        int buildings = 0;
+        int missing = 0;
+        int created = 0;
+        int skipped = 0;
+        List<String> errors = new ArrayList<>();
+        for (ChunkResult result : results) {
+            buildings += result.buildings();
+            missing += result.unitsWithoutMeter();
+            created += result.metersCreated();
+            skipped += result.unitsSkipped();
+            if (result.error() != null) {
+                errors.add(result.error());
+            }
+        }
+        log.info("Provisioned {} meter(s) for service {} across {} building(s): {} unit(s) missing, {} skipped, {} failed chunk(s)",
+                created, service.getCode(), buildings, missing, skipped, errors.size());
+        return new MeterProvisioningSummary(service.getId(), service.getCode(), buildings, missing, created, skipped, errors);
+    }
+
+    private List<ChunkResult> processChunks(Service service, List<List<UUID>> chunks) {
+        if (chunks.size() == 1) {
+            return List.of(runChunk(service, chunks.get(0)));
+        }
+        List<Future<ChunkResult>> futures = new ArrayList<>(chunks.size());
+        for (List<UUID> chunk : chunks) {
+            futures.add(meterProvisioningExecutor.submit(() -> runChunk(service, chunk)));
+        }
+        try {
+            List<ChunkResult> results = new ArrayList<>(chunks.size());
+            for (Future<ChunkResult> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Meter provisioning interrupted", e);
+        } catch (ExecutionException e) {
+            // runChunk tự bắt lỗi của chunk, tới đây chỉ còn lỗi ngoài dự kiến
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Meter provisioning failed", e.getCause());
+        }
+    }
+
+    private ChunkResult runChunk(Service service, List<UUID> buildingIds) {
+        try {
+            return transactionTemplate.execute(status -> provisionChunk(service, buildingIds));
+        } catch (RuntimeException e) {
+            log.error("Failed to provision meters for service {} in buildings {}", service.getCode(), buildingIds, e);
+            return new ChunkResult(buildingIds.size(), 0, 0, 0,
+                    "Buildings " + buildingIds + ": " + e.getMessage());
+        }
+    }
+
+    private ChunkResult provisionChunk(Service service, List<UUID> buildingIds) {
+        List<UnitWithoutMeterRow> pending =
+                meterRepository.findUnitsWithoutActiveMeterInBuildings(service.getId(), buildingIds);
+        int unitsWithoutMeter = pending.size();
+        int created = 0;
+        LocalDate today = LocalDate.now();
+        OffsetDateTime now = OffsetDateTime.now();
+
+        for (int attempt = 1; attempt <= MAX_INSERT_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                // Chỉ giữ căn hộ vẫn còn thiếu công tơ (căn hộ đã được request khác tạo công tơ thì bỏ qua)
+                Set<UUID> retryUnitIds = new HashSet<>();
+                pending.forEach(row -> retryUnitIds.add(row.getUnitId()));
+                pending = meterRepository.findUnitsWithoutActiveMeterInBuildings(service.getId(), buildingIds).stream()
+                        .filter(row -> retryUnitIds.contains(row.getUnitId()))
+                        .toList();
+            }
+            List<NewMeter> meters = assignMeterCodes(pending, service, today);
+            int[] counts = meterBatchRepository.insertMeters(meters, now);
+            List<UnitWithoutMeterRow> notInserted = new ArrayList<>();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    created++;
+                } else {
+                    notInserted.add(pending.get(i));
+                }
+            }
+            pending = notInserted;
+        }
+        if (!pending.isEmpty()) {
+            log.warn("Could not create meters for {} unit(s) of service {} after {} attempts",
+                    pending.size(), service.getCode(), MAX_INSERT_ATTEMPTS);
+        }
+        return new ChunkResult(buildingIds.size(), unitsWithoutMeter, created, pending.size(), null);
+    }
+
+    private List<NewMeter> assignMeterCodes(List<UnitWithoutMeterRow> units, Service service, LocalDate installedAt) {
+        List<String> codes = meterCodeAllocator.allocate(units.stream()
+                .map(unit -> baseMeterCode(unit, service))
+                .toList());
+        List<NewMeter> meters = new ArrayList<>(units.size());
+        for (int i = 0; i < units.size(); i++) {
+            meters.add(new NewMeter(UUID.randomUUID(), units.get(i).getUnitId(), service.getId(), codes.get(i), installedAt));
+        }
+        return meters;
+    }
+
+    private static String baseMeterCode(UnitWithoutMeterRow unit, Service service) {
+        String unitCode = unit.getUnitCode() != null ? unit.getUnitCode() : unit.getUnitId().toString().substring(0, 8);
+        String serviceCode = service.getCode() != null ? service.getCode() : service.getId().toString().substring(0, 8);
+        return MeterCodeAllocator.baseCode(unitCode, serviceCode);
+    }
+
+    private record ChunkResult(int buildings, int unitsWithoutMeter, int metersCreated, int unitsSkipped, String error) {
+    }
+}
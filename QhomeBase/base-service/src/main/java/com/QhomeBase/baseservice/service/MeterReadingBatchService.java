@@ -0,0 +1,215 @@
+package com.QhomeBase.baseservice.service;
+
+import com.QhomeBase.baseservice.dto.MeterReadingBatchReq;
+import com.QhomeBase.baseservice.dto.MeterReadingBatchResultDto;
+import com.QhomeBase.baseservice.model.Meter;
+import com.QhomeBase.baseservice.model.MeterReadingAssignment;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository;
+import com.QhomeBase.baseservice.repository.MeterReadingBatchRepository;
+import com.QhomeBase.baseservice.repository.MeterReadingBatchRepository.ReadingRow;
+import com.QhomeBase.baseservice.repository.MeterRepository;
+import com.QhomeBase.baseservice.security.UserPrincipal;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Nộp chỉ số theo lô cho một assignment. Assignment, công tơ (kèm căn hộ / tòa nhà), chỉ số đã nộp
+ * và chỉ số trước của mọi công tơ được đọc một lần cho cả lô; từng dòng được kiểm tra trong bộ nhớ
+ * với cùng quy tắc như {@link MeterReadingService#create}, dòng hợp lệ được ghi bằng JDBC batch.
+ * Dòng sai chỉ bị từ chối riêng, các dòng còn lại vẫn được lưu.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MeterReadingBatchService {
+
+    private final MeterReadingAssignmentRepository assignmentRepository;
+    private final MeterRepository meterRepository;
+    private final MeterReadingBatchRepository readingBatchRepository;
+
+    @Value("${meter-reading.batch.max-items:500}")
+    private int maxItems;
+
+    @Transactional
+    public MeterReadingBatchResultDto submit(MeterReadingBatchReq request, Authentication auth) {
+        var principal = (UserPrincipal) auth.getPrincipal();
+        List<MeterReadingBatchReq.Item> items = request.readings();
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("Too many readings: " + items.size() + " (max " + maxItems + ")");
+        }
+        MeterReadingAssignment assignment = assignmentRepository.findWithScopeById(request.assignmentId())
+                .orElseThrow(() -> new IllegalArgumentException("Assignment not found"));
+        UUID readerId = request.readerId() != null ? request.readerId() : principal.uid();
+        UUID cycleId = request.cycleId() != null
+                ? request.cycleId()
+                : assignment.getCycle() != null ? assignment.getCycle().getId() : null;
+
+        Set<UUID> meterIds = items.stream()
+                .filter(Objects::nonNull)
+                .map(MeterReadingBatchReq.Item::meterId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<UUID, Meter> meters = meterRepository.findAllWithUnitByIdIn(meterIds).stream()
+                .collect(Collectors.toMap(Meter::getId, Function.identity()));
+        Map<UUID, UUID> existingReadingIds = readingBatchRepository.findAssignmentReadingIds(assignment.getId(), meterIds);
+        Map<UUID, BigDecimal> latestIndexes = readingBatchRepository.findLatestIndexes(meterIds, assignment.getId());
+
+        MeterReadingBatchResultDto.Row[] results = new MeterReadingBatchResultDto.Row[items.size()];
+        List<Integer> insertIndexes = new ArrayList<>();
+        List<ReadingRow> inserts = new ArrayList<>();
+        List<Integer> updateIndexes = new ArrayList<>();
+        List<ReadingRow> updates = new ArrayList<>();
+        Set<UUID> seenMeters = new HashSet<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            MeterReadingBatchReq.Item item = items.get(i);
+            UUID meterId = item != null ? item.meterId() : null;
+            Meter meter = meterId != null ? meters.get(meterId) : null;
+            BigDecimal prevIndex = null;
+            if (item != null) {
+                prevIndex = item.prevIndex() != null
+                        ? item.prevIndex()
+                        : latestIndexes.getOrDefault(meterId, BigDecimal.ZERO);
+            }
+            String error = validate(item, meter, assignment, prevIndex, seenMeters);
+            if (error != null) {
+                results[i] = rejected(i, meterId, error);
+                continue;
+            }
+
+            UUID existingId = existingReadingIds.get(meterId);
+            ReadingRow row = new ReadingRow(
+                    existingId != null ? existingId : UUID.randomUUID(),
+                    meterId,
+                    meter.getUnit().getId(),
+                    assignment.getId(),
+                    cycleId,
+                    item.readingDate(),
+                    prevIndex,
+                    item.currIndex(),
+                    item.photoFileId(),
+                    item.note(),
+                    readerId
+            );
+            if (existingId != null) {
+                updateIndexes.add(i);
+                updates.add(row);
+            } else {
+                insertIndexes.add(i);
+                inserts.add(row);
+            }
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        int created = applyCounts(readingBatchRepository.insertReadings(inserts, now),
+                inserts, insertIndexes, MeterReadingBatchResultDto.CREATED, results);
+        int updated = applyCounts(readingBatchRepository.updateReadings(updates, now),
+                updates, updateIndexes, MeterReadingBatchResultDto.UPDATED, results);
+        int rejected = items.size() - created - updated;
+
+        log.info("Batch readings for assignment {}: {} created, {} updated, {} rejected of {}",
+                assignment.getId(), created, updated, rejected, items.size());
+        return new MeterReadingBatchResultDto(
+                assignment.getId(),
+                cycleId,
+                items.size(),
+                created,
+                updated,
+                rejected,
+                List.of(results)
+        );
+    }
+
+    /**
+     * @return lý do từ chối, hoặc null nếu dòng hợp lệ
+     */
+    private static String validate(MeterReadingBatchReq.Item item, Meter meter, MeterReadingAssignment assignment,
+                                   BigDecimal prevIndex, Set<UUID> seenMeters) {
+        if (item == null) {
+            return "Reading item is required";
+        }
+        if (item.meterId() == null) {
+            return "Meter ID is required";
+        }
+        if (item.readingDate() == null) {
+            return "Reading date is required";
+        }
+        if (item.currIndex() == null) {
+            return "Current index is required";
+        }
+        if (item.currIndex().signum() < 0 || prevIndex.signum() < 0) {
+            return "Index must be >= 0";
+        }
+        if (meter == null) {
+            return "Meter not found";
+        }
+        if (meter.getUnit() == null) {
+            return "Meter must have a unit";
+        }
+        if (meter.getUnit().getBuilding() == null) {
+            return "Unit must have a building";
+        }
+        if (assignment.getBuilding() != null
+                && !assignment.getBuilding().getId().equals(meter.getUnit().getBuilding().getId())) {
+            return "Not same building";
+        }
+        if (assignment.getFloor() != null && !assignment.getFloor().equals(meter.getUnit().getFloor())) {
+            return "Unit floor does not match assignment floor";
+        }
+        List<UUID> includedUnitIds = assignment.getUnitIds();
+        if (includedUnitIds != null && !includedUnitIds.isEmpty() && !includedUnitIds.contains(meter.getUnit().getId())) {
+            return "Unit is not in included units list for assignment";
+        }
+        if (assignment.getService() != null && meter.getService() != null
+                && !assignment.getService().getId().equals(meter.getService().getId())) {
+            return "Meter service does not match assignment service";
+        }
+        if (item.currIndex().compareTo(prevIndex) < 0) {
+            return "Current index must be >= previous index";
+        }
+        if (!seenMeters.add(item.meterId())) {
+            return "Duplicate meter in batch";
+        }
+        return null;
+    }
+
+    private static int applyCounts(int[] counts, List<ReadingRow> rows, List<Integer> indexes, String status,
+                                   MeterReadingBatchResultDto.Row[] results) {
+        int applied = 0;
+        for (int j = 0; j < counts.length; j++) {
+            ReadingRow row = rows.get(j);
+            int index = indexes.get(j);
+            if (counts[j] > 0) {
+                applied++;
+                results[index] = new MeterReadingBatchResultDto.Row(index, row.meterId(), status, row.id(),
+                        row.prevIndex(), row.currIndex().subtract(row.prevIndex()), null);
+            } else {
+                results[index] = rejected(index, row.meterId(),
+                        "Another reading exists for this meter, reading date and cycle");
+            }
+        }
+        return applied;
+    }
+
+    private static MeterReadingBatchResultDto.Row rejected(int index, UUID meterId, String error) {
+        return new MeterReadingBatchResultDto.Row(index, meterId, MeterReadingBatchResultDto.REJECTED,
+                null, null, null, error);
+    }
+}
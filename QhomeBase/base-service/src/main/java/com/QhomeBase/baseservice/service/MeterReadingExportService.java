@@ -2,18 +2,25 @@ package com.QhomeBase.baseservice.service;
 
 import com.QhomeBase.baseservice.client.FinanceBillingClient;
 import com.QhomeBase.baseservice.dto.BillingImportedReadingDto;
+import com.QhomeBase.baseservice.dto.MeterReadingImportChunkRequest;
+import com.QhomeBase.baseservice.dto.MeterReadingImportChunkResponse;
 import com.QhomeBase.baseservice.dto.MeterReadingImportResponse;
+import com.QhomeBase.baseservice.model.Household;
 import com.QhomeBase.baseservice.model.MeterReading;
 import com.QhomeBase.baseservice.repository.HouseholdRepository;
 import com.QhomeBase.baseservice.repository.MeterReadingRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Service
@@ -21,61 +28,172 @@ import java.util.UUID;
 @Slf4j
 public class MeterReadingExportService {
 
+    private static final UUID NO_CURSOR = new UUID(0L, 0L);
+
     private final MeterReadingRepository meterReadingRepository;
     private final HouseholdRepository householdRepository;
     private final FinanceBillingClient financeBillingClient;
 
-    @Transactional(readOnly = true)
+    @Value("${meter-reading.export.units-per-chunk:200}")
+    private int unitsPerChunk;
+
+    /**
+     * Export chỉ số của kỳ sang finance-billing theo từng chunk căn hộ (keyset theo unit_id).
+     * Mỗi chunk có idempotency key tính từ nội dung chỉ số nên gửi lại sau lỗi không tạo hóa đơn trùng;
+     * khi một chunk lỗi, export dừng và trả về resumeAfterUnitId để tiếp tục từ căn hộ kế tiếp.
+     */
     public MeterReadingImportResponse exportReadingsByCycle(UUID cycleId) {
-        log.info("Exporting readings for cycle: {}", cycleId);
-        List<MeterReading> readings = meterReadingRepository.findByCycleId(cycleId);
-        log.info("Found {} readings linked to cycle {} via column or assignment", readings.size(), cycleId);
-        
-        if (readings.isEmpty()) {
-            log.warn("No readings found for cycle: {}. Checking all readings...", cycleId);
-            
-            List<MeterReading> allReadings = meterReadingRepository.findAll();
-            log.debug("Total readings in database: {}", allReadings.size());
-            
-            for (MeterReading r : allReadings) {
-                if (r.getAssignment() != null && r.getAssignment().getCycle() != null) {
-                    log.debug("Reading {} has assignment.cycle.id = {}", r.getId(), r.getAssignment().getCycle().getId());
-                } else {
-                    log.debug("Reading {} has no assignment/cycle", r.getId());
+        return exportReadingsByCycle(cycleId, null);
+    }
+
+    public MeterReadingImportResponse exportReadingsByCycle(UUID cycleId, UUID afterUnitId) {
+        log.info("Exporting readings for cycle: {} (after unit {})", cycleId, afterUnitId);
+        UUID cursor = afterUnitId != null ? afterUnitId : NO_CURSOR;
+        int pageSize = Math.max(1, unitsPerChunk);
+
+        List<MeterReadingImportChunkResponse> chunks = new ArrayList<>();
+        List<UUID> invoiceIds = new ArrayList<>();
+        List<String> errors = new ArrayList<>();
+        int totalReadings = 0;
+        int invoicesCreated = 0;
+        int invoicesSkipped = 0;
+        int chunkNo = 0;
+
+        while (true) {
+            List<UUID> unitIds = meterReadingRepository.findUnitIdsByCycleAfter(cycleId, cursor, pageSize);
+            if (unitIds.isEmpty()) {
+                break;
+            }
+            chunkNo++;
+            List<MeterReading> readings = meterReadingRepository.findForExport(cycleId, unitIds);
+            List<BillingImportedReadingDto> billingReadings = convertToBillingReadings(readings, loadResidentIds(unitIds));
+            UUID lastUnitId = unitIds.get(unitIds.size() - 1);
+
+            if (!billingReadings.isEmpty()) {
+                String idempotencyKey = idempotencyKey(cycleId, readings);
+                MeterReadingImportChunkRequest request = MeterReadingImportChunkRequest.builder()
+                        .readingCycleId(cycleId)
+                        .chunkNo(chunkNo)
+                        .readings(billingReadings)
+                        .build();
+                MeterReadingImportChunkResponse chunk;
+                try {
+                    chunk = financeBillingClient.importMeterReadingChunkSync(idempotencyKey, request);
+                } catch (RuntimeException e) {
+                    log.error("Export of cycle {} stopped at chunk #{} (units after {}): {}",
+                            cycleId, chunkNo, cursor, e.getMessage());
+                    errors.add("Chunk #" + chunkNo + ": " + e.getMessage());
+                    return partial(cycleId, cursor, totalReadings, invoicesCreated, invoicesSkipped,
+                            invoiceIds, errors, chunks);
+                }
+                chunks.add(chunk);
+                if (chunk == null || MeterReadingImportChunkResponse.IN_PROGRESS.equals(chunk.getStatus())) {
+                    log.warn("Chunk #{} of cycle {} is still being processed by finance-billing, stopping export", chunkNo, cycleId);
+                    errors.add("Chunk #" + chunkNo + " is still in progress");
+                    return partial(cycleId, cursor, totalReadings, invoicesCreated, invoicesSkipped,
+                            invoiceIds, errors, chunks);
                 }
+                if (MeterReadingImportChunkResponse.FAILED.equals(chunk.getStatus())) {
+                    // Giữ cursor trước chunk này: gửi lại cùng key sẽ import tiếp các căn hộ chưa ghi được
+                    int failed = chunk.getResult() != null ? chunk.getResult().getInvoicesFailed() : 0;
+                    log.warn("Chunk #{} of cycle {} had {} invoice(s) that failed to persist, stopping export",
+                            chunkNo, cycleId, failed);
+                    errors.add("Chunk #" + chunkNo + ": " + failed + " invoice(s) failed to persist");
+                    if (chunk.getResult() != null && chunk.getResult().getErrors() != null) {
+                        errors.addAll(chunk.getResult().getErrors());
+                    }
+                    return partial(cycleId, cursor, totalReadings, invoicesCreated, invoicesSkipped,
+                            invoiceIds, errors, chunks);
+                }
+                MeterReadingImportResponse result = chunk.getResult();
+                totalReadings += billingReadings.size();
+                if (result != null) {
+                    invoicesCreated += result.getInvoicesCreated();
+                    invoicesSkipped += result.getInvoicesSkipped();
+                    if (result.getInvoiceIds() != null) {
+                        invoiceIds.addAll(result.getInvoiceIds());
+                    }
+                    if (result.getErrors() != null) {
+                        errors.addAll(result.getErrors());
+                    }
+                }
+                log.info("Exported chunk #{} of cycle {}: {} units, {} readings ({})",
+                        chunkNo, cycleId, unitIds.size(), billingReadings.size(), chunk.getStatus());
             }
-            
+            cursor = lastUnitId;
+            if (unitIds.size() < pageSize) {
+                break;
+            }
+        }
+
+        if (chunkNo == 0) {
+            log.warn("No readings found for cycle: {}{}", cycleId, afterUnitId != null ? " after unit " + afterUnitId : "");
             return MeterReadingImportResponse.builder()
                     .totalReadings(0)
                     .invoicesCreated(0)
+                    .chunks(chunks)
+                    .completed(true)
                     .message("No readings found for cycle: " + cycleId)
                     .build();
         }
-        
-        long mismatchedCycleCount = readings.stream()
-                .filter(r -> r.getAssignment() != null && r.getAssignment().getCycle() != null)
-                .filter(r -> !cycleId.equals(r.getAssignment().getCycle().getId()))
-                .count();
-        if (mismatchedCycleCount > 0) {
-            log.warn("Detected {} readings whose assignment.cycle != requested cycle {}", mismatchedCycleCount, cycleId);
-            readings.stream()
-                    .filter(r -> r.getAssignment() != null && r.getAssignment().getCycle() != null)
-                    .filter(r -> !cycleId.equals(r.getAssignment().getCycle().getId()))
-                    .limit(20)
-                    .forEach(r -> log.warn("Reading {} -> assignment {} cycle {}", r.getId(),
-                            r.getAssignment().getId(), r.getAssignment().getCycle().getId()));
-        }
-        log.info("Proceeding with {} readings for cycle {}", readings.size(), cycleId);
 
-        List<BillingImportedReadingDto> billingReadings = convertToBillingReadings(readings);
-        MeterReadingImportResponse response = financeBillingClient.importMeterReadingsSync(billingReadings);
-        
-        log.info("Exported {} readings from cycle {} to finance-billing. Invoices created: {}", 
-                readings.size(), cycleId, response != null ? response.getInvoicesCreated() : 0);
-        return response;
+        log.info("Exported {} readings from cycle {} to finance-billing in {} chunk(s). Invoices created: {}, skipped: {}",
+                totalReadings, cycleId, chunkNo, invoicesCreated, invoicesSkipped);
+        return MeterReadingImportResponse.builder()
+                .totalReadings(totalReadings)
+                .invoicesCreated(invoicesCreated)
+                .invoicesSkipped(invoicesSkipped)
+                .invoiceIds(invoiceIds)
+                .errors(errors)
+                .chunks(chunks)
+                .resumeAfterUnitId(cursor)
+                .completed(true)
+                .message(String.format("Exported %d readings in %d chunk(s)", totalReadings, chunkNo))
+                .build();
+    }
+
+    private MeterReadingImportResponse partial(UUID cycleId, UUID cursor, int totalReadings, int invoicesCreated,
+                                               int invoicesSkipped, List<UUID> invoiceIds, List<String> errors,
+                                               List<MeterReadingImportChunkResponse> chunks) {
+        UUID resumeAfter = NO_CURSOR.equals(cursor) ? null : cursor;
+        return MeterReadingImportResponse.builder()
+                .totalReadings(totalReadings)
+                .invoicesCreated(invoicesCreated)
+                .invoicesSkipped(invoicesSkipped)
+                .invoiceIds(invoiceIds)
+                .errors(errors)
+                .chunks(chunks)
+                .resumeAfterUnitId(resumeAfter)
+                .completed(false)
+                .message("Export of cycle " + cycleId + " stopped before completion; resume after unit " + resumeAfter)
+                .build();
     }
 
-    private List<BillingImportedReadingDto> convertToBillingReadings(List<MeterReading> readings) {
+    /**
+     * Key ổn định cho cùng nội dung chunk: đổi chỉ số (updated_at) hoặc tập chỉ số sẽ sinh key mới
+     */
+    private static String idempotencyKey(UUID cycleId, List<MeterReading> readings) {
+        StringBuilder content = new StringBuilder();
+        readings.stream()
+                .sorted(Comparator.comparing(MeterReading::getId))
+                .forEach(reading -> content.append(reading.getId()).append('@')
+                        .append(reading.getUpdatedAt() != null ? reading.getUpdatedAt().toInstant() : "").append(';'));
+        return "meter-export:" + cycleId + ":" + UUID.nameUUIDFromBytes(content.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Map<UUID, UUID> loadResidentIds(List<UUID> unitIds) {
+        Map<UUID, UUID> residentByUnit = new HashMap<>();
+        // Sắp theo start_date DESC nên household đầu tiên của mỗi căn hộ là household hiện tại
+        for (Household household : householdRepository.findCurrentHouseholdsByUnitIds(unitIds)) {
+            if (household.getPrimaryResidentId() != null) {
+                residentByUnit.putIfAbsent(household.getUnitId(), household.getPrimaryResidentId());
+            }
+        }
+        return residentByUnit;
+    }
+
+    private List<BillingImportedReadingDto> convertToBillingReadings(List<MeterReading> readings,
+                                                                     Map<UUID, UUID> residentByUnit) {
         List<BillingImportedReadingDto> result = new ArrayList<>();
         
         for (MeterReading reading : readings) {
@@ -85,7 +203,7 @@ public class MeterReadingExportService {
             }
 
             UUID unitId = reading.getUnit().getId();
-            UUID residentId = getResidentId(unitId);
+            UUID residentId = residentByUnit.get(unitId);
             
             if (residentId == null) {
                 log.warn("No active resident found for unit {}, but proceeding with null residentId for reading {}", unitId, reading.getId());
@@ -139,12 +257,6 @@ public class MeterReadingExportService {
         return result;
     }
 
-    private UUID getResidentId(UUID unitId) {
-        return householdRepository.findCurrentHouseholdByUnitId(unitId)
-                .map(household -> household.getPrimaryResidentId())
-                .orElse(null);
-    }
-
     private String buildDescription(MeterReading reading) {
         StringBuilder desc = new StringBuilder();
         if (reading.getMeter() != null && reading.getMeter().getMeterCode() != null) {
@@ -17,8 +17,12 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.EnumSet;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
@@ -29,6 +33,11 @@ public class MeterReadingReminderService {
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final String REMINDER_TYPE = "METER_READING_ASSIGNMENT_REMINDER";
+    private static final List<MeterReadingAssignmentStatus> REMINDER_STATUSES = List.of(
+            MeterReadingAssignmentStatus.PENDING,
+            MeterReadingAssignmentStatus.IN_PROGRESS,
+            MeterReadingAssignmentStatus.OVERDUE
+    );
 
     private final MeterReadingAssignmentRepository assignmentRepository;
     private final MeterReadingReminderRepository reminderRepository;
@@ -36,18 +45,16 @@ public class MeterReadingReminderService {
     @Value("${meter-reading.reminder.days-before:3}")
     private int reminderDaysBefore;
 
+    /**
+     * Nhắc các assignment đang mở có hạn trong cửa sổ nhắc: một truy vấn lấy assignment, một truy vấn lấy
+     * các assignment còn nhắc nhở chưa xác nhận, rồi ghi nhắc nhở và ngày nhắc theo lô
+     */
     @Transactional
     public void processReminders(LocalDate today) {
         LocalDate threshold = today.plusDays(Math.max(reminderDaysBefore, 0));
 
-        Set<MeterReadingAssignmentStatus> statuses = EnumSet.of(
-                MeterReadingAssignmentStatus.PENDING,
-                MeterReadingAssignmentStatus.IN_PROGRESS,
-                MeterReadingAssignmentStatus.OVERDUE
-        );
-
         List<MeterReadingAssignment> assignments = assignmentRepository.findAssignmentsNeedingReminder(
-                List.copyOf(statuses),
+                REMINDER_STATUSES,
                 today,
                 threshold,
                 today
@@ -60,47 +67,23 @@ public class MeterReadingReminderService {
 
         log.info("[MeterReminder] Found {} assignments needing reminders", assignments.size());
 
-        assignments.forEach(assignment -> {
-            try {
-                LocalDate dueDate = assignment.getEndDate();
-                if (dueDate == null) {
-                    log.warn("[MeterReminder] Assignment {} has no endDate, skipping", assignment.getId());
-                    return;
-                }
-                
-                long daysUntilDue = java.time.temporal.ChronoUnit.DAYS.between(today, dueDate);
-                log.debug("[MeterReminder] Processing assignment {}: due in {} days (dueDate: {})", 
-                        assignment.getId(), daysUntilDue, dueDate);
-                
-                sendReminder(assignment);
-                assignment.setReminderLastSentDate(today);
-                assignmentRepository.save(assignment);
-            } catch (Exception ex) {
-                log.error("[MeterReminder] Failed to send reminder for assignment {}", assignment.getId(), ex);
-            }
-        });
-    }
+        List<UUID> assignmentIds = assignments.stream().map(MeterReadingAssignment::getId).toList();
+        Set<UUID> withPendingReminder = new HashSet<>(
+                reminderRepository.findAssignmentIdsWithUnacknowledgedLatestReminder(assignmentIds));
 
-    private void sendReminder(MeterReadingAssignment assignment) {
-        LocalDate dueDate = assignment.getEndDate();
-        if (dueDate == null) {
-            log.warn("[MeterReminder] Assignment {} has no endDate, skipping reminder creation", assignment.getId());
-            return;
-        }
+        List<MeterReadingReminder> reminders = assignments.stream()
+                .filter(assignment -> !withPendingReminder.contains(assignment.getId()))
+                .map(this::buildReminder)
+                .toList();
+        reminderRepository.saveAll(reminders);
+        assignmentRepository.markReminderSent(assignmentIds, today, OffsetDateTime.now());
 
-        List<MeterReadingReminder> existingReminders = reminderRepository.findByAssignment_Id(assignment.getId());
-        if (!existingReminders.isEmpty()) {
-            MeterReadingReminder latestReminder = existingReminders.stream()
-                    .max((r1, r2) -> r1.getCreatedAt().compareTo(r2.getCreatedAt()))
-                    .orElse(null);
-            
-            if (latestReminder != null && latestReminder.getAcknowledgedAt() == null) {
-                log.debug("[MeterReminder] Assignment {} already has unacknowledged reminder {}, skipping", 
-                        assignment.getId(), latestReminder.getId());
-                return;
-            }
-        }
+        log.info("[MeterReminder] Created {} reminders, {} assignments skipped (unacknowledged reminder)",
+                reminders.size(), withPendingReminder.size());
+    }
 
+    private MeterReadingReminder buildReminder(MeterReadingAssignment assignment) {
+        LocalDate dueDate = assignment.getEndDate();
         String cycleName = assignment.getCycle() != null ? assignment.getCycle().getName() : "chu kỳ";
         String buildingName = assignment.getBuilding() != null ? assignment.getBuilding().getName() : null;
 
@@ -112,7 +95,7 @@ public class MeterReadingReminderService {
             body.append(" tại ").append(buildingName);
         }
 
-        MeterReadingReminder reminder = MeterReadingReminder.builder()
+        return MeterReadingReminder.builder()
                 .assignment(assignment)
                 .userId(assignment.getAssignedTo())
                 .title(title)
@@ -120,11 +103,6 @@ public class MeterReadingReminderService {
                 .dueDate(dueDate)
                 .type(REMINDER_TYPE)
                 .build();
-
-        reminderRepository.save(reminder);
-
-        log.info("[MeterReminder] Created reminder {} for user {} (assignment {}, dueDate: {})", 
-                reminder.getId(), assignment.getAssignedTo(), assignment.getId(), dueDate);
     }
 
     @Transactional
@@ -151,62 +129,43 @@ public class MeterReadingReminderService {
         }
     }
 
+    /**
+     * Assignment đang mở có hạn trong cửa sổ nhắc và lý do có / không được nhắc hôm nay
+     */
     public Object debugAssignmentsNeedingReminders() {
         LocalDate today = LocalDate.now();
         LocalDate threshold = today.plusDays(Math.max(reminderDaysBefore, 0));
 
-        Set<MeterReadingAssignmentStatus> statuses = EnumSet.of(
-                MeterReadingAssignmentStatus.PENDING,
-                MeterReadingAssignmentStatus.IN_PROGRESS,
-                MeterReadingAssignmentStatus.OVERDUE
-        );
-
-        List<MeterReadingAssignment> allAssignments = assignmentRepository.findAll();
-        
-        java.util.Map<String, Object> debug = new java.util.HashMap<>();
+        Map<String, Object> debug = new LinkedHashMap<>();
         debug.put("today", today.toString());
         debug.put("threshold", threshold.toString());
         debug.put("reminderDaysBefore", reminderDaysBefore);
-        debug.put("targetStatuses", statuses.stream().map(Enum::name).toList());
-        
-        List<java.util.Map<String, Object>> assignmentDebug = new java.util.ArrayList<>();
-        for (MeterReadingAssignment a : allAssignments) {
-            java.util.Map<String, Object> info = new java.util.HashMap<>();
+        debug.put("targetStatuses", REMINDER_STATUSES.stream().map(Enum::name).toList());
+
+        List<Map<String, Object>> assignmentDebug = new ArrayList<>();
+        List<String> matchingIds = new ArrayList<>();
+        for (MeterReadingAssignment a : assignmentRepository.findDueBetween(REMINDER_STATUSES, today, threshold)) {
+            boolean reminderNotSentToday = a.getReminderLastSentDate() == null || a.getReminderLastSentDate().isBefore(today);
+
+            Map<String, Object> info = new LinkedHashMap<>();
             info.put("id", a.getId().toString());
             info.put("status", a.getStatus().name());
-            info.put("endDate", a.getEndDate() != null ? a.getEndDate().toString() : null);
+            info.put("endDate", a.getEndDate().toString());
+            info.put("daysUntilDue", ChronoUnit.DAYS.between(today, a.getEndDate()));
             info.put("reminderLastSentDate", a.getReminderLastSentDate() != null ? a.getReminderLastSentDate().toString() : null);
             info.put("assignedTo", a.getAssignedTo().toString());
-            
-            boolean matchesStatus = statuses.contains(a.getStatus());
-            boolean hasEndDate = a.getEndDate() != null;
-            boolean endDateInRange = hasEndDate && !a.getEndDate().isBefore(today) && !a.getEndDate().isAfter(threshold);
-            boolean reminderNotSentToday = a.getReminderLastSentDate() == null || a.getReminderLastSentDate().isBefore(today);
-            
-            info.put("matchesStatus", matchesStatus);
-            info.put("hasEndDate", hasEndDate);
-            info.put("endDateInRange", endDateInRange);
             info.put("reminderNotSentToday", reminderNotSentToday);
-            info.put("shouldGetReminder", matchesStatus && hasEndDate && endDateInRange && reminderNotSentToday);
-            
-            if (hasEndDate) {
-                long daysUntilDue = java.time.temporal.ChronoUnit.DAYS.between(today, a.getEndDate());
-                info.put("daysUntilDue", daysUntilDue);
-            }
-            
+            info.put("shouldGetReminder", reminderNotSentToday);
             assignmentDebug.add(info);
+
+            if (reminderNotSentToday) {
+                matchingIds.add(a.getId().toString());
+            }
         }
         debug.put("assignments", assignmentDebug);
-        
-        List<MeterReadingAssignment> matchingAssignments = assignmentRepository.findAssignmentsNeedingReminder(
-                List.copyOf(statuses),
-                today,
-                threshold,
-                today
-        );
-        debug.put("matchingAssignmentsCount", matchingAssignments.size());
-        debug.put("matchingAssignmentIds", matchingAssignments.stream().map(a -> a.getId().toString()).toList());
-        
+        debug.put("matchingAssignmentsCount", matchingIds.size());
+        debug.put("matchingAssignmentIds", matchingIds);
+
         return debug;
     }
 
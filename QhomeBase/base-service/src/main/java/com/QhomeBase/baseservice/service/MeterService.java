@@ -67,23 +67,19 @@ public class MeterService {
                 .map(this::toDto)
                 .toList();
     }
+    @Transactional(readOnly = true)
     public List<UnitWithoutMeterDto> getUnitsDoNotHaveMeter(UUID serviceId, UUID buildingId) {
         Service service = serviceRepository.findById(serviceId)
                 .orElseThrow(() -> new IllegalArgumentException("Service not found: " + serviceId));
 
-        Set<UUID> unitsWithMeter = new HashSet<>(meterRepository.findUnitIdsByServiceId(serviceId));
-        List<Unit> units = buildingId != null
-                ? unitRepository.findAllByBuildingId(buildingId)
-                : unitRepository.findAllWithBuilding();
-        return units.stream()
-                .filter(unit -> !unitsWithMeter.contains(unit.getId()))
+        return meterRepository.findUnitsWithoutActiveMeter(serviceId, buildingId).stream()
                 .map(unit -> new UnitWithoutMeterDto(
-                        unit.getId(),
-                        unit.getCode(),
+                        unit.getUnitId(),
+                        unit.getUnitCode(),
                         unit.getFloor(),
-                        unit.getBuilding() != null ? unit.getBuilding().getId() : null,
-                        unit.getBuilding() != null ? unit.getBuilding().getCode() : null,
-                        unit.getBuilding() != null ? unit.getBuilding().getName() : null,
+                        unit.getBuildingId(),
+                        unit.getBuildingCode(),
+                        unit.getBuildingName(),
                         service.getId(),
                         service.getCode(),
                         service.getName()
@@ -91,29 +87,6 @@ public class MeterService {
                 .toList();
     }
 
-    @Transactional
-    public List<MeterDto> createMissingMeters(UUID serviceId, UUID buildingId) {
-        List<UnitWithoutMeterDto> missingUnits = getUnitsDoNotHaveMeter(serviceId, buildingId);
-        List<MeterDto> created = new ArrayList<>();
-        Service service = serviceRepository.findById(serviceId)
-                .orElseThrow(() -> new IllegalArgumentException("Service not found: " + serviceId));
-        for (UnitWithoutMeterDto dto : missingUnits) {
-            Unit unit = unitRepository.findById(dto.unitId())
-                    .orElseThrow(() -> new IllegalArgumentException("Unit not found: " + dto.unitId()));
-            String meterCode = generateMeterCode(unit, service);
-            Meter meter = Meter.builder()
-                    .unit(unit)
-                    .service(service)
-                    .meterCode(meterCode)
-                    .active(true)
-                    .installedAt(LocalDate.now())
-                    .build();
-            Meter saved = meterRepository.save(meter);
-            created.add(toDto(saved));
-        }
-        return created;
-    }
-
     @Transactional(readOnly = true)
     public List<MeterDto> getMetersByStaffAndCycle(UUID staffId, UUID cycleId) {
         List<MeterReadingAssignment> assignments = assignmentRepository.findByAssignedToAndCycleId(staffId, cycleId);
@@ -33,11 +33,7 @@ public class ReadingCycleService {
     private final ReadingCycleRepository readingCycleRepository;
     private final MeterReadingAssignmentRepository assignmentRepository;
     private final ServiceRepository serviceRepository;
-    private final MeterRepository meterRepository;
-    private final UnitRepository unitRepository;
-    private final MeterService meterService;
     private final FinanceBillingClient financeBillingClient;
-    private final HouseholdService householdService;
     public ReadingCycleDto createCycle(ReadingCycleCreateReq req, Authentication authentication) {
         var principal = (UserPrincipal) authentication.getPrincipal();
         UUID createdBy = principal.uid();
@@ -353,73 +349,44 @@ public class ReadingCycleService {
             throw new IllegalStateException("Reading cycle must have a service");
         }
 
-        UUID serviceId = readingCycle.getService().getId();
-
-        Set<UUID> assignedUnits = new HashSet<>();
-        assignmentRepository.findByCycleId(cycleId).stream()
-                .filter(a -> a.getService() != null && Objects.equals(a.getService().getId(), serviceId))
-                .forEach(assignment -> collectAssignedUnits(assignment, assignedUnits));
-
-        Set<UUID> unitsWithMeters = meterRepository.findByServiceId(serviceId).stream()
-                .filter(meter -> Boolean.TRUE.equals(meter.getActive()))
-                .map(Meter::getUnit)
-                .filter(Objects::nonNull)
-                .map(Unit::getId)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
-
-        Set<UUID> unassignedUnits = unitsWithMeters.stream()
-                .filter(unitId -> !assignedUnits.contains(unitId))
-                .collect(Collectors.toSet());
-
-        List<UnitWithoutMeterDto> missingMeterUnits = meterService.getUnitsDoNotHaveMeter(serviceId, null);
+        com.QhomeBase.baseservice.model.Service service = readingCycle.getService();
+        UUID serviceId = service.getId();
 
+        List<UnitWithoutMeterDto> filteredMissingMeterUnits = new ArrayList<>();
         List<UnassignedUnit> collectedUnits = new ArrayList<>();
-        List<UnassignedUnit> collectedUnitsWithMeter = new ArrayList<>(); // Only units with meters (for validation)
-        for (UUID unitId : unassignedUnits) {
-            unitRepository.findById(unitId).ifPresent(unit -> {
-                // Filter by primary resident if onlyWithOwner is true
-                if (onlyWithOwner) {
-                    Optional<UUID> primaryResidentId = householdService.getPrimaryResidentForUnit(unitId);
-                    if (primaryResidentId.isEmpty()) {
-                        return; // Skip units without primary resident
-                    }
-                }
-                
-                String buildingLabel = determineBuildingLabel(unit);
-                UUID buildingId = unit.getBuilding() != null ? unit.getBuilding().getId() : null;
-                String buildingCode = unit.getBuilding() != null ? unit.getBuilding().getCode() : null;
-                String unitCode = unit.getCode() != null ? unit.getCode() : unitId.toString();
-                UnassignedUnit unassignedUnit = new UnassignedUnit(
-                        unitId, unitCode, unit.getFloor(), buildingId, buildingCode, buildingLabel, false);
-                collectedUnits.add(unassignedUnit);
-                collectedUnitsWithMeter.add(unassignedUnit); // Units with meters count for validation
-            });
-        }
-
-        // Filter missingMeterUnits if onlyWithOwner is true
-        List<UnitWithoutMeterDto> filteredMissingMeterUnits = missingMeterUnits;
-        if (onlyWithOwner) {
-            filteredMissingMeterUnits = missingMeterUnits.stream()
-                    .filter(dto -> householdService.getPrimaryResidentForUnit(dto.unitId()).isPresent())
-                    .collect(Collectors.toList());
-        }
-
-        // Add missing meter units to collectedUnits for display, but NOT to collectedUnitsWithMeter for validation
-        for (UnitWithoutMeterDto dto : filteredMissingMeterUnits) {
+        int unassignedWithMeter = 0; // Only units with meters (for validation)
+        for (MeterReadingAssignmentRepository.UnassignedUnitRow row
+                : assignmentRepository.findUnassignedUnits(cycleId, serviceId, onlyWithOwner)) {
+            boolean missingMeter = Boolean.TRUE.equals(row.getMissingMeter());
+            String unitCode = row.getUnitCode() != null ? row.getUnitCode() : row.getUnitId().toString();
             collectedUnits.add(new UnassignedUnit(
-                    dto.unitId(),
-                    dto.unitCode() != null ? dto.unitCode() : dto.unitId().toString(),
-                    dto.floor(),
-                    dto.buildingId(),
-                    dto.buildingCode(),
-                    determineBuildingLabel(dto.buildingCode(), dto.buildingName()),
-                    true
+                    row.getUnitId(),
+                    unitCode,
+                    row.getFloor(),
+                    row.getBuildingId(),
+                    row.getBuildingCode(),
+                    determineBuildingLabel(row.getBuildingCode(), row.getBuildingName()),
+                    missingMeter
             ));
+            if (missingMeter) {
+                filteredMissingMeterUnits.add(new UnitWithoutMeterDto(
+                        row.getUnitId(),
+                        row.getUnitCode(),
+                        row.getFloor(),
+                        row.getBuildingId(),
+                        row.getBuildingCode(),
+                        row.getBuildingName(),
+                        service.getId(),
+                        service.getCode(),
+                        service.getName()
+                ));
+            } else {
+                unassignedWithMeter++;
+            }
         }
 
         // For validation: only count units with meters (not missingMeterUnits)
-        int totalUnassignedForValidation = collectedUnitsWithMeter.size();
+        int totalUnassignedForValidation = unassignedWithMeter;
 
         if (collectedUnits.isEmpty()) {
             return new ReadingCycleUnassignedInfoDto(cycleId, serviceId, totalUnassignedForValidation, List.of(), "", filteredMissingMeterUnits);
@@ -464,40 +431,6 @@ public class ReadingCycleService {
         return new ReadingCycleUnassignedInfoDto(cycleId, serviceId, totalUnassignedForValidation, floorDtos, message, filteredMissingMeterUnits);
     }
 
-    private void collectAssignedUnits(MeterReadingAssignment assignment, Set<UUID> assignedUnits) {
-        if (assignment.getUnitIds() != null && !assignment.getUnitIds().isEmpty()) {
-            assignedUnits.addAll(assignment.getUnitIds());
-            return;
-        }
-        if (assignment.getBuilding() == null) {
-            return;
-        }
-        if (assignment.getFloor() != null) {
-            List<Unit> unitsInFloor = unitRepository.findByBuildingIdAndFloorNumber(
-                    assignment.getBuilding().getId(), assignment.getFloor());
-            unitsInFloor.stream()
-                    .map(Unit::getId)
-                    .filter(Objects::nonNull)
-                    .forEach(assignedUnits::add);
-        } else {
-            List<Unit> unitsInBuilding = unitRepository.findAllByBuildingId(
-                    assignment.getBuilding().getId());
-            unitsInBuilding.stream()
-                    .map(Unit::getId)
-                    .filter(Objects::nonNull)
-                    .forEach(assignedUnits::add);
-        }
-    }
-
-    private String determineBuildingLabel(Unit unit) {
-        if (unit == null) {
-            return "Unknown";
-        }
-        String code = unit.getBuilding() != null ? unit.getBuilding().getCode() : null;
-        String name = unit.getBuilding() != null ? unit.getBuilding().getName() : null;
-        return determineBuildingLabel(code, name);
-    }
-
     private String determineBuildingLabel(String code, String name) {
         if (code != null && !code.isBlank()) {
             return code;
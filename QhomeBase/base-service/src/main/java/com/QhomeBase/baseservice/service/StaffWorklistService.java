@@ -0,0 +1,118 @@
+package com.QhomeBase.baseservice.service;
+
+import com.QhomeBase.baseservice.dto.StaffWorklistDto;
+import com.QhomeBase.baseservice.dto.WorklistMeterDto;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository.AssignmentVersion;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository.WorklistRow;
+import com.QhomeBase.baseservice.repository.ReadingCycleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Danh sách công việc ghi chỉ số cho app di động: toàn bộ công tơ / căn hộ / chỉ số của nhân viên trong chu kỳ
+ * lấy bằng một truy vấn, kèm ETag của toàn bộ danh sách và đồng bộ delta theo {@code since}.
+ */
+@Slf4j
+@org.springframework.stereotype.Service
+@RequiredArgsConstructor
+public class StaffWorklistService {
+
+    private final MeterReadingAssignmentRepository assignmentRepository;
+    private final ReadingCycleRepository readingCycleRepository;
+
+    // syncedAt lùi lại một khoảng để thay đổi commit muộn (updated_at sớm hơn thời điểm commit) không bị bỏ sót;
+    // cái giá là vài công tơ được gửi lại ở lần đồng bộ sau
+    @Value("${meter-reading.worklist.sync-overlap:PT1M}")
+    private Duration syncOverlap;
+
+    @Transactional(readOnly = true)
+    public StaffWorklistDto getWorklist(UUID staffId, UUID cycleId, OffsetDateTime since) {
+        if (!readingCycleRepository.existsById(cycleId)) {
+            throw new IllegalArgumentException("Cycle not found: " + cycleId);
+        }
+        OffsetDateTime syncedAt = OffsetDateTime.now().minus(syncOverlap);
+
+        List<AssignmentVersion> assignments = assignmentRepository.findVersionsByStaffAndCycle(staffId, cycleId);
+        List<WorklistRow> rows = assignments.isEmpty()
+                ? List.of()
+                : assignmentRepository.findWorklist(staffId, cycleId);
+        String etag = etag(cycleId, assignments, rows);
+
+        // Assignment thay đổi (phạm vi tầng / căn hộ có thể khác) thì trả toàn bộ thay vì delta
+        boolean delta = since != null && assignments.stream()
+                .noneMatch(a -> a.getUpdatedAt() != null && a.getUpdatedAt().isAfter(since));
+        long sinceMillis = delta ? since.toInstant().toEpochMilli() : Long.MIN_VALUE;
+
+        List<WorklistMeterDto> meters = rows.stream()
+                .filter(row -> Boolean.TRUE.equals(row.getActive()))
+                .filter(row -> !delta || changedAfter(row, sinceMillis))
+                .map(StaffWorklistService::toDto)
+                .toList();
+        List<UUID> removedMeterIds = delta
+                ? rows.stream()
+                        .filter(row -> !Boolean.TRUE.equals(row.getActive()))
+                        .filter(row -> changedAfter(row, sinceMillis))
+                        .map(WorklistRow::getMeterId)
+                        .toList()
+                : List.of();
+
+        log.debug("Worklist for staff {} cycle {}: {} of {} meter(s){}", staffId, cycleId, meters.size(), rows.size(),
+                delta ? " changed since " + since : "");
+        return new StaffWorklistDto(
+                cycleId,
+                etag,
+                syncedAt,
+                delta,
+                assignments.stream().map(AssignmentVersion::getId).toList(),
+                meters,
+                removedMeterIds
+        );
+    }
+
+    private static boolean changedAfter(WorklistRow row, long sinceMillis) {
+        return row.getChangedAtMillis() == null || row.getChangedAtMillis() > sinceMillis;
+    }
+
+    /**
+     * ETag của toàn bộ danh sách (không phụ thuộc since): đổi khi assignment, công tơ, căn hộ hoặc chỉ số thay đổi
+     */
+    private static String etag(UUID cycleId, List<AssignmentVersion> assignments, List<WorklistRow> rows) {
+        StringBuilder state = new StringBuilder(cycleId.toString());
+        for (AssignmentVersion assignment : assignments) {
+            state.append('|').append(assignment.getId()).append('@')
+                    .append(assignment.getUpdatedAt() != null ? assignment.getUpdatedAt().toInstant().toEpochMilli() : 0);
+        }
+        for (WorklistRow row : rows) {
+            state.append('|').append(row.getMeterId()).append(':').append(row.getActive())
+                    .append(':').append(row.getReadingId()).append(':').append(row.getChangedAtMillis());
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(state.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static WorklistMeterDto toDto(WorklistRow row) {
+        return new WorklistMeterDto(
+                row.getMeterId(),
+                row.getMeterCode(),
+                row.getUnitId(),
+                row.getUnitCode(),
+                row.getFloor(),
+                row.getBuildingCode(),
+                row.getServiceCode(),
+                row.getAssignmentId(),
+                row.getPrevIndex(),
+                row.getCurrIndex(),
+                row.getReadingId(),
+                row.getReadingDate()
+        );
+    }
+}
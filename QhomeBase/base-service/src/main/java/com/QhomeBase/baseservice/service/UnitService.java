@@ -84,6 +84,15 @@ public class UnitService {
         return toDto(unit);
     }
     
+    public java.util.List<UnitDto> getUnitsByIds(java.util.Collection<UUID> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return java.util.List.of();
+        }
+        return unitRepository.findAllByIdInWithBuilding(ids).stream()
+                .map(this::toDto)
+                .toList();
+    }
+    
     public java.util.List<UnitDto> getUnitsByBuildingId(UUID buildingId) {
         var units = unitRepository.findAllByBuildingId(buildingId);
         return units.stream()
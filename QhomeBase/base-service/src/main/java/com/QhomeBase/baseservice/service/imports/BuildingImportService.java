@@ -1,10 +1,12 @@
 package com.QhomeBase.baseservice.service.imports;
 
-import com.QhomeBase.baseservice.dto.BuildingCreateReq;
 import com.QhomeBase.baseservice.dto.imports.BuildingImportResponse;
 import com.QhomeBase.baseservice.dto.imports.BuildingImportRowResult;
 import com.QhomeBase.baseservice.model.Building;
+import com.QhomeBase.baseservice.model.ImportJobType;
 import com.QhomeBase.baseservice.repository.BuildingRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository.NewBuilding;
 import com.QhomeBase.baseservice.service.BuildingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -15,114 +17,152 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
+import java.util.Map;
+import java.util.UUID;
 
+/**
+ * Import tòa nhà từ Excel: đọc streaming qua {@link StreamingImportEngine}, danh sách tên đã có nạp một lần
+ * cho cả file, mã tòa nhà sinh theo lô và ghi bằng JDBC batch
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class BuildingImportService {
+public class BuildingImportService implements SheetImporter<BuildingImportRowResult> {
 
     private final BuildingRepository buildingRepository;
     private final BuildingService buildingService;
+    private final ImportBatchRepository importBatchRepository;
+    private final StreamingImportEngine importEngine;
 
     public BuildingImportResponse importBuildings(MultipartFile file, String createdBy) {
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("File trống");
+        BuildingImportResponse response = BuildingImportResponse.builder().build();
+        var totals = importEngine.runUpload(this, file, createdBy, response.getRows()::add);
+        response.setTotalRows(totals.totalRows());
+        response.setSuccessCount(totals.successCount());
+        response.setErrorCount(totals.errorCount());
+        return response;
+    }
+
+    @Override
+    public ImportJobType type() {
+        return ImportJobType.BUILDING;
+    }
+
+    @Override
+    public Session<BuildingImportRowResult> open(Map<String, Integer> columns, String createdBy) {
+        if (!columns.containsKey("name")) {
+            throw new IllegalArgumentException("Thiếu cột name (bắt buộc)");
         }
-        if (!Objects.requireNonNull(file.getOriginalFilename()).toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
-            throw new IllegalArgumentException("Chỉ hỗ trợ .xlsx");
+        if (!columns.containsKey("address")) {
+            throw new IllegalArgumentException("Thiếu cột address (bắt buộc)");
         }
-
-        BuildingImportResponse response = BuildingImportResponse.builder().build();
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
-            Sheet sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : null;
-            if (sheet == null) {
-                throw new IllegalArgumentException("Không tìm thấy sheet");
-            }
-            if (sheet.getLastRowNum() < 1) {
-                return response;
+        if (!columns.containsKey("numberoffloors")) {
+            throw new IllegalArgumentException("Thiếu cột numberOfFloors (bắt buộc)");
+        }
+        // Tên đã có trong hệ thống, nạp một lần; tên của các dòng đã import cũng được thêm vào
+        Map<String, Integer> nameCounts = new HashMap<>();
+        for (Building building : buildingRepository.findAll()) {
+            if (building.getName() != null) {
+                nameCounts.merge(building.getName().trim().toLowerCase(Locale.ROOT), 1, Integer::sum);
             }
+        }
+        String owner = createdBy != null ? createdBy : "import";
+        return rows -> importBatch(rows, nameCounts, owner);
+    }
 
-            response.setTotalRows(sheet.getLastRowNum());
-            Row header = sheet.getRow(0);
-            int idxName = findColumnIndex(header, "name");
-            int idxAddress = findColumnIndex(header, "address");
-            int idxNumberOfFloors = findColumnIndex(header, "numberOfFloors");
-            if (idxName < 0) {
-                throw new IllegalArgumentException("Thiếu cột name (bắt buộc)");
-            }
-            if (idxAddress < 0) {
-                throw new IllegalArgumentException("Thiếu cột address (bắt buộc)");
-            }
-            if (idxNumberOfFloors < 0) {
-                throw new IllegalArgumentException("Thiếu cột numberOfFloors (bắt buộc)");
-            }
+    @Override
+    public BuildingImportRowResult rowError(int rowNumber, String message) {
+        return BuildingImportRowResult.builder()
+                .rowNumber(rowNumber)
+                .success(false)
+                .message(message)
+                .build();
+    }
+
+    private List<BuildingImportRowResult> importBatch(List<SheetRow> rows, Map<String, Integer> nameCounts,
+                                                      String createdBy) {
+        List<BuildingImportRowResult> results = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        List<Integer> pendingIndexes = new ArrayList<>();
+        List<SheetRow> pendingRows = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            SheetRow r = rows.get(i);
+            int excelRow = r.rowNumber();
+            try {
+                String trimmedName = r.get("name");
+                String trimmedAddress = r.get("address");
+                Integer numberOfFloors = readInteger(r.get("numberOfFloors"));
+
+                if (trimmedName == null) {
+                    throw new IllegalArgumentException("Tên building (row " + excelRow + ") không được để trống");
+                }
 
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row r = sheet.getRow(i);
-                if (r == null) continue;
-                int excelRow = i + 1;
-                String name = readString(r, idxName);
-                String address = readString(r, idxAddress);
-                Integer numberOfFloors = readInteger(r, idxNumberOfFloors);
+                if (trimmedAddress == null) {
+                    throw new IllegalArgumentException("Địa chỉ (row " + excelRow + ") không được để trống");
+                }
 
-                try {
-                    String trimmedName = name != null ? name.trim() : null;
-                    String trimmedAddress = address != null ? address.trim() : null;
-                    
-                    if (trimmedName == null || trimmedName.isEmpty()) {
-                        throw new IllegalArgumentException("Tên building (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    if (trimmedAddress == null || trimmedAddress.isEmpty()) {
-                        throw new IllegalArgumentException("Địa chỉ (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    if (numberOfFloors == null) {
-                        throw new IllegalArgumentException("Số tầng (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    List<Building> existingBuildings = buildingRepository.findByNameIgnoreCase(trimmedName);
-                    if (!existingBuildings.isEmpty()) {
-                        int count = existingBuildings.size();
-                        String message = count == 1 
-                            ? "Tên building (row " + excelRow + ") đã tồn tại trong hệ thống: " + trimmedName
-                            : "Tên building (row " + excelRow + ") đã tồn tại trong hệ thống (" + count + " building có cùng tên): " + trimmedName;
-                        throw new IllegalArgumentException(message);
-                    }
-                    
-                    validateBuildingName(trimmedName, excelRow);
-                    validateBuildingAddress(trimmedAddress, excelRow);
-                    validateNumberOfFloors(numberOfFloors, excelRow);
-                    
-                    var dto = buildingService.createBuilding(new BuildingCreateReq(trimmedName, trimmedAddress, numberOfFloors), createdBy != null ? createdBy : "import");
-                    Building saved = buildingRepository.getBuildingById(dto.id());
+                if (numberOfFloors == null) {
+                    throw new IllegalArgumentException("Số tầng (row " + excelRow + ") không được để trống");
+                }
 
-                    response.getRows().add(BuildingImportRowResult.builder()
-                            .rowNumber(excelRow)
-                            .success(true)
-                            .message("OK")
-                            .buildingId(saved.getId().toString())
-                            .code(saved.getCode())
-                            .name(saved.getName())
-                            .build());
-                    response.setSuccessCount(response.getSuccessCount() + 1);
-                } catch (Exception ex) {
-                    log.warn("Import building lỗi tại dòng {}: {}", excelRow, ex.getMessage());
-                    response.getRows().add(BuildingImportRowResult.builder()
-                            .rowNumber(excelRow)
-                            .success(false)
-                            .message(ex.getMessage())
-                            .build());
-                    response.setErrorCount(response.getErrorCount() + 1);
+                String nameKey = trimmedName.toLowerCase(Locale.ROOT);
+                int count = nameCounts.getOrDefault(nameKey, 0);
+                if (count > 0) {
+                    String message = count == 1
+                        ? "Tên building (row " + excelRow + ") đã tồn tại trong hệ thống: " + trimmedName
+                        : "Tên building (row " + excelRow + ") đã tồn tại trong hệ thống (" + count + " building có cùng tên): " + trimmedName;
+                    throw new IllegalArgumentException(message);
                 }
+
+                validateBuildingName(trimmedName, excelRow);
+                validateBuildingAddress(trimmedAddress, excelRow);
+                validateNumberOfFloors(numberOfFloors, excelRow);
+
+                nameCounts.merge(nameKey, 1, Integer::sum);
+                pendingIndexes.add(i);
+                pendingRows.add(r);
+            } catch (RuntimeException ex) {
+                log.warn("Import building lỗi tại dòng {}: {}", excelRow, ex.getMessage());
+                results.set(i, rowError(excelRow, ex.getMessage()));
             }
-        } catch (IOException e) {
-            throw new IllegalStateException("Không đọc được file Excel", e);
         }
-        return response;
+        if (pendingRows.isEmpty()) {
+            return results;
+        }
+
+        // Mã tòa nhà sinh liên tiếp cho cả lô thay vì đọc lại danh sách tòa nhà cho mỗi dòng
+        List<String> codes = buildingService.generateNextCodes(pendingRows.size());
+        List<NewBuilding> buildings = new ArrayList<>(pendingRows.size());
+        for (int j = 0; j < pendingRows.size(); j++) {
+            SheetRow r = pendingRows.get(j);
+            buildings.add(new NewBuilding(UUID.randomUUID(), codes.get(j), r.get("name"), r.get("address"),
+                    readInteger(r.get("numberOfFloors")), createdBy));
+        }
+        int[] counts = importBatchRepository.insertBuildings(buildings, OffsetDateTime.now());
+        for (int j = 0; j < counts.length; j++) {
+            NewBuilding building = buildings.get(j);
+            int excelRow = pendingRows.get(j).rowNumber();
+            if (counts[j] > 0) {
+                results.set(pendingIndexes.get(j), BuildingImportRowResult.builder()
+                        .rowNumber(excelRow)
+                        .success(true)
+                        .message("OK")
+                        .buildingId(building.id().toString())
+                        .code(building.code())
+                        .name(building.name())
+                        .build());
+            } else {
+                results.set(pendingIndexes.get(j),
+                        rowError(excelRow, "Mã building (row " + excelRow + ") đã tồn tại: " + building.code()));
+            }
+        }
+        return results;
     }
 
     public byte[] generateTemplateWorkbook() {
@@ -151,41 +191,6 @@ public class BuildingImportService {
         }
     }
 
-    private int findColumnIndex(Row header, String name) {
-        if (header == null) return -1;
-        String target = name.toLowerCase(Locale.ROOT).trim();
-        short last = header.getLastCellNum();
-        for (int i = 0; i < last; i++) {
-            Cell cell = header.getCell(i);
-            if (cell == null) continue;
-            String v = cell.getStringCellValue();
-            if (v != null && v.trim().toLowerCase(Locale.ROOT).equals(target)) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
-    private String readString(Row r, int idx) {
-        if (idx < 0) return null;
-        Cell c = r.getCell(idx);
-        if (c == null) return null;
-        String v;
-        if (c.getCellType() == CellType.STRING) {
-            v = c.getStringCellValue();
-        } else if (c.getCellType() == CellType.NUMERIC) {
-            v = String.valueOf((long) c.getNumericCellValue());
-        } else if (c.getCellType() == CellType.BLANK) {
-            return null;
-        } else {
-            DataFormatter formatter = new DataFormatter();
-            v = formatter.formatCellValue(c);
-        }
-        if (v == null) return null;
-        String trimmed = v.trim();
-        return trimmed.isEmpty() ? null : trimmed;
-    }
-
     private void validateBuildingName(String name, int rowNumber) {
         if (name == null || name.isBlank()) {
             throw new IllegalArgumentException("Tên building (row " + rowNumber + ") không được để trống");
@@ -214,32 +219,17 @@ public class BuildingImportService {
         }
     }
 
-    private Integer readInteger(Row r, int idx) {
-        if (idx < 0) return null;
-        Cell c = r.getCell(idx);
-        if (c == null) return null;
-        if (c.getCellType() == CellType.BLANK) {
-            return null;
-        }
+    private Integer readInteger(String value) {
+        if (value == null) return null;
         try {
-            if (c.getCellType() == CellType.NUMERIC) {
-                double numValue = c.getNumericCellValue();
-                return (int) numValue;
-            } else if (c.getCellType() == CellType.STRING) {
-                String strValue = c.getStringCellValue();
-                if (strValue == null || strValue.trim().isEmpty()) {
-                    return null;
-                }
-                String trimmed = strValue.trim();
-                if (trimmed.isEmpty()) {
-                    return null;
-                }
-                return Integer.parseInt(trimmed);
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            try {
+                return new BigDecimal(value).intValue();
+            } catch (NumberFormatException ignored) {
+                return null;
             }
-        } catch (Exception e) {
-            return null;
         }
-        return null;
     }
 
     private void validateNumberOfFloors(Integer numberOfFloors, int rowNumber) {
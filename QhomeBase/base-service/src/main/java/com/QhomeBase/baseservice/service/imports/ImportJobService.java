@@ -0,0 +1,185 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import com.QhomeBase.baseservice.dto.imports.ImportJobDto;
+import com.QhomeBase.baseservice.dto.imports.ImportRowOutcome;
+import com.QhomeBase.baseservice.model.ImportJob;
+import com.QhomeBase.baseservice.model.ImportJobStatus;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.model.imports.ImportRowError;
+import com.QhomeBase.baseservice.repository.ImportJobRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Import Excel chạy nền: file được lưu tạm, job ghi vào data.import_jobs rồi chạy trên {@code importExecutor}.
+ * Tiến độ được cập nhật sau mỗi lô nên client (ở bất kỳ replica nào) có thể poll theo jobId.
+ */
+@Slf4j
+@Service
+public class ImportJobService {
+
+    private final ImportJobRepository importJobRepository;
+    private final StreamingImportEngine importEngine;
+    private final TaskExecutor importExecutor;
+    private final Map<ImportJobType, SheetImporter<?>> importers = new EnumMap<>(ImportJobType.class);
+
+    @Value("${import.jobs.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    public ImportJobService(ImportJobRepository importJobRepository,
+                            StreamingImportEngine importEngine,
+                            @Qualifier("importExecutor") TaskExecutor importExecutor,
+                            List<SheetImporter<?>> importers) {
+        this.importJobRepository = importJobRepository;
+        this.importEngine = importEngine;
+        this.importExecutor = importExecutor;
+        importers.forEach(importer -> this.importers.put(importer.type(), importer));
+    }
+
+    public ImportJobDto start(ImportJobType type, MultipartFile file, String createdBy) {
+        SheetImporter<?> importer = importers.get(type);
+        if (importer == null) {
+            throw new IllegalArgumentException("Không hỗ trợ import: " + type);
+        }
+        Path path = StreamingImportEngine.storeUpload(file);
+        OffsetDateTime now = OffsetDateTime.now();
+        ImportJob job = importJobRepository.save(ImportJob.builder()
+                .id(UUID.randomUUID())
+                .type(type)
+                .status(ImportJobStatus.PENDING)
+                .fileName(file.getOriginalFilename())
+                .createdBy(createdBy)
+                .createdAt(now)
+                .updatedAt(now)
+                .build());
+        try {
+            importExecutor.execute(() -> runJob(job.getId(), importer, path, createdBy));
+        } catch (TaskRejectedException e) {
+            StreamingImportEngine.deleteQuietly(path);
+            job.setStatus(ImportJobStatus.FAILED);
+            job.setFailureMessage("Hệ thống đang bận xử lý import khác");
+            job.setFinishedAt(OffsetDateTime.now());
+            job.setUpdatedAt(job.getFinishedAt());
+            importJobRepository.save(job);
+            throw new IllegalStateException("Hệ thống đang bận xử lý import khác, vui lòng thử lại sau");
+        }
+        log.info("Import job {} ({}) queued: {}", job.getId(), type, job.getFileName());
+        return toDto(job);
+    }
+
+    public ImportJobDto get(UUID jobId, ImportJobType type) {
+        return importJobRepository.findById(jobId)
+                .filter(job -> job.getType() == type)
+                .map(this::toDto)
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy job import: " + jobId));
+    }
+
+    private <R extends ImportRowOutcome> void runJob(UUID jobId, SheetImporter<R> importer, Path path, String createdBy) {
+        List<ImportRowError> rowErrors = new ArrayList<>();
+        try {
+            ImportJob job = importJobRepository.findById(jobId).orElseThrow();
+            job.setStatus(ImportJobStatus.RUNNING);
+            job.setStartedAt(OffsetDateTime.now());
+            job.setUpdatedAt(job.getStartedAt());
+            importJobRepository.save(job);
+
+            StreamingImportEngine.Totals totals = importEngine.run(importer, path, createdBy, result -> {
+                if (!result.isSuccess() && rowErrors.size() < maxReportedErrors) {
+                    rowErrors.add(new ImportRowError(result.getRowNumber(), result.getMessage()));
+                }
+            }, new JobProgress(jobId));
+
+            job = importJobRepository.findById(jobId).orElseThrow();
+            job.setStatus(ImportJobStatus.COMPLETED);
+            job.setTotalRows(totals.totalRows());
+            job.setProcessedRows(totals.totalRows());
+            job.setSuccessCount(totals.successCount());
+            job.setErrorCount(totals.errorCount());
+            job.setRowErrors(rowErrors);
+            job.setFinishedAt(OffsetDateTime.now());
+            job.setUpdatedAt(job.getFinishedAt());
+            importJobRepository.save(job);
+        } catch (RuntimeException e) {
+            log.error("Import job {} failed", jobId, e);
+            markFailed(jobId, rowErrors, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } finally {
+            StreamingImportEngine.deleteQuietly(path);
+        }
+    }
+
+    private void markFailed(UUID jobId, List<ImportRowError> rowErrors, String message) {
+        try {
+            importJobRepository.findById(jobId).ifPresent(job -> {
+                job.setStatus(ImportJobStatus.FAILED);
+                job.setFailureMessage(message);
+                job.setRowErrors(rowErrors);
+                job.setFinishedAt(OffsetDateTime.now());
+                job.setUpdatedAt(job.getFinishedAt());
+                importJobRepository.save(job);
+            });
+        } catch (RuntimeException e) {
+            log.error("Không cập nhật được trạng thái lỗi cho job import {}", jobId, e);
+        }
+    }
+
+    private ImportJobDto toDto(ImportJob job) {
+        Integer percent = null;
+        if (job.getStatus() == ImportJobStatus.COMPLETED) {
+            percent = 100;
+        } else if (job.getTotalRows() != null && job.getTotalRows() > 0) {
+            // Tổng dòng lúc đang chạy là ước lượng từ <dimension> của sheet nên chặn ở 99%
+            percent = Math.min(99, job.getProcessedRows() * 100 / job.getTotalRows());
+        }
+        return new ImportJobDto(
+                job.getId(),
+                job.getType(),
+                job.getStatus(),
+                job.getFileName(),
+                job.getTotalRows(),
+                job.getProcessedRows(),
+                job.getSuccessCount(),
+                job.getErrorCount(),
+                percent,
+                job.getFailureMessage(),
+                job.getRowErrors() != null ? job.getRowErrors() : List.of(),
+                job.getCreatedAt(),
+                job.getStartedAt(),
+                job.getFinishedAt()
+        );
+    }
+
+    private final class JobProgress implements StreamingImportEngine.Progress {
+        private final UUID jobId;
+
+        private JobProgress(UUID jobId) {
+            this.jobId = jobId;
+        }
+
+        @Override
+        public void started(Integer estimatedRows) {
+            importJobRepository.findById(jobId).ifPresent(job -> {
+                job.setTotalRows(estimatedRows);
+                job.setUpdatedAt(OffsetDateTime.now());
+                importJobRepository.save(job);
+            });
+        }
+
+        @Override
+        public void batchDone(int processedRows, int successCount, int errorCount) {
+            importJobRepository.updateProgress(jobId, processedRows, successCount, errorCount, OffsetDateTime.now());
+        }
+    }
+}
@@ -1,17 +1,20 @@
 package com.QhomeBase.baseservice.service.imports;
 
-import com.QhomeBase.baseservice.dto.MeterCreateReq;
 import com.QhomeBase.baseservice.dto.imports.MeterImportResponse;
 import com.QhomeBase.baseservice.dto.imports.MeterImportRowResult;
+import com.QhomeBase.baseservice.model.Building;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.model.Unit;
 import com.QhomeBase.baseservice.repository.BuildingRepository;
+import com.QhomeBase.baseservice.repository.MeterBatchRepository;
+import com.QhomeBase.baseservice.repository.MeterBatchRepository.NewMeter;
 import com.QhomeBase.baseservice.repository.ServiceRepository;
 import com.QhomeBase.baseservice.repository.UnitRepository;
-import com.QhomeBase.baseservice.service.MeterService;
+import com.QhomeBase.baseservice.service.MeterCodeAllocator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddressList;
-import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -19,93 +22,138 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.time.LocalDate;
+import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Import công tơ từ Excel: đọc streaming qua {@link StreamingImportEngine}, tòa nhà / dịch vụ nạp một lần
+ * cho cả file, căn hộ nạp một lần cho mỗi tòa nhà, mã công tơ sinh theo lô và ghi bằng JDBC batch
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-public class MeterImportService {
+public class MeterImportService implements SheetImporter<MeterImportRowResult> {
 
     private final BuildingRepository buildingRepository;
     private final UnitRepository unitRepository;
     private final ServiceRepository serviceRepository;
-    private final MeterService meterService;
+    private final MeterBatchRepository meterBatchRepository;
+    private final MeterCodeAllocator meterCodeAllocator;
+    private final StreamingImportEngine importEngine;
 
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    private static final DataFormatter FORMATTER = new DataFormatter();
 
     public MeterImportResponse importMeters(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("File trống");
-        }
-        if (!Objects.requireNonNull(file.getOriginalFilename()).toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
-            throw new IllegalArgumentException("Chỉ hỗ trợ .xlsx");
-        }
-
         MeterImportResponse response = new MeterImportResponse();
+        var totals = importEngine.runUpload(this, file, null, response.getRows()::add);
+        response.setTotalRows(totals.totalRows());
+        response.setSuccessCount(totals.successCount());
+        response.setErrorCount(totals.errorCount());
+        return response;
+    }
 
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
-            Sheet sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : null;
-            if (sheet == null) {
-                throw new IllegalArgumentException("Không tìm thấy sheet");
+    @Override
+    public ImportJobType type() {
+        return ImportJobType.METER;
+    }
+
+    @Override
+    public Session<MeterImportRowResult> open(Map<String, Integer> columns, String createdBy) {
+        if (!columns.containsKey("buildingcode") || !columns.containsKey("unitcode")
+                || !columns.containsKey("servicecode") || !columns.containsKey("installedat")) {
+            throw new IllegalArgumentException("Thiếu cột bắt buộc: buildingCode, unitCode, serviceCode");
+        }
+        // Tòa nhà và dịch vụ nạp một lần cho cả file; căn hộ nạp theo tòa nhà khi gặp lần đầu
+        Map<String, UUID> buildingIds = new HashMap<>();
+        for (Building building : buildingRepository.findAll()) {
+            if (building.getCode() != null) {
+                buildingIds.putIfAbsent(building.getCode().trim().toUpperCase(Locale.ROOT), building.getId());
             }
-            if (sheet.getLastRowNum() < 1) {
-                return response;
+        }
+        Map<String, com.QhomeBase.baseservice.model.Service> services = new HashMap<>();
+        for (com.QhomeBase.baseservice.model.Service service : serviceRepository.findAll()) {
+            if (service.getCode() != null) {
+                services.putIfAbsent(service.getCode().trim().toUpperCase(Locale.ROOT), service);
             }
+        }
+        Map<UUID, Map<String, Unit>> unitsByBuilding = new HashMap<>();
+        return rows -> importBatch(rows, buildingIds, services, unitsByBuilding);
+    }
+
+    @Override
+    public MeterImportRowResult rowError(int rowNumber, String message) {
+        return MeterImportRowResult.builder()
+                .rowNumber(rowNumber)
+                .success(false)
+                .message(message)
+                .build();
+    }
 
-            response.setTotalRows(sheet.getLastRowNum());
-            Row header = sheet.getRow(0);
-            int idxBuildingCode = findColumnIndex(header, "buildingCode");
-            int idxUnitCode = findColumnIndex(header, "unitCode");
-            int idxServiceCode = findColumnIndex(header, "serviceCode");
-            int idxInstalledAt = findColumnIndex(header, "installedAt");
+    private List<MeterImportRowResult> importBatch(List<SheetRow> rows, Map<String, UUID> buildingIds,
+                                                   Map<String, com.QhomeBase.baseservice.model.Service> services,
+                                                   Map<UUID, Map<String, Unit>> unitsByBuilding) {
+        List<MeterImportRowResult> results = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        List<Integer> pendingIndexes = new ArrayList<>();
+        List<Unit> units = new ArrayList<>();
+        List<com.QhomeBase.baseservice.model.Service> meterServices = new ArrayList<>();
+        List<LocalDate> installedDates = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            SheetRow row = rows.get(i);
+            int excelRow = row.rowNumber();
+            try {
+                UUID buildingId = resolveBuildingId(buildingIds, row.get("buildingCode"), excelRow);
+                Unit unit = resolveUnit(unitsByBuilding, buildingId, row.get("unitCode"), excelRow);
+                var service = resolveService(services, row.get("serviceCode"), excelRow);
+                LocalDate installedAt = parseDate(row.get("installedAt"));
 
-            if (idxBuildingCode < 0 || idxUnitCode < 0 || idxServiceCode < 0 || idxInstalledAt < 0) {
-                throw new IllegalArgumentException("Thiếu cột bắt buộc: buildingCode, unitCode, serviceCode");
+                pendingIndexes.add(i);
+                units.add(unit);
+                meterServices.add(service);
+                installedDates.add(installedAt != null ? installedAt : LocalDate.now());
+            } catch (RuntimeException ex) {
+                log.warn("Import meter lỗi tại dòng {}: {}", excelRow, ex.getMessage());
+                results.set(i, rowError(excelRow, ex.getMessage()));
             }
+        }
+        if (units.isEmpty()) {
+            return results;
+        }
 
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row row = sheet.getRow(i);
-                if (row == null) continue;
-                int excelRow = i;
-                String buildingCode = readString(row, idxBuildingCode);
-                String unitCode = readString(row, idxUnitCode);
-                String serviceCode = readString(row, idxServiceCode);
-                LocalDate installedAt = parseDate(readString(row, idxInstalledAt));
-
-                try {
-                    UUID buildingId = resolveBuildingId(buildingCode, excelRow);
-                    UUID unitId = resolveUnitId(buildingId, unitCode, excelRow);
-                    UUID serviceId = resolveServiceId(serviceCode, excelRow);
-
-                    var req = new MeterCreateReq(unitId, serviceId, null, installedAt);
-                    meterService.create(req);
-
-                    response.getRows().add(MeterImportRowResult.builder()
-                            .rowNumber(excelRow)
-                            .success(true)
-                            .message("Đã tạo công tơ")
-                            .build());
-                    response.setSuccessCount(response.getSuccessCount() + 1);
-                } catch (Exception ex) {
-                    log.warn("Import meter lỗi tại dòng {}: {}", excelRow, ex.getMessage());
-                    response.getRows().add(MeterImportRowResult.builder()
-                            .rowNumber(excelRow)
-                            .success(false)
-                            .message(ex.getMessage())
-                            .build());
-                    response.setErrorCount(response.getErrorCount() + 1);
-                }
+        List<String> bases = new ArrayList<>(units.size());
+        for (int j = 0; j < units.size(); j++) {
+            bases.add(MeterCodeAllocator.baseCode(units.get(j).getCode(), meterServices.get(j).getCode()));
+        }
+        List<String> codes = meterCodeAllocator.allocate(bases);
+        List<NewMeter> meters = new ArrayList<>(units.size());
+        for (int j = 0; j < units.size(); j++) {
+            meters.add(new NewMeter(UUID.randomUUID(), units.get(j).getId(), meterServices.get(j).getId(),
+                    codes.get(j), installedDates.get(j)));
+        }
+        // Căn hộ đã có công tơ hoạt động của dịch vụ (kể cả do dòng trước trong file tạo) → 0 dòng
+        int[] counts = meterBatchRepository.insertMeters(meters, OffsetDateTime.now());
+        for (int j = 0; j < counts.length; j++) {
+            int index = pendingIndexes.get(j);
+            int excelRow = rows.get(index).rowNumber();
+            if (counts[j] > 0) {
+                results.set(index, MeterImportRowResult.builder()
+                        .rowNumber(excelRow)
+                        .success(true)
+                        .message("Đã tạo công tơ")
+                        .build());
+            } else {
+                results.set(index, rowError(excelRow, "Active meter already exists for unit " + units.get(j).getCode()
+                        + " and service " + meterServices.get(j).getCode()));
             }
-        } catch (IOException e) {
-            throw new IllegalStateException("Không đọc được file Excel", e);
         }
-        return response;
+        return results;
     }
 
     public byte[] generateTemplateWorkbook() {
@@ -167,39 +215,47 @@ public class MeterImportService {
         }
     }
 
-    private UUID resolveBuildingId(String buildingCode, int rowNumber) {
+    private UUID resolveBuildingId(Map<String, UUID> buildingIds, String buildingCode, int rowNumber) {
         if (buildingCode == null || buildingCode.isBlank()) {
             throw new IllegalArgumentException("buildingCode (row " + rowNumber + ") không được để trống");
         }
-        return buildingRepository.findByCode(buildingCode.trim().toUpperCase(Locale.ROOT))
-                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy building: " + buildingCode + " (row " + rowNumber + ")"))
-                .getId();
+        UUID buildingId = buildingIds.get(buildingCode.trim().toUpperCase(Locale.ROOT));
+        if (buildingId == null) {
+            throw new IllegalArgumentException("Không tìm thấy building: " + buildingCode + " (row " + rowNumber + ")");
+        }
+        return buildingId;
     }
 
-    private UUID resolveUnitId(UUID buildingId, String unitCode, int rowNumber) {
+    private Unit resolveUnit(Map<UUID, Map<String, Unit>> unitsByBuilding, UUID buildingId, String unitCode, int rowNumber) {
         if (unitCode == null || unitCode.isBlank()) {
             throw new IllegalArgumentException("unitCode (row " + rowNumber + ") không được để trống");
         }
-        return unitRepository.findByBuildingIdAndCode(buildingId, unitCode.trim())
-                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy unit: " + unitCode + " trong tòa (row " + rowNumber + ")"))
-                .getId();
+        Map<String, Unit> units = unitsByBuilding.computeIfAbsent(buildingId, id -> {
+            Map<String, Unit> byCode = new HashMap<>();
+            for (Unit unit : unitRepository.findAllByBuildingId(id)) {
+                if (unit.getCode() != null) {
+                    byCode.putIfAbsent(unit.getCode(), unit);
+                }
+            }
+            return byCode;
+        });
+        Unit unit = units.get(unitCode.trim());
+        if (unit == null) {
+            throw new IllegalArgumentException("Không tìm thấy unit: " + unitCode + " trong tòa (row " + rowNumber + ")");
+        }
+        return unit;
     }
 
-    private UUID resolveServiceId(String serviceCode, int rowNumber) {
+    private com.QhomeBase.baseservice.model.Service resolveService(
+            Map<String, com.QhomeBase.baseservice.model.Service> services, String serviceCode, int rowNumber) {
         if (serviceCode == null || serviceCode.isBlank()) {
             throw new IllegalArgumentException("serviceCode (row " + rowNumber + ") không được để trống");
         }
-        return serviceRepository.findByCode(serviceCode.trim().toUpperCase(Locale.ROOT))
-                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy dịch vụ: " + serviceCode + " (row " + rowNumber + ")"))
-                .getId();
-    }
-
-    private String readString(Row row, int idx) {
-        if (idx < 0) return null;
-        Cell cell = row.getCell(idx);
-        if (cell == null) return null;
-        String value = FORMATTER.formatCellValue(cell);
-        return value != null ? value.trim() : null;
+        var service = services.get(serviceCode.trim().toUpperCase(Locale.ROOT));
+        if (service == null) {
+            throw new IllegalArgumentException("Không tìm thấy dịch vụ: " + serviceCode + " (row " + rowNumber + ")");
+        }
+        return service;
     }
 
     private LocalDate parseDate(String value) {
@@ -214,18 +270,4 @@ public class MeterImportService {
             }
         }
     }
-
-    private int findColumnIndex(Row header, String name) {
-        if (header == null) return -1;
-        for (int i = 0; i < header.getLastCellNum(); i++) {
-            Cell cell = header.getCell(i);
-            if (cell == null) continue;
-            String value = cell.getStringCellValue();
-            if (value != null && value.trim().equalsIgnoreCase(name)) {
-                return i;
-            }
-        }
-        return -1;
-    }
 }
-
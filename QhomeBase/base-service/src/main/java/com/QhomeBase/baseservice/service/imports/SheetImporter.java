@@ -0,0 +1,30 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import com.QhomeBase.baseservice.dto.imports.ImportRowOutcome;
+import com.QhomeBase.baseservice.model.ImportJobType;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Một loại import Excel chạy bởi {@link StreamingImportEngine}: {@link #open} kiểm tra header và nạp dữ liệu
+ * tham chiếu một lần cho cả file, {@link Session#importBatch} kiểm tra và ghi một lô dòng trong một transaction.
+ */
+public interface SheetImporter<R extends ImportRowOutcome> {
+
+    ImportJobType type();
+
+    /**
+     * @param columns tên cột (lowercase) → vị trí; ném {@link IllegalArgumentException} nếu thiếu cột bắt buộc
+     */
+    Session<R> open(Map<String, Integer> columns, String createdBy);
+
+    R rowError(int rowNumber, String message);
+
+    interface Session<R> {
+        /**
+         * @return kết quả của từng dòng, theo đúng thứ tự của {@code rows}
+         */
+        List<R> importBatch(List<SheetRow> rows);
+    }
+}
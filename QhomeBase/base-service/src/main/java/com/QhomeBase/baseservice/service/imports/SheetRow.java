@@ -0,0 +1,49 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Một dòng dữ liệu đọc từ sheet dưới dạng chuỗi (ô số giữ giá trị gốc, ô ngày là yyyy-MM-dd),
+ * truy cập theo tên cột của dòng header (không phân biệt hoa thường)
+ */
+public final class SheetRow {
+
+    private final int rowNumber;
+    private final Map<String, Integer> columns;
+    private final List<String> values;
+
+    SheetRow(int rowNumber, Map<String, Integer> columns, List<String> values) {
+        this.rowNumber = rowNumber;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Số dòng trong Excel, bắt đầu từ 1 (dòng header là 1)
+     */
+    public int rowNumber() {
+        return rowNumber;
+    }
+
+    /**
+     * @return giá trị đã trim, hoặc null nếu cột không có / ô trống
+     */
+    public String get(String column) {
+        Integer idx = columns.get(column.toLowerCase(Locale.ROOT));
+        if (idx == null || idx >= values.size()) {
+            return null;
+        }
+        String v = values.get(idx);
+        if (v == null) {
+            return null;
+        }
+        String trimmed = v.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    public boolean isBlank() {
+        return values.stream().allMatch(v -> v == null || v.isBlank());
+    }
+}
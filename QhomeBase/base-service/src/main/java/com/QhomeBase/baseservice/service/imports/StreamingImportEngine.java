@@ -0,0 +1,160 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import com.QhomeBase.baseservice.dto.imports.ImportRowOutcome;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Chạy một {@link SheetImporter} trên file .xlsx: đọc dòng bằng {@link XlsxStreamReader},
+ * gom thành lô {@code import.batch-size} dòng, mỗi lô một transaction. Lô lỗi ngoài dự kiến (lỗi DB)
+ * chỉ làm các dòng của lô đó bị đánh dấu lỗi, các lô khác vẫn được ghi.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StreamingImportEngine {
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${import.batch-size:500}")
+    private int batchSize;
+
+    public interface Progress {
+        Progress NONE = new Progress() {
+        };
+
+        default void started(Integer estimatedRows) {
+        }
+
+        default void batchDone(int processedRows, int successCount, int errorCount) {
+        }
+    }
+
+    public record Totals(int totalRows, int successCount, int errorCount) {
+    }
+
+    /**
+     * Kiểm tra file upload rồi chép ra file tạm, vì file multipart bị xoá khi request kết thúc
+     */
+    public static Path storeUpload(MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("File trống");
+        }
+        if (!Objects.requireNonNull(file.getOriginalFilename()).toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
+            throw new IllegalArgumentException("Chỉ hỗ trợ .xlsx");
+        }
+        try {
+            Path path = Files.createTempFile("import-", ".xlsx");
+            file.transferTo(path);
+            return path;
+        } catch (IOException e) {
+            throw new IllegalStateException("Không lưu được file import", e);
+        }
+    }
+
+    public static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Không xoá được file tạm {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Import đồng bộ trong request hiện tại (các endpoint import cũ)
+     */
+    public <R extends ImportRowOutcome> Totals runUpload(SheetImporter<R> importer, MultipartFile file,
+                                                         String createdBy, Consumer<R> results) {
+        Path path = storeUpload(file);
+        try {
+            return run(importer, path, createdBy, results, Progress.NONE);
+        } finally {
+            deleteQuietly(path);
+        }
+    }
+
+    public <R extends ImportRowOutcome> Totals run(SheetImporter<R> importer, Path file, String createdBy,
+                                                   Consumer<R> results, Progress progress) {
+        progress.started(XlsxStreamReader.estimateDataRows(file));
+        BatchingHandler<R> handler = new BatchingHandler<>(importer, createdBy, results, progress);
+        XlsxStreamReader.read(file, handler);
+        handler.flush();
+        log.info("Import {}: {} row(s), {} succeeded, {} failed",
+                importer.type(), handler.processed, handler.success, handler.errors);
+        return new Totals(handler.processed, handler.success, handler.errors);
+    }
+
+    private final class BatchingHandler<R extends ImportRowOutcome> implements XlsxStreamReader.RowHandler {
+        private final SheetImporter<R> importer;
+        private final String createdBy;
+        private final Consumer<R> results;
+        private final Progress progress;
+        private SheetImporter.Session<R> session;
+        private List<SheetRow> batch = new ArrayList<>();
+        private int processed;
+        private int success;
+        private int errors;
+
+        private BatchingHandler(SheetImporter<R> importer, String createdBy, Consumer<R> results, Progress progress) {
+            this.importer = importer;
+            this.createdBy = createdBy;
+            this.results = results;
+            this.progress = progress;
+        }
+
+        @Override
+        public void header(Map<String, Integer> columns) {
+            session = importer.open(columns, createdBy);
+        }
+
+        @Override
+        public void row(SheetRow row) {
+            batch.add(row);
+            if (batch.size() >= Math.max(1, batchSize)) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<SheetRow> rows = batch;
+            batch = new ArrayList<>();
+            List<R> rowResults;
+            try {
+                rowResults = transactionTemplate.execute(status -> session.importBatch(rows));
+            } catch (RuntimeException e) {
+                log.error("Import {} lỗi ở lô dòng {}-{}", importer.type(),
+                        rows.get(0).rowNumber(), rows.get(rows.size() - 1).rowNumber(), e);
+                rowResults = rows.stream()
+                        .map(row -> importer.rowError(row.rowNumber(), "Không lưu được dòng: " + e.getMessage()))
+                        .toList();
+            }
+            for (R result : rowResults) {
+                results.accept(result);
+                if (result.isSuccess()) {
+                    success++;
+                } else {
+                    errors++;
+                }
+            }
+            processed += rows.size();
+            progress.batchDone(processed, success, errors);
+        }
+    }
+}
@@ -1,12 +1,12 @@
 package com.QhomeBase.baseservice.service.imports;
 
-import com.QhomeBase.baseservice.dto.UnitCreateDto;
 import com.QhomeBase.baseservice.dto.imports.UnitImportResponse;
 import com.QhomeBase.baseservice.dto.imports.UnitImportRowResult;
 import com.QhomeBase.baseservice.model.Building;
-import com.QhomeBase.baseservice.model.Unit;
+import com.QhomeBase.baseservice.model.ImportJobType;
 import com.QhomeBase.baseservice.repository.BuildingRepository;
-import com.QhomeBase.baseservice.repository.UnitRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository.NewUnit;
 import com.QhomeBase.baseservice.service.UnitService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -18,104 +18,142 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Import căn hộ từ Excel: đọc streaming qua {@link StreamingImportEngine}, tòa nhà nạp một lần cho cả file,
+ * số thứ tự căn hộ theo tầng đọc một lần rồi tăng trong bộ nhớ, căn hộ ghi bằng JDBC batch
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@org.springframework.transaction.annotation.Transactional
-public class UnitImportService {
+public class UnitImportService implements SheetImporter<UnitImportRowResult> {
     private final BuildingRepository buildingRepository;
-    private final UnitRepository unitRepository;
     private final UnitService unitService;
+    private final ImportBatchRepository importBatchRepository;
+    private final StreamingImportEngine importEngine;
 
     public UnitImportResponse importUnits(MultipartFile file) {
-        if (file == null || file.isEmpty()) {
-            throw new IllegalArgumentException("File trống");
+        UnitImportResponse response = UnitImportResponse.builder().build();
+        var totals = importEngine.runUpload(this, file, null, response.getRows()::add);
+        response.setTotalRows(totals.totalRows());
+        response.setSuccessCount(totals.successCount());
+        response.setErrorCount(totals.errorCount());
+        return response;
+    }
+
+    @Override
+    public ImportJobType type() {
+        return ImportJobType.UNIT;
+    }
+
+    @Override
+    public Session<UnitImportRowResult> open(Map<String, Integer> columns, String createdBy) {
+        if (!columns.containsKey("buildingcode")) {
+            throw new IllegalArgumentException("Thiếu cột buildingCode");
         }
-        if (!Objects.requireNonNull(file.getOriginalFilename()).toLowerCase(Locale.ROOT).endsWith(".xlsx")) {
-            throw new IllegalArgumentException("Chỉ hỗ trợ .xlsx");
+        if (!columns.containsKey("floor") || !columns.containsKey("aream2") || !columns.containsKey("bedrooms")) {
+            throw new IllegalArgumentException("Thiếu các cột bắt buộc: floor, areaM2, bedrooms");
         }
-        UnitImportResponse response = UnitImportResponse.builder().build();
-        try (Workbook workbook = WorkbookFactory.create(file.getInputStream())) {
-            Sheet sheet = workbook.getNumberOfSheets() > 0 ? workbook.getSheetAt(0) : null;
-            if (sheet == null) {
-                throw new IllegalArgumentException("Không tìm thấy sheet");
-            }
-            if (sheet.getLastRowNum() < 1) {
-                return response;
-            }
-            response.setTotalRows(sheet.getLastRowNum());
-            Row header = sheet.getRow(0);
-            int idxBuildingCode = findColumnIndex(header, "buildingCode");
-            int idxFloor = findColumnIndex(header, "floor");
-            int idxArea = findColumnIndex(header, "areaM2");
-            int idxBedrooms = findColumnIndex(header, "bedrooms");
-            if (idxBuildingCode < 0) {
-                throw new IllegalArgumentException("Thiếu cột buildingCode");
+        // Tòa nhà nạp một lần cho cả file thay vì findAllByOrderByCodeAsc() cho mỗi dòng
+        Map<String, Building> buildingsByCode = new HashMap<>();
+        for (Building building : buildingRepository.findAllByOrderByCodeAsc()) {
+            if (building.getCode() != null) {
+                buildingsByCode.putIfAbsent(building.getCode().trim().toUpperCase(Locale.ROOT), building);
             }
-            if (idxFloor < 0 || idxArea < 0 || idxBedrooms < 0) {
-                throw new IllegalArgumentException("Thiếu các cột bắt buộc: floor, areaM2, bedrooms");
-            }
-            for (int i = 1; i <= sheet.getLastRowNum(); i++) {
-                Row r = sheet.getRow(i);
-                if (r == null) continue;
-                int excelRow = i + 1;
-                String buildingCode = readString(r, idxBuildingCode);
-                Integer floor = readInt(r, idxFloor, "Floor", excelRow);
-                BigDecimal areaM2 = readDecimal(r, idxArea);
-                Integer bedrooms = readInt(r, idxBedrooms, "Bedrooms", excelRow);
-                try {
-                    if (buildingCode == null || buildingCode.trim().isEmpty()) {
-                        throw new IllegalArgumentException("BuildingCode (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    if (floor == null) {
-                        throw new IllegalArgumentException("Floor (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    if (areaM2 == null) {
-                        throw new IllegalArgumentException("AreaM2 (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    if (bedrooms == null) {
-                        throw new IllegalArgumentException("Bedrooms (row " + excelRow + ") không được để trống");
-                    }
-                    
-                    Building building = resolveBuilding(buildingCode, excelRow);
-                    UUID buildingId = building.getId();
-                    validateUnitData(floor, areaM2, bedrooms, building, excelRow);
-                    var dto = unitService.createUnit(new UnitCreateDto(buildingId, null, floor, areaM2, bedrooms));
-                    Unit created = unitRepository.findById(dto.id()).orElseThrow();
-                    Unit createdWithBuilding = unitRepository.findByIdWithBuilding(created.getId());
+        }
+        Map<String, Integer> nextSequences = new HashMap<>();
+        Map<UUID, String> prefixes = new HashMap<>();
+        return rows -> importBatch(rows, buildingsByCode, prefixes, nextSequences);
+    }
 
-                    response.getRows().add(UnitImportRowResult.builder()
-                            .rowNumber(excelRow)
-                            .success(true)
-                            .message("OK")
-                            .unitId(createdWithBuilding.getId().toString())
-                            .buildingId(createdWithBuilding.getBuilding().getId().toString())
-                            .buildingCode(createdWithBuilding.getBuilding().getCode())
-                            .code(createdWithBuilding.getCode())
-                            .build());
-                    response.setSuccessCount(response.getSuccessCount() + 1);
-                } catch (Exception ex) {
-                    log.warn("Import unit lỗi tại dòng {}: {}", excelRow, ex.getMessage());
-                    response.getRows().add(UnitImportRowResult.builder()
-                            .rowNumber(excelRow)
-                            .success(false)
-                            .message(ex.getMessage())
-                            .build());
-                    response.setErrorCount(response.getErrorCount() + 1);
+    @Override
+    public UnitImportRowResult rowError(int rowNumber, String message) {
+        return UnitImportRowResult.builder()
+                .rowNumber(rowNumber)
+                .success(false)
+                .message(message)
+                .build();
+    }
+
+    private List<UnitImportRowResult> importBatch(List<SheetRow> rows, Map<String, Building> buildingsByCode,
+                                                  Map<UUID, String> prefixes, Map<String, Integer> nextSequences) {
+        List<UnitImportRowResult> results = new ArrayList<>(Collections.nCopies(rows.size(), null));
+        List<Integer> pendingIndexes = new ArrayList<>();
+        List<NewUnit> units = new ArrayList<>();
+        List<Building> unitBuildings = new ArrayList<>();
+        for (int i = 0; i < rows.size(); i++) {
+            SheetRow r = rows.get(i);
+            int excelRow = r.rowNumber();
+            try {
+                String buildingCode = r.get("buildingCode");
+                Integer floor = readInt(r.get("floor"), "Floor", excelRow);
+                BigDecimal areaM2 = readDecimal(r.get("areaM2"));
+                Integer bedrooms = readInt(r.get("bedrooms"), "Bedrooms", excelRow);
+                if (buildingCode == null) {
+                    throw new IllegalArgumentException("BuildingCode (row " + excelRow + ") không được để trống");
+                }
+
+                if (floor == null) {
+                    throw new IllegalArgumentException("Floor (row " + excelRow + ") không được để trống");
+                }
+
+                if (areaM2 == null) {
+                    throw new IllegalArgumentException("AreaM2 (row " + excelRow + ") không được để trống");
                 }
+
+                if (bedrooms == null) {
+                    throw new IllegalArgumentException("Bedrooms (row " + excelRow + ") không được để trống");
+                }
+
+                Building building = resolveBuilding(buildingsByCode, buildingCode, excelRow);
+                validateUnitData(floor, areaM2, bedrooms, building, excelRow);
+
+                // Số thứ tự căn hộ của mỗi tầng đọc từ DB một lần, sau đó tăng dần trong bộ nhớ
+                String prefix = prefixes.computeIfAbsent(building.getId(), unitService::getPrefix);
+                int sequence = nextSequences.compute(building.getId() + ":" + floor, (key, next) -> next != null
+                        ? next + 1
+                        : Integer.parseInt(unitService.nextSequence(building.getId(), floor)));
+                String code = prefix + floor + "---" + String.format("%02d", sequence);
+
+                pendingIndexes.add(i);
+                unitBuildings.add(building);
+                units.add(new NewUnit(UUID.randomUUID(), building.getId(), code, floor, areaM2, bedrooms));
+            } catch (RuntimeException ex) {
+                log.warn("Import unit lỗi tại dòng {}: {}", excelRow, ex.getMessage());
+                results.set(i, rowError(excelRow, ex.getMessage()));
             }
-        } catch (IOException e) {
-            throw new IllegalStateException("Không đọc được file Excel", e);
         }
-        return response;
+
+        int[] counts = importBatchRepository.insertUnits(units, OffsetDateTime.now(ZoneOffset.UTC));
+        for (int j = 0; j < counts.length; j++) {
+            NewUnit unit = units.get(j);
+            Building building = unitBuildings.get(j);
+            int excelRow = rows.get(pendingIndexes.get(j)).rowNumber();
+            if (counts[j] > 0) {
+                results.set(pendingIndexes.get(j), UnitImportRowResult.builder()
+                        .rowNumber(excelRow)
+                        .success(true)
+                        .message("OK")
+                        .unitId(unit.id().toString())
+                        .buildingId(building.getId().toString())
+                        .buildingCode(building.getCode())
+                        .code(unit.code())
+                        .build());
+            } else {
+                results.set(pendingIndexes.get(j),
+                        rowError(excelRow, "Mã căn hộ (row " + excelRow + ") đã tồn tại: " + unit.code()));
+            }
+        }
+        return results;
     }
 
     public byte[] generateTemplateWorkbook() {
@@ -147,118 +185,38 @@ public class UnitImportService {
         }
     }
 
-    private Building resolveBuilding(String buildingCode, int rowNumber) {
+    private Building resolveBuilding(Map<String, Building> buildingsByCode, String buildingCode, int rowNumber) {
         if (buildingCode == null || buildingCode.isBlank()) {
             throw new IllegalArgumentException("BuildingCode (row " + rowNumber + ") không được để trống");
         }
-        Optional<Building> found = buildingRepository.findAllByOrderByCodeAsc()
-                .stream()
-                .filter(b -> buildingCode.trim().equalsIgnoreCase(b.getCode()))
-                .findFirst();
-        if (found.isEmpty()) {
+        Building found = buildingsByCode.get(buildingCode.trim().toUpperCase(Locale.ROOT));
+        if (found == null) {
             throw new IllegalArgumentException("Không tìm thấy Building với code: " + buildingCode.trim() + " (row " + rowNumber + ")");
         }
-        return found.get();
-    }
-
-    private int findColumnIndex(Row header, String name) {
-        if (header == null) return -1;
-        String target = name.toLowerCase(Locale.ROOT).trim();
-        short last = header.getLastCellNum();
-        for (int i = 0; i < last; i++) {
-            Cell cell = header.getCell(i);
-            if (cell == null) continue;
-            String v = cell.getStringCellValue();
-            if (v != null && v.trim().toLowerCase(Locale.ROOT).equals(target)) {
-                return i;
-            }
-        }
-        return -1;
+        return found;
     }
 
-    private String readString(Row r, int idx) {
-        if (idx < 0) return null;
-        Cell c = r.getCell(idx);
-        if (c == null) return null;
-        if (c.getCellType() == CellType.BLANK) {
-            return null;
-        }
-        String v;
-        if (c.getCellType() == CellType.STRING) {
-            v = c.getStringCellValue();
-        } else if (c.getCellType() == CellType.NUMERIC) {
-            v = String.valueOf((long) c.getNumericCellValue());
-        } else {
-            DataFormatter formatter = new DataFormatter();
-            v = formatter.formatCellValue(c);
-        }
-        if (v == null) return null;
-        String trimmed = v.trim();
-        return trimmed.isEmpty() ? null : trimmed;
-    }
-
-    private Integer readInt(Row r, int idx, String fieldName, int rowNumber) {
-        if (idx < 0) return null;
-        Cell c = r.getCell(idx);
-        if (c == null) return null;
-        if (c.getCellType() == CellType.BLANK) {
-            return null;
-        }
-        if (c.getCellType() == CellType.NUMERIC) {
-            double numericValue = c.getNumericCellValue();
-            // Kiểm tra xem có phải số nguyên không
-            if (numericValue != Math.floor(numericValue)) {
-                throw new IllegalArgumentException(fieldName + " (row " + rowNumber + ") phải là số nguyên, không được là số thập phân: " + numericValue);
-            }
-            return (int) numericValue;
-        }
-        String v;
-        if (c.getCellType() == CellType.STRING) {
-            v = c.getStringCellValue();
-        } else {
-            DataFormatter formatter = new DataFormatter();
-            v = formatter.formatCellValue(c);
-        }
-        if (v == null || v.isBlank()) return null;
-        String trimmed = v.trim();
-        if (trimmed.isEmpty()) {
+    private Integer readInt(String v, String fieldName, int rowNumber) {
+        if (v == null) {
             return null;
         }
         // Kiểm tra xem có chứa dấu chấm thập phân không
-        if (trimmed.contains(".") || trimmed.contains(",")) {
-            throw new IllegalArgumentException(fieldName + " (row " + rowNumber + ") phải là số nguyên, không được là số thập phân: " + trimmed);
+        if (v.contains(".") || v.contains(",")) {
+            throw new IllegalArgumentException(fieldName + " (row " + rowNumber + ") phải là số nguyên, không được là số thập phân: " + v);
         }
         try {
-            return Integer.parseInt(trimmed);
+            return Integer.parseInt(v);
         } catch (NumberFormatException e) {
-            throw new IllegalArgumentException(fieldName + " (row " + rowNumber + ") không phải là số nguyên hợp lệ: " + trimmed);
+            throw new IllegalArgumentException(fieldName + " (row " + rowNumber + ") không phải là số nguyên hợp lệ: " + v);
         }
     }
 
-    private java.math.BigDecimal readDecimal(Row r, int idx) {
-        if (idx < 0) return null;
-        Cell c = r.getCell(idx);
-        if (c == null) return null;
-        if (c.getCellType() == CellType.BLANK) {
-            return null;
-        }
-        if (c.getCellType() == CellType.NUMERIC) {
-            return java.math.BigDecimal.valueOf(c.getNumericCellValue());
-        }
-        String v;
-        if (c.getCellType() == CellType.STRING) {
-            v = c.getStringCellValue();
-        } else {
-            DataFormatter formatter = new DataFormatter();
-            v = formatter.formatCellValue(c);
-        }
-        if (v == null || v.isBlank()) return null;
-        String trimmed = v.trim();
-        if (trimmed.isEmpty()) {
+    private BigDecimal readDecimal(String v) {
+        if (v == null) {
             return null;
         }
         try {
-            return new java.math.BigDecimal(trimmed);
+            return new BigDecimal(v);
         } catch (Exception e) {
             throw new IllegalArgumentException("Giá trị không hợp lệ (số thập phân): " + v);
         }
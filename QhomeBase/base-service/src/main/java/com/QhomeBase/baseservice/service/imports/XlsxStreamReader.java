@@ -0,0 +1,206 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.ss.util.NumberToTextConverter;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Đọc sheet đầu tiên của file .xlsx theo kiểu SAX (event model): mỗi dòng được đọc rồi bỏ,
+ * bộ nhớ không phụ thuộc số dòng như {@code WorkbookFactory.create}. Dòng đầu tiên là header.
+ * Ô số trả về giá trị gốc, không theo định dạng hiển thị của ô (xem {@link RawValueFormatter}).
+ */
+public final class XlsxStreamReader {
+
+    private static final DataFormatter FORMATTER = new RawValueFormatter();
+
+    public interface RowHandler {
+        /**
+         * Tên cột (lowercase) → vị trí cột; ném {@link IllegalArgumentException} nếu thiếu cột bắt buộc
+         */
+        void header(Map<String, Integer> columns);
+
+        void row(SheetRow row);
+    }
+
+    private XlsxStreamReader() {
+    }
+
+    public static void read(Path file, RowHandler handler) {
+        OPCPackage pkg = open(file);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            try (InputStream sheet = firstSheet(reader)) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new XSSFSheetXMLHandler(
+                        reader.getStylesTable(), null, strings, new RowCollector(handler), FORMATTER, false));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IllegalStateException("Không đọc được file Excel", e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Số dòng dữ liệu (không tính header) theo thẻ {@code <dimension>} ở đầu sheet; chỉ đọc tới thẻ đó
+     *
+     * @return null nếu file không ghi dimension
+     */
+    public static Integer estimateDataRows(Path file) {
+        OPCPackage pkg = open(file);
+        try (InputStream sheet = firstSheet(new XSSFReader(pkg))) {
+            DimensionHandler dimension = new DimensionHandler();
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(dimension);
+            try {
+                parser.parse(new InputSource(sheet));
+            } catch (StopParsing ignored) {
+                // đã gặp dimension hoặc sheetData
+            }
+            return dimension.lastRow != null ? Math.max(0, dimension.lastRow - 1) : null;
+        } catch (IOException | OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IllegalStateException("Không đọc được file Excel", e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private static OPCPackage open(Path file) {
+        try {
+            return OPCPackage.open(file.toFile(), PackageAccess.READ);
+        } catch (OpenXML4JException | RuntimeException e) {
+            throw new IllegalArgumentException("File không phải định dạng .xlsx hợp lệ", e);
+        }
+    }
+
+    private static InputStream firstSheet(XSSFReader reader) throws IOException, OpenXML4JException {
+        Iterator<InputStream> sheets = reader.getSheetsData();
+        if (!sheets.hasNext()) {
+            throw new IllegalArgumentException("Không tìm thấy sheet");
+        }
+        return sheets.next();
+    }
+
+    private static final class RowCollector implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowHandler handler;
+        private Map<String, Integer> columns;
+        private List<String> values;
+        private int currentCol;
+
+        private RowCollector(RowHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            values = new ArrayList<>();
+            currentCol = -1;
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int col = cellReference != null ? new CellReference(cellReference).getCol() : currentCol + 1;
+            while (values.size() < col) {
+                values.add(null);
+            }
+            values.add(formattedValue);
+            currentCol = col;
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (columns == null) {
+                Map<String, Integer> header = new HashMap<>();
+                for (int i = 0; i < values.size(); i++) {
+                    String name = values.get(i);
+                    if (name != null && !name.isBlank()) {
+                        header.putIfAbsent(name.trim().toLowerCase(Locale.ROOT), i);
+                    }
+                }
+                columns = Collections.unmodifiableMap(header);
+                handler.header(columns);
+                return;
+            }
+            SheetRow row = new SheetRow(rowNum + 1, columns, values);
+            if (!row.isBlank()) {
+                handler.row(row);
+            }
+        }
+
+        @Override
+        public void endSheet() {
+            if (columns == null) {
+                // Sheet rỗng: vẫn kiểm tra header để báo thiếu cột
+                columns = Map.of();
+                handler.header(columns);
+            }
+        }
+    }
+
+    /**
+     * Bỏ qua định dạng hiển thị của ô số ({@code #,##0} sẽ làm tròn 45.5 thành "46" và 1234 thành "1,234");
+     * ô có định dạng ngày trả về yyyy-MM-dd
+     */
+    private static final class RawValueFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return DateUtil.getLocalDateTime(value, use1904Windowing).toLocalDate().toString();
+            }
+            return NumberToTextConverter.toText(value);
+        }
+    }
+
+    private static final class DimensionHandler extends DefaultHandler {
+        private Integer lastRow;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if ("dimension".equals(localName)) {
+                String ref = attributes.getValue("ref");
+                if (ref != null && !ref.isBlank()) {
+                    String[] parts = ref.split(":");
+                    lastRow = new CellReference(parts[parts.length - 1]).getRow() + 1;
+                }
+                throw new StopParsing();
+            }
+            if ("sheetData".equals(localName)) {
+                throw new StopParsing();
+            }
+        }
+    }
+
+    private static final class StopParsing extends RuntimeException {
+        private StopParsing() {
+            super(null, null, false, false);
+        }
+    }
+}
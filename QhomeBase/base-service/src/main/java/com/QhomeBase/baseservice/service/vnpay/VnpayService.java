@@ -1,26 +1,26 @@
 package com.QhomeBase.baseservice.service.vnpay;
 
 import com.QhomeBase.baseservice.config.VnpayProperties;
+import com.QhomeBase.vnpay.VnpaySigner;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.xml.bind.DatatypeConverter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.math.BigDecimal;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class VnpayService {
 
     private final VnpayProperties properties;
+    private final VnpaySigner signer;
+
+    public VnpayService(VnpayProperties properties) {
+        this.properties = properties;
+        this.signer = new VnpaySigner(properties.getHashSecret());
+    }
 
     public String createPaymentUrl(Long orderId, String orderInfo, BigDecimal amountVnd, String clientIp) {
         return createPaymentUrlWithRef(orderId, orderInfo, amountVnd, clientIp, properties.getMaintenanceReturnUrl()).paymentUrl();
@@ -34,7 +34,7 @@ public class VnpayService {
         try {
             long amount = amountVnd.multiply(BigDecimal.valueOf(100)).longValue();
 
-            Map<String, String> params = new TreeMap<>();
+            Map<String, String> params = new HashMap<>();
             params.put("vnp_Version", properties.getVersion());
             params.put("vnp_Command", properties.getCommand());
             params.put("vnp_TmnCode", properties.getTmnCode());
@@ -54,11 +54,7 @@ public class VnpayService {
             params.put("vnp_IpAddr", clientIp != null ? clientIp : "127.0.0.1");
             params.put("vnp_CreateDate", new SimpleDateFormat("yyyyMMddHHmmss").format(new Date()));
 
-            String hashData = buildHashData(params);
-            String secureHash = hmacSHA512(properties.getHashSecret(), hashData);
-            String query = buildQuery(params);
-
-            String paymentUrl = properties.getVnpUrl() + "?" + query + "&vnp_SecureHash=" + secureHash;
+            String paymentUrl = signer.buildPaymentUrl(properties.getVnpUrl(), params);
             log.info("💳 [VNPAY] Tạo payment URL: orderId={}, amount={}, ip={}, txnRef={}", orderId, amountVnd, clientIp, txnRef);
             return new VnpayPaymentResult(paymentUrl, txnRef);
         } catch (Exception e) {
@@ -77,16 +73,9 @@ public class VnpayService {
             return false;
         }
 
-        Map<String, String> copy = new HashMap<>(params);
-        copy.remove("vnp_SecureHash");
-        copy.remove("vnp_SecureHashType");
-
-        Map<String, String> sorted = new TreeMap<>(copy);
-        String hashData = buildHashData(sorted);
-        String calculated = hmacSHA512(properties.getHashSecret(), hashData);
-
-        log.info("🔎 [VNPAY] Validate return: calculated={}, received={}", calculated, vnpSecureHash);
-        return calculated.equalsIgnoreCase(vnpSecureHash) && "00".equals(params.get("vnp_ResponseCode"));
+        boolean signatureValid = signer.verify(params);
+        log.info("🔎 [VNPAY] Validate return: txnRef={}, signatureValid={}", params.get("vnp_TxnRef"), signatureValid);
+        return signatureValid && "00".equals(params.get("vnp_ResponseCode"));
     }
 
     public Map<String, String> extractParams(HttpServletRequest request) {
@@ -101,41 +90,5 @@ public class VnpayService {
         }
         return fields;
     }
-
-    private String buildHashData(Map<String, String> params) {
-        List<String> parts = new ArrayList<>();
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            try {
-                parts.add(entry.getKey() + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
-            } catch (Exception e) {
-                parts.add(entry.getKey() + "=" + entry.getValue());
-            }
-        }
-        return String.join("&", parts);
-    }
-
-    private String buildQuery(Map<String, String> params) {
-        List<String> parts = new ArrayList<>();
-        for (Map.Entry<String, String> entry : params.entrySet()) {
-            try {
-                parts.add(URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" +
-                        URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
-            } catch (Exception e) {
-                parts.add(entry.getKey() + "=" + entry.getValue());
-            }
-        }
-        return String.join("&", parts);
-    }
-
-    private String hmacSHA512(String key, String data) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA512");
-            SecretKeySpec spec = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-            mac.init(spec);
-            return DatatypeConverter.printHexBinary(mac.doFinal(data.getBytes(StandardCharsets.UTF_8))).toLowerCase();
-        } catch (Exception e) {
-            throw new RuntimeException("HMAC error", e);
-        }
-    }
 }
 
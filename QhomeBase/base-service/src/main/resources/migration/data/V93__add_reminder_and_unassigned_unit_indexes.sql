@@ -0,0 +1,20 @@
+-- Daily reminder job: open assignments due within the reminder window
+CREATE INDEX IF NOT EXISTS idx_assignments_reminder_window
+    ON data.meter_reading_assignments (end_date, status)
+    WHERE status IN ('PENDING', 'IN_PROGRESS', 'OVERDUE');
+
+-- Latest reminder per assignment (skip assignments whose latest reminder is not acknowledged yet)
+CREATE INDEX IF NOT EXISTS idx_meter_reading_reminders_assignment
+    ON data.meter_reading_reminders (assignment_id, created_at DESC);
+
+-- Unassigned units of a cycle: assignments of the cycle/service, active meters per unit, current household per unit
+CREATE INDEX IF NOT EXISTS idx_assignments_cycle_service
+    ON data.meter_reading_assignments (cycle_id, service_id);
+
+CREATE INDEX IF NOT EXISTS idx_meters_unit_service_active
+    ON data.meters (unit_id, service_id)
+    WHERE active = TRUE;
+
+CREATE INDEX IF NOT EXISTS idx_households_unit_current
+    ON data.households (unit_id, start_date DESC)
+    INCLUDE (end_date, primary_resident_id);
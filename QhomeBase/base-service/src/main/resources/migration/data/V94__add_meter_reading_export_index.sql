@@ -0,0 +1,3 @@
+-- Chunked export: page the units of a cycle by unit_id, then load the readings of one page of units
+CREATE INDEX IF NOT EXISTS idx_meter_readings_cycle_unit
+    ON data.meter_readings (cycle_id, unit_id);
@@ -0,0 +1,9 @@
+-- Leases for scheduled jobs (scheduling-common JobLeaseManager): one row per job,
+-- so only one replica runs a monitor / scheduler at a time. fencing_token grows on every hand-over.
+CREATE TABLE IF NOT EXISTS data.job_leases (
+    lease_name    VARCHAR(150) PRIMARY KEY,
+    owner_id      VARCHAR(255) NOT NULL,
+    acquired_at   TIMESTAMPTZ  NOT NULL,
+    lease_until   TIMESTAMPTZ  NOT NULL,
+    fencing_token BIGINT       NOT NULL DEFAULT 0
+);
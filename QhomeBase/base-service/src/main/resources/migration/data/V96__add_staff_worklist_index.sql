@@ -0,0 +1,3 @@
+-- Staff worklist: assignments of one staff member in one cycle
+CREATE INDEX IF NOT EXISTS idx_assignments_assigned_to_cycle
+    ON data.meter_reading_assignments (assigned_to, cycle_id);
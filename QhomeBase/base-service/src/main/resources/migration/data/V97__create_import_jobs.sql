@@ -0,0 +1,20 @@
+-- Background Excel imports (buildings, units, meters): progress is polled by job id from any replica
+CREATE TABLE IF NOT EXISTS data.import_jobs (
+    id              UUID PRIMARY KEY,
+    job_type        VARCHAR(32) NOT NULL,
+    status          VARCHAR(32) NOT NULL,
+    file_name       TEXT,
+    created_by      TEXT,
+    total_rows      INTEGER,
+    processed_rows  INTEGER     NOT NULL DEFAULT 0,
+    success_count   INTEGER     NOT NULL DEFAULT 0,
+    error_count     INTEGER     NOT NULL DEFAULT 0,
+    row_errors      JSONB,
+    failure_message TEXT,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+    started_at      TIMESTAMPTZ,
+    finished_at     TIMESTAMPTZ,
+    updated_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+    CONSTRAINT ck_import_jobs_type CHECK (job_type IN ('BUILDING', 'UNIT', 'METER')),
+    CONSTRAINT ck_import_jobs_status CHECK (status IN ('PENDING', 'RUNNING', 'COMPLETED', 'FAILED'))
+);
@@ -4,10 +4,12 @@ import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
 import com.QhomeBase.baseservice.dto.MeterCreateReq;
 import com.QhomeBase.baseservice.dto.MeterDto;
+import com.QhomeBase.baseservice.dto.MeterProvisioningSummary;
 import com.QhomeBase.baseservice.dto.MeterUpdateReq;
 import com.QhomeBase.baseservice.dto.UnitWithoutMeterDto;
 import com.QhomeBase.baseservice.security.SecurityConfig;
 import com.QhomeBase.baseservice.security.JwtAuthFilter;
+import com.QhomeBase.baseservice.service.MeterProvisioningService;
 import com.QhomeBase.baseservice.service.MeterService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -37,6 +39,9 @@ class MeterControllerTest {
         @MockitoBean
         private MeterService meterService;
 
+        @MockitoBean
+        private MeterProvisioningService meterProvisioningService;
+
         @MockitoBean
         private JwtAuthFilter jwtAuthFilter;
 
@@ -164,12 +169,13 @@ class MeterControllerTest {
         @Test
         void shouldCreateMissingMeters() throws Exception {
                 UUID serviceId = UUID.randomUUID();
-                var dto = sampleMeter(UUID.randomUUID(), "M300", true);
-                Mockito.when(meterService.createMissingMeters(eq(serviceId), isNull())).thenReturn(List.of(dto));
+                var summary = new MeterProvisioningSummary(serviceId, "SV01", 3, 12, 12, 0, List.of());
+                Mockito.when(meterProvisioningService.provisionMissingMeters(eq(serviceId), isNull())).thenReturn(summary);
 
                 mockMvc.perform(post("/api/meters/missing").param("serviceId", serviceId.toString()))
                                 .andExpect(status().isOk())
-                                .andExpect(jsonPath("$[0].meterCode").value("M300"));
+                                .andExpect(jsonPath("$.buildingsProcessed").value(3))
+                                .andExpect(jsonPath("$.metersCreated").value(12));
         }
 
         @Test
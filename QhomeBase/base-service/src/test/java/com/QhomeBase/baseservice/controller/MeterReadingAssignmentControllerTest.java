@@ -0,0 +1,134 @@
+package com.QhomeBase.baseservice.controller;
+
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.QhomeBase.baseservice.dto.StaffWorklistDto;
+import com.QhomeBase.baseservice.dto.WorklistMeterDto;
+import com.QhomeBase.baseservice.security.SecurityConfig;
+import com.QhomeBase.baseservice.security.JwtAuthFilter;
+import com.QhomeBase.baseservice.service.MeterReadingAssignmentService;
+import com.QhomeBase.baseservice.service.MeterService;
+import com.QhomeBase.baseservice.service.StaffWorklistService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = MeterReadingAssignmentController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import(SecurityConfig.class)
+class MeterReadingAssignmentControllerTest {
+
+        private static final String ETAG = "\"5d41402abc4b2a76b9719d911017c592\"";
+
+        @MockitoBean
+        private MeterReadingAssignmentService assignmentService;
+
+        @MockitoBean
+        private MeterService meterService;
+
+        @MockitoBean
+        private StaffWorklistService staffWorklistService;
+
+        @MockitoBean
+        private JwtAuthFilter jwtAuthFilter;
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        private final UUID staffId = UUID.randomUUID();
+        private final UUID cycleId = UUID.randomUUID();
+        private final UUID meterId = UUID.randomUUID();
+
+        @BeforeEach
+        void setUp() {
+                var meter = new WorklistMeterDto(meterId, "E-A101", UUID.randomUUID(), "A1---01", 1, "A", "ELECTRIC",
+                                UUID.randomUUID(), new BigDecimal("100"), null, null, null);
+                var worklist = new StaffWorklistDto(cycleId, ETAG, OffsetDateTime.now(ZoneOffset.UTC), false,
+                                List.of(UUID.randomUUID()), List.of(meter), List.of());
+                Mockito.when(staffWorklistService.getWorklist(eq(staffId), eq(cycleId), any())).thenReturn(worklist);
+        }
+
+        @Test
+        void shouldReturnWorklistWithEtag() throws Exception {
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, cycleId))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache, private"))
+                                .andExpect(jsonPath("$.delta").value(false))
+                                .andExpect(jsonPath("$.meters[0].meterId").value(meterId.toString()))
+                                .andExpect(jsonPath("$.meters[0].currIndex").doesNotExist());
+        }
+
+        @Test
+        void shouldReturnNotModifiedForMatchingEtag() throws Exception {
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, cycleId)
+                                .header(HttpHeaders.IF_NONE_MATCH, ETAG))
+                                .andExpect(status().isNotModified())
+                                .andExpect(header().string(HttpHeaders.ETAG, ETAG))
+                                .andExpect(content().string(""));
+        }
+
+        @Test
+        void shouldReturnNotModifiedForWeakEtag() throws Exception {
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, cycleId)
+                                .header(HttpHeaders.IF_NONE_MATCH, "W/" + ETAG))
+                                .andExpect(status().isNotModified());
+        }
+
+        @Test
+        void shouldReturnNotModifiedWhenEtagIsInList() throws Exception {
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, cycleId)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"stale\", " + ETAG))
+                                .andExpect(status().isNotModified());
+        }
+
+        @Test
+        void shouldReturnWorklistForStaleEtag() throws Exception {
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, cycleId)
+                                .header(HttpHeaders.IF_NONE_MATCH, "\"stale\""))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.meters[0].meterId").value(meterId.toString()));
+        }
+
+        @Test
+        void shouldPassSinceForDeltaSync() throws Exception {
+                var since = OffsetDateTime.of(2025, 3, 20, 8, 0, 0, 0, ZoneOffset.UTC);
+                var delta = new StaffWorklistDto(cycleId, ETAG, OffsetDateTime.now(ZoneOffset.UTC), true,
+                                List.of(UUID.randomUUID()), List.of(), List.of(meterId));
+                Mockito.when(staffWorklistService.getWorklist(staffId, cycleId, since)).thenReturn(delta);
+
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, cycleId)
+                                .param("since", "2025-03-20T08:00:00Z"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.delta").value(true))
+                                .andExpect(jsonPath("$.meters").doesNotExist())
+                                .andExpect(jsonPath("$.removedMeterIds[0]").value(meterId.toString()));
+        }
+
+        @Test
+        void shouldReturnBadRequestForUnknownCycle() throws Exception {
+                UUID unknown = UUID.randomUUID();
+                Mockito.when(staffWorklistService.getWorklist(eq(staffId), eq(unknown), any()))
+                                .thenThrow(new IllegalArgumentException("Cycle not found"));
+
+                mockMvc.perform(get("/api/meter-reading-assignments/staff/{staffId}/cycle/{cycleId}/worklist", staffId, unknown))
+                                .andExpect(status().isBadRequest());
+        }
+}
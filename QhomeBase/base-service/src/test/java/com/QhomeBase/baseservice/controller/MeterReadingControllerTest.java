@@ -0,0 +1,119 @@
+package com.QhomeBase.baseservice.controller;
+
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import com.QhomeBase.baseservice.dto.MeterReadingBatchReq;
+import com.QhomeBase.baseservice.dto.MeterReadingBatchResultDto;
+import com.QhomeBase.baseservice.security.SecurityConfig;
+import com.QhomeBase.baseservice.security.JwtAuthFilter;
+import com.QhomeBase.baseservice.service.MeterReadingBatchService;
+import com.QhomeBase.baseservice.service.MeterReadingService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = MeterReadingController.class)
+@AutoConfigureMockMvc(addFilters = false)
+@Import(SecurityConfig.class)
+class MeterReadingControllerTest {
+
+        @MockitoBean
+        private MeterReadingService meterReadingService;
+
+        @MockitoBean
+        private MeterReadingBatchService meterReadingBatchService;
+
+        @MockitoBean
+        private JwtAuthFilter jwtAuthFilter;
+
+        @Autowired
+        private MockMvc mockMvc;
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Test
+        void shouldSubmitBatchAndReturnPerRowResults() throws Exception {
+                UUID assignmentId = UUID.randomUUID();
+                UUID meterId = UUID.randomUUID();
+                UUID readingId = UUID.randomUUID();
+                var req = new MeterReadingBatchReq(assignmentId, null, null, List.of(
+                                new MeterReadingBatchReq.Item(meterId, LocalDate.now(), null, new BigDecimal("120"), null, null)));
+                var result = new MeterReadingBatchResultDto(assignmentId, null, 2, 1, 0, 1, List.of(
+                                new MeterReadingBatchResultDto.Row(0, meterId, MeterReadingBatchResultDto.CREATED, readingId,
+                                                new BigDecimal("100"), new BigDecimal("20"), null),
+                                new MeterReadingBatchResultDto.Row(1, null, MeterReadingBatchResultDto.REJECTED, null,
+                                                null, null, "Reading item is required")));
+                Mockito.when(meterReadingBatchService.submit(any(MeterReadingBatchReq.class), any())).thenReturn(result);
+
+                mockMvc.perform(post("/api/meter-readings/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(req)))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.created").value(1))
+                                .andExpect(jsonPath("$.rejected").value(1))
+                                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                                .andExpect(jsonPath("$.results[0].readingId").value(readingId.toString()))
+                                .andExpect(jsonPath("$.results[0].error").doesNotExist())
+                                .andExpect(jsonPath("$.results[1].status").value("REJECTED"))
+                                .andExpect(jsonPath("$.results[1].error").value("Reading item is required"));
+        }
+
+        @Test
+        void shouldPassNullItemsToServiceForPerRowRejection() throws Exception {
+                UUID assignmentId = UUID.randomUUID();
+                Mockito.when(meterReadingBatchService.submit(any(MeterReadingBatchReq.class), any()))
+                                .thenReturn(new MeterReadingBatchResultDto(assignmentId, null, 1, 0, 0, 1, List.of()));
+
+                mockMvc.perform(post("/api/meter-readings/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content("{\"assignmentId\":\"" + assignmentId + "\",\"readings\":[null]}"))
+                                .andExpect(status().isOk());
+
+                ArgumentCaptor<MeterReadingBatchReq> captor = ArgumentCaptor.forClass(MeterReadingBatchReq.class);
+                Mockito.verify(meterReadingBatchService).submit(captor.capture(), any());
+                assertThat(captor.getValue().readings()).containsExactly((MeterReadingBatchReq.Item) null);
+        }
+
+        @Test
+        void shouldReturnBadRequestOnEmptyBatch() throws Exception {
+                var req = new MeterReadingBatchReq(UUID.randomUUID(), null, null, List.of());
+
+                mockMvc.perform(post("/api/meter-readings/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(req)))
+                                .andExpect(status().isBadRequest());
+                Mockito.verify(meterReadingBatchService, Mockito.never()).submit(any(), any());
+        }
+
+        @Test
+        void shouldReturnBadRequestWhenAssignmentNotFound() throws Exception {
+                var req = new MeterReadingBatchReq(UUID.randomUUID(), null, null, List.of(
+                                new MeterReadingBatchReq.Item(UUID.randomUUID(), LocalDate.now(), null, BigDecimal.ONE, null, null)));
+                Mockito.when(meterReadingBatchService.submit(any(MeterReadingBatchReq.class), any()))
+                                .thenThrow(new IllegalArgumentException("Assignment not found"));
+
+                mockMvc.perform(post("/api/meter-readings/batch")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(req)))
+                                .andExpect(status().isBadRequest());
+        }
+}
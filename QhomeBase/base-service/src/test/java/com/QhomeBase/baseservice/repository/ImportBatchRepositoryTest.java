@@ -0,0 +1,55 @@
+package com.QhomeBase.baseservice.repository;
+
+import com.QhomeBase.baseservice.repository.ImportBatchRepository.NewUnit;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ImportBatchRepositoryTest {
+
+        private final NamedParameterJdbcTemplate jdbcTemplate = Mockito.mock(NamedParameterJdbcTemplate.class);
+        private final ImportBatchRepository repository = new ImportBatchRepository(jdbcTemplate);
+
+        @Test
+        void shouldResolveNoInfoCountsByCheckingInsertedIds() {
+                NewUnit inserted = unit("A1---01");
+                NewUnit conflicting = unit("A1---02");
+                when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                                .thenReturn(new int[]{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+                when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(UUID.class)))
+                                .thenReturn(List.of(inserted.id()));
+
+                int[] counts = repository.insertUnits(List.of(inserted, conflicting), OffsetDateTime.now());
+
+                assertThat(counts).containsExactly(1, 0);
+        }
+
+        @Test
+        void shouldKeepExactCountsWithoutExtraQuery() {
+                when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenReturn(new int[]{0, 1});
+
+                int[] counts = repository.insertUnits(List.of(unit("A1---01"), unit("A1---02")), OffsetDateTime.now());
+
+                assertThat(counts).containsExactly(0, 1);
+                verify(jdbcTemplate, never()).queryForList(anyString(), any(SqlParameterSource.class), eq(UUID.class));
+        }
+
+        private static NewUnit unit(String code) {
+                return new NewUnit(UUID.randomUUID(), UUID.randomUUID(), code, 1, new BigDecimal("45.5"), 2);
+        }
+}
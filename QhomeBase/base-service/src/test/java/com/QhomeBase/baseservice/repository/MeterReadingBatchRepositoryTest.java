@@ -0,0 +1,81 @@
+package com.QhomeBase.baseservice.repository;
+
+import com.QhomeBase.baseservice.repository.MeterReadingBatchRepository.ReadingRow;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.math.BigDecimal;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MeterReadingBatchRepositoryTest {
+
+        private final NamedParameterJdbcTemplate jdbcTemplate = Mockito.mock(NamedParameterJdbcTemplate.class);
+        private final MeterReadingBatchRepository repository = new MeterReadingBatchRepository(jdbcTemplate);
+
+        @Test
+        void shouldExcludeReadingsOfSameAssignmentFromPreviousIndex() {
+                UUID assignmentId = UUID.randomUUID();
+
+                repository.findLatestIndexes(Set.of(UUID.randomUUID()), assignmentId);
+
+                ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+                ArgumentCaptor<SqlParameterSource> params = ArgumentCaptor.forClass(SqlParameterSource.class);
+                verify(jdbcTemplate).query(sql.capture(), params.capture(), any(RowCallbackHandler.class));
+                assertThat(sql.getValue()).contains("mr.assignment_id IS DISTINCT FROM :assignmentId");
+                assertThat(params.getValue().getValue("assignmentId")).isEqualTo(assignmentId);
+        }
+
+        @Test
+        void shouldNotQueryWithoutMeters() {
+                assertThat(repository.findLatestIndexes(Set.of(), UUID.randomUUID())).isEmpty();
+                assertThat(repository.findAssignmentReadingIds(UUID.randomUUID(), Set.of())).isEmpty();
+                verify(jdbcTemplate, never()).query(anyString(), any(SqlParameterSource.class), any(RowCallbackHandler.class));
+        }
+
+        @Test
+        void shouldResolveNoInfoCountsByCheckingWrittenIds() {
+                ReadingRow written = reading();
+                ReadingRow conflicting = reading();
+                when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                                .thenReturn(new int[]{Statement.SUCCESS_NO_INFO, Statement.SUCCESS_NO_INFO});
+                when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(UUID.class)))
+                                .thenReturn(List.of(written.id()));
+
+                int[] counts = repository.insertReadings(List.of(written, conflicting), OffsetDateTime.now());
+
+                assertThat(counts).containsExactly(1, 0);
+        }
+
+        @Test
+        void shouldKeepExactCountsWithoutExtraQuery() {
+                when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenReturn(new int[]{1, 0});
+
+                int[] counts = repository.insertReadings(List.of(reading(), reading()), OffsetDateTime.now());
+
+                assertThat(counts).containsExactly(1, 0);
+                verify(jdbcTemplate, never()).queryForList(anyString(), any(SqlParameterSource.class), eq(UUID.class));
+        }
+
+        private static ReadingRow reading() {
+                return new ReadingRow(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(),
+                                UUID.randomUUID(), LocalDate.of(2025, 3, 25), BigDecimal.ZERO, BigDecimal.TEN, null, null,
+                                UUID.randomUUID());
+        }
+}
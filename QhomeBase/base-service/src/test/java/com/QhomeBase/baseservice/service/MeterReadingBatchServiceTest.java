@@ -0,0 +1,220 @@
+package com.QhomeBase.baseservice.service;
+
+import com.QhomeBase.baseservice.dto.MeterReadingBatchReq;
+import com.QhomeBase.baseservice.dto.MeterReadingBatchResultDto;
+import com.QhomeBase.baseservice.model.Building;
+import com.QhomeBase.baseservice.model.Meter;
+import com.QhomeBase.baseservice.model.MeterReadingAssignment;
+import com.QhomeBase.baseservice.model.ReadingCycle;
+import com.QhomeBase.baseservice.model.Unit;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository;
+import com.QhomeBase.baseservice.repository.MeterReadingBatchRepository;
+import com.QhomeBase.baseservice.repository.MeterReadingBatchRepository.ReadingRow;
+import com.QhomeBase.baseservice.repository.MeterRepository;
+import com.QhomeBase.baseservice.security.UserPrincipal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MeterReadingBatchServiceTest {
+
+        private static final LocalDate READING_DATE = LocalDate.of(2025, 3, 25);
+
+        private final Authentication auth = new UsernamePasswordAuthenticationToken(
+                        new UserPrincipal(UUID.randomUUID(), "staff", List.of("TECHNICIAN"), List.of(), "token"),
+                        "token", List.of());
+
+        private MeterReadingAssignmentRepository assignmentRepository;
+        private MeterRepository meterRepository;
+        private MeterReadingBatchRepository readingBatchRepository;
+        private MeterReadingBatchService service;
+
+        private Building building;
+        private Unit includedUnit;
+        private MeterReadingAssignment assignment;
+
+        @BeforeEach
+        void setUp() {
+                assignmentRepository = Mockito.mock(MeterReadingAssignmentRepository.class);
+                meterRepository = Mockito.mock(MeterRepository.class);
+                readingBatchRepository = Mockito.mock(MeterReadingBatchRepository.class);
+                service = new MeterReadingBatchService(assignmentRepository, meterRepository, readingBatchRepository);
+                ReflectionTestUtils.setField(service, "maxItems", 500);
+
+                building = Building.builder().id(UUID.randomUUID()).code("A").build();
+                includedUnit = unit(building, 3);
+                assignment = MeterReadingAssignment.builder()
+                                .id(UUID.randomUUID())
+                                .cycle(ReadingCycle.builder().id(UUID.randomUUID()).build())
+                                .building(building)
+                                .floor(3)
+                                .unitIds(new ArrayList<>(List.of(includedUnit.getId())))
+                                .build();
+                when(assignmentRepository.findWithScopeById(assignment.getId())).thenReturn(Optional.of(assignment));
+                when(readingBatchRepository.findAssignmentReadingIds(any(), anyCollection())).thenReturn(Map.of());
+                when(readingBatchRepository.findLatestIndexes(anyCollection(), any())).thenReturn(Map.of());
+                when(readingBatchRepository.insertReadings(anyList(), any())).thenAnswer(inv -> written(inv.getArgument(0)));
+                when(readingBatchRepository.updateReadings(anyList(), any())).thenAnswer(inv -> written(inv.getArgument(0)));
+        }
+
+        @Test
+        void shouldSaveValidRowsAndRejectInvalidOnesPerRow() {
+                Meter valid = meter(includedUnit);
+                Meter notIncluded = meter(unit(building, 3));
+                Meter otherBuilding = meter(unit(Building.builder().id(UUID.randomUUID()).code("B").build(), 3));
+                Meter otherFloor = meter(unit(building, 4));
+                meters(valid, notIncluded, otherBuilding, otherFloor);
+
+                MeterReadingBatchResultDto result = service.submit(request(Arrays.asList(
+                                item(valid, "120"),
+                                null,
+                                item(notIncluded, "10"),
+                                item(otherBuilding, "10"),
+                                item(otherFloor, "10"),
+                                item(valid, "130"))), auth);
+
+                assertThat(result.total()).isEqualTo(6);
+                assertThat(result.created()).isEqualTo(1);
+                assertThat(result.rejected()).isEqualTo(5);
+                assertThat(result.results()).extracting(MeterReadingBatchResultDto.Row::status).containsExactly(
+                                MeterReadingBatchResultDto.CREATED,
+                                MeterReadingBatchResultDto.REJECTED,
+                                MeterReadingBatchResultDto.REJECTED,
+                                MeterReadingBatchResultDto.REJECTED,
+                                MeterReadingBatchResultDto.REJECTED,
+                                MeterReadingBatchResultDto.REJECTED);
+                assertThat(result.results()).extracting(MeterReadingBatchResultDto.Row::error).containsExactly(
+                                null,
+                                "Reading item is required",
+                                "Unit is not in included units list for assignment",
+                                "Not same building",
+                                "Unit floor does not match assignment floor",
+                                "Duplicate meter in batch");
+                // Công tơ và chỉ số trước được đọc một lần cho cả lô
+                verify(meterRepository, times(1)).findAllWithUnitByIdIn(anyCollection());
+                verify(readingBatchRepository, times(1)).findLatestIndexes(anyCollection(), eq(assignment.getId()));
+        }
+
+        @Test
+        void shouldUpdateAssignmentReadingAgainstPreviousIndexOfOtherAssignments() {
+                Meter meter = meter(includedUnit);
+                meters(meter);
+                UUID existingReadingId = UUID.randomUUID();
+                when(readingBatchRepository.findAssignmentReadingIds(eq(assignment.getId()), anyCollection()))
+                                .thenReturn(Map.of(meter.getId(), existingReadingId));
+                // Chỉ số cuối ngoài assignment là 100; chỉ số cũ của chính assignment không được dùng làm chỉ số trước
+                when(readingBatchRepository.findLatestIndexes(anyCollection(), eq(assignment.getId())))
+                                .thenReturn(Map.of(meter.getId(), new BigDecimal("100")));
+
+                MeterReadingBatchResultDto result = service.submit(request(List.of(item(meter, "150"))), auth);
+
+                MeterReadingBatchResultDto.Row row = result.results().get(0);
+                assertThat(row.status()).isEqualTo(MeterReadingBatchResultDto.UPDATED);
+                assertThat(row.readingId()).isEqualTo(existingReadingId);
+                assertThat(row.prevIndex()).isEqualByComparingTo("100");
+                assertThat(row.consumption()).isEqualByComparingTo("50");
+                assertThat(result.updated()).isEqualTo(1);
+                assertThat(result.created()).isZero();
+        }
+
+        @Test
+        void shouldRejectCurrentIndexBelowPreviousIndex() {
+                Meter meter = meter(includedUnit);
+                meters(meter);
+                when(readingBatchRepository.findLatestIndexes(anyCollection(), eq(assignment.getId())))
+                                .thenReturn(Map.of(meter.getId(), new BigDecimal("100")));
+
+                MeterReadingBatchResultDto result = service.submit(request(List.of(item(meter, "90"))), auth);
+
+                assertThat(result.results().get(0).error()).isEqualTo("Current index must be >= previous index");
+                assertThat(result.rejected()).isEqualTo(1);
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldRejectRowSkippedByUniqueConstraint() {
+                Meter first = meter(includedUnit);
+                Unit secondUnit = unit(building, 3);
+                assignment.getUnitIds().add(secondUnit.getId());
+                Meter second = meter(secondUnit);
+                meters(first, second);
+                // Dòng thứ hai trùng (meter_id, reading_date, cycle_id) với chỉ số khác nên ON CONFLICT bỏ qua
+                when(readingBatchRepository.insertReadings(anyList(), any())).thenReturn(new int[]{1, 0});
+
+                MeterReadingBatchResultDto result = service.submit(
+                                request(List.of(item(first, "10"), item(second, "20"))), auth);
+
+                assertThat(result.created()).isEqualTo(1);
+                assertThat(result.rejected()).isEqualTo(1);
+                assertThat(result.results().get(1).status()).isEqualTo(MeterReadingBatchResultDto.REJECTED);
+                assertThat(result.results().get(1).error())
+                                .isEqualTo("Another reading exists for this meter, reading date and cycle");
+
+                ArgumentCaptor<List<ReadingRow>> rows = ArgumentCaptor.forClass(List.class);
+                verify(readingBatchRepository).insertReadings(rows.capture(), any());
+                assertThat(rows.getValue()).extracting(ReadingRow::cycleId)
+                                .containsOnly(assignment.getCycle().getId());
+        }
+
+        @Test
+        void shouldRejectOversizedBatch() {
+                ReflectionTestUtils.setField(service, "maxItems", 1);
+                Meter meter = meter(includedUnit);
+
+                assertThatThrownBy(() -> service.submit(request(List.of(item(meter, "1"), item(meter, "2"))), auth))
+                                .isInstanceOf(IllegalArgumentException.class);
+                verify(readingBatchRepository, never()).insertReadings(anyList(), any());
+        }
+
+        private MeterReadingBatchReq request(List<MeterReadingBatchReq.Item> items) {
+                return new MeterReadingBatchReq(assignment.getId(), null, null, items);
+        }
+
+        private static MeterReadingBatchReq.Item item(Meter meter, String currIndex) {
+                return new MeterReadingBatchReq.Item(meter.getId(), READING_DATE, null, new BigDecimal(currIndex),
+                                null, null);
+        }
+
+        private void meters(Meter... meters) {
+                when(meterRepository.findAllWithUnitByIdIn(anyCollection())).thenReturn(List.of(meters));
+        }
+
+        private static Unit unit(Building building, int floor) {
+                return Unit.builder().id(UUID.randomUUID()).building(building).floor(floor).build();
+        }
+
+        private static Meter meter(Unit unit) {
+                return Meter.builder().id(UUID.randomUUID()).unit(unit).build();
+        }
+
+        private static int[] written(Collection<?> rows) {
+                int[] counts = new int[rows.size()];
+                Arrays.fill(counts, 1);
+                return counts;
+        }
+}
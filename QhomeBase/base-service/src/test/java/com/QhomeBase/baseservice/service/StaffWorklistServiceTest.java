@@ -0,0 +1,141 @@
+package com.QhomeBase.baseservice.service;
+
+import com.QhomeBase.baseservice.dto.StaffWorklistDto;
+import com.QhomeBase.baseservice.dto.WorklistMeterDto;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository.AssignmentVersion;
+import com.QhomeBase.baseservice.repository.MeterReadingAssignmentRepository.WorklistRow;
+import com.QhomeBase.baseservice.repository.ReadingCycleRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StaffWorklistServiceTest {
+
+        private static final UUID STAFF = UUID.randomUUID();
+        private static final UUID CYCLE = UUID.randomUUID();
+        private static final OffsetDateTime SINCE = OffsetDateTime.of(2025, 3, 20, 8, 0, 0, 0, ZoneOffset.UTC);
+
+        private MeterReadingAssignmentRepository assignmentRepository;
+        private ReadingCycleRepository readingCycleRepository;
+        private StaffWorklistService service;
+
+        @BeforeEach
+        void setUp() {
+                assignmentRepository = Mockito.mock(MeterReadingAssignmentRepository.class);
+                readingCycleRepository = Mockito.mock(ReadingCycleRepository.class);
+                service = new StaffWorklistService(assignmentRepository, readingCycleRepository);
+                ReflectionTestUtils.setField(service, "syncOverlap", Duration.ofMinutes(1));
+                when(readingCycleRepository.existsById(CYCLE)).thenReturn(true);
+        }
+
+        @Test
+        void shouldReturnFullListOfActiveMetersWithoutSince() {
+                WorklistRow active = row(true, SINCE.minusDays(1));
+                WorklistRow removed = row(false, SINCE.minusDays(1));
+                stub(List.of(assignment(SINCE.minusDays(2))), List.of(active, removed));
+
+                StaffWorklistDto worklist = service.getWorklist(STAFF, CYCLE, null);
+
+                assertThat(worklist.delta()).isFalse();
+                assertThat(worklist.meters()).extracting(WorklistMeterDto::meterId).containsExactly(active.getMeterId());
+                assertThat(worklist.removedMeterIds()).isEmpty();
+                assertThat(worklist.etag()).startsWith("\"").endsWith("\"");
+        }
+
+        @Test
+        void shouldReturnOnlyChangesSinceLastSync() {
+                WorklistRow changed = row(true, SINCE.plusHours(1));
+                WorklistRow unchanged = row(true, SINCE.minusHours(1));
+                WorklistRow deactivated = row(false, SINCE.plusHours(1));
+                WorklistRow deactivatedEarlier = row(false, SINCE.minusHours(1));
+                stub(List.of(assignment(SINCE.minusDays(2))), List.of(changed, unchanged, deactivated, deactivatedEarlier));
+
+                StaffWorklistDto worklist = service.getWorklist(STAFF, CYCLE, SINCE);
+
+                assertThat(worklist.delta()).isTrue();
+                assertThat(worklist.meters()).extracting(WorklistMeterDto::meterId).containsExactly(changed.getMeterId());
+                assertThat(worklist.removedMeterIds()).containsExactly(deactivated.getMeterId());
+                assertThat(worklist.syncedAt()).isBefore(OffsetDateTime.now());
+        }
+
+        @Test
+        void shouldFallBackToFullListWhenAssignmentChangedSinceLastSync() {
+                WorklistRow unchanged = row(true, SINCE.minusHours(1));
+                stub(List.of(assignment(SINCE.plusMinutes(5))), List.of(unchanged));
+
+                StaffWorklistDto worklist = service.getWorklist(STAFF, CYCLE, SINCE);
+
+                assertThat(worklist.delta()).isFalse();
+                assertThat(worklist.meters()).extracting(WorklistMeterDto::meterId).containsExactly(unchanged.getMeterId());
+        }
+
+        @Test
+        void shouldKeepEtagIndependentOfSinceAndChangeWithReadings() {
+                AssignmentVersion assignment = assignment(SINCE.minusDays(2));
+                WorklistRow row = row(true, SINCE.minusHours(1));
+                stub(List.of(assignment), List.of(row));
+
+                String full = service.getWorklist(STAFF, CYCLE, null).etag();
+                String delta = service.getWorklist(STAFF, CYCLE, SINCE).etag();
+
+                when(row.getReadingId()).thenReturn(UUID.randomUUID());
+                when(row.getChangedAtMillis()).thenReturn(SINCE.plusHours(2).toInstant().toEpochMilli());
+                String afterReading = service.getWorklist(STAFF, CYCLE, SINCE).etag();
+
+                assertThat(delta).isEqualTo(full);
+                assertThat(afterReading).isNotEqualTo(full);
+        }
+
+        @Test
+        void shouldSkipWorklistQueryWithoutAssignments() {
+                when(assignmentRepository.findVersionsByStaffAndCycle(STAFF, CYCLE)).thenReturn(List.of());
+
+                StaffWorklistDto worklist = service.getWorklist(STAFF, CYCLE, null);
+
+                assertThat(worklist.meters()).isEmpty();
+                verify(assignmentRepository, never()).findWorklist(any(), any());
+        }
+
+        @Test
+        void shouldRejectUnknownCycle() {
+                UUID unknown = UUID.randomUUID();
+
+                assertThatThrownBy(() -> service.getWorklist(STAFF, unknown, null))
+                                .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        private void stub(List<AssignmentVersion> assignments, List<WorklistRow> rows) {
+                when(assignmentRepository.findVersionsByStaffAndCycle(STAFF, CYCLE)).thenReturn(assignments);
+                when(assignmentRepository.findWorklist(STAFF, CYCLE)).thenReturn(rows);
+        }
+
+        private static AssignmentVersion assignment(OffsetDateTime updatedAt) {
+                AssignmentVersion assignment = Mockito.mock(AssignmentVersion.class);
+                when(assignment.getId()).thenReturn(UUID.randomUUID());
+                when(assignment.getUpdatedAt()).thenReturn(updatedAt);
+                return assignment;
+        }
+
+        private static WorklistRow row(boolean active, OffsetDateTime changedAt) {
+                WorklistRow row = Mockito.mock(WorklistRow.class);
+                when(row.getMeterId()).thenReturn(UUID.randomUUID());
+                when(row.getActive()).thenReturn(active);
+                when(row.getChangedAtMillis()).thenReturn(changedAt.toInstant().toEpochMilli());
+                return row;
+        }
+}
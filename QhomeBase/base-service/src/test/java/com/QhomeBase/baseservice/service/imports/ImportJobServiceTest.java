@@ -0,0 +1,136 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import com.QhomeBase.baseservice.dto.imports.ImportJobDto;
+import com.QhomeBase.baseservice.dto.imports.UnitImportRowResult;
+import com.QhomeBase.baseservice.model.ImportJob;
+import com.QhomeBase.baseservice.model.ImportJobStatus;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.repository.ImportJobRepository;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.when;
+
+class ImportJobServiceTest {
+
+        private final Map<UUID, ImportJob> jobs = new HashMap<>();
+        private ImportJobRepository importJobRepository;
+        private ImportJobService service;
+
+        @BeforeEach
+        void setUp() {
+                importJobRepository = Mockito.mock(ImportJobRepository.class);
+                when(importJobRepository.save(any(ImportJob.class))).thenAnswer(inv -> {
+                        ImportJob job = inv.getArgument(0);
+                        jobs.put(job.getId(), job);
+                        return job;
+                });
+                when(importJobRepository.findById(any(UUID.class)))
+                                .thenAnswer(inv -> Optional.ofNullable(jobs.get(inv.<UUID>getArgument(0))));
+
+                TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+                when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                                inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+                StreamingImportEngine engine = new StreamingImportEngine(transactionTemplate);
+                ReflectionTestUtils.setField(engine, "batchSize", 2);
+
+                // Executor chạy ngay trên thread gọi để kiểm tra kết quả job một cách tuần tự
+                service = new ImportJobService(importJobRepository, engine, Runnable::run, List.of(new RowNameImporter()));
+                ReflectionTestUtils.setField(service, "maxReportedErrors", 1);
+        }
+
+        @Test
+        void shouldRecordProgressPerBatchAndCompleteJob() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "units.xlsx",
+                                "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet",
+                                workbook("ok", "bad", "ok", "bad", "ok"));
+
+                ImportJobDto started = service.start(ImportJobType.UNIT, file, "admin");
+
+                var order = inOrder(importJobRepository);
+                order.verify(importJobRepository).updateProgress(eq(started.id()), eq(2), eq(1), eq(1), any());
+                order.verify(importJobRepository).updateProgress(eq(started.id()), eq(4), eq(2), eq(2), any());
+                order.verify(importJobRepository).updateProgress(eq(started.id()), eq(5), eq(3), eq(2), any());
+
+                ImportJobDto job = service.get(started.id(), ImportJobType.UNIT);
+                assertThat(job.status()).isEqualTo(ImportJobStatus.COMPLETED);
+                assertThat(job.totalRows()).isEqualTo(5);
+                assertThat(job.successCount()).isEqualTo(3);
+                assertThat(job.errorCount()).isEqualTo(2);
+                assertThat(job.progressPercent()).isEqualTo(100);
+                // Chỉ giữ tối đa import.jobs.max-reported-errors lỗi dòng
+                assertThat(job.rowErrors()).hasSize(1);
+                assertThat(job.rowErrors().get(0).rowNumber()).isEqualTo(3);
+        }
+
+        @Test
+        void shouldRejectJobOfAnotherType() throws Exception {
+                MockMultipartFile file = new MockMultipartFile("file", "units.xlsx", null, workbook("ok"));
+                ImportJobDto started = service.start(ImportJobType.UNIT, file, "admin");
+
+                assertThatThrownBy(() -> service.get(started.id(), ImportJobType.METER))
+                                .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        private static byte[] workbook(String... names) throws Exception {
+                try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                        Sheet sh = wb.createSheet("units");
+                        sh.createRow(0).createCell(0).setCellValue("name");
+                        for (int i = 0; i < names.length; i++) {
+                                Row row = sh.createRow(i + 1);
+                                row.createCell(0).setCellValue(names[i]);
+                        }
+                        wb.write(out);
+                        return out.toByteArray();
+                }
+        }
+
+        private static final class RowNameImporter implements SheetImporter<UnitImportRowResult> {
+                @Override
+                public ImportJobType type() {
+                        return ImportJobType.UNIT;
+                }
+
+                @Override
+                public Session<UnitImportRowResult> open(Map<String, Integer> columns, String createdBy) {
+                        return rows -> rows.stream()
+                                        .map(row -> "ok".equals(row.get("name"))
+                                                        ? UnitImportRowResult.builder()
+                                                                        .rowNumber(row.rowNumber())
+                                                                        .success(true)
+                                                                        .message("OK")
+                                                                        .build()
+                                                        : rowError(row.rowNumber(), "Dòng không hợp lệ"))
+                                        .toList();
+                }
+
+                @Override
+                public UnitImportRowResult rowError(int rowNumber, String message) {
+                        return UnitImportRowResult.builder()
+                                        .rowNumber(rowNumber)
+                                        .success(false)
+                                        .message(message)
+                                        .build();
+                }
+        }
+}
@@ -0,0 +1,138 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import com.QhomeBase.baseservice.dto.imports.UnitImportRowResult;
+import com.QhomeBase.baseservice.model.ImportJobType;
+import com.QhomeBase.baseservice.repository.BuildingRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository;
+import com.QhomeBase.baseservice.service.UnitService;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StreamingImportEngineTest {
+
+        @TempDir
+        Path tempDir;
+
+        private StreamingImportEngine engine;
+
+        @BeforeEach
+        void setUp() {
+                TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+                when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                                inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+                engine = new StreamingImportEngine(transactionTemplate);
+                ReflectionTestUtils.setField(engine, "batchSize", 2);
+        }
+
+        @Test
+        void shouldRejectSheetWithMissingRequiredColumns() throws Exception {
+                ImportBatchRepository importBatchRepository = Mockito.mock(ImportBatchRepository.class);
+                UnitImportService importer = new UnitImportService(Mockito.mock(BuildingRepository.class),
+                                Mockito.mock(UnitService.class), importBatchRepository, engine);
+                Path file = workbook(List.of("buildingCode", "floor"), List.of(List.of("A", "1")));
+
+                assertThatThrownBy(() -> engine.run(importer, file, null, result -> {
+                }, StreamingImportEngine.Progress.NONE))
+                                .isInstanceOf(IllegalArgumentException.class)
+                                .hasMessageContaining("areaM2");
+                verify(importBatchRepository, never()).insertUnits(anyList(), any());
+        }
+
+        @Test
+        void shouldMarkOnlyRowsOfFailedBatchAsErrors() throws Exception {
+                // 5 dòng, lô 2 dòng: lô thứ hai (dòng 4-5) lỗi DB, lô 1 và 3 vẫn được ghi
+                Path file = workbook(List.of("name"),
+                                List.of(List.of("a"), List.of("b"), List.of("fail"), List.of("d"), List.of("e")));
+                List<UnitImportRowResult> results = new ArrayList<>();
+                List<String> progress = new ArrayList<>();
+
+                StreamingImportEngine.Totals totals = engine.run(new FailingBatchImporter(), file, null, results::add,
+                                new StreamingImportEngine.Progress() {
+                                        @Override
+                                        public void batchDone(int processedRows, int successCount, int errorCount) {
+                                                progress.add(processedRows + "/" + successCount + "/" + errorCount);
+                                        }
+                                });
+
+                assertThat(totals).isEqualTo(new StreamingImportEngine.Totals(5, 3, 2));
+                assertThat(results).extracting(UnitImportRowResult::getRowNumber).containsExactly(2, 3, 4, 5, 6);
+                assertThat(results).extracting(UnitImportRowResult::isSuccess)
+                                .containsExactly(true, true, false, false, true);
+                assertThat(results.get(2).getMessage()).startsWith("Không lưu được dòng:");
+                assertThat(progress).containsExactly("2/2/0", "4/2/2", "5/3/2");
+        }
+
+        private Path workbook(List<String> header, List<List<String>> rows) throws Exception {
+                Path file = Files.createTempFile(tempDir, "import-", ".xlsx");
+                try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+                        Sheet sh = wb.createSheet("data");
+                        Row headerRow = sh.createRow(0);
+                        for (int c = 0; c < header.size(); c++) {
+                                headerRow.createCell(c).setCellValue(header.get(c));
+                        }
+                        for (int r = 0; r < rows.size(); r++) {
+                                Row row = sh.createRow(r + 1);
+                                for (int c = 0; c < rows.get(r).size(); c++) {
+                                        row.createCell(c).setCellValue(rows.get(r).get(c));
+                                }
+                        }
+                        wb.write(out);
+                }
+                return file;
+        }
+
+        private static final class FailingBatchImporter implements SheetImporter<UnitImportRowResult> {
+                @Override
+                public ImportJobType type() {
+                        return ImportJobType.UNIT;
+                }
+
+                @Override
+                public Session<UnitImportRowResult> open(Map<String, Integer> columns, String createdBy) {
+                        return rows -> {
+                                if (rows.stream().anyMatch(row -> "fail".equals(row.get("name")))) {
+                                        throw new IllegalStateException("connection reset");
+                                }
+                                return rows.stream()
+                                                .map(row -> UnitImportRowResult.builder()
+                                                                .rowNumber(row.rowNumber())
+                                                                .success(true)
+                                                                .message("OK")
+                                                                .build())
+                                                .toList();
+                        };
+                }
+
+                @Override
+                public UnitImportRowResult rowError(int rowNumber, String message) {
+                        return UnitImportRowResult.builder()
+                                        .rowNumber(rowNumber)
+                                        .success(false)
+                                        .message(message)
+                                        .build();
+                }
+        }
+}
@@ -0,0 +1,117 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import com.QhomeBase.baseservice.dto.imports.UnitImportRowResult;
+import com.QhomeBase.baseservice.model.Building;
+import com.QhomeBase.baseservice.repository.BuildingRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository;
+import com.QhomeBase.baseservice.repository.ImportBatchRepository.NewUnit;
+import com.QhomeBase.baseservice.service.UnitService;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnitImportServiceTest {
+
+        @TempDir
+        Path tempDir;
+
+        private ImportBatchRepository importBatchRepository;
+        private StreamingImportEngine engine;
+        private UnitImportService service;
+
+        @BeforeEach
+        void setUp() {
+                BuildingRepository buildingRepository = Mockito.mock(BuildingRepository.class);
+                UnitService unitService = Mockito.mock(UnitService.class);
+                importBatchRepository = Mockito.mock(ImportBatchRepository.class);
+                TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+                when(transactionTemplate.execute(any())).thenAnswer(inv ->
+                                inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+                Building building = Building.builder()
+                                .id(UUID.randomUUID())
+                                .code("A")
+                                .name("Tòa A")
+                                .numberOfFloors(20)
+                                .build();
+                when(buildingRepository.findAllByOrderByCodeAsc()).thenReturn(List.of(building));
+                when(unitService.getPrefix(building.getId())).thenReturn("A");
+                when(unitService.nextSequence(any(), anyInt())).thenReturn("1");
+
+                engine = new StreamingImportEngine(transactionTemplate);
+                ReflectionTestUtils.setField(engine, "batchSize", 500);
+                service = new UnitImportService(buildingRepository, unitService, importBatchRepository, engine);
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldReportRowsSkippedByConflictAsExisting() throws Exception {
+                when(importBatchRepository.insertUnits(anyList(), any())).thenReturn(new int[]{1, 0});
+                Path file = workbook();
+                List<UnitImportRowResult> results = new ArrayList<>();
+
+                StreamingImportEngine.Totals totals = engine.run(service, file, null, results::add,
+                                StreamingImportEngine.Progress.NONE);
+
+                assertThat(totals).isEqualTo(new StreamingImportEngine.Totals(2, 1, 1));
+                assertThat(results.get(0).isSuccess()).isTrue();
+                assertThat(results.get(0).getCode()).isEqualTo("A1---01");
+                assertThat(results.get(1).isSuccess()).isFalse();
+                assertThat(results.get(1).getMessage()).contains("đã tồn tại").contains("A1---02");
+
+                ArgumentCaptor<List<NewUnit>> units = ArgumentCaptor.forClass(List.class);
+                verify(importBatchRepository).insertUnits(units.capture(), any());
+                // Ô định dạng #,##0 vẫn giữ diện tích gốc 45.5, không bị làm tròn thành 46
+                assertThat(units.getValue()).extracting(NewUnit::areaM2)
+                                .containsExactly(new BigDecimal("45.5"), new BigDecimal("60"));
+        }
+
+        private Path workbook() throws Exception {
+                Path file = Files.createTempFile(tempDir, "units-", ".xlsx");
+                try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+                        CellStyle thousands = wb.createCellStyle();
+                        thousands.setDataFormat(wb.createDataFormat().getFormat("#,##0"));
+                        Sheet sh = wb.createSheet("units");
+                        Row header = sh.createRow(0);
+                        header.createCell(0).setCellValue("buildingCode");
+                        header.createCell(1).setCellValue("floor");
+                        header.createCell(2).setCellValue("areaM2");
+                        header.createCell(3).setCellValue("bedrooms");
+                        double[] areas = {45.5, 60};
+                        for (int i = 0; i < areas.length; i++) {
+                                Row row = sh.createRow(i + 1);
+                                row.createCell(0).setCellValue("A");
+                                row.createCell(1).setCellValue(1);
+                                row.createCell(2).setCellValue(areas[i]);
+                                row.getCell(2).setCellStyle(thousands);
+                                row.createCell(3).setCellValue(2);
+                        }
+                        wb.write(out);
+                }
+                return file;
+        }
+}
@@ -0,0 +1,73 @@
+package com.QhomeBase.baseservice.service.imports;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class XlsxStreamReaderTest {
+
+        @TempDir
+        Path tempDir;
+
+        @Test
+        void shouldReadRawNumbersRegardlessOfCellFormat() throws Exception {
+                Path file = tempDir.resolve("units.xlsx");
+                try (XSSFWorkbook wb = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file)) {
+                        CellStyle thousands = wb.createCellStyle();
+                        thousands.setDataFormat(wb.createDataFormat().getFormat("#,##0"));
+                        CellStyle date = wb.createCellStyle();
+                        date.setDataFormat(wb.createDataFormat().getFormat("dd/mm/yyyy"));
+
+                        Sheet sh = wb.createSheet("units");
+                        Row header = sh.createRow(0);
+                        header.createCell(0).setCellValue("areaM2");
+                        header.createCell(1).setCellValue("price");
+                        header.createCell(2).setCellValue("floor");
+                        header.createCell(3).setCellValue("installedAt");
+
+                        Row row = sh.createRow(1);
+                        row.createCell(0).setCellValue(45.5);
+                        row.getCell(0).setCellStyle(thousands);
+                        row.createCell(1).setCellValue(1234);
+                        row.getCell(1).setCellStyle(thousands);
+                        row.createCell(2).setCellValue(3);
+                        row.createCell(3).setCellValue(LocalDate.of(2025, 3, 15));
+                        row.getCell(3).setCellStyle(date);
+                        wb.write(out);
+                }
+
+                List<SheetRow> rows = new ArrayList<>();
+                XlsxStreamReader.read(file, new XlsxStreamReader.RowHandler() {
+                        @Override
+                        public void header(Map<String, Integer> columns) {
+                                assertThat(columns).containsKeys("aream2", "price", "floor", "installedat");
+                        }
+
+                        @Override
+                        public void row(SheetRow row) {
+                                rows.add(row);
+                        }
+                });
+
+                assertThat(rows).hasSize(1);
+                SheetRow row = rows.get(0);
+                assertThat(row.rowNumber()).isEqualTo(2);
+                assertThat(row.get("areaM2")).isEqualTo("45.5");
+                assertThat(row.get("price")).isEqualTo("1234");
+                assertThat(row.get("floor")).isEqualTo("3");
+                assertThat(row.get("installedAt")).isEqualTo("2025-03-15");
+        }
+}
@@ -131,5 +131,47 @@ public class BaseServiceClient {
             return null;
         }
     }
-}
 
+    /**
+     * Hộ gia đình hiện tại của căn hộ; null nếu căn hộ chưa có hộ.
+     * Khác các hàm khác, lỗi kết nối được ném ra để consumer sự kiện billing thử lại message.
+     */
+    public HouseholdDto getCurrentHouseholdByUnitId(UUID unitId) {
+        if (unitId == null) {
+            return null;
+        }
+        try {
+            return baseServiceWebClient
+                    .get()
+                    .uri("/api/households/units/{unitId}/current", unitId)
+                    .retrieve()
+                    .bodyToMono(HouseholdDto.class)
+                    .block();
+        } catch (WebClientResponseException.NotFound notFound) {
+            log.debug("No current household for unit {}", unitId);
+            return null;
+        }
+    }
+
+    /**
+     * Thành viên đang hoạt động của hộ; lỗi kết nối được ném ra như {@link #getCurrentHouseholdByUnitId(UUID)}
+     */
+    public List<HouseholdMemberDto> getActiveMembersByHouseholdId(UUID householdId) {
+        if (householdId == null) {
+            return Collections.emptyList();
+        }
+        try {
+            List<HouseholdMemberDto> members = baseServiceWebClient
+                    .get()
+                    .uri("/api/household-members/households/{householdId}", householdId)
+                    .retrieve()
+                    .bodyToFlux(HouseholdMemberDto.class)
+                    .collectList()
+                    .block();
+            return members != null ? members : Collections.emptyList();
+        } catch (WebClientResponseException.NotFound notFound) {
+            log.debug("No active members found for household {}", householdId);
+            return Collections.emptyList();
+        }
+    }
+}
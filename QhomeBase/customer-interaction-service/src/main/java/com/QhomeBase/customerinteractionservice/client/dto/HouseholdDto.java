@@ -6,6 +6,7 @@ import java.util.UUID;
 public record HouseholdDto(
         UUID id,
         UUID unitId,
+        UUID primaryResidentId,
         LocalDate startDate,
         LocalDate endDate
 ) {
@@ -0,0 +1,76 @@
+package com.QhomeBase.customerinteractionservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.Declarables;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Khai báo queue nhận sự kiện hóa đơn từ exchange của finance-billing-service.
+ * Message xử lý lỗi sau khi hết số lần retry được chuyển sang dead-letter queue ({@code <queue>.dlq}).
+ */
+@Configuration
+public class BillingEventsConfig {
+
+    public static final String INVOICE_PUBLISHED_ROUTING_KEY = "invoice.published";
+    public static final String INVOICE_PAID_ROUTING_KEY = "invoice.paid";
+
+    @Value("${billing.events.exchange:qhome.billing.events}")
+    private String exchange;
+
+    @Value("${billing.events.invoice-published-queue:customer-interaction.invoice-published}")
+    private String invoicePublishedQueue;
+
+    @Value("${billing.events.invoice-paid-queue:customer-interaction.invoice-paid}")
+    private String invoicePaidQueue;
+
+    @Value("${billing.events.dead-letter-exchange:customer-interaction.billing-events.dlx}")
+    private String deadLetterExchange;
+
+    @Bean
+    public Declarables billingEventDeclarables() {
+        TopicExchange billingExchange = new TopicExchange(exchange, true, false);
+        DirectExchange dlx = new DirectExchange(deadLetterExchange, true, false);
+
+        Queue published = durableQueue(invoicePublishedQueue);
+        Queue paid = durableQueue(invoicePaidQueue);
+        Queue publishedDlq = QueueBuilder.durable(invoicePublishedQueue + ".dlq").build();
+        Queue paidDlq = QueueBuilder.durable(invoicePaidQueue + ".dlq").build();
+
+        return new Declarables(
+                billingExchange, dlx,
+                published, paid, publishedDlq, paidDlq,
+                BindingBuilder.bind(published).to(billingExchange).with(INVOICE_PUBLISHED_ROUTING_KEY),
+                BindingBuilder.bind(paid).to(billingExchange).with(INVOICE_PAID_ROUTING_KEY),
+                deadLetterBinding(publishedDlq, dlx, invoicePublishedQueue),
+                deadLetterBinding(paidDlq, dlx, invoicePaidQueue));
+    }
+
+    /**
+     * Listener nhận thẳng record sự kiện; kiểu được suy ra từ tham số của method listener
+     */
+    @Bean
+    public MessageConverter jackson2JsonMessageConverter(ObjectMapper objectMapper) {
+        return new Jackson2JsonMessageConverter(objectMapper);
+    }
+
+    private Queue durableQueue(String name) {
+        return QueueBuilder.durable(name)
+                .deadLetterExchange(deadLetterExchange)
+                .deadLetterRoutingKey(name)
+                .build();
+    }
+
+    private static Binding deadLetterBinding(Queue dlq, DirectExchange dlx, String sourceQueue) {
+        return BindingBuilder.bind(dlq).to(dlx).with(sourceQueue);
+    }
+}
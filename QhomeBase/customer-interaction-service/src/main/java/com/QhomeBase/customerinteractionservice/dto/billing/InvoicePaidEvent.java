@@ -0,0 +1,25 @@
+package com.QhomeBase.customerinteractionservice.dto.billing;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Sự kiện InvoicePaid do finance-billing-service phát qua outbox (routing key invoice.paid)
+ */
+public record InvoicePaidEvent(
+        UUID eventId,
+        UUID invoiceId,
+        String invoiceCode,
+        UUID payerUnitId,
+        UUID payerResidentId,
+        BigDecimal totalAmount,
+        String currency,
+        OffsetDateTime paidAt,
+        String paymentGateway,
+        String txnRef,
+        String recipientEmail,
+        String recipientName,
+        OffsetDateTime occurredAt
+) {
+}
@@ -0,0 +1,27 @@
+package com.QhomeBase.customerinteractionservice.dto.billing;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Sự kiện InvoicePublished do finance-billing-service phát qua outbox (routing key invoice.published)
+ */
+public record InvoicePublishedEvent(
+        UUID eventId,
+        UUID invoiceId,
+        String invoiceCode,
+        String status,
+        UUID payerUnitId,
+        UUID payerResidentId,
+        List<String> serviceCodes,
+        BigDecimal totalAmount,
+        String currency,
+        LocalDate dueDate,
+        BigDecimal usage,
+        String usageUnit,
+        OffsetDateTime occurredAt
+) {
+}
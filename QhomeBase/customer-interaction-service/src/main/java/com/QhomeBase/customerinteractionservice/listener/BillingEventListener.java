@@ -0,0 +1,32 @@
+package com.QhomeBase.customerinteractionservice.listener;
+
+import com.QhomeBase.customerinteractionservice.dto.billing.InvoicePaidEvent;
+import com.QhomeBase.customerinteractionservice.dto.billing.InvoicePublishedEvent;
+import com.QhomeBase.customerinteractionservice.service.InvoiceEventNotificationService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Nhận sự kiện hóa đơn do outbox của finance-billing-service phát lên RabbitMQ
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BillingEventListener {
+
+    private final InvoiceEventNotificationService invoiceEventNotificationService;
+
+    @RabbitListener(queues = "${billing.events.invoice-published-queue:customer-interaction.invoice-published}")
+    public void onInvoicePublished(InvoicePublishedEvent event) {
+        log.debug("[BillingEventListener] InvoicePublished {} for invoice {}", event.eventId(), event.invoiceId());
+        invoiceEventNotificationService.onInvoicePublished(event);
+    }
+
+    @RabbitListener(queues = "${billing.events.invoice-paid-queue:customer-interaction.invoice-paid}")
+    public void onInvoicePaid(InvoicePaidEvent event) {
+        log.debug("[BillingEventListener] InvoicePaid {} for invoice {}", event.eventId(), event.invoiceId());
+        invoiceEventNotificationService.onInvoicePaid(event);
+    }
+}
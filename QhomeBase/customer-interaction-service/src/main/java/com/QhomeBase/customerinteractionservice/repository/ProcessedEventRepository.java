@@ -0,0 +1,42 @@
+package com.QhomeBase.customerinteractionservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+/**
+ * Bảng cs_service.processed_events: id các sự kiện billing đã xử lý, để bỏ qua message giao lại
+ */
+@Repository
+@RequiredArgsConstructor
+public class ProcessedEventRepository {
+
+    private static final String MARK_PROCESSED = """
+            INSERT INTO cs_service.processed_events (event_id, event_type, processed_at)
+            VALUES (:eventId, :eventType, now())
+            ON CONFLICT (event_id) DO NOTHING
+            """;
+
+    private static final String EXISTS = """
+            SELECT EXISTS (SELECT 1 FROM cs_service.processed_events WHERE event_id = :eventId)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * @return false nếu sự kiện đã được ghi nhận trước đó
+     */
+    public boolean markProcessed(UUID eventId, String eventType) {
+        return jdbcTemplate.update(MARK_PROCESSED, new MapSqlParameterSource()
+                .addValue("eventId", eventId)
+                .addValue("eventType", eventType)) == 1;
+    }
+
+    public boolean isProcessed(UUID eventId) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(EXISTS,
+                new MapSqlParameterSource("eventId", eventId), Boolean.class));
+    }
+}
@@ -0,0 +1,206 @@
+package com.QhomeBase.customerinteractionservice.service;
+
+import com.QhomeBase.customerinteractionservice.client.BaseServiceClient;
+import com.QhomeBase.customerinteractionservice.client.dto.HouseholdDto;
+import com.QhomeBase.customerinteractionservice.client.dto.HouseholdMemberDto;
+import com.QhomeBase.customerinteractionservice.dto.billing.InvoicePaidEvent;
+import com.QhomeBase.customerinteractionservice.dto.billing.InvoicePublishedEvent;
+import com.QhomeBase.customerinteractionservice.dto.notification.InternalNotificationRequest;
+import com.QhomeBase.customerinteractionservice.model.NotificationType;
+import com.QhomeBase.customerinteractionservice.repository.ProcessedEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Xử lý sự kiện hóa đơn từ finance-billing-service: thông báo hóa đơn điện / nước mới cho mọi thành viên
+ * hộ gia đình của căn hộ và email xác nhận thanh toán. Broker giao message ít nhất một lần nên mỗi sự kiện
+ * được ghi vào processed_events; lỗi được ném ra để listener retry rồi chuyển sang dead-letter queue.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceEventNotificationService {
+
+    static final String INVOICE_PUBLISHED = "InvoicePublished";
+    static final String INVOICE_PAID = "InvoicePaid";
+
+    private static final ZoneId VN_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    private final ProcessedEventRepository processedEventRepository;
+    private final BaseServiceClient baseServiceClient;
+    private final NotificationService notificationService;
+    private final NotificationEmailService emailService;
+
+    /**
+     * Thông báo riêng (buildingId = null) cho từng cư dân trong căn hộ. Chỉ hóa đơn điện / nước được thông báo.
+     * Khi retry giữa chừng, NotificationService bỏ qua cư dân đã có thông báo cho cùng hóa đơn.
+     */
+    public void onInvoicePublished(InvoicePublishedEvent event) {
+        if (processedEventRepository.isProcessed(event.eventId())) {
+            log.info("[InvoiceEventNotificationService] Duplicate InvoicePublished event {} for invoice {}",
+                    event.eventId(), event.invoiceId());
+            return;
+        }
+
+        NotificationType type = notificationType(event.serviceCodes());
+        if (type == null) {
+            log.debug("[InvoiceEventNotificationService] Skipping notification for invoice {} - not an electricity/water invoice",
+                    event.invoiceId());
+            processedEventRepository.markProcessed(event.eventId(), INVOICE_PUBLISHED);
+            return;
+        }
+
+        Set<UUID> residentIds = resolveResidents(event.payerUnitId(), event.payerResidentId());
+        if (residentIds.isEmpty()) {
+            log.warn("[InvoiceEventNotificationService] No residents found for unit {}, cannot notify invoice {}",
+                    event.payerUnitId(), event.invoiceId());
+            processedEventRepository.markProcessed(event.eventId(), INVOICE_PUBLISHED);
+            return;
+        }
+
+        String serviceName = type == NotificationType.ELECTRICITY ? "điện" : "nước";
+        String invoiceCode = event.invoiceCode() != null ? event.invoiceCode() : event.invoiceId().toString();
+        BigDecimal totalAmount = event.totalAmount() != null ? event.totalAmount() : BigDecimal.ZERO;
+        String dueDate = event.dueDate() != null ? event.dueDate().format(DATE_FORMAT) : "N/A";
+
+        String title = String.format("Hóa đơn %s mới - %s", serviceName, invoiceCode);
+        String message = event.usage() != null
+                ? String.format("Hóa đơn %s mới với số tiền %s. Số lượng sử dụng: %s%s. Hạn thanh toán: %s",
+                        serviceName, formatAmount(totalAmount), event.usage().stripTrailingZeros().toPlainString(),
+                        event.usageUnit() != null ? " " + event.usageUnit() : "", dueDate)
+                : String.format("Bạn có hóa đơn %s mới với số tiền %s. Hạn thanh toán: %s",
+                        serviceName, formatAmount(totalAmount), dueDate);
+
+        Map<String, String> data = new HashMap<>();
+        data.put("invoiceId", event.invoiceId().toString());
+        data.put("invoiceCode", invoiceCode);
+        data.put("amount", totalAmount.toString());
+        data.put("dueDate", event.dueDate() != null ? event.dueDate().toString() : "");
+        data.put("serviceCode", type == NotificationType.ELECTRICITY ? "ELECTRIC" : "WATER");
+        if (event.usage() != null) {
+            data.put("usage", event.usage().toPlainString());
+        }
+
+        for (UUID residentId : residentIds) {
+            notificationService.createInternalNotification(InternalNotificationRequest.builder()
+                    .type(type)
+                    .title(title)
+                    .message(message)
+                    .residentId(residentId)
+                    .buildingId(null)
+                    .referenceId(event.invoiceId())
+                    .referenceType("INVOICE")
+                    .data(data)
+                    .build());
+        }
+        processedEventRepository.markProcessed(event.eventId(), INVOICE_PUBLISHED);
+        log.info("[InvoiceEventNotificationService] Sent invoice notification to {} residents in unit {}, invoiceId={}",
+                residentIds.size(), event.payerUnitId(), event.invoiceId());
+    }
+
+    /**
+     * Ghi nhận sự kiện và gửi email trong cùng transaction: gửi lỗi thì rollback để message được retry
+     */
+    @Transactional
+    public void onInvoicePaid(InvoicePaidEvent event) {
+        if (!processedEventRepository.markProcessed(event.eventId(), INVOICE_PAID)) {
+            log.info("[InvoiceEventNotificationService] Duplicate InvoicePaid event {} for invoice {}",
+                    event.eventId(), event.invoiceId());
+            return;
+        }
+        String email = event.recipientEmail();
+        if (email == null || email.isBlank()) {
+            log.warn("[InvoiceEventNotificationService] Không tìm thấy email cư dân để gửi thông báo thanh toán hóa đơn {}",
+                    event.invoiceId());
+            return;
+        }
+
+        String customerName = event.recipientName() != null ? event.recipientName() : email;
+        String invoiceCode = event.invoiceCode() != null ? event.invoiceCode() : event.invoiceId().toString();
+        BigDecimal totalAmount = event.totalAmount() != null ? event.totalAmount() : BigDecimal.ZERO;
+        OffsetDateTime paidAt = event.paidAt() != null ? event.paidAt() : OffsetDateTime.now(VN_ZONE);
+        String paidAtText = paidAt.atZoneSameInstant(VN_ZONE).format(DATE_TIME_FORMAT);
+        String gateway = event.paymentGateway() != null ? event.paymentGateway() : "VNPAY";
+
+        String subject = "Thanh toán thành công - Hóa đơn " + invoiceCode;
+        String body = "Xin chào " + customerName + ",\n\n" +
+                "Thanh toán hóa đơn của bạn đã được xử lý thành công.\n\n" +
+                "Thông tin thanh toán:\n" +
+                "- Mã hóa đơn: " + invoiceCode + "\n" +
+                "- Số tiền: " + formatAmount(totalAmount) + "\n" +
+                "- Ngày thanh toán: " + paidAtText + "\n" +
+                "- Phương thức: " + gateway + "\n" +
+                (event.txnRef() != null ? "- Mã giao dịch: " + event.txnRef() + "\n" : "") +
+                "\nCảm ơn bạn đã sử dụng dịch vụ của QHomeBase!\n\n" +
+                "Trân trọng,\n" +
+                "QHomeBase";
+
+        emailService.sendEmail(email, subject, body);
+    }
+
+    /**
+     * Thành viên đang hoạt động của hộ hiện tại và chủ hộ; căn hộ chưa có hộ thì chỉ gửi cho người thanh toán
+     */
+    private Set<UUID> resolveResidents(UUID unitId, UUID payerResidentId) {
+        Set<UUID> residentIds = new LinkedHashSet<>();
+        HouseholdDto household = baseServiceClient.getCurrentHouseholdByUnitId(unitId);
+        if (household == null || household.id() == null) {
+            if (payerResidentId != null) {
+                residentIds.add(payerResidentId);
+            }
+            return residentIds;
+        }
+        for (HouseholdMemberDto member : baseServiceClient.getActiveMembersByHouseholdId(household.id())) {
+            if (member.residentId() != null) {
+                residentIds.add(member.residentId());
+            }
+        }
+        if (household.primaryResidentId() != null) {
+            residentIds.add(household.primaryResidentId());
+        }
+        return residentIds;
+    }
+
+    /**
+     * ELECTRICITY / WATER khi hóa đơn có dòng điện hoặc nước (ưu tiên điện), null nếu không có
+     */
+    private static NotificationType notificationType(List<String> serviceCodes) {
+        if (serviceCodes == null) {
+            return null;
+        }
+        NotificationType type = null;
+        for (String code : serviceCodes) {
+            String normalized = code != null ? code.trim().toUpperCase() : "";
+            if (normalized.startsWith("ELEC")) {
+                return NotificationType.ELECTRICITY;
+            }
+            if (normalized.startsWith("WATER") || "WTR".equals(normalized)) {
+                type = NotificationType.WATER;
+            }
+        }
+        return type;
+    }
+
+    private static String formatAmount(BigDecimal amount) {
+        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
+        currencyFormat.setMaximumFractionDigits(0);
+        return currencyFormat.format(amount);
+    }
+}
@@ -1,4 +1,4 @@
-package com.QhomeBase.financebillingservice.service;
+package com.QhomeBase.customerinteractionservice.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -28,5 +28,3 @@ public class NotificationEmailService {
         }
     }
 }
-
-
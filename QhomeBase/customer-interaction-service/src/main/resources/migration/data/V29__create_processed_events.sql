@@ -0,0 +1,10 @@
+-- Billing events (InvoicePublished / InvoicePaid) already handled by this service.
+-- The broker delivers at least once, so each event id is recorded to skip redeliveries.
+CREATE TABLE IF NOT EXISTS cs_service.processed_events (
+    event_id     UUID         PRIMARY KEY,
+    event_type   VARCHAR(100) NOT NULL,
+    processed_at TIMESTAMPTZ  NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_processed_events_processed_at
+ON cs_service.processed_events (processed_at);
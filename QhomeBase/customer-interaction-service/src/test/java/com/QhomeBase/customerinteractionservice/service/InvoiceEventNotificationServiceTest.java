@@ -0,0 +1,145 @@
+package com.QhomeBase.customerinteractionservice.service;
+
+import com.QhomeBase.customerinteractionservice.client.BaseServiceClient;
+import com.QhomeBase.customerinteractionservice.client.dto.HouseholdDto;
+import com.QhomeBase.customerinteractionservice.client.dto.HouseholdMemberDto;
+import com.QhomeBase.customerinteractionservice.dto.billing.InvoicePaidEvent;
+import com.QhomeBase.customerinteractionservice.dto.billing.InvoicePublishedEvent;
+import com.QhomeBase.customerinteractionservice.dto.notification.InternalNotificationRequest;
+import com.QhomeBase.customerinteractionservice.model.NotificationType;
+import com.QhomeBase.customerinteractionservice.repository.ProcessedEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.mail.MailSendException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InvoiceEventNotificationServiceTest {
+
+        private static final UUID UNIT = UUID.randomUUID();
+        private static final UUID HOUSEHOLD = UUID.randomUUID();
+
+        private ProcessedEventRepository processedEventRepository;
+        private BaseServiceClient baseServiceClient;
+        private NotificationService notificationService;
+        private NotificationEmailService emailService;
+        private InvoiceEventNotificationService service;
+
+        @BeforeEach
+        void setUp() {
+                processedEventRepository = Mockito.mock(ProcessedEventRepository.class);
+                baseServiceClient = Mockito.mock(BaseServiceClient.class);
+                notificationService = Mockito.mock(NotificationService.class);
+                emailService = Mockito.mock(NotificationEmailService.class);
+                service = new InvoiceEventNotificationService(processedEventRepository, baseServiceClient,
+                                notificationService, emailService);
+        }
+
+        @Test
+        void shouldNotifyEveryHouseholdMemberOnceForElectricityInvoice() {
+                UUID primary = UUID.randomUUID();
+                UUID member = UUID.randomUUID();
+                when(baseServiceClient.getCurrentHouseholdByUnitId(UNIT))
+                                .thenReturn(new HouseholdDto(HOUSEHOLD, UNIT, primary, null, null));
+                when(baseServiceClient.getActiveMembersByHouseholdId(HOUSEHOLD)).thenReturn(List.of(
+                                memberOf(primary), memberOf(member)));
+                InvoicePublishedEvent event = published(List.of("ELECTRIC"));
+
+                service.onInvoicePublished(event);
+
+                ArgumentCaptor<InternalNotificationRequest> requests = ArgumentCaptor.forClass(InternalNotificationRequest.class);
+                verify(notificationService, times(2)).createInternalNotification(requests.capture());
+                assertThat(requests.getAllValues())
+                                .extracting(InternalNotificationRequest::getResidentId)
+                                .containsExactly(primary, member);
+                InternalNotificationRequest first = requests.getAllValues().get(0);
+                assertThat(first.getType()).isEqualTo(NotificationType.ELECTRICITY);
+                assertThat(first.getBuildingId()).isNull();
+                assertThat(first.getReferenceId()).isEqualTo(event.invoiceId());
+                assertThat(first.getMessage()).contains("120 kWh");
+                verify(processedEventRepository).markProcessed(event.eventId(), "InvoicePublished");
+        }
+
+        @Test
+        void shouldSkipRedeliveredAndNonMeteredInvoices() {
+                InvoicePublishedEvent redelivered = published(List.of("WATER"));
+                when(processedEventRepository.isProcessed(redelivered.eventId())).thenReturn(true);
+                InvoicePublishedEvent parking = published(List.of("PARKING_CAR"));
+
+                service.onInvoicePublished(redelivered);
+                service.onInvoicePublished(parking);
+
+                verify(notificationService, never()).createInternalNotification(any());
+                verify(processedEventRepository, never()).markProcessed(eq(redelivered.eventId()), anyString());
+                verify(processedEventRepository).markProcessed(parking.eventId(), "InvoicePublished");
+        }
+
+        @Test
+        void shouldFallBackToPayerWhenUnitHasNoHousehold() {
+                UUID payer = UUID.randomUUID();
+                InvoicePublishedEvent event = new InvoicePublishedEvent(UUID.randomUUID(), UUID.randomUUID(), "INV-1",
+                                "PUBLISHED", UNIT, payer, List.of("WATER"), new BigDecimal("50000"), "VND",
+                                LocalDate.of(2025, 3, 10), null, null, OffsetDateTime.now());
+
+                service.onInvoicePublished(event);
+
+                ArgumentCaptor<InternalNotificationRequest> request = ArgumentCaptor.forClass(InternalNotificationRequest.class);
+                verify(notificationService).createInternalNotification(request.capture());
+                assertThat(request.getValue().getResidentId()).isEqualTo(payer);
+                assertThat(request.getValue().getType()).isEqualTo(NotificationType.WATER);
+        }
+
+        @Test
+        void shouldSendPaymentEmailOnlyOnFirstDelivery() {
+                InvoicePaidEvent event = paid("resident@example.com");
+                when(processedEventRepository.markProcessed(event.eventId(), "InvoicePaid")).thenReturn(true, false);
+
+                service.onInvoicePaid(event);
+                service.onInvoicePaid(event);
+
+                verify(emailService, times(1)).sendEmail(eq("resident@example.com"),
+                                eq("Thanh toán thành công - Hóa đơn INV-1"), anyString());
+        }
+
+        @Test
+        void shouldPropagateMailFailureSoTheMessageIsRetried() {
+                InvoicePaidEvent event = paid("resident@example.com");
+                when(processedEventRepository.markProcessed(event.eventId(), "InvoicePaid")).thenReturn(true);
+                doThrow(new MailSendException("smtp down")).when(emailService).sendEmail(anyString(), anyString(), anyString());
+
+                assertThatThrownBy(() -> service.onInvoicePaid(event)).isInstanceOf(MailSendException.class);
+        }
+
+        private static InvoicePublishedEvent published(List<String> serviceCodes) {
+                return new InvoicePublishedEvent(UUID.randomUUID(), UUID.randomUUID(), "INV-1", "PUBLISHED",
+                                UNIT, null, serviceCodes, new BigDecimal("300000"), "VND", LocalDate.of(2025, 3, 10),
+                                new BigDecimal("120.000"), "kWh", OffsetDateTime.now());
+        }
+
+        private static InvoicePaidEvent paid(String email) {
+                return new InvoicePaidEvent(UUID.randomUUID(), UUID.randomUUID(), "INV-1", UNIT, UUID.randomUUID(),
+                                new BigDecimal("300000"), "VND", OffsetDateTime.now(), "VNPAY", "1_1", email,
+                                "Nguyễn Văn A", OffsetDateTime.now());
+        }
+
+        private static HouseholdMemberDto memberOf(UUID residentId) {
+                return new HouseholdMemberDto(UUID.randomUUID(), HOUSEHOLD, residentId, null, null, null);
+        }
+}
@@ -1,21 +1,62 @@
 package com.QhomeBase.financebillingservice.client;
 
+import com.QhomeBase.financebillingservice.config.BaseServiceCacheProperties;
 import com.QhomeBase.financebillingservice.dto.ReadingCycleDto;
-import lombok.RequiredArgsConstructor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class BaseServiceClient {
 
     private final WebClient webClient;
+    private final int bulkChunkSize;
+
+    /*
+     * Cache tra cứu base-service. Caffeine#get(key, loader) chỉ chạy loader một lần cho mỗi key,
+     * các thread gọi đồng thời cùng key sẽ chờ và dùng chung kết quả (gộp request trùng).
+     * Loader trả về null khi lỗi mạng để lỗi tạm thời không bị cache lại.
+     */
+    private final Cache<UUID, UnitInfo> unitCache;
+    private final Cache<UUID, Optional<ServiceInfo.HouseholdInfo>> householdByUnitCache;
+    private final Cache<UUID, List<ServiceInfo.HouseholdMemberInfo>> activeMembersCache;
+    private final Cache<OwnershipKey, Boolean> ownershipCache;
+
+    public BaseServiceClient(WebClient webClient, BaseServiceCacheProperties cacheProperties) {
+        this.webClient = webClient;
+        this.bulkChunkSize = Math.max(1, cacheProperties.getBulkChunkSize());
+        this.unitCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheProperties.getUnitTtl())
+                .maximumSize(cacheProperties.getMaximumSize())
+                .build();
+        this.householdByUnitCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheProperties.getHouseholdTtl())
+                .maximumSize(cacheProperties.getMaximumSize())
+                .build();
+        this.activeMembersCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheProperties.getMemberTtl())
+                .maximumSize(cacheProperties.getMaximumSize())
+                .build();
+        this.ownershipCache = Caffeine.newBuilder()
+                .expireAfterWrite(cacheProperties.getOwnershipTtl())
+                .maximumSize(cacheProperties.getMaximumSize())
+                .build();
+    }
 
     public List<ReadingCycleDto> getAllReadingCycles() {
         try {
@@ -59,6 +100,13 @@ public class BaseServiceClient {
     }
 
     public UnitInfo getUnitById(UUID unitId) {
+        if (unitId == null) {
+            return null;
+        }
+        return unitCache.get(unitId, this::fetchUnitById);
+    }
+
+    private UnitInfo fetchUnitById(UUID unitId) {
         try {
             return webClient.get()
                     .uri("/api/units/{unitId}", unitId)
@@ -71,6 +119,53 @@ public class BaseServiceClient {
         }
     }
 
+    /**
+     * Tra cứu nhiều căn hộ cùng lúc. Những unit đã có trong cache không gọi lại base-service,
+     * phần còn lại được lấy qua POST /api/units/batch theo từng lô.
+     * Unit không tìm thấy sẽ không có trong map kết quả.
+     */
+    public Map<UUID, UnitInfo> getUnitsByIds(Collection<UUID> unitIds) {
+        if (unitIds == null || unitIds.isEmpty()) {
+            return Map.of();
+        }
+        Set<UUID> keys = new LinkedHashSet<>(unitIds);
+        keys.remove(null);
+        return unitCache.getAll(keys, this::fetchUnitsByIds);
+    }
+
+    private Map<UUID, UnitInfo> fetchUnitsByIds(Set<? extends UUID> unitIds) {
+        Map<UUID, UnitInfo> result = new HashMap<>();
+        List<UUID> ids = new ArrayList<>(unitIds);
+        for (int from = 0; from < ids.size(); from += bulkChunkSize) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + bulkChunkSize, ids.size()));
+            try {
+                List<UnitInfo> units = webClient.post()
+                        .uri("/api/units/batch")
+                        .bodyValue(chunk)
+                        .retrieve()
+                        .bodyToMono(new ParameterizedTypeReference<List<UnitInfo>>() {})
+                        .block();
+                if (units != null) {
+                    for (UnitInfo unit : units) {
+                        if (unit != null && unit.getId() != null) {
+                            result.put(unit.getId(), unit);
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Bulk unit lookup failed for {} units, falling back to single lookups: {}",
+                        chunk.size(), e.getMessage());
+                for (UUID unitId : chunk) {
+                    UnitInfo unit = fetchUnitById(unitId);
+                    if (unit != null) {
+                        result.put(unitId, unit);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     public List<ServiceInfo> getAllServices() {
         try {
             return webClient.get()
@@ -92,8 +187,73 @@ public class BaseServiceClient {
         }
     }
 
-    @SuppressWarnings("unchecked")
     public ServiceInfo.HouseholdInfo getCurrentHouseholdByUnitId(UUID unitId) {
+        if (unitId == null) {
+            return null;
+        }
+        Optional<ServiceInfo.HouseholdInfo> household = householdByUnitCache.get(unitId, this::fetchCurrentHouseholdByUnitId);
+        return household != null ? household.orElse(null) : null;
+    }
+
+    /**
+     * Tra cứu hộ gia đình hiện tại của nhiều căn hộ qua POST /api/households/units/current/batch.
+     * Căn hộ không có hộ gia đình sẽ không có trong map kết quả.
+     */
+    public Map<UUID, ServiceInfo.HouseholdInfo> getCurrentHouseholdsByUnitIds(Collection<UUID> unitIds) {
+        if (unitIds == null || unitIds.isEmpty()) {
+            return Map.of();
+        }
+        Set<UUID> keys = new LinkedHashSet<>(unitIds);
+        keys.remove(null);
+        Map<UUID, Optional<ServiceInfo.HouseholdInfo>> cached = householdByUnitCache.getAll(keys, this::fetchCurrentHouseholdsByUnitIds);
+        Map<UUID, ServiceInfo.HouseholdInfo> result = new HashMap<>();
+        cached.forEach((unitId, household) -> household.ifPresent(h -> result.put(unitId, h)));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<UUID, Optional<ServiceInfo.HouseholdInfo>> fetchCurrentHouseholdsByUnitIds(Set<? extends UUID> unitIds) {
+        Map<UUID, Optional<ServiceInfo.HouseholdInfo>> result = new HashMap<>();
+        List<UUID> ids = new ArrayList<>(unitIds);
+        for (int from = 0; from < ids.size(); from += bulkChunkSize) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + bulkChunkSize, ids.size()));
+            try {
+                List<Map<String, Object>> households = (List<Map<String, Object>>) (Object) webClient.post()
+                        .uri("/api/households/units/current/batch")
+                        .bodyValue(chunk)
+                        .retrieve()
+                        .bodyToFlux(Map.class)
+                        .collectList()
+                        .block();
+                if (households == null) {
+                    continue;
+                }
+                for (Map<String, Object> householdMap : households) {
+                    ServiceInfo.HouseholdInfo household = toHouseholdInfo(householdMap);
+                    if (household.getUnitId() != null) {
+                        result.put(household.getUnitId(), Optional.of(household));
+                    }
+                }
+                // Căn hộ đã hỏi mà không có trong kết quả nghĩa là chưa có hộ gia đình
+                for (UUID unitId : chunk) {
+                    result.putIfAbsent(unitId, Optional.empty());
+                }
+            } catch (Exception e) {
+                log.warn("Bulk household lookup failed for {} units, falling back to single lookups: {}",
+                        chunk.size(), e.getMessage());
+                for (UUID unitId : chunk) {
+                    Optional<ServiceInfo.HouseholdInfo> household = fetchCurrentHouseholdByUnitId(unitId);
+                    if (household != null) {
+                        result.put(unitId, household);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Optional<ServiceInfo.HouseholdInfo> fetchCurrentHouseholdByUnitId(UUID unitId) {
         try {
             Map<String, Object> householdMap = (Map<String, Object>) (Object) webClient.get()
                     .uri("/api/households/units/{unitId}/current", unitId)
@@ -102,9 +262,20 @@ public class BaseServiceClient {
                     .block();
             
             if (householdMap == null) {
-                return null;
+                return Optional.empty();
             }
             
+            return Optional.of(toHouseholdInfo(householdMap));
+        } catch (WebClientResponseException.NotFound e) {
+            // Căn hộ chưa có hộ gia đình: cache kết quả rỗng
+            return Optional.empty();
+        } catch (Exception e) {
+            log.warn("Error fetching current household for unit {} from base-service: {}", unitId, e.getMessage());
+            return null;
+        }
+    }
+
+    private ServiceInfo.HouseholdInfo toHouseholdInfo(Map<String, Object> householdMap) {
             ServiceInfo.HouseholdInfo household = new ServiceInfo.HouseholdInfo();
             
             Object idObj = householdMap.get("id");
@@ -133,13 +304,17 @@ public class BaseServiceClient {
             }
             
             return household;
-        } catch (Exception e) {
-            log.warn("Error fetching current household for unit {} from base-service: {}", unitId, e.getMessage());
-            return null;
-        }
     }
 
     public List<ServiceInfo.HouseholdMemberInfo> getActiveMembersByHouseholdId(UUID householdId) {
+        if (householdId == null) {
+            return List.of();
+        }
+        List<ServiceInfo.HouseholdMemberInfo> members = activeMembersCache.get(householdId, this::fetchActiveMembersByHouseholdId);
+        return members != null ? members : List.of();
+    }
+
+    private List<ServiceInfo.HouseholdMemberInfo> fetchActiveMembersByHouseholdId(UUID householdId) {
         try {
             // Use pagination to avoid DataBufferLimitException
             // Fetch in batches of 100 members at a time
@@ -213,10 +388,10 @@ public class BaseServiceClient {
                 hasMore = currentOffset < total;
             }
             
-            return allMembers;
+            return List.copyOf(allMembers);
         } catch (Exception e) {
             log.warn("Error fetching active members for household {} from base-service: {}", householdId, e.getMessage());
-            return List.of();
+            return null;
         }
     }
 
@@ -339,9 +514,24 @@ public class BaseServiceClient {
             return false;
         }
 
+        Boolean isOwner = ownershipCache.get(new OwnershipKey(userId, unitId),
+                key -> fetchOwnership(key.userId(), key.unitId()));
+        return Boolean.TRUE.equals(isOwner);
+    }
+
+    /**
+     * @return null khi gọi base-service lỗi, để kết quả không bị cache
+     */
+    private Boolean fetchOwnership(UUID userId, UUID unitId) {
         try {
-            // Lấy household info từ base-service
-            ServiceInfo.HouseholdInfo household = getCurrentHouseholdByUnitId(unitId);
+            // Lấy household info từ base-service; null = tra cứu lỗi, Optional.empty() = căn hộ chưa có hộ gia đình
+            Optional<ServiceInfo.HouseholdInfo> currentHousehold =
+                    householdByUnitCache.get(unitId, this::fetchCurrentHouseholdByUnitId);
+            if (currentHousehold == null) {
+                log.warn("⚠️ [BaseServiceClient] Household lookup failed for unit {}, ownership not cached", unitId);
+                return null;
+            }
+            ServiceInfo.HouseholdInfo household = currentHousehold.orElse(null);
             if (household == null || household.getId() == null) {
                 log.debug("⚠️ [BaseServiceClient] No household found for unit {}", unitId);
                 return false;
@@ -387,13 +577,18 @@ public class BaseServiceClient {
             boolean isOwner = residentId.equals(household.getPrimaryResidentId());
             log.debug("✅ [BaseServiceClient] User {} isOwner of unit {}: {}", userId, unitId, isOwner);
             return isOwner;
+        } catch (WebClientResponseException.NotFound e) {
+            log.debug("⚠️ [BaseServiceClient] No resident found for userId {}", userId);
+            return false;
         } catch (Exception e) {
             log.error("❌ [BaseServiceClient] Error checking if user {} is OWNER of unit {}: {}", 
                     userId, unitId, e.getMessage());
-            return false;
+            return null;
         }
     }
 
+    private record OwnershipKey(UUID userId, UUID unitId) { }
+
     public static class UnitInfo {
         private UUID id;
         private UUID buildingId;
@@ -0,0 +1,25 @@
+package com.QhomeBase.financebillingservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * TTL và kích thước tối đa cho cache tra cứu căn hộ / hộ gia đình / thành viên từ base-service
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "base-service.cache")
+public class BaseServiceCacheProperties {
+    private Duration unitTtl = Duration.ofMinutes(10);
+    private Duration householdTtl = Duration.ofMinutes(2);
+    private Duration memberTtl = Duration.ofMinutes(2);
+    private Duration ownershipTtl = Duration.ofMinutes(1);
+    private long maximumSize = 20_000;
+    /** Số unitId tối đa trong một request bulk */
+    private int bulkChunkSize = 500;
+}
@@ -0,0 +1,18 @@
+package com.QhomeBase.financebillingservice.config;
+
+import org.springframework.amqp.core.TopicExchange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exchange nhận sự kiện hóa đơn từ outbox; queue do các service consumer tự khai báo và bind
+ */
+@Configuration
+public class BillingEventsConfig {
+
+    @Bean
+    public TopicExchange billingEventsExchange(@Value("${billing.events.exchange:qhome.billing.events}") String name) {
+        return new TopicExchange(name, true, false);
+    }
+}
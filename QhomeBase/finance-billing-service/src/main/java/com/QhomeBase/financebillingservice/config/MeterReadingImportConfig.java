@@ -0,0 +1,26 @@
+package com.QhomeBase.financebillingservice.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor dùng chung cho mọi lần import chỉ số công tơ: mỗi chunk hóa đơn là một task,
+ * số luồng = {@code billing.import.parallelism}
+ */
+@Configuration
+public class MeterReadingImportConfig {
+
+    @Bean(name = "meterReadingImportExecutor")
+    public ThreadPoolTaskExecutor meterReadingImportExecutor(MeterReadingImportProperties importProperties) {
+        int threads = Math.max(1, importProperties.getParallelism());
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setThreadNamePrefix("meter-import-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
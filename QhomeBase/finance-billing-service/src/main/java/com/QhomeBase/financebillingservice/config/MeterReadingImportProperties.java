@@ -0,0 +1,24 @@
+package com.QhomeBase.financebillingservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Kích thước chunk và số luồng song song khi import chỉ số công tơ thành hóa đơn
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "billing.import")
+public class MeterReadingImportProperties {
+    /** Số hóa đơn tối đa được ghi trong một transaction */
+    private int chunkSize = 500;
+    /** Số chunk được xử lý đồng thời, dùng chung cho mọi lần import (số luồng của meterReadingImportExecutor) */
+    private int parallelism = 4;
+    /** Số chỉ số tối đa trong một chunk gửi qua /import/chunks */
+    private int maxChunkReadings = 5000;
+    /** Chunk ở trạng thái PROCESSING lâu hơn thời gian này được coi là bị bỏ dở và có thể gửi lại */
+    private long chunkStaleSeconds = 900;
+}
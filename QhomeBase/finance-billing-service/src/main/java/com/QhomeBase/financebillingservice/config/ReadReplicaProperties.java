@@ -0,0 +1,27 @@
+package com.QhomeBase.financebillingservice.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Pool đọc (read replica) cho các truy vấn báo cáo chạy trong {@code @Transactional(readOnly = true)}
+ */
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "billing.datasource.replica")
+public class ReadReplicaProperties {
+    /** Tắt thì mọi truy vấn dùng datasource chính như trước */
+    private boolean enabled = false;
+    /** JDBC URL của replica; để trống thì dùng URL của datasource chính */
+    private String url;
+    /** Để trống thì dùng tài khoản của datasource chính */
+    private String username;
+    private String password;
+    private int maximumPoolSize = 10;
+    /** Replica trễ hơn ngưỡng này (hoặc không kiểm tra được) thì truy vấn đọc quay về datasource chính */
+    private long maxLagSeconds = 10;
+    private long lagCheckIntervalMs = 5000;
+}
@@ -0,0 +1,75 @@
+package com.QhomeBase.financebillingservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+
+/**
+ * Định kỳ đo độ trễ replay của replica. Replica chỉ được dùng khi lần kiểm tra gần nhất thành công
+ * và độ trễ không vượt ngưỡng; mặc định (trước lần kiểm tra đầu tiên) là không dùng.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    /**
+     * 0 khi không phải standby (vd. chạy thử với cùng một database) hoặc đã replay hết WAL nhận được,
+     * tránh báo trễ giả khi primary không có ghi mới
+     */
+    private static final String LAG_SECONDS = """
+            SELECT CASE
+                       WHEN NOT pg_is_in_recovery() THEN 0
+                       WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+                       ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0)
+                   END
+            """;
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final long maxLagSeconds;
+
+    private volatile double lagSeconds = -1;
+    private volatile boolean replicaUsable = false;
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, long maxLagSeconds, MeterRegistry meterRegistry) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replicaDataSource);
+        this.replicaJdbcTemplate.setQueryTimeout(2);
+        this.maxLagSeconds = maxLagSeconds;
+        Gauge.builder("billing.datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Replay lag of the read replica in seconds (-1 when unreachable)")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("billing.datasource.replica.usable", this, monitor -> monitor.replicaUsable ? 1 : 0)
+                .description("1 when read-only transactions are routed to the replica")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${billing.datasource.replica.lag-check-interval-ms:5000}")
+    public void check() {
+        boolean wasUsable = replicaUsable;
+        try {
+            Double lag = replicaJdbcTemplate.queryForObject(LAG_SECONDS, Double.class);
+            lagSeconds = lag != null ? lag : 0;
+            replicaUsable = lagSeconds <= maxLagSeconds;
+        } catch (Exception e) {
+            lagSeconds = -1;
+            replicaUsable = false;
+            if (wasUsable) {
+                log.warn("⚠️ [ReplicaLagMonitor] Read replica unreachable, routing reads to primary: {}", e.getMessage());
+            }
+            return;
+        }
+        if (wasUsable && !replicaUsable) {
+            log.warn("⚠️ [ReplicaLagMonitor] Read replica lag {}s exceeds {}s, routing reads to primary",
+                    lagSeconds, maxLagSeconds);
+        } else if (!wasUsable && replicaUsable) {
+            log.info("[ReplicaLagMonitor] Read replica available (lag {}s), routing read-only transactions to it", lagSeconds);
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+}
@@ -0,0 +1,52 @@
+package com.QhomeBase.financebillingservice.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Transaction {@code readOnly = true} lấy connection từ replica khi replica còn theo kịp, còn lại dùng primary.
+ * Phải được bọc trong LazyConnectionDataSourceProxy: cờ read-only của transaction chỉ được set sau khi
+ * transaction manager mở connection, nên connection thật phải được lấy muộn (ở câu lệnh đầu tiên).
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Pool {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter primaryWrites;
+    private final Counter replicaReads;
+    private final Counter primaryFallbackReads;
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor, MeterRegistry meterRegistry) {
+        this.lagMonitor = lagMonitor;
+        this.primaryWrites = counter(meterRegistry, "primary", "read-write");
+        this.replicaReads = counter(meterRegistry, "replica", "read-only");
+        this.primaryFallbackReads = counter(meterRegistry, "primary", "replica-fallback");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryWrites.increment();
+            return Pool.PRIMARY;
+        }
+        if (lagMonitor.isReplicaUsable()) {
+            replicaReads.increment();
+            return Pool.REPLICA;
+        }
+        primaryFallbackReads.increment();
+        return Pool.PRIMARY;
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String pool, String reason) {
+        return Counter.builder("billing.datasource.connections")
+                .description("Connections handed out by the routing datasource, by pool that served them")
+                .tag("pool", pool)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+}
@@ -1,13 +1,25 @@
 package com.QhomeBase.financebillingservice.config;
 
+import com.QhomeBase.scheduling.JobLeaseManager;
+import com.QhomeBase.scheduling.LeasedJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import javax.sql.DataSource;
+
 @Configuration
 @EnableScheduling
 public class SchedulingConfig {
-}
-
-
 
+    @Bean
+    public JobLeaseManager jobLeaseManager(DataSource dataSource) {
+        return new JobLeaseManager(dataSource, "billing.job_leases");
+    }
 
+    @Bean
+    public LeasedJobRunner leasedJobRunner(JobLeaseManager jobLeaseManager, MeterRegistry meterRegistry) {
+        return new LeasedJobRunner(jobLeaseManager, meterRegistry);
+    }
+}
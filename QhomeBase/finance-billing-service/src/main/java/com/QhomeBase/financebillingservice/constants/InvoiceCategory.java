@@ -0,0 +1,45 @@
+package com.QhomeBase.financebillingservice.constants;
+
+public final class InvoiceCategory {
+
+    private InvoiceCategory() {}
+
+    public static final String ELECTRICITY = "ELECTRICITY";
+    public static final String WATER = "WATER";
+    public static final String INTERNET = "INTERNET";
+    public static final String ELEVATOR = "ELEVATOR";
+    public static final String PARKING = "PARKING";
+    public static final String CONTRACT_RENEWAL = "CONTRACT_RENEWAL";
+    public static final String OTHER = "OTHER";
+
+    /**
+     * Xác định nhóm hiển thị / nhóm tổng tiền của một invoice line theo service code
+     */
+    public static String of(String serviceCode) {
+        if (serviceCode == null || serviceCode.isBlank()) {
+            return OTHER;
+        }
+        String normalized = serviceCode.trim().toUpperCase();
+
+        if (normalized.contains("ELECTRIC")) {
+            return ELECTRICITY;
+        }
+        if (normalized.contains("WATER")) {
+            return WATER;
+        }
+        if (normalized.contains("INTERNET") || normalized.contains("WIFI")) {
+            return INTERNET;
+        }
+        if (normalized.contains("ELEVATOR")) {
+            return ELEVATOR;
+        }
+        if (normalized.contains("PARK") || normalized.contains("VEHICLE") || normalized.contains("CAR") || normalized.contains("MOTOR")) {
+            return PARKING;
+        }
+        if (normalized.contains("CONTRACT")) {
+            return CONTRACT_RENEWAL;
+        }
+
+        return OTHER;
+    }
+}
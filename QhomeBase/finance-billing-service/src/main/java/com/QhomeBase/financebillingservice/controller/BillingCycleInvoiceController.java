@@ -4,13 +4,18 @@ import com.QhomeBase.financebillingservice.dto.BuildingInvoiceSummaryDto;
 import com.QhomeBase.financebillingservice.dto.InvoiceDto;
 import com.QhomeBase.financebillingservice.service.BillingCycleInvoiceService;
 import com.QhomeBase.financebillingservice.service.BillingCycleExportService;
+import com.QhomeBase.financebillingservice.service.ExportFormat;
+import com.QhomeBase.financebillingservice.service.LateFeeService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.List;
 import java.util.UUID;
 
@@ -22,6 +27,7 @@ public class BillingCycleInvoiceController {
 
     private final BillingCycleInvoiceService billingCycleInvoiceService;
     private final BillingCycleExportService billingCycleExportService;
+    private final LateFeeService lateFeeService;
 
     @GetMapping("/buildings")
     public List<BuildingInvoiceSummaryDto> getBuildingSummary(
@@ -49,6 +55,17 @@ public class BillingCycleInvoiceController {
         return billingCycleInvoiceService.getInvoicesByCycle(cycleId, serviceCode, month);
     }
 
+    /**
+     * Chạy tính phí trả chậm cho kỳ (mặc định tính đến hôm nay); chạy lại trong cùng ngày không tạo thêm phí
+     */
+    @PostMapping("/late-fees")
+    public LateFeeService.LateFeeRunResult calculateLateFees(
+            @PathVariable UUID cycleId,
+            @RequestParam(required = false) LocalDate asOf) {
+        return lateFeeService.calculateForCycle(cycleId,
+                asOf != null ? asOf : LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh")));
+    }
+
     @GetMapping(value = "/export", produces = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     public ResponseEntity<byte[]> exportBillingCycle(
             @PathVariable UUID cycleId,
@@ -69,5 +86,25 @@ public class BillingCycleInvoiceController {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
 
+    @GetMapping("/export/stream")
+    public ResponseEntity<StreamingResponseBody> streamBillingCycleExport(
+            @PathVariable UUID cycleId,
+            @RequestParam(required = false) String serviceCode,
+            @RequestParam(required = false) String month,
+            @RequestParam(required = false) UUID buildingId,
+            @RequestParam(required = false) String format) {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        String filename = String.format("billing_cycle_%s_%s.%s", cycleId.toString().substring(0, 8),
+                java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd")),
+                exportFormat.getExtension());
+
+        StreamingResponseBody body = out -> billingCycleExportService.streamBillingCycleExport(
+                cycleId, serviceCode, month, buildingId, exportFormat, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(exportFormat.getMediaType())
+                .body(body);
+    }
+}
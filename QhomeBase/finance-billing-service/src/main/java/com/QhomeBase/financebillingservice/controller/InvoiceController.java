@@ -2,6 +2,7 @@ package com.QhomeBase.financebillingservice.controller;
 
 import com.QhomeBase.financebillingservice.dto.*;
 import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.service.ExportFormat;
 import com.QhomeBase.financebillingservice.service.InvoiceExportService;
 import com.QhomeBase.financebillingservice.service.InvoiceService;
 import com.QhomeBase.financebillingservice.util.JwtUtil;
@@ -15,6 +16,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.util.HashMap;
@@ -32,6 +34,8 @@ public class InvoiceController {
     private final InvoiceExportService invoiceExportService;
     private final JwtUtil jwtUtil;
     private final VnpayService vnpayService;
+
+    private static final int MAX_BULK_INVOICES = 1000;
     
     @GetMapping("/resident/{residentId}")
     public ResponseEntity<List<InvoiceDto>> getInvoicesByResident(@PathVariable UUID residentId) {
@@ -84,6 +88,21 @@ public class InvoiceController {
         return ResponseEntity.ok(invoices);
     }
     
+    @GetMapping("/admin/search")
+    public ResponseEntity<InvoicePageDto> searchInvoicesForAdmin(
+            @RequestParam(required = false) String serviceCode,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) UUID unitId,
+            @RequestParam(required = false) UUID buildingId,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        InvoicePageDto page = invoiceService.searchInvoicesForAdmin(
+                serviceCode, status, unitId, buildingId, startDate, endDate, cursor, size);
+        return ResponseEntity.ok(page);
+    }
+    
     @GetMapping(value = "/admin/export", produces = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")
     public ResponseEntity<byte[]> exportInvoicesToExcel(
             @RequestParam(required = false) String serviceCode,
@@ -97,17 +116,7 @@ public class InvoiceController {
             byte[] bytes = invoiceExportService.exportInvoicesToExcel(
                     serviceCode, status, unitId, buildingId, startDate, endDate);
             
-            String filename;
-            if (month != null && !month.isBlank()) {
-                String monthFormatted = month.replace("-", "");
-                filename = String.format("danh_sach_hoa_don_%s.xlsx", monthFormatted);
-            } else if (startDate != null && !startDate.isBlank()) {
-                String monthFromDate = startDate.substring(0, 7).replace("-", "");
-                filename = String.format("danh_sach_hoa_don_%s.xlsx", monthFromDate);
-            } else {
-                filename = String.format("danh_sach_hoa_don_%s.xlsx", 
-                        java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd")));
-            }
+            String filename = buildInvoiceExportFilename(month, startDate, "xlsx");
             
             return ResponseEntity.ok()
                     .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
@@ -118,6 +127,40 @@ public class InvoiceController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    @GetMapping("/admin/export/stream")
+    public ResponseEntity<StreamingResponseBody> streamInvoicesExport(
+            @RequestParam(required = false) String serviceCode,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) UUID unitId,
+            @RequestParam(required = false) UUID buildingId,
+            @RequestParam(required = false) String startDate,
+            @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String month,
+            @RequestParam(required = false) String format) {
+        ExportFormat exportFormat = ExportFormat.fromParam(format);
+        String filename = buildInvoiceExportFilename(month, startDate, exportFormat.getExtension());
+
+        StreamingResponseBody body = out -> invoiceExportService.streamInvoicesExport(
+                serviceCode, status, unitId, buildingId, startDate, endDate, exportFormat, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(exportFormat.getMediaType())
+                .body(body);
+    }
+
+    private String buildInvoiceExportFilename(String month, String startDate, String extension) {
+        String suffix;
+        if (month != null && !month.isBlank()) {
+            suffix = month.replace("-", "");
+        } else if (startDate != null && startDate.length() >= 7) {
+            suffix = startDate.substring(0, 7).replace("-", "");
+        } else {
+            suffix = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMdd"));
+        }
+        return String.format("danh_sach_hoa_don_%s.%s", suffix, extension);
+    }
     
     @GetMapping("/resident/{residentId}/service/{serviceCode}")
     public ResponseEntity<List<InvoiceDto>> getInvoicesByResidentAndServiceCode(
@@ -133,6 +176,15 @@ public class InvoiceController {
         return ResponseEntity.status(HttpStatus.CREATED).body(invoice);
     }
 
+    @PostMapping("/bulk")
+    public ResponseEntity<List<InvoiceDto>> createInvoices(@RequestBody List<CreateInvoiceRequest> requests) {
+        if (requests.size() > MAX_BULK_INVOICES) {
+            throw new IllegalArgumentException("Bulk request exceeds " + MAX_BULK_INVOICES + " invoices");
+        }
+        List<InvoiceDto> invoices = invoiceService.createInvoices(requests);
+        return ResponseEntity.status(HttpStatus.CREATED).body(invoices);
+    }
+
     @PostMapping("/vehicle-registration-payment")
     public ResponseEntity<?> recordVehicleRegistrationPayment(@RequestBody VehicleRegistrationPaymentRequest request) {
         try {
@@ -298,6 +350,29 @@ public class InvoiceController {
         }
     }
 
+    /**
+     * Chuỗi tiêu thụ theo tháng (điện, nước, ...) cho một hoặc nhiều căn hộ trong một lần gọi
+     */
+    @GetMapping("/consumption/monthly")
+    public ResponseEntity<?> getConsumptionSeries(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestParam(value = "unitIds") List<UUID> unitIds,
+            @RequestParam(value = "serviceCodes", required = false) List<String> serviceCodes,
+            @RequestParam(value = "months", required = false) Integer months) {
+        UUID userId = jwtUtil.getUserIdFromHeader(authHeader);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Invalid or missing authentication token"));
+        }
+
+        try {
+            List<ConsumptionSeriesDto> series = invoiceService.getConsumptionSeries(userId, unitIds, serviceCodes, months);
+            return ResponseEntity.ok(Map.of("data", series));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PostMapping("/{invoiceId}/vnpay-url")
     public ResponseEntity<?> createVnpayUrl(
             @PathVariable UUID invoiceId,
@@ -1,6 +1,8 @@
 package com.QhomeBase.financebillingservice.controller;
 
 import com.QhomeBase.financebillingservice.dto.ImportedReadingDto;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportChunkRequest;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportChunkResponse;
 import com.QhomeBase.financebillingservice.dto.MeterReadingImportResponse;
 import com.QhomeBase.financebillingservice.service.MeterReadingImportService;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +30,24 @@ public class MeterReadingImportController {
         
         return ResponseEntity.status(HttpStatus.CREATED).body(response);
     }
+
+    /**
+     * Import theo chunk với header Idempotency-Key: 201 khi chunk được import, 200 khi trả lại kết quả đã có,
+     * 409 khi chunk đang được xử lý ở request khác, 503 khi có hóa đơn không ghi được (gửi lại cùng key)
+     */
+    @PostMapping("/import/chunks")
+    public ResponseEntity<MeterReadingImportChunkResponse> importChunk(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody MeterReadingImportChunkRequest request) {
+        MeterReadingImportChunkResponse response = importService.importChunk(idempotencyKey, request);
+        HttpStatus status = switch (response.getStatus()) {
+            case IMPORTED -> HttpStatus.CREATED;
+            case REPLAYED -> HttpStatus.OK;
+            case IN_PROGRESS -> HttpStatus.CONFLICT;
+            case FAILED -> HttpStatus.SERVICE_UNAVAILABLE;
+        };
+        return ResponseEntity.status(status).body(response);
+    }
 }
 
 
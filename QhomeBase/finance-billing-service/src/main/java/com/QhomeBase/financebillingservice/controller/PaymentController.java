@@ -1,7 +1,10 @@
 package com.QhomeBase.financebillingservice.controller;
 
+import com.QhomeBase.financebillingservice.dto.BulkSettlementRequest;
+import com.QhomeBase.financebillingservice.dto.BulkSettlementResponse;
 import com.QhomeBase.financebillingservice.dto.CreatePaymentRequest;
 import com.QhomeBase.financebillingservice.dto.PaymentDto;
+import com.QhomeBase.financebillingservice.service.PaymentAllocationService;
 import com.QhomeBase.financebillingservice.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
@@ -17,6 +20,7 @@ import java.util.UUID;
 public class PaymentController {
     
     private final PaymentService paymentService;
+    private final PaymentAllocationService paymentAllocationService;
     
     @PostMapping
     public ResponseEntity<PaymentDto> createPayment(@RequestBody CreatePaymentRequest request) {
@@ -24,6 +28,12 @@ public class PaymentController {
         return ResponseEntity.status(HttpStatus.CREATED).body(payment);
     }
     
+    @PostMapping("/bulk-settlements")
+    public ResponseEntity<BulkSettlementResponse> settleBulk(@RequestBody BulkSettlementRequest request) {
+        BulkSettlementResponse response = paymentAllocationService.settle(request);
+        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+    }
+    
     @GetMapping("/resident/{residentId}")
     public ResponseEntity<List<PaymentDto>> getPaymentsByResident(@PathVariable UUID residentId) {
         List<PaymentDto> payments = paymentService.getPaymentsByResident(residentId);
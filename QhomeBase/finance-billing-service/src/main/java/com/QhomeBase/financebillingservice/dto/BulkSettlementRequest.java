@@ -0,0 +1,26 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import com.QhomeBase.financebillingservice.model.PaymentMethod;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tất toán hàng loạt (vd. đối soát sao kê chuyển khoản): mỗi item là một khoản tiền nhận được của một căn hộ,
+ * được phân bổ vào các hóa đơn đang mở cũ nhất trước.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSettlementRequest {
+    private PaymentMethod method;
+    private UUID cashAccountId;
+    private String currency;
+    private String note;
+    private List<UnitSettlementRequest> items;
+}
@@ -0,0 +1,23 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkSettlementResponse {
+    private int paymentsCreated;
+    private int invoicesPaid;
+    private int invoicesPartiallyPaid;
+    private BigDecimal totalAmount;
+    private BigDecimal totalAllocated;
+    private BigDecimal totalUnapplied;
+    private List<UnitSettlementResult> results;
+}
@@ -0,0 +1,21 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumptionPointDto {
+    private String month; // "YYYY-MM"
+    private String monthDisplay; // "MM/yyyy"
+    private Integer year;
+    private Integer monthNumber; // 1-12
+    private BigDecimal quantity;
+    private BigDecimal amount;
+}
@@ -0,0 +1,19 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsumptionSeriesDto {
+    private UUID unitId;
+    private String serviceCode;
+    private List<ConsumptionPointDto> points; // tăng dần theo tháng, chỉ gồm các tháng có dữ liệu
+}
@@ -21,6 +21,8 @@ public class CreatePaymentRequest {
     private String currency;
     private String note;
     private UUID payerResidentId;
+    // Không truyền allocations mà có payerUnitId: tự tất toán các hóa đơn đang mở cũ nhất của căn hộ
+    private UUID payerUnitId;
     private List<PaymentAllocationDto> allocations;
 }
 
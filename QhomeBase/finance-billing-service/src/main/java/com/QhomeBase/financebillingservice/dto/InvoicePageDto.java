@@ -0,0 +1,24 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoicePageDto {
+    private List<InvoiceDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+    /**
+     * Chỉ tính ở trang đầu (không có cursor). Bị chặn trên bởi giới hạn đếm,
+     * khi đó {@code totalEstimateCapped = true}.
+     */
+    private Long totalEstimate;
+    private boolean totalEstimateCapped;
+}
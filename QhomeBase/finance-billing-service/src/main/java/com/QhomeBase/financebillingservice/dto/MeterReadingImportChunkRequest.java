@@ -0,0 +1,22 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Một chunk của lượt export chỉ số theo kỳ đọc; mọi chỉ số của cùng một căn hộ nằm trong cùng một chunk
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeterReadingImportChunkRequest {
+    private UUID readingCycleId;
+    private int chunkNo;
+    private List<ImportedReadingDto> readings;
+}
@@ -0,0 +1,29 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeterReadingImportChunkResponse {
+
+    public enum Status {
+        /** Chunk được import trong request này */
+        IMPORTED,
+        /** Chunk đã import trước đó, trả lại kết quả đã lưu */
+        REPLAYED,
+        /** Chunk đang được xử lý ở request khác, gửi lại sau */
+        IN_PROGRESS,
+        /** Một số hóa đơn của chunk không ghi được, gửi lại cùng key để import tiếp */
+        FAILED
+    }
+
+    private String idempotencyKey;
+    private int chunkNo;
+    private Status status;
+    private MeterReadingImportResponse result;
+}
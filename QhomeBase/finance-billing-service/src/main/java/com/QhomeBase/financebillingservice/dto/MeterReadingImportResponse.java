@@ -16,6 +16,8 @@ public class MeterReadingImportResponse {
     private int totalReadings;
     private int invoicesCreated;
     private int invoicesSkipped;
+    /** Số hóa đơn không ghi được do lỗi hệ thống (tính cả trong invoicesSkipped), gửi lại để import tiếp */
+    private int invoicesFailed;
     private List<UUID> invoiceIds;
     private List<String> errors;
     private String message;
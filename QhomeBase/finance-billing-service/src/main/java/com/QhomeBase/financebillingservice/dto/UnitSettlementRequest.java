@@ -0,0 +1,23 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnitSettlementRequest {
+    private UUID unitId;
+    private BigDecimal amount;
+    private UUID payerResidentId;
+    // Mã giao dịch ngân hàng / nội dung chuyển khoản, lưu vào ghi chú của payment
+    private String reference;
+    private OffsetDateTime paidAt;
+}
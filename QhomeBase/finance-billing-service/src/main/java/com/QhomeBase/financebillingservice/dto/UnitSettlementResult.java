@@ -0,0 +1,26 @@
+package com.QhomeBase.financebillingservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UnitSettlementResult {
+    private UUID unitId;
+    private UUID paymentId;
+    private String receiptNo;
+    private BigDecimal amount;
+    private BigDecimal allocated;
+    // Phần tiền chưa phân bổ được (căn hộ không còn hóa đơn mở)
+    private BigDecimal unapplied;
+    private List<PaymentAllocationDto> allocations;
+    private List<UUID> paidInvoiceIds;
+}
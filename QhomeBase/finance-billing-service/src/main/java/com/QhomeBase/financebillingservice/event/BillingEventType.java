@@ -0,0 +1,34 @@
+package com.QhomeBase.financebillingservice.event;
+
+import java.util.Arrays;
+
+/**
+ * Loại sự kiện ghi vào billing.outbox_events và routing key tương ứng trên exchange sự kiện billing
+ */
+public enum BillingEventType {
+    INVOICE_PUBLISHED("InvoicePublished", "invoice.published"),
+    INVOICE_PAID("InvoicePaid", "invoice.paid");
+
+    private final String type;
+    private final String routingKey;
+
+    BillingEventType(String type, String routingKey) {
+        this.type = type;
+        this.routingKey = routingKey;
+    }
+
+    public String type() {
+        return type;
+    }
+
+    public String routingKey() {
+        return routingKey;
+    }
+
+    public static BillingEventType of(String type) {
+        return Arrays.stream(values())
+                .filter(value -> value.type.equals(type))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown billing event type: " + type));
+    }
+}
@@ -0,0 +1,26 @@
+package com.QhomeBase.financebillingservice.event;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Hóa đơn đã được thanh toán. Email người nhận được đọc từ DB khi ghi sự kiện,
+ * để consumer gửi email xác nhận mà không phải gọi ngược lại các service khác.
+ */
+public record InvoicePaidEvent(
+        UUID eventId,
+        UUID invoiceId,
+        String invoiceCode,
+        UUID payerUnitId,
+        UUID payerResidentId,
+        BigDecimal totalAmount,
+        String currency,
+        OffsetDateTime paidAt,
+        String paymentGateway,
+        String txnRef,
+        String recipientEmail,
+        String recipientName,
+        OffsetDateTime occurredAt
+) {
+}
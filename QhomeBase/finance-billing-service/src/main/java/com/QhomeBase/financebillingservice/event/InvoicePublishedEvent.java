@@ -0,0 +1,30 @@
+package com.QhomeBase.financebillingservice.event;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Hóa đơn mới được phát hành cho căn hộ. customer-interaction-service dùng sự kiện này để gửi
+ * thông báo cho các thành viên hộ gia đình.
+ *
+ * @param usage tổng số lượng tiêu thụ khi hóa đơn chỉ có một dịch vụ đo theo đồng hồ (điện / nước), ngược lại null
+ */
+public record InvoicePublishedEvent(
+        UUID eventId,
+        UUID invoiceId,
+        String invoiceCode,
+        String status,
+        UUID payerUnitId,
+        UUID payerResidentId,
+        List<String> serviceCodes,
+        BigDecimal totalAmount,
+        String currency,
+        LocalDate dueDate,
+        BigDecimal usage,
+        String usageUnit,
+        OffsetDateTime occurredAt
+) {
+}
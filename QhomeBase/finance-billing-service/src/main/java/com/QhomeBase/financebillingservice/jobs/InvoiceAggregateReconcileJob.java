@@ -0,0 +1,39 @@
+package com.QhomeBase.financebillingservice.jobs;
+
+import com.QhomeBase.financebillingservice.service.InvoiceAggregateService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Dựng lại bảng tổng hợp dashboard từ dữ liệu hóa đơn gốc, mỗi kỳ một transaction,
+ * để sửa các sai lệch của cập nhật incremental (vd. thay đổi trạng thái từ ngoài ứng dụng).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceAggregateReconcileJob {
+
+    private final InvoiceAggregateService invoiceAggregateService;
+
+    @Scheduled(cron = "${billing.aggregates.reconcile-cron:0 30 2 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void reconcile() {
+        List<UUID> cycleIds = invoiceAggregateService.findCycleIds();
+        int failed = 0;
+        for (UUID cycleId : cycleIds) {
+            try {
+                invoiceAggregateService.rebuildCycle(cycleId);
+            } catch (Exception e) {
+                failed++;
+                log.error("❌ [InvoiceAggregateReconcileJob] Failed to rebuild aggregates for cycle {}: {}",
+                        cycleId, e.getMessage(), e);
+            }
+        }
+        log.info("✅ [InvoiceAggregateReconcileJob] Rebuilt aggregates for {}/{} cycles",
+                cycleIds.size() - failed, cycleIds.size());
+    }
+}
@@ -0,0 +1,50 @@
+package com.QhomeBase.financebillingservice.jobs;
+
+import com.QhomeBase.financebillingservice.service.InvoiceTotalsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Backfill một lần total_amount / category_totals cho các hóa đơn tạo trước khi có cột tổng tiền.
+ * Chạy khi ứng dụng đã sẵn sàng nhận request, mỗi lô một transaction; khi không còn hóa đơn thiếu tổng thì kết thúc ngay.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceTotalsBackfillJob {
+
+    private final InvoiceTotalsService invoiceTotalsService;
+
+    @Value("${billing.invoice-totals.backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${billing.invoice-totals.backfill.batch-size:500}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillMissingTotals() {
+        if (!enabled) {
+            return;
+        }
+
+        int total = 0;
+        try {
+            int processed;
+            do {
+                processed = invoiceTotalsService.backfillBatch(batchSize);
+                total += processed;
+            } while (processed > 0);
+        } catch (Exception e) {
+            log.error("❌ [InvoiceTotalsBackfillJob] Backfill stopped after {} invoices: {}", total, e.getMessage(), e);
+            return;
+        }
+
+        if (total > 0) {
+            log.info("✅ [InvoiceTotalsBackfillJob] Backfilled totals for {} invoices", total);
+        }
+    }
+}
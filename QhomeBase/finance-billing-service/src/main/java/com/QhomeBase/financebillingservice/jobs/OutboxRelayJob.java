@@ -0,0 +1,179 @@
+package com.QhomeBase.financebillingservice.jobs;
+
+import com.QhomeBase.financebillingservice.event.BillingEventType;
+import com.QhomeBase.financebillingservice.repository.OutboxRepository;
+import com.QhomeBase.financebillingservice.repository.OutboxRepository.OutboxEvent;
+import com.QhomeBase.scheduling.LeasedJobRunner;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Đẩy sự kiện trong billing.outbox_events lên RabbitMQ. Mỗi lô được khóa (SKIP LOCKED), gửi và chờ broker
+ * xác nhận (publisher confirm) trong cùng transaction, rồi mới đánh dấu đã gửi; lô gửi lỗi được lùi lịch thử lại.
+ * Tin được gửi với cờ mandatory: sự kiện broker trả về vì không có queue nào nhận (returned) vẫn được confirm,
+ * nên không đánh dấu đã gửi mà lùi lịch thử lại như lỗi gửi.
+ * Giao hàng là at-least-once: consumer phải bỏ qua sự kiện trùng theo eventId (message id).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelayJob {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxRepository outboxRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final LeasedJobRunner leasedJobRunner;
+
+    /** messageId -> lý do broker trả về; broker gửi basic.return trước ack của cùng tin nên đã có khi confirm xong */
+    private final Map<String, String> returnedEvents = new ConcurrentHashMap<>();
+
+    @Value("${billing.events.exchange:qhome.billing.events}")
+    private String exchange;
+
+    @Value("${billing.events.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${billing.events.relay.batch-size:100}")
+    private int batchSize;
+
+    @Value("${billing.events.relay.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${billing.events.relay.retry-base-seconds:5}")
+    private long retryBaseSeconds;
+
+    @Value("${billing.events.relay.retry-max-seconds:600}")
+    private long retryMaxSeconds;
+
+    @Value("${billing.events.retention-days:7}")
+    private int retentionDays;
+
+    @PostConstruct
+    void registerReturnsCallback() {
+        rabbitTemplate.setMandatory(true);
+        rabbitTemplate.setReturnsCallback(this::onReturned);
+    }
+
+    @Scheduled(fixedDelayString = "${billing.events.relay.interval-ms:1000}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            int published;
+            do {
+                published = relayBatch();
+            } while (published == batchSize);
+        } catch (Exception e) {
+            log.error("❌ [OutboxRelayJob] Error relaying billing events", e);
+        }
+    }
+
+    /**
+     * @return số sự kiện đã gửi thành công trong lô; 0 khi không còn sự kiện đến hạn hoặc lô gửi lỗi
+     */
+    int relayBatch() {
+        Integer published = transactionTemplate.execute(status -> {
+            List<OutboxEvent> events = outboxRepository.claimPending(batchSize);
+            if (events.isEmpty()) {
+                return 0;
+            }
+            List<UUID> ids = events.stream().map(OutboxEvent::id).toList();
+            try {
+                rabbitTemplate.invoke(operations -> {
+                    for (OutboxEvent event : events) {
+                        operations.send(exchange, BillingEventType.of(event.eventType()).routingKey(), toMessage(event));
+                    }
+                    operations.waitForConfirmsOrDie(confirmTimeoutMs);
+                    return null;
+                });
+            } catch (Exception e) {
+                ids.forEach(id -> returnedEvents.remove(id.toString()));
+                log.warn("⚠️ [OutboxRelayJob] Failed to publish {} billing event(s), will retry: {}",
+                        events.size(), e.getMessage());
+                outboxRepository.markFailed(ids, truncate(e.getMessage()), retryBaseSeconds, retryMaxSeconds);
+                return 0;
+            }
+
+            List<UUID> delivered = new ArrayList<>(ids.size());
+            for (UUID id : ids) {
+                String reason = returnedEvents.remove(id.toString());
+                if (reason == null) {
+                    delivered.add(id);
+                } else {
+                    log.warn("⚠️ [OutboxRelayJob] Billing event {} was returned unroutable, will retry: {}", id, reason);
+                    outboxRepository.markFailed(List.of(id), truncate(reason), retryBaseSeconds, retryMaxSeconds);
+                }
+            }
+            outboxRepository.markPublished(delivered);
+            return delivered.size();
+        });
+        int count = published != null ? published : 0;
+        if (count > 0) {
+            log.debug("[OutboxRelayJob] Published {} billing event(s)", count);
+        }
+        return count;
+    }
+
+    @Scheduled(cron = "${billing.events.cleanup-cron:0 30 3 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void purgePublished() {
+        leasedJobRunner.runExclusive("billing.outbox-cleanup", Duration.ofMinutes(30), () -> {
+            OffsetDateTime before = OffsetDateTime.now().minusDays(retentionDays);
+            int total = 0;
+            int deleted;
+            do {
+                deleted = outboxRepository.deletePublishedBefore(before, 5000);
+                total += deleted;
+            } while (deleted > 0);
+            log.info("🧹 [OutboxRelayJob] Deleted {} published billing event(s) older than {} days", total, retentionDays);
+        });
+    }
+
+    private void onReturned(ReturnedMessage returned) {
+        String messageId = returned.getMessage().getMessageProperties().getMessageId();
+        if (messageId != null) {
+            returnedEvents.put(messageId, String.format("Returned %d %s (exchange=%s, routingKey=%s)",
+                    returned.getReplyCode(), returned.getReplyText(), returned.getExchange(), returned.getRoutingKey()));
+        }
+    }
+
+    private Message toMessage(OutboxEvent event) {
+        return MessageBuilder.withBody(event.payload().getBytes(StandardCharsets.UTF_8))
+                .setContentType(MessageProperties.CONTENT_TYPE_JSON)
+                .setContentEncoding(StandardCharsets.UTF_8.name())
+                .setDeliveryMode(MessageDeliveryMode.PERSISTENT)
+                .setMessageId(event.id().toString())
+                .setType(event.eventType())
+                .setHeader("aggregateId", event.aggregateId().toString())
+                .build();
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
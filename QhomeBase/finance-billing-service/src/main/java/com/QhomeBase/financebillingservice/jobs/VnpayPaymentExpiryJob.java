@@ -1,97 +1,71 @@
 package com.QhomeBase.financebillingservice.jobs;
 
-import com.QhomeBase.financebillingservice.model.Invoice;
-import com.QhomeBase.financebillingservice.model.InvoiceStatus;
-import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceBatchRepository;
+import com.QhomeBase.scheduling.LeasedJobRunner;
+import com.QhomeBase.scheduling.Shard;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.List;
 
 /**
- * DISABLED: Invoice payment expiry job.
- * 
+ * Invoice payment expiry job, mặc định TẮT ({@code vnpay.payment.expiry.enabled=false}).
+ * <p>
  * For invoices (tiền điện, tiền nước), payments should NOT be auto-expired.
  * The system only checks if payment is successful and updates status to PAID.
  * If user doesn't complete payment, the invoice status remains unchanged.
- * 
- * This job is kept for reference but is disabled. Only card registrations use payment expiry logic.
+ * <p>
+ * Khi bật, job chỉ đánh dấu vnp_response_code = TIMEOUT cho giao dịch VNPAY treo (không đổi trạng thái hóa đơn),
+ * bằng các câu UPDATE hàng loạt; mỗi shard chỉ được một replica xử lý (lease trong billing.job_leases).
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class VnpayPaymentExpiryJob {
 
-    private final InvoiceRepository invoiceRepository;
+    private static final String JOB_NAME = "billing.vnpay-payment-expiry";
+
+    private final InvoiceBatchRepository invoiceBatchRepository;
+    private final LeasedJobRunner leasedJobRunner;
+
+    @Value("${vnpay.payment.expiry.enabled:false}")
+    private boolean enabled;
 
     @Value("${vnpay.payment.timeout-minutes:10}")
     private int timeoutMinutes;
 
-    @Value("${vnpay.payment.sweep-interval-ms:60000}")
-    private long sweepIntervalMs;
+    @Value("${vnpay.payment.expiry.shards:1}")
+    private int shardCount;
+
+    @Value("${vnpay.payment.expiry.batch-size:500}")
+    private int batchSize;
+
+    @Value("${vnpay.payment.expiry.lease-seconds:300}")
+    private long leaseSeconds;
 
-    /**
-     * DISABLED: Invoice payments should not be auto-expired.
-     * For invoices (tiền điện, tiền nước), the system only checks if payment is successful
-     * and updates status to PAID. If user doesn't complete payment, status remains unchanged.
-     * 
-     * This job is kept for reference but is disabled.
-     */
-    // @Scheduled(fixedDelayString = "${vnpay.payment.sweep-interval-ms:60000}")
-    @Transactional
+    @Scheduled(fixedDelayString = "${vnpay.payment.sweep-interval-ms:60000}")
     public void expirePendingVnpayPayments() {
-        // DISABLED: Invoice payments should not be auto-expired
-        // Only card registrations use payment expiry logic
-        log.debug("⏭️ [VnpayPaymentExpiryJob] Invoice payment expiry is disabled - invoices only update status when payment succeeds");
-        return;
-        
-        /* Original implementation (disabled):
+        if (!enabled) {
+            return;
+        }
         try {
             final OffsetDateTime threshold = OffsetDateTime.now().minusMinutes(timeoutMinutes);
-            
-            // Tìm các invoice có VNPay payment đang pending quá thời gian timeout
-            List<Invoice> expiredPayments = invoiceRepository.findExpiredVnpayPayments(threshold);
-
-            if (expiredPayments.isEmpty()) {
-                return;
-            }
-
-            log.info("⏰ [VnpayPaymentExpiryJob] Found {} VNPay payment(s) expired (older than {} minutes)", 
-                    expiredPayments.size(), timeoutMinutes);
-
-            int expiredCount = 0;
-            for (Invoice invoice : expiredPayments) {
-                // Chỉ expire nếu chưa được thanh toán
-                if (InvoiceStatus.PAID.equals(invoice.getStatus())) {
-                    continue;
-                }
-
-                // Set response code to indicate timeout
-                invoice.setVnpResponseCode("TIMEOUT");
-                
-                // Log the expiration
-                log.info("❌ [VnpayPaymentExpiryJob] Expiring VNPay payment for invoice {} (initiated at: {}, elapsed: {} minutes)", 
-                        invoice.getId(), 
-                        invoice.getVnpayInitiatedAt(),
-                        java.time.Duration.between(invoice.getVnpayInitiatedAt(), OffsetDateTime.now()).toMinutes());
-
-                invoiceRepository.save(invoice);
-                expiredCount++;
-            }
-
-            if (expiredCount > 0) {
-                log.info("✅ [VnpayPaymentExpiryJob] Expired {} VNPay payment(s) after {} minutes timeout", 
-                        expiredCount, timeoutMinutes);
-            }
-
+            leasedJobRunner.runSharded(JOB_NAME, shardCount, Duration.ofSeconds(leaseSeconds),
+                    shard -> expireShard(shard, threshold));
         } catch (Exception e) {
             log.error("❌ [VnpayPaymentExpiryJob] Error expiring pending VNPay payments", e);
         }
-        */
+    }
+
+    private void expireShard(Shard shard, OffsetDateTime threshold) {
+        int expired = invoiceBatchRepository.expireStaleVnpayPayments(threshold, shard, batchSize);
+        if (expired > 0) {
+            log.info("✅ [VnpayPaymentExpiryJob] Expired {} VNPay payment(s) after {} minutes timeout (shard {})",
+                    expired, timeoutMinutes, shard);
+        }
     }
 }
@@ -6,8 +6,10 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.Map;
 import java.util.UUID;
 
 @Entity
@@ -87,4 +89,13 @@ public class Invoice {
 
     @Column(name = "last_reminder_at")
     private OffsetDateTime lastReminderAt;
+
+    /** Tổng tiền các invoice line, được cập nhật mỗi khi ghi line; null với hóa đơn chưa backfill */
+    @Column(name = "total_amount", precision = 14, scale = 4)
+    private BigDecimal totalAmount;
+
+    /** Tổng tiền theo nhóm dịch vụ (ELECTRICITY, WATER, PARKING, ...) */
+    @Column(name = "category_totals", columnDefinition = "jsonb")
+    @org.hibernate.annotations.JdbcTypeCode(org.hibernate.type.SqlTypes.JSON)
+    private Map<String, BigDecimal> categoryTotals;
 }
\ No newline at end of file
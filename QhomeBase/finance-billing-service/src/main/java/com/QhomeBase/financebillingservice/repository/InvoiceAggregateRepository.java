@@ -0,0 +1,141 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import com.QhomeBase.financebillingservice.dto.BuildingInvoiceSummaryDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bảng tổng hợp billing.invoice_cycle_aggregates cho dashboard kỳ thanh toán.
+ * Cập nhật theo delta (cộng / trừ một nhóm hóa đơn vào một trạng thái) và dựng lại từ dữ liệu gốc theo từng kỳ.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InvoiceAggregateRepository {
+
+    public static final String ALL_SERVICES = "ALL";
+
+    /**
+     * Một dòng cho mỗi (hóa đơn, service_code): dòng 'ALL' là tổng cả hóa đơn, các dòng còn lại theo dịch vụ
+     */
+    private static final String INVOICE_SERVICE_AMOUNTS = """
+            SELECT i.id AS invoice_id, i.cycle_id, u.building_id, i.status::text AS status,
+                   x.service_code, x.amount
+            FROM billing.invoices i
+            JOIN data.units u ON u.id = i.payer_unit_id
+            CROSS JOIN LATERAL (
+                SELECT 'ALL' AS service_code,
+                       COALESCE(i.total_amount,
+                                (SELECT SUM(l.quantity * l.unit_price + l.tax_amount)
+                                 FROM billing.invoice_lines l
+                                 WHERE l.invoice_id = i.id),
+                                0) AS amount
+                UNION ALL
+                SELECT COALESCE(UPPER(l.service_code), 'UNKNOWN'), SUM(l.quantity * l.unit_price + l.tax_amount)
+                FROM billing.invoice_lines l
+                WHERE l.invoice_id = i.id
+                GROUP BY COALESCE(UPPER(l.service_code), 'UNKNOWN')
+            ) x
+            WHERE i.cycle_id IS NOT NULL
+              AND u.building_id IS NOT NULL
+            """;
+
+    private static final String APPLY_DELTA = """
+            INSERT INTO billing.invoice_cycle_aggregates AS a
+                (cycle_id, building_id, status, service_code, invoice_count, total_amount, updated_at)
+            SELECT d.cycle_id, d.building_id, :status, d.service_code,
+                   :sign * COUNT(*), :sign * SUM(d.amount), now()
+            FROM (""" + INVOICE_SERVICE_AMOUNTS + """
+                  AND i.id IN (:invoiceIds)
+            ) d
+            GROUP BY d.cycle_id, d.building_id, d.service_code
+            ON CONFLICT (cycle_id, building_id, status, service_code) DO UPDATE
+            SET invoice_count = a.invoice_count + EXCLUDED.invoice_count,
+                total_amount = a.total_amount + EXCLUDED.total_amount,
+                updated_at = now()
+            """;
+
+    private static final String DELETE_CYCLE = """
+            DELETE FROM billing.invoice_cycle_aggregates WHERE cycle_id = :cycleId
+            """;
+
+    private static final String REBUILD_CYCLE = """
+            INSERT INTO billing.invoice_cycle_aggregates
+                (cycle_id, building_id, status, service_code, invoice_count, total_amount, updated_at)
+            SELECT d.cycle_id, d.building_id, d.status, d.service_code, COUNT(*), SUM(d.amount), now()
+            FROM (""" + INVOICE_SERVICE_AMOUNTS + """
+                  AND i.cycle_id = :cycleId
+            ) d
+            GROUP BY d.cycle_id, d.building_id, d.status, d.service_code
+            """;
+
+    private static final String LOCK_CYCLE = "SELECT pg_advisory_xact_lock(hashtext(CAST(:cycleId AS text)))";
+
+    private static final String FIND_CYCLE_IDS = """
+            SELECT DISTINCT cycle_id FROM billing.invoices WHERE cycle_id IS NOT NULL
+            UNION
+            SELECT DISTINCT cycle_id FROM billing.invoice_cycle_aggregates
+            """;
+
+    private static final String SUMMARIZE = """
+            SELECT a.building_id, b.code AS building_code, b.name AS building_name,
+                   a.status, a.total_amount, a.invoice_count
+            FROM billing.invoice_cycle_aggregates a
+            LEFT JOIN data.buildings b ON b.id = a.building_id
+            WHERE a.cycle_id = :cycleId
+              AND a.service_code = :serviceCode
+              AND a.invoice_count > 0
+            ORDER BY b.code, a.status
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Cộng ({@code sign} = 1) hoặc trừ ({@code sign} = -1) các hóa đơn vào nhóm trạng thái {@code status}.
+     * Số tiền và tòa nhà lấy từ dữ liệu hiện tại của hóa đơn, nên trạng thái được truyền vào thay vì đọc từ DB.
+     */
+    public void applyDelta(Collection<UUID> invoiceIds, String status, int sign) {
+        if (invoiceIds.isEmpty()) {
+            return;
+        }
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("invoiceIds", invoiceIds)
+                .addValue("status", status)
+                .addValue("sign", sign);
+        jdbcTemplate.update(APPLY_DELTA, params);
+    }
+
+    /**
+     * Dựng lại toàn bộ dòng tổng hợp của một kỳ (phải gọi trong transaction).
+     * Advisory lock theo kỳ để hai lần dựng lại cùng kỳ không chồng lên nhau.
+     */
+    public void rebuildCycle(UUID cycleId) {
+        MapSqlParameterSource params = new MapSqlParameterSource("cycleId", cycleId);
+        jdbcTemplate.query(LOCK_CYCLE, params, rs -> null);
+        jdbcTemplate.update(DELETE_CYCLE, params);
+        jdbcTemplate.update(REBUILD_CYCLE, params);
+    }
+
+    public List<UUID> findCycleIds() {
+        return jdbcTemplate.queryForList(FIND_CYCLE_IDS, new MapSqlParameterSource(), UUID.class);
+    }
+
+    public List<BuildingInvoiceSummaryDto> summarizeByCycle(UUID cycleId, String serviceCode) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cycleId", cycleId)
+                .addValue("serviceCode", serviceCode);
+        return jdbcTemplate.query(SUMMARIZE, params, (rs, rowNum) -> BuildingInvoiceSummaryDto.builder()
+                .buildingId(rs.getObject("building_id", UUID.class))
+                .buildingCode(rs.getString("building_code"))
+                .buildingName(rs.getString("building_name"))
+                .status(rs.getString("status"))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .invoiceCount(rs.getLong("invoice_count"))
+                .build());
+    }
+}
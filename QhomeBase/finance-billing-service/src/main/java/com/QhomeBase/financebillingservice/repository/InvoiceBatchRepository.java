@@ -0,0 +1,208 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceLine;
+import com.QhomeBase.scheduling.Shard;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ghi hóa đơn và invoice lines bằng JDBC batch insert.
+ * Id phải được gán sẵn trước khi gọi để không cần đọc lại sau khi insert.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InvoiceBatchRepository {
+
+    private static final String INSERT_INVOICE = """
+            INSERT INTO billing.invoices (
+                id, code, issued_at, due_date, status, currency,
+                bill_to_name, bill_to_address, bill_to_contact,
+                payer_unit_id, payer_resident_id, cycle_id,
+                payment_gateway, vnp_transaction_ref, vnp_transaction_no,
+                vnp_bank_code, vnp_card_type, vnp_response_code,
+                vnpay_initiated_at, paid_at, reminder_count, last_reminder_at,
+                total_amount, category_totals)
+            VALUES (
+                :id, :code, :issuedAt, :dueDate, CAST(:status AS billing.inv_status), :currency,
+                :billToName, :billToAddress, :billToContact,
+                :payerUnitId, :payerResidentId, :cycleId,
+                :paymentGateway, :vnpTransactionRef, :vnpTransactionNo,
+                :vnpBankCode, :vnpCardType, :vnpResponseCode,
+                :vnpayInitiatedAt, :paidAt, :reminderCount, :lastReminderAt,
+                :totalAmount, CAST(:categoryTotals AS jsonb))
+            """;
+
+    private static final String UPDATE_TOTALS = """
+            UPDATE billing.invoices
+            SET total_amount = :totalAmount,
+                category_totals = CAST(:categoryTotals AS jsonb)
+            WHERE id = :id
+            """;
+
+    private static final String LOCK_IDS_WITHOUT_TOTALS = """
+            SELECT id
+            FROM billing.invoices
+            WHERE total_amount IS NULL
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    /**
+     * Đánh dấu TIMEOUT cho giao dịch VNPAY treo quá hạn; xóa vnpay_initiated_at để dòng rời khỏi partial index
+     */
+    private static final String EXPIRE_STALE_VNPAY = """
+            WITH batch AS (
+                SELECT i.id
+                FROM billing.invoices i
+                WHERE i.vnpay_initiated_at IS NOT NULL
+                  AND i.vnpay_initiated_at < :threshold
+                  AND i.payment_gateway = 'VNPAY'
+                  AND i.status <> 'PAID'
+                  AND %s
+                LIMIT :batchSize
+                FOR UPDATE SKIP LOCKED
+            )
+            UPDATE billing.invoices u
+            SET vnp_response_code = 'TIMEOUT',
+                vnpay_initiated_at = NULL
+            FROM batch
+            WHERE u.id = batch.id
+            RETURNING u.id
+            """.formatted(Shard.predicate("i.id"));
+
+    private static final String INSERT_LINE = """
+            INSERT INTO billing.invoice_lines (
+                id, invoice_id, service_date, description, quantity, unit,
+                unit_price, tax_rate, tax_amount, service_code,
+                external_ref_type, external_ref_id)
+            VALUES (
+                :id, :invoiceId, :serviceDate, :description, :quantity, :unit,
+                :unitPrice, :taxRate, :taxAmount, :serviceCode,
+                :externalRefType, :externalRefId)
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public void insertAll(List<Invoice> invoices, List<InvoiceLine> lines) {
+        if (!invoices.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_INVOICE, invoices.stream()
+                    .map(this::invoiceParams)
+                    .toArray(SqlParameterSource[]::new));
+        }
+        if (!lines.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_LINE, lines.stream()
+                    .map(this::lineParams)
+                    .toArray(SqlParameterSource[]::new));
+        }
+    }
+
+    /**
+     * Ghi lại total_amount / category_totals đã tính cho các hóa đơn
+     */
+    public void updateTotals(List<Invoice> invoices) {
+        if (invoices.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_TOTALS, invoices.stream()
+                .map(invoice -> new MapSqlParameterSource()
+                        .addValue("id", invoice.getId())
+                        .addValue("totalAmount", invoice.getTotalAmount())
+                        .addValue("categoryTotals", toJson(invoice.getCategoryTotals())))
+                .toArray(SqlParameterSource[]::new));
+    }
+
+    /**
+     * Khóa và trả về tối đa {@code limit} hóa đơn chưa có total_amount (phải gọi trong transaction)
+     */
+    public List<UUID> lockIdsWithoutTotals(int limit) {
+        return jdbcTemplate.queryForList(LOCK_IDS_WITHOUT_TOTALS,
+                new MapSqlParameterSource("limit", limit), UUID.class);
+    }
+
+    /**
+     * Hết hạn các giao dịch VNPAY khởi tạo trước {@code threshold} thuộc {@code shard},
+     * theo từng lô {@code batchSize} dòng (dòng đang bị khóa bởi callback được bỏ qua, xử lý ở lần quét sau)
+     *
+     * @return số hóa đơn đã cập nhật
+     */
+    public int expireStaleVnpayPayments(OffsetDateTime threshold, Shard shard, int batchSize) {
+        MapSqlParameterSource params = shard.addTo(new MapSqlParameterSource()
+                .addValue("threshold", threshold)
+                .addValue("batchSize", batchSize));
+        int total = 0;
+        List<UUID> updated;
+        do {
+            updated = jdbcTemplate.queryForList(EXPIRE_STALE_VNPAY, params, UUID.class);
+            total += updated.size();
+        } while (updated.size() == batchSize);
+        return total;
+    }
+
+    private String toJson(Map<String, BigDecimal> categoryTotals) {
+        if (categoryTotals == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(categoryTotals);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize category totals", e);
+        }
+    }
+
+    private SqlParameterSource invoiceParams(Invoice invoice) {
+        return new MapSqlParameterSource()
+                .addValue("id", invoice.getId())
+                .addValue("code", invoice.getCode())
+                .addValue("issuedAt", invoice.getIssuedAt())
+                .addValue("dueDate", invoice.getDueDate())
+                .addValue("status", invoice.getStatus().name())
+                .addValue("currency", invoice.getCurrency())
+                .addValue("billToName", invoice.getBillToName())
+                .addValue("billToAddress", invoice.getBillToAddress())
+                .addValue("billToContact", invoice.getBillToContact())
+                .addValue("payerUnitId", invoice.getPayerUnitId())
+                .addValue("payerResidentId", invoice.getPayerResidentId())
+                .addValue("cycleId", invoice.getCycleId())
+                .addValue("paymentGateway", invoice.getPaymentGateway())
+                .addValue("vnpTransactionRef", invoice.getVnpTransactionRef())
+                .addValue("vnpTransactionNo", invoice.getVnpTransactionNo())
+                .addValue("vnpBankCode", invoice.getVnpBankCode())
+                .addValue("vnpCardType", invoice.getVnpCardType())
+                .addValue("vnpResponseCode", invoice.getVnpResponseCode())
+                .addValue("vnpayInitiatedAt", invoice.getVnpayInitiatedAt())
+                .addValue("paidAt", invoice.getPaidAt())
+                .addValue("reminderCount", invoice.getReminderCount() != null ? invoice.getReminderCount() : 0)
+                .addValue("lastReminderAt", invoice.getLastReminderAt())
+                .addValue("totalAmount", invoice.getTotalAmount())
+                .addValue("categoryTotals", toJson(invoice.getCategoryTotals()));
+    }
+
+    private SqlParameterSource lineParams(InvoiceLine line) {
+        return new MapSqlParameterSource()
+                .addValue("id", line.getId())
+                .addValue("invoiceId", line.getInvoiceId())
+                .addValue("serviceDate", line.getServiceDate())
+                .addValue("description", line.getDescription())
+                .addValue("quantity", line.getQuantity())
+                .addValue("unit", line.getUnit())
+                .addValue("unitPrice", line.getUnitPrice())
+                .addValue("taxRate", line.getTaxRate())
+                .addValue("taxAmount", line.getTaxAmount())
+                .addValue("serviceCode", line.getServiceCode())
+                .addValue("externalRefType", line.getExternalRefType())
+                .addValue("externalRefId", line.getExternalRefId());
+    }
+}
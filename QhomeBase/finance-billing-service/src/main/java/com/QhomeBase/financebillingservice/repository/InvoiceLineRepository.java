@@ -2,27 +2,72 @@ package com.QhomeBase.financebillingservice.repository;
 
 import com.QhomeBase.financebillingservice.model.InvoiceLine;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 @Repository
 public interface InvoiceLineRepository extends JpaRepository<InvoiceLine, UUID> {
+
+    /**
+     * Số invoice id tối đa trong một mệnh đề IN, tránh vượt giới hạn tham số của PostgreSQL
+     */
+    int IN_CLAUSE_CHUNK_SIZE = 1000;
     
     List<InvoiceLine> findByInvoiceId(UUID invoiceId);
-    
+
+    /**
+     * Tổng tiền tính trực tiếp từ invoice lines, chỉ dùng cho hóa đơn chưa có total_amount
+     */
+    @Query(value = """
+            SELECT COALESCE(SUM(l.quantity * l.unit_price + l.tax_amount), 0)
+            FROM billing.invoice_lines l
+            WHERE l.invoice_id = :invoiceId
+            """, nativeQuery = true)
+    BigDecimal sumLineTotalByInvoiceId(@Param("invoiceId") UUID invoiceId);
+
+    List<InvoiceLine> findByInvoiceIdIn(Collection<UUID> invoiceIds);
+
     List<InvoiceLine> findByExternalRefId(UUID externalRefId);
     
     List<InvoiceLine> findByServiceCode(String serviceCode);
     
     List<InvoiceLine> findByInvoiceIdAndServiceCode(UUID invoiceId, String serviceCode);
-}
-
-
-
-
-
-
 
+    @Query(value = """
+    SELECT DISTINCT UPPER(TRIM(il.service_code))
+    FROM billing.invoice_lines il
+    JOIN billing.invoices i ON i.id = il.invoice_id
+    WHERE i.cycle_id = :cycleId
+      AND il.service_code IS NOT NULL
+      AND TRIM(il.service_code) <> ''
+    """, nativeQuery = true)
+    List<String> findDistinctServiceCodesByCycleId(@Param("cycleId") UUID cycleId);
 
+    /**
+     * Lấy toàn bộ invoice lines của nhiều hóa đơn bằng truy vấn IN (chia lô), nhóm theo invoiceId.
+     * Hóa đơn không có line sẽ không có key trong map.
+     */
+    default Map<UUID, List<InvoiceLine>> findGroupedByInvoiceIds(Collection<UUID> invoiceIds) {
+        Map<UUID, List<InvoiceLine>> grouped = new HashMap<>();
+        if (invoiceIds == null || invoiceIds.isEmpty()) {
+            return grouped;
+        }
+        List<UUID> ids = new ArrayList<>(invoiceIds);
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + IN_CLAUSE_CHUNK_SIZE, ids.size()));
+            for (InvoiceLine line : findByInvoiceIdIn(chunk)) {
+                grouped.computeIfAbsent(line.getInvoiceId(), key -> new ArrayList<>()).add(line);
+            }
+        }
+        return grouped;
+    }
+}
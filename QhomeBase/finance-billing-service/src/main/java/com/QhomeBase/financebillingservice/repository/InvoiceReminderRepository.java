@@ -0,0 +1,114 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Quét hóa đơn PUBLISHED đến hạn nhắc / chuyển UNPAID.
+ * Mỗi lần quét là một câu UPDATE ... RETURNING duy nhất: vừa "nhận" hóa đơn (tăng reminder_count
+ * hoặc đổi trạng thái) vừa trả về tổng tiền (total_amount đã lưu, hoặc SUM trên lines nếu chưa backfill)
+ * và building của căn hộ.
+ * Điều kiện COALESCE(last_reminder_at, issued_at) dùng partial index idx_invoices_published_reminder_at.
+ */
+@Repository
+@RequiredArgsConstructor
+public class InvoiceReminderRepository {
+
+    private static final String DUE_INVOICE_COLUMNS = """
+            SELECT c.id, c.code, c.due_date, c.payer_resident_id, c.payer_unit_id, c.reminder_count,
+                   u.building_id,
+                   COALESCE(c.total_amount, t.total_amount, 0) AS total_amount
+            FROM claimed c
+            LEFT JOIN data.units u ON u.id = c.payer_unit_id
+            LEFT JOIN (
+                SELECT l.invoice_id, SUM(l.quantity * l.unit_price + l.tax_amount) AS total_amount
+                FROM billing.invoice_lines l
+                WHERE l.invoice_id IN (SELECT id FROM claimed WHERE total_amount IS NULL)
+                GROUP BY l.invoice_id
+            ) t ON t.invoice_id = c.id
+            ORDER BY c.payer_resident_id, c.due_date
+            """;
+
+    private static final String CLAIM_REMINDERS = """
+            WITH claimed AS (
+                UPDATE billing.invoices i
+                SET reminder_count = i.reminder_count + 1,
+                    last_reminder_at = :now
+                WHERE i.status = 'PUBLISHED'
+                  AND COALESCE(i.last_reminder_at, i.issued_at) <= :cutoff
+                  AND i.issued_at <= :cutoff
+                  AND i.reminder_count < :maxReminders
+                  AND i.payer_resident_id IS NOT NULL
+                RETURNING i.id, i.code, i.due_date, i.payer_resident_id, i.payer_unit_id, i.reminder_count, i.total_amount
+            )
+            """ + DUE_INVOICE_COLUMNS;
+
+    private static final String MARK_UNPAID = """
+            WITH claimed AS (
+                UPDATE billing.invoices i
+                SET status = 'UNPAID'
+                WHERE i.status = 'PUBLISHED'
+                  AND COALESCE(i.last_reminder_at, i.issued_at) <= :cutoff
+                  AND i.last_reminder_at IS NOT NULL
+                  AND i.reminder_count >= :finalReminder
+                RETURNING i.id, i.code, i.due_date, i.payer_resident_id, i.payer_unit_id, i.reminder_count, i.total_amount
+            )
+            """ + DUE_INVOICE_COLUMNS;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Nhận các hóa đơn đã qua {@code cutoff} kể từ lúc phát hành / lần nhắc cuối và chưa nhắc đủ số lần:
+     * tăng reminder_count, đặt last_reminder_at = now. reminder_count trả về là số thứ tự lần nhắc này.
+     */
+    public List<DueInvoice> claimReminders(OffsetDateTime now, OffsetDateTime cutoff, int maxReminders) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("now", now)
+                .addValue("cutoff", cutoff)
+                .addValue("maxReminders", maxReminders);
+        return jdbcTemplate.query(CLAIM_REMINDERS, params, this::mapDueInvoice);
+    }
+
+    /**
+     * Chuyển sang UNPAID (một câu UPDATE) các hóa đơn đã nhắc đủ {@code finalReminder} lần
+     * và lần cảnh báo cuối đã trước {@code cutoff}.
+     */
+    public List<DueInvoice> markUnpaid(OffsetDateTime cutoff, int finalReminder) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("cutoff", cutoff)
+                .addValue("finalReminder", finalReminder);
+        return jdbcTemplate.query(MARK_UNPAID, params, this::mapDueInvoice);
+    }
+
+    private DueInvoice mapDueInvoice(ResultSet rs, int rowNum) throws SQLException {
+        return new DueInvoice(
+                rs.getObject("id", UUID.class),
+                rs.getString("code"),
+                rs.getObject("due_date", LocalDate.class),
+                rs.getObject("payer_resident_id", UUID.class),
+                rs.getObject("payer_unit_id", UUID.class),
+                rs.getObject("building_id", UUID.class),
+                rs.getInt("reminder_count"),
+                rs.getBigDecimal("total_amount"));
+    }
+
+    public record DueInvoice(UUID id,
+                             String code,
+                             LocalDate dueDate,
+                             UUID residentId,
+                             UUID unitId,
+                             UUID buildingId,
+                             int reminderCount,
+                             BigDecimal totalAmount) {
+    }
+}
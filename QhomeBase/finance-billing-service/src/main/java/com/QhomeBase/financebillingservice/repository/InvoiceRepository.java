@@ -67,10 +67,12 @@ public interface InvoiceRepository extends JpaRepository<Invoice, UUID> {
            b.code as buildingCode,
            b.name as buildingName,
            i.status as status,
-           COALESCE(SUM((il.quantity * il.unit_price) + il.tax_amount), 0) as totalAmount,
-           COUNT(DISTINCT i.id) as invoiceCount
+           COALESCE(SUM(COALESCE(i.total_amount,
+                    (SELECT SUM((il.quantity * il.unit_price) + il.tax_amount)
+                     FROM billing.invoice_lines il
+                     WHERE il.invoice_id = i.id))), 0) as totalAmount,
+           COUNT(i.id) as invoiceCount
     FROM billing.invoices i
-    LEFT JOIN billing.invoice_lines il ON il.invoice_id = i.id
     LEFT JOIN data.units u ON u.id = i.payer_unit_id
     LEFT JOIN data.buildings b ON b.id = u.building_id
     WHERE i.cycle_id = :cycleId
@@ -0,0 +1,342 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceLine;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Tìm kiếm hóa đơn cho trang admin: toàn bộ điều kiện lọc được đẩy xuống SQL,
+ * phân trang keyset theo (issued_at, id) giảm dần, invoice lines được lấy cùng một câu join.
+ * Ngoài ra cung cấp chế độ duyệt tuần tự (stream) cho các export lớn.
+ */
+@Repository
+public class InvoiceSearchRepository {
+
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private static final String STREAM_COLUMNS = """
+            SELECT i.id, i.code, i.issued_at, i.due_date, i.status::text AS status, i.currency,
+                   i.bill_to_name, i.bill_to_address, i.bill_to_contact,
+                   i.payer_unit_id, i.payer_resident_id, i.cycle_id,
+                   i.payment_gateway, i.vnp_transaction_ref, i.vnp_transaction_no,
+                   i.vnp_bank_code, i.vnp_card_type, i.vnp_response_code,
+                   i.vnpay_initiated_at, i.paid_at, i.reminder_count, i.last_reminder_at, i.total_amount,
+                   u.building_id AS unit_building_id, u.code AS unit_code, u.floor AS unit_floor,
+                   il.id AS line_id, il.service_date, il.description, il.quantity, il.unit,
+                   il.unit_price, il.tax_rate, il.tax_amount, il.service_code,
+                   il.external_ref_type, il.external_ref_id
+            FROM billing.invoices i
+            LEFT JOIN data.units u ON u.id = i.payer_unit_id
+            LEFT JOIN billing.invoice_lines il ON il.invoice_id = i.id
+            WHERE 1 = 1""";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    // Template riêng có fetch size để PostgreSQL trả kết quả theo từng lô thay vì nạp hết vào bộ nhớ
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+
+    public InvoiceSearchRepository(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        JdbcTemplate streaming = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        streaming.setFetchSize(STREAM_FETCH_SIZE);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streaming);
+    }
+
+    public SearchPage search(SearchFilter filter, Cursor after, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder where = buildWhere(filter, params);
+
+        if (after != null) {
+            where.append(" AND (i.issued_at, i.id) < (:cursorIssuedAt, :cursorId)");
+            params.addValue("cursorIssuedAt", after.issuedAt());
+            params.addValue("cursorId", after.id());
+        }
+        // Lấy dư 1 bản ghi để biết còn trang sau hay không
+        params.addValue("limit", limit + 1);
+
+        String sql = """
+                WITH page AS (
+                    SELECT i.*
+                    FROM billing.invoices i
+                    WHERE 1 = 1""" + where + """
+
+                    ORDER BY i.issued_at DESC, i.id DESC
+                    LIMIT :limit
+                )
+                SELECT p.id, p.code, p.issued_at, p.due_date, p.status::text AS status, p.currency,
+                       p.bill_to_name, p.bill_to_address, p.bill_to_contact,
+                       p.payer_unit_id, p.payer_resident_id, p.cycle_id,
+                       p.payment_gateway, p.vnp_transaction_ref, p.vnp_transaction_no,
+                       p.vnp_bank_code, p.vnp_card_type, p.vnp_response_code,
+                       p.vnpay_initiated_at, p.paid_at, p.reminder_count, p.last_reminder_at, p.total_amount,
+                       il.id AS line_id, il.service_date, il.description, il.quantity, il.unit,
+                       il.unit_price, il.tax_rate, il.tax_amount, il.service_code,
+                       il.external_ref_type, il.external_ref_id
+                FROM page p
+                LEFT JOIN billing.invoice_lines il ON il.invoice_id = p.id
+                ORDER BY p.issued_at DESC, p.id DESC
+                """;
+
+        Map<UUID, Invoice> invoices = new LinkedHashMap<>();
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = new LinkedHashMap<>();
+
+        jdbcTemplate.query(sql, params, rs -> {
+            UUID invoiceId = rs.getObject("id", UUID.class);
+            if (!invoices.containsKey(invoiceId)) {
+                invoices.put(invoiceId, mapInvoice(rs));
+                linesByInvoiceId.put(invoiceId, new ArrayList<>());
+            }
+            UUID lineId = rs.getObject("line_id", UUID.class);
+            if (lineId != null) {
+                linesByInvoiceId.get(invoiceId).add(mapLine(rs, lineId, invoiceId));
+            }
+        });
+
+        List<Invoice> rows = new ArrayList<>(invoices.values());
+        boolean hasMore = rows.size() > limit;
+        if (hasMore) {
+            Invoice extra = rows.remove(rows.size() - 1);
+            linesByInvoiceId.remove(extra.getId());
+        }
+        return new SearchPage(rows, linesByInvoiceId, hasMore);
+    }
+
+    /**
+     * Đếm số hóa đơn khớp bộ lọc nhưng dừng ở {@code cap} để không phải quét toàn bộ bảng.
+     * Kết quả bằng {@code cap} nghĩa là tổng thực tế có thể lớn hơn.
+     */
+    public long countUpTo(SearchFilter filter, int cap) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder where = buildWhere(filter, params);
+        params.addValue("cap", cap);
+
+        String sql = """
+                SELECT COUNT(*) FROM (
+                    SELECT 1
+                    FROM billing.invoices i
+                    WHERE 1 = 1""" + where + """
+
+                    LIMIT :cap
+                ) c
+                """;
+        Long count = jdbcTemplate.queryForObject(sql, params, Long.class);
+        return count != null ? count : 0L;
+    }
+
+    /**
+     * Duyệt toàn bộ hóa đơn khớp bộ lọc, mới nhất trước, mỗi hóa đơn kèm lines và thông tin căn hộ.
+     * Hóa đơn được đẩy cho {@code handler} ngay khi đọc xong nên bộ nhớ không phụ thuộc số lượng hóa đơn.
+     * Phải gọi trong transaction để driver PostgreSQL dùng cursor theo fetch size.
+     */
+    public void streamForExport(SearchFilter filter, Consumer<ExportRow> handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        StringBuilder where = buildWhere(filter, params);
+        stream(where + " ORDER BY i.issued_at DESC, i.id DESC, il.id", params, handler);
+    }
+
+    /**
+     * Duyệt hóa đơn của một billing cycle, gom theo tòa nhà (thứ tự building_id) để ghi từng sheet liên tiếp.
+     * Chỉ lấy hóa đơn có căn hộ thuộc tòa nhà, giống {@link InvoiceRepository#findByCycleIdAndBuildingId}.
+     */
+    public void streamCycleForExport(UUID cycleId, UUID buildingId, Consumer<ExportRow> handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource("cycleId", cycleId);
+        StringBuilder where = new StringBuilder(" AND i.cycle_id = :cycleId AND u.building_id IS NOT NULL");
+        if (buildingId != null) {
+            where.append(" AND u.building_id = :buildingId");
+            params.addValue("buildingId", buildingId);
+        }
+        stream(where + " ORDER BY u.building_id, i.issued_at, i.id, il.id", params, handler);
+    }
+
+    private void stream(String whereAndOrder, MapSqlParameterSource params, Consumer<ExportRow> handler) {
+        ExportRowAssembler assembler = new ExportRowAssembler(handler);
+        streamingJdbcTemplate.query(STREAM_COLUMNS + whereAndOrder, params, assembler::accept);
+        assembler.flush();
+    }
+
+    private StringBuilder buildWhere(SearchFilter filter, MapSqlParameterSource params) {
+        StringBuilder where = new StringBuilder();
+        if (filter.status() != null) {
+            where.append(" AND i.status = CAST(:status AS billing.inv_status)");
+            params.addValue("status", filter.status().name());
+        }
+        if (filter.unitId() != null) {
+            where.append(" AND i.payer_unit_id = :unitId");
+            params.addValue("unitId", filter.unitId());
+        }
+        if (filter.buildingId() != null) {
+            where.append(" AND i.payer_unit_id IN (SELECT u.id FROM data.units u WHERE u.building_id = :buildingId)");
+            params.addValue("buildingId", filter.buildingId());
+        }
+        if (filter.issuedFrom() != null) {
+            where.append(" AND i.issued_at >= :issuedFrom");
+            params.addValue("issuedFrom", filter.issuedFrom());
+        }
+        if (filter.issuedBefore() != null) {
+            where.append(" AND i.issued_at < :issuedBefore");
+            params.addValue("issuedBefore", filter.issuedBefore());
+        }
+        if (filter.serviceCode() != null) {
+            where.append(" AND EXISTS (SELECT 1 FROM billing.invoice_lines f"
+                    + " WHERE f.invoice_id = i.id AND UPPER(f.service_code) = :serviceCode)");
+            params.addValue("serviceCode", filter.serviceCode().toUpperCase());
+        }
+        return where;
+    }
+
+    private Invoice mapInvoice(ResultSet rs) throws SQLException {
+        return Invoice.builder()
+                .id(rs.getObject("id", UUID.class))
+                .code(rs.getString("code"))
+                .issuedAt(rs.getObject("issued_at", OffsetDateTime.class))
+                .dueDate(rs.getObject("due_date", LocalDate.class))
+                .status(InvoiceStatus.valueOf(rs.getString("status")))
+                .currency(rs.getString("currency"))
+                .billToName(rs.getString("bill_to_name"))
+                .billToAddress(rs.getString("bill_to_address"))
+                .billToContact(rs.getString("bill_to_contact"))
+                .payerUnitId(rs.getObject("payer_unit_id", UUID.class))
+                .payerResidentId(rs.getObject("payer_resident_id", UUID.class))
+                .cycleId(rs.getObject("cycle_id", UUID.class))
+                .paymentGateway(rs.getString("payment_gateway"))
+                .vnpTransactionRef(rs.getString("vnp_transaction_ref"))
+                .vnpTransactionNo(rs.getString("vnp_transaction_no"))
+                .vnpBankCode(rs.getString("vnp_bank_code"))
+                .vnpCardType(rs.getString("vnp_card_type"))
+                .vnpResponseCode(rs.getString("vnp_response_code"))
+                .vnpayInitiatedAt(rs.getObject("vnpay_initiated_at", OffsetDateTime.class))
+                .paidAt(rs.getObject("paid_at", OffsetDateTime.class))
+                .reminderCount(rs.getInt("reminder_count"))
+                .lastReminderAt(rs.getObject("last_reminder_at", OffsetDateTime.class))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .build();
+    }
+
+    private InvoiceLine mapLine(ResultSet rs, UUID lineId, UUID invoiceId) throws SQLException {
+        return InvoiceLine.builder()
+                .id(lineId)
+                .invoiceId(invoiceId)
+                .serviceDate(rs.getObject("service_date", LocalDate.class))
+                .description(rs.getString("description"))
+                .quantity(rs.getBigDecimal("quantity"))
+                .unit(rs.getString("unit"))
+                .unitPrice(rs.getBigDecimal("unit_price"))
+                .taxRate(rs.getBigDecimal("tax_rate"))
+                .taxAmount(rs.getBigDecimal("tax_amount"))
+                .serviceCode(rs.getString("service_code"))
+                .externalRefType(rs.getString("external_ref_type"))
+                .externalRefId(rs.getObject("external_ref_id", UUID.class))
+                .build();
+    }
+
+    /**
+     * Gom các dòng join (một dòng mỗi invoice line) thành một {@link ExportRow} mỗi hóa đơn.
+     * Kết quả đã sắp theo id hóa đơn nên chỉ cần giữ hóa đơn đang đọc.
+     */
+    private final class ExportRowAssembler {
+        private final Consumer<ExportRow> handler;
+        private Invoice current;
+        private List<InvoiceLine> currentLines;
+        private UUID currentBuildingId;
+        private String currentUnitCode;
+        private Integer currentUnitFloor;
+
+        private ExportRowAssembler(Consumer<ExportRow> handler) {
+            this.handler = handler;
+        }
+
+        private void accept(ResultSet rs) throws SQLException {
+            UUID invoiceId = rs.getObject("id", UUID.class);
+            if (current == null || !current.getId().equals(invoiceId)) {
+                flush();
+                current = mapInvoice(rs);
+                currentLines = new ArrayList<>();
+                currentBuildingId = rs.getObject("unit_building_id", UUID.class);
+                currentUnitCode = rs.getString("unit_code");
+                currentUnitFloor = rs.getObject("unit_floor", Integer.class);
+            }
+            UUID lineId = rs.getObject("line_id", UUID.class);
+            if (lineId != null) {
+                currentLines.add(mapLine(rs, lineId, invoiceId));
+            }
+        }
+
+        private void flush() {
+            if (current != null) {
+                handler.accept(new ExportRow(current, currentLines, currentBuildingId, currentUnitCode, currentUnitFloor));
+                current = null;
+            }
+        }
+    }
+
+    /**
+     * Một hóa đơn trong luồng export: lines đầy đủ và thông tin căn hộ lấy từ data.units.
+     */
+    public record ExportRow(
+            Invoice invoice,
+            List<InvoiceLine> lines,
+            UUID buildingId,
+            String unitCode,
+            Integer unitFloor) { }
+
+    /**
+     * Bộ lọc đã được chuẩn hóa; trường null nghĩa là không lọc theo trường đó.
+     * {@code issuedBefore} là cận trên loại trừ.
+     */
+    public record SearchFilter(
+            String serviceCode,
+            InvoiceStatus status,
+            UUID unitId,
+            UUID buildingId,
+            OffsetDateTime issuedFrom,
+            OffsetDateTime issuedBefore) { }
+
+    public record SearchPage(
+            List<Invoice> invoices,
+            Map<UUID, List<InvoiceLine>> linesByInvoiceId,
+            boolean hasMore) { }
+
+    /**
+     * Vị trí keyset (issued_at, id) của bản ghi cuối trang trước, mã hóa base64 để trả cho client.
+     */
+    public record Cursor(OffsetDateTime issuedAt, UUID id) {
+
+        public static Cursor of(Invoice invoice) {
+            return new Cursor(invoice.getIssuedAt(), invoice.getId());
+        }
+
+        public String encode() {
+            String raw = issuedAt.toInstant().toString() + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        public static Cursor decode(String token) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                OffsetDateTime issuedAt = Instant.parse(raw.substring(0, separator)).atOffset(ZoneOffset.UTC);
+                return new Cursor(issuedAt, UUID.fromString(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor không hợp lệ: " + token);
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Truy vấn set-based cho phí trả chậm. Mỗi hóa đơn quá hạn có đúng một line LATE_FEE
+ * (unique index uq_invoice_lines_late_fee) với quantity = số ngày quá hạn tính đến ngày chạy,
+ * nên chạy lại trong cùng ngày không thay đổi gì.
+ */
+@Repository
+@RequiredArgsConstructor
+public class LateFeeRepository {
+
+    public static final String LATE_FEE_SERVICE_CODE = "LATE_FEE";
+
+    /**
+     * Số ngày bị tính phí của hóa đơn {@code i}: từ sau hạn thanh toán + số ngày ân hạn đến ngày chạy
+     */
+    private static final String OVERDUE_DAYS = "(CAST(:asOf AS DATE) - i.due_date - :graceDays)";
+
+    private static final String FIND_CYCLES = """
+            SELECT DISTINCT i.cycle_id
+            FROM billing.invoices i
+            WHERE i.status IN ('PUBLISHED', 'UNPAID')
+              AND i.cycle_id IS NOT NULL
+              AND i.due_date IS NOT NULL
+              AND %s > 0
+            """.formatted(OVERDUE_DAYS);
+
+    /**
+     * Trang tiếp theo (keyset theo id, không khóa) các hóa đơn quá hạn của kỳ mà line LATE_FEE còn thiếu hoặc cũ
+     */
+    private static final String FIND_PENDING_PAGE = """
+            SELECT i.id
+            FROM billing.invoices i
+            WHERE i.cycle_id = :cycleId
+              AND i.status IN ('PUBLISHED', 'UNPAID')
+              AND i.id > :afterId
+              AND i.due_date IS NOT NULL
+              AND %1$s > 0
+              AND NOT EXISTS (
+                  SELECT 1
+                  FROM billing.invoice_lines f
+                  WHERE f.invoice_id = i.id
+                    AND f.service_code = 'LATE_FEE'
+                    AND f.quantity = %1$s
+              )
+            ORDER BY i.id
+            LIMIT :limit
+            """.formatted(OVERDUE_DAYS);
+
+    /**
+     * Khóa các hóa đơn của chunk còn quá hạn; hóa đơn đang bị khóa (vd. callback thanh toán) được bỏ qua
+     */
+    private static final String LOCK_CHUNK = """
+            SELECT i.id, i.status::text AS status
+            FROM billing.invoices i
+            WHERE i.id IN (:invoiceIds)
+              AND i.status IN ('PUBLISHED', 'UNPAID')
+              AND %s > 0
+            FOR UPDATE SKIP LOCKED
+            """.formatted(OVERDUE_DAYS);
+
+    /**
+     * Phí mỗi ngày = tổng tiền các line không phải LATE_FEE * rate%; ghi đè line cũ nếu số ngày / đơn giá đổi
+     */
+    private static final String UPSERT_LATE_FEES = """
+            INSERT INTO billing.invoice_lines AS l
+                (id, invoice_id, service_date, description, quantity, unit, unit_price,
+                 tax_rate, tax_amount, service_code, external_ref_type)
+            SELECT gen_random_uuid(), f.invoice_id, CAST(:asOf AS DATE), :description, f.days, :unit, f.unit_price,
+                   :taxRate, ROUND(f.days * f.unit_price * :taxRate / 100, 0), 'LATE_FEE', 'LATE_FEE'
+            FROM (
+                SELECT i.id AS invoice_id,
+                       %s AS days,
+                       ROUND(b.amount * :ratePercent / 100, 0) AS unit_price
+                FROM billing.invoices i
+                CROSS JOIN LATERAL (
+                    SELECT COALESCE(SUM(x.quantity * x.unit_price + x.tax_amount), 0) AS amount
+                    FROM billing.invoice_lines x
+                    WHERE x.invoice_id = i.id
+                      AND x.service_code IS DISTINCT FROM 'LATE_FEE'
+                ) b
+                WHERE i.id IN (:invoiceIds)
+            ) f
+            WHERE f.days > 0
+              AND f.unit_price > 0
+            ON CONFLICT (invoice_id) WHERE service_code = 'LATE_FEE' DO UPDATE
+            SET service_date = EXCLUDED.service_date,
+                description = EXCLUDED.description,
+                quantity = EXCLUDED.quantity,
+                unit_price = EXCLUDED.unit_price,
+                tax_rate = EXCLUDED.tax_rate,
+                tax_amount = EXCLUDED.tax_amount
+            WHERE l.quantity IS DISTINCT FROM EXCLUDED.quantity
+               OR l.unit_price IS DISTINCT FROM EXCLUDED.unit_price
+               OR l.tax_rate IS DISTINCT FROM EXCLUDED.tax_rate
+            RETURNING l.invoice_id
+            """.formatted(OVERDUE_DAYS);
+
+    private static final UUID MIN_UUID = new UUID(0L, 0L);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public List<UUID> findCyclesWithOverdueInvoices(LocalDate asOf, int graceDays) {
+        return jdbcTemplate.queryForList(FIND_CYCLES, new MapSqlParameterSource()
+                .addValue("asOf", asOf)
+                .addValue("graceDays", graceDays), UUID.class);
+    }
+
+    /**
+     * @param afterId id cuối của trang trước, null cho trang đầu
+     */
+    public List<UUID> findPendingPage(UUID cycleId, LocalDate asOf, int graceDays, UUID afterId, int limit) {
+        return jdbcTemplate.queryForList(FIND_PENDING_PAGE, new MapSqlParameterSource()
+                .addValue("cycleId", cycleId)
+                .addValue("asOf", asOf)
+                .addValue("graceDays", graceDays)
+                .addValue("afterId", afterId != null ? afterId : MIN_UUID)
+                .addValue("limit", limit), UUID.class);
+    }
+
+    /**
+     * Phải gọi trong transaction; khóa giữ đến khi transaction của chunk kết thúc
+     */
+    public List<LockedInvoice> lockChunk(Collection<UUID> invoiceIds, LocalDate asOf, int graceDays) {
+        return jdbcTemplate.query(LOCK_CHUNK, new MapSqlParameterSource()
+                        .addValue("invoiceIds", invoiceIds)
+                        .addValue("asOf", asOf)
+                        .addValue("graceDays", graceDays),
+                (rs, rowNum) -> new LockedInvoice(rs.getObject("id", UUID.class), rs.getString("status")));
+    }
+
+    /**
+     * @return id các hóa đơn có line LATE_FEE vừa được thêm hoặc thay đổi
+     */
+    public List<UUID> upsertLateFees(Collection<UUID> invoiceIds, LocalDate asOf, int graceDays, LateFeeRate rate) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("invoiceIds", invoiceIds)
+                .addValue("asOf", asOf)
+                .addValue("graceDays", graceDays)
+                .addValue("ratePercent", rate.ratePercent())
+                .addValue("taxRate", rate.taxRate())
+                .addValue("unit", rate.unit())
+                .addValue("description", rate.description());
+        return jdbcTemplate.queryForList(UPSERT_LATE_FEES, params, UUID.class);
+    }
+
+    public record LockedInvoice(UUID id, String status) {
+    }
+
+    /**
+     * @param ratePercent phần trăm tổng tiền hóa đơn tính cho mỗi ngày quá hạn
+     */
+    public record LateFeeRate(BigDecimal ratePercent, BigDecimal taxRate, String unit, String description) {
+    }
+}
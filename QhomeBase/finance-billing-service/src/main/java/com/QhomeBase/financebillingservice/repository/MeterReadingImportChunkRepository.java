@@ -0,0 +1,100 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bảng billing.meter_reading_import_chunks: trạng thái và kết quả của từng chunk import theo idempotency key.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MeterReadingImportChunkRepository {
+
+    public static final String PROCESSING = "PROCESSING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+
+    /**
+     * Giành quyền xử lý chunk: tạo mới, hoặc nhận lại chunk đã lỗi / đang xử lý quá lâu (instance trước bị dừng).
+     * Không trả về dòng nào khi chunk đã hoàn tất hoặc đang được xử lý ở request khác.
+     */
+    private static final String CLAIM = """
+            INSERT INTO billing.meter_reading_import_chunks (
+                idempotency_key, reading_cycle_id, chunk_no, reading_count, status, created_at, updated_at
+            ) VALUES (
+                :key, :readingCycleId, :chunkNo, :readingCount, 'PROCESSING', now(), now()
+            )
+            ON CONFLICT (idempotency_key) DO UPDATE
+            SET status = 'PROCESSING',
+                chunk_no = EXCLUDED.chunk_no,
+                reading_count = EXCLUDED.reading_count,
+                last_error = NULL,
+                updated_at = now()
+            WHERE meter_reading_import_chunks.status = 'FAILED'
+               OR (meter_reading_import_chunks.status = 'PROCESSING'
+                   AND meter_reading_import_chunks.updated_at < now() - :staleSeconds * interval '1 second')
+            RETURNING idempotency_key
+            """;
+
+    private static final String FIND = """
+            SELECT status, response::text AS response
+            FROM billing.meter_reading_import_chunks
+            WHERE idempotency_key = :key
+            """;
+
+    private static final String COMPLETE = """
+            UPDATE billing.meter_reading_import_chunks
+            SET status = 'COMPLETED',
+                response = CAST(:response AS jsonb),
+                updated_at = now()
+            WHERE idempotency_key = :key
+            """;
+
+    private static final String FAIL = """
+            UPDATE billing.meter_reading_import_chunks
+            SET status = 'FAILED',
+                last_error = :error,
+                updated_at = now()
+            WHERE idempotency_key = :key
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public boolean claim(String key, UUID readingCycleId, int chunkNo, int readingCount, long staleSeconds) {
+        List<String> claimed = jdbcTemplate.queryForList(CLAIM, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("readingCycleId", readingCycleId)
+                .addValue("chunkNo", chunkNo)
+                .addValue("readingCount", readingCount)
+                .addValue("staleSeconds", staleSeconds), String.class);
+        return !claimed.isEmpty();
+    }
+
+    public Optional<ChunkRecord> find(String key) {
+        return jdbcTemplate.query(FIND, new MapSqlParameterSource("key", key),
+                        (rs, rowNum) -> new ChunkRecord(rs.getString("status"), rs.getString("response")))
+                .stream()
+                .findFirst();
+    }
+
+    public void complete(String key, String responseJson) {
+        jdbcTemplate.update(COMPLETE, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("response", responseJson));
+    }
+
+    public void fail(String key, String error) {
+        jdbcTemplate.update(FAIL, new MapSqlParameterSource()
+                .addValue("key", key)
+                .addValue("error", error));
+    }
+
+    public record ChunkRecord(String status, String responseJson) {
+    }
+}
@@ -0,0 +1,127 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bảng billing.outbox_events. Sự kiện được ghi trong cùng transaction với thay đổi hóa đơn,
+ * relay lấy từng lô bằng FOR UPDATE SKIP LOCKED nên nhiều replica có thể chạy song song
+ * mà không gửi trùng một sự kiện trong cùng thời điểm.
+ */
+@Repository
+@RequiredArgsConstructor
+public class OutboxRepository {
+
+    private static final String INSERT_EVENT = """
+            INSERT INTO billing.outbox_events (id, aggregate_type, aggregate_id, event_type, payload, created_at, next_attempt_at)
+            VALUES (:id, :aggregateType, :aggregateId, :eventType, CAST(:payload AS jsonb), now(), now())
+            """;
+
+    private static final String CLAIM_PENDING = """
+            SELECT id, aggregate_type, aggregate_id, event_type, payload::text AS payload, attempts
+            FROM billing.outbox_events
+            WHERE published_at IS NULL
+              AND next_attempt_at <= now()
+            ORDER BY next_attempt_at, created_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String MARK_PUBLISHED = """
+            UPDATE billing.outbox_events
+            SET published_at = now(),
+                attempts = attempts + 1,
+                last_error = NULL
+            WHERE id IN (:ids)
+            """;
+
+    /**
+     * Lùi lần gửi tiếp theo theo cấp số nhân (base * 2^attempts), tối đa maxDelay giây
+     */
+    private static final String MARK_FAILED = """
+            UPDATE billing.outbox_events
+            SET attempts = attempts + 1,
+                last_error = :error,
+                next_attempt_at = now() + LEAST(:maxDelaySeconds, :baseDelaySeconds * power(2, LEAST(attempts, 20)))
+                                          * interval '1 second'
+            WHERE id IN (:ids)
+            """;
+
+    private static final String DELETE_PUBLISHED = """
+            DELETE FROM billing.outbox_events
+            WHERE id IN (
+                SELECT id FROM billing.outbox_events
+                WHERE published_at < :before
+                LIMIT :limit
+            )
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<OutboxEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("id", event.id())
+                        .addValue("aggregateType", event.aggregateType())
+                        .addValue("aggregateId", event.aggregateId())
+                        .addValue("eventType", event.eventType())
+                        .addValue("payload", event.payload()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_EVENT, batch);
+    }
+
+    /**
+     * Khóa tối đa {@code limit} sự kiện đến hạn gửi; phải gọi trong transaction
+     */
+    public List<OutboxEvent> claimPending(int limit) {
+        return jdbcTemplate.query(CLAIM_PENDING, new MapSqlParameterSource("limit", limit),
+                (rs, rowNum) -> new OutboxEvent(
+                        rs.getObject("id", UUID.class),
+                        rs.getString("aggregate_type"),
+                        rs.getObject("aggregate_id", UUID.class),
+                        rs.getString("event_type"),
+                        rs.getString("payload"),
+                        rs.getInt("attempts")));
+    }
+
+    public void markPublished(List<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(MARK_PUBLISHED, new MapSqlParameterSource("ids", ids));
+    }
+
+    public void markFailed(List<UUID> ids, String error, long baseDelaySeconds, long maxDelaySeconds) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(MARK_FAILED, new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("error", error)
+                .addValue("baseDelaySeconds", baseDelaySeconds)
+                .addValue("maxDelaySeconds", maxDelaySeconds));
+    }
+
+    /**
+     * Xóa tối đa {@code limit} sự kiện đã gửi trước {@code before}
+     */
+    public int deletePublishedBefore(OffsetDateTime before, int limit) {
+        return jdbcTemplate.update(DELETE_PUBLISHED, new MapSqlParameterSource()
+                .addValue("before", before)
+                .addValue("limit", limit));
+    }
+
+    public record OutboxEvent(UUID id, String aggregateType, UUID aggregateId, String eventType,
+                              String payload, int attempts) {
+    }
+}
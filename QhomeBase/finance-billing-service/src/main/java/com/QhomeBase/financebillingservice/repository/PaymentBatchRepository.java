@@ -0,0 +1,158 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import com.QhomeBase.financebillingservice.model.Payment;
+import com.QhomeBase.financebillingservice.model.PaymentAllocation;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Truy vấn và ghi hàng loạt cho engine phân bổ thanh toán: hóa đơn đang mở của nhiều căn hộ được đọc
+ * (và khóa) trong một câu lệnh, payment / allocation / trạng thái hóa đơn được ghi bằng batch statement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentBatchRepository {
+
+    /**
+     * Hóa đơn PUBLISHED / UNPAID theo thứ tự tất toán (hạn thanh toán, ngày phát hành cũ trước).
+     * Số đã trả gồm allocation trực tiếp vào hóa đơn và allocation vào từng dòng.
+     * Khóa hóa đơn để callback VNPAY hay một lượt tất toán khác không trả trùng cùng lúc.
+     */
+    private static final String FIND_OPEN_INVOICES = """
+            SELECT i.id,
+                   i.payer_unit_id,
+                   i.code,
+                   i.status::text AS status,
+                   i.due_date,
+                   COALESCE(i.total_amount,
+                            (SELECT SUM(l.quantity * l.unit_price + l.tax_amount)
+                             FROM billing.invoice_lines l
+                             WHERE l.invoice_id = i.id),
+                            0) AS total_amount,
+                   COALESCE((SELECT SUM(a.amount)
+                             FROM finance.payment_allocations a
+                             WHERE a.invoice_id = i.id), 0)
+                   + COALESCE((SELECT SUM(a.amount)
+                               FROM finance.payment_allocations a
+                               JOIN billing.invoice_lines l ON l.id = a.invoice_line_id
+                               WHERE l.invoice_id = i.id), 0) AS paid_amount
+            FROM billing.invoices i
+            WHERE i.payer_unit_id IN (:unitIds)
+              AND i.status IN ('PUBLISHED', 'UNPAID')
+            ORDER BY i.payer_unit_id, i.due_date NULLS LAST, i.issued_at, i.id
+            FOR UPDATE OF i
+            """;
+
+    private static final String INSERT_PAYMENT = """
+            INSERT INTO finance.payments (
+                id, receipt_no, method, cash_account_id, paid_at, amount_total,
+                currency, status, note, payer_resident_id
+            ) VALUES (
+                :id, :receiptNo, CAST(:method AS finance.payment_method), :cashAccountId, :paidAt, :amountTotal,
+                :currency, CAST(:status AS finance.pay_status), :note, :payerResidentId
+            )
+            """;
+
+    private static final String INSERT_ALLOCATION = """
+            INSERT INTO finance.payment_allocations (id, payment_id, allocation_type, invoice_id, invoice_line_id, amount)
+            VALUES (:id, :paymentId, CAST(:allocationType AS finance.allocation_type), :invoiceId, :invoiceLineId, :amount)
+            """;
+
+    private static final String MARK_PAID = """
+            UPDATE billing.invoices
+            SET status = 'PAID',
+                paid_at = :paidAt
+            WHERE id = :id
+              AND status IN ('PUBLISHED', 'UNPAID')
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Phải gọi trong transaction (FOR UPDATE)
+     */
+    public List<OpenInvoice> lockOpenInvoices(Collection<UUID> unitIds) {
+        if (unitIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(FIND_OPEN_INVOICES, new MapSqlParameterSource("unitIds", unitIds),
+                (rs, rowNum) -> new OpenInvoice(
+                        rs.getObject("id", UUID.class),
+                        rs.getObject("payer_unit_id", UUID.class),
+                        rs.getString("code"),
+                        rs.getString("status"),
+                        rs.getObject("due_date", LocalDate.class),
+                        rs.getBigDecimal("total_amount"),
+                        rs.getBigDecimal("paid_amount")));
+    }
+
+    public void insertPayments(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = payments.stream()
+                .map(payment -> new MapSqlParameterSource()
+                        .addValue("id", payment.getId())
+                        .addValue("receiptNo", payment.getReceiptNo())
+                        .addValue("method", payment.getMethod().name())
+                        .addValue("cashAccountId", payment.getCashAccountId())
+                        .addValue("paidAt", payment.getPaidAt())
+                        .addValue("amountTotal", payment.getAmountTotal())
+                        .addValue("currency", payment.getCurrency())
+                        .addValue("status", payment.getStatus().name())
+                        .addValue("note", payment.getNote())
+                        .addValue("payerResidentId", payment.getPayerResidentId()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_PAYMENT, batch);
+    }
+
+    public void insertAllocations(List<PaymentAllocation> allocations) {
+        if (allocations.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = allocations.stream()
+                .map(allocation -> new MapSqlParameterSource()
+                        .addValue("id", allocation.getId())
+                        .addValue("paymentId", allocation.getPaymentId())
+                        .addValue("allocationType", allocation.getAllocationType().name())
+                        .addValue("invoiceId", allocation.getInvoiceId())
+                        .addValue("invoiceLineId", allocation.getInvoiceLineId())
+                        .addValue("amount", allocation.getAmount()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT_ALLOCATION, batch);
+    }
+
+    /**
+     * @param paidAtByInvoice hóa đơn được tất toán và thời điểm thanh toán của payment tất toán nó
+     */
+    public void markPaid(Map<UUID, OffsetDateTime> paidAtByInvoice) {
+        if (paidAtByInvoice.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batch = paidAtByInvoice.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("id", entry.getKey())
+                        .addValue("paidAt", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(MARK_PAID, batch);
+    }
+
+    public record OpenInvoice(UUID id, UUID unitId, String code, String status, LocalDate dueDate,
+                              BigDecimal totalAmount, BigDecimal paidAmount) {
+
+        public BigDecimal outstanding() {
+            return totalAmount.subtract(paidAmount).max(BigDecimal.ZERO);
+        }
+    }
+}
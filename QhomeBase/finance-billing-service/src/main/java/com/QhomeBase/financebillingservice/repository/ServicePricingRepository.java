@@ -26,6 +26,8 @@ public interface ServicePricingRepository extends JpaRepository<ServicePricing,
             @Param("serviceCode") String serviceCode,
             @Param("effectiveDate") LocalDate effectiveDate
     );
+
+    List<ServicePricing> findByServiceCodeAndActiveTrue(String serviceCode);
 }
 
 
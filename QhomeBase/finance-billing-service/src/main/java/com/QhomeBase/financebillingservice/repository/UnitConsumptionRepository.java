@@ -0,0 +1,150 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bảng billing.unit_consumption_monthly: lượng tiêu thụ và số tiền theo (căn hộ, dịch vụ, tháng).
+ * Cập nhật theo delta từ invoice lines của một nhóm hóa đơn; đọc bằng một lần quét khoảng trên khóa chính.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UnitConsumptionRepository {
+
+    /**
+     * Line LATE_FEE (phí trả chậm, ghi sau khi tạo hóa đơn) không phải lượng tiêu thụ nên không được tính
+     */
+    private static final String APPLY_DELTA = """
+            INSERT INTO billing.unit_consumption_monthly AS c
+                (unit_id, service_code, month, quantity, amount, line_count, updated_at)
+            SELECT i.payer_unit_id,
+                   UPPER(l.service_code),
+                   CAST(date_trunc('month', l.service_date) AS DATE),
+                   :sign * SUM(l.quantity),
+                   :sign * SUM(l.quantity * l.unit_price + l.tax_amount),
+                   :sign * COUNT(*),
+                   now()
+            FROM billing.invoice_lines l
+            JOIN billing.invoices i ON i.id = l.invoice_id
+            WHERE l.invoice_id IN (:invoiceIds)
+              AND i.payer_unit_id IS NOT NULL
+              AND l.service_code IS NOT NULL
+              AND l.service_code <> 'LATE_FEE'
+              AND l.service_date IS NOT NULL
+            GROUP BY i.payer_unit_id, UPPER(l.service_code), CAST(date_trunc('month', l.service_date) AS DATE)
+            ON CONFLICT (unit_id, service_code, month) DO UPDATE
+            SET quantity = c.quantity + EXCLUDED.quantity,
+                amount = c.amount + EXCLUDED.amount,
+                line_count = c.line_count + EXCLUDED.line_count,
+                updated_at = now()
+            """;
+
+    private static final String FIND_SERIES = """
+            SELECT unit_id, service_code, month, quantity, amount
+            FROM billing.unit_consumption_monthly
+            WHERE unit_id IN (:unitIds)
+              AND service_code IN (:serviceCodes)
+              AND month BETWEEN :fromMonth AND :toMonth
+              AND line_count > 0
+            ORDER BY unit_id, service_code, month
+            """;
+
+    private static final String FIND_BY_UNIT = """
+            SELECT unit_id, service_code, month, quantity, amount
+            FROM billing.unit_consumption_monthly
+            WHERE unit_id = :unitId
+              AND service_code = :serviceCode
+              AND line_count > 0
+            ORDER BY month DESC
+            """;
+
+    /**
+     * Dự phòng khi client không gửi unitId: gộp trực tiếp theo cư dân thanh toán
+     */
+    private static final String FIND_BY_RESIDENT = """
+            SELECT CAST(NULL AS UUID) AS unit_id,
+                   UPPER(l.service_code) AS service_code,
+                   CAST(date_trunc('month', l.service_date) AS DATE) AS month,
+                   SUM(l.quantity) AS quantity,
+                   SUM(l.quantity * l.unit_price + l.tax_amount) AS amount
+            FROM billing.invoices i
+            JOIN billing.invoice_lines l ON l.invoice_id = i.id
+            WHERE i.payer_resident_id = :residentId
+              AND i.status <> 'VOID'
+              AND UPPER(l.service_code) = :serviceCode
+              AND l.service_date IS NOT NULL
+            GROUP BY UPPER(l.service_code), CAST(date_trunc('month', l.service_date) AS DATE)
+            ORDER BY month DESC
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Cộng ({@code sign} = 1) hoặc trừ ({@code sign} = -1) các invoice lines của nhóm hóa đơn vào bảng tổng hợp
+     */
+    public void applyDelta(Collection<UUID> invoiceIds, int sign) {
+        if (invoiceIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.update(APPLY_DELTA, new MapSqlParameterSource()
+                .addValue("invoiceIds", invoiceIds)
+                .addValue("sign", sign));
+    }
+
+    /**
+     * @param fromMonth ngày đầu tháng bắt đầu (bao gồm)
+     * @param toMonth   ngày đầu tháng kết thúc (bao gồm)
+     */
+    public List<MonthlyConsumption> findSeries(Collection<UUID> unitIds, Collection<String> serviceCodes,
+                                               LocalDate fromMonth, LocalDate toMonth) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("unitIds", unitIds)
+                .addValue("serviceCodes", serviceCodes)
+                .addValue("fromMonth", fromMonth)
+                .addValue("toMonth", toMonth);
+        return jdbcTemplate.query(FIND_SERIES, params, UnitConsumptionRepository::mapRow);
+    }
+
+    /**
+     * Mọi tháng có dữ liệu của một căn hộ, mới nhất trước
+     */
+    public List<MonthlyConsumption> findByUnit(UUID unitId, String serviceCode) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("unitId", unitId)
+                .addValue("serviceCode", serviceCode);
+        return jdbcTemplate.query(FIND_BY_UNIT, params, UnitConsumptionRepository::mapRow);
+    }
+
+    /**
+     * Mọi tháng có dữ liệu của các hóa đơn do cư dân thanh toán, mới nhất trước
+     */
+    public List<MonthlyConsumption> findByResident(UUID residentId, String serviceCode) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("residentId", residentId)
+                .addValue("serviceCode", serviceCode);
+        return jdbcTemplate.query(FIND_BY_RESIDENT, params, UnitConsumptionRepository::mapRow);
+    }
+
+    private static MonthlyConsumption mapRow(ResultSet rs, int rowNum) throws SQLException {
+        return new MonthlyConsumption(
+                rs.getObject("unit_id", UUID.class),
+                rs.getString("service_code"),
+                rs.getObject("month", LocalDate.class),
+                rs.getBigDecimal("quantity"),
+                rs.getBigDecimal("amount"));
+    }
+
+    public record MonthlyConsumption(UUID unitId, String serviceCode, LocalDate month,
+                                     BigDecimal quantity, BigDecimal amount) {
+    }
+}
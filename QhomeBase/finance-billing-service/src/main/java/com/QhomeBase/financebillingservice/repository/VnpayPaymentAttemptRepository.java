@@ -0,0 +1,137 @@
+package com.QhomeBase.financebillingservice.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Bảng billing.vnpay_payment_attempts: mỗi URL thanh toán VNPAY là một attempt, khóa bằng txn_ref.
+ * Mọi chuyển trạng thái đều là một câu UPDATE có điều kiện (compare-and-set), không đọc - sửa - ghi,
+ * nên callback lặp lại hoặc chạy song song chỉ có đúng một lần "thắng".
+ */
+@Repository
+@RequiredArgsConstructor
+public class VnpayPaymentAttemptRepository {
+
+    public static final String PENDING = "PENDING";
+    public static final String SUCCESS = "SUCCESS";
+    public static final String FAILED = "FAILED";
+
+    private static final String INSERT_ATTEMPT = """
+            INSERT INTO billing.vnpay_payment_attempts (txn_ref, invoice_id, amount, status, created_at)
+            VALUES (:txnRef, :invoiceId, :amount, 'PENDING', now())
+            ON CONFLICT (txn_ref) DO NOTHING
+            """;
+
+    private static final String FIND_INVOICE_ID = """
+            SELECT invoice_id FROM billing.vnpay_payment_attempts WHERE txn_ref = :txnRef
+            """;
+
+    private static final String COMPLETE_ATTEMPT = """
+            UPDATE billing.vnpay_payment_attempts
+            SET status = :status,
+                response_code = :responseCode,
+                transaction_no = :transactionNo,
+                bank_code = :bankCode,
+                card_type = :cardType,
+                processed_at = now()
+            WHERE txn_ref = :txnRef
+              AND status = 'PENDING'
+            """;
+
+    /**
+     * Chuyển hóa đơn sang PAID nếu chưa PAID; CTE khóa đúng một dòng để trả về trạng thái cũ
+     * (cần cho bảng tổng hợp dashboard) trong cùng câu lệnh.
+     */
+    private static final String MARK_INVOICE_PAID = """
+            WITH prev AS (
+                SELECT id, status::text AS status
+                FROM billing.invoices
+                WHERE id = :invoiceId
+                FOR UPDATE
+            )
+            UPDATE billing.invoices i
+            SET status = 'PAID',
+                payment_gateway = 'VNPAY',
+                paid_at = now(),
+                vnpay_initiated_at = NULL,
+                vnp_transaction_ref = :txnRef,
+                vnp_transaction_no = :transactionNo,
+                vnp_bank_code = :bankCode,
+                vnp_card_type = :cardType,
+                vnp_response_code = :responseCode
+            FROM prev
+            WHERE i.id = prev.id
+              AND prev.status <> 'PAID'
+            RETURNING prev.status
+            """;
+
+    private static final String RECORD_FAILED_CALLBACK = """
+            UPDATE billing.invoices
+            SET vnp_transaction_ref = :txnRef,
+                vnp_transaction_no = :transactionNo,
+                vnp_bank_code = :bankCode,
+                vnp_card_type = :cardType,
+                vnp_response_code = :responseCode
+            WHERE id = :invoiceId
+              AND status <> 'PAID'
+            """;
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Ghi attempt PENDING; bỏ qua nếu txn_ref đã tồn tại
+     */
+    public void insertPending(String txnRef, UUID invoiceId, BigDecimal amount) {
+        jdbcTemplate.update(INSERT_ATTEMPT, new MapSqlParameterSource()
+                .addValue("txnRef", txnRef)
+                .addValue("invoiceId", invoiceId)
+                .addValue("amount", amount));
+    }
+
+    public Optional<UUID> findInvoiceId(String txnRef) {
+        List<UUID> ids = jdbcTemplate.query(FIND_INVOICE_ID,
+                new MapSqlParameterSource("txnRef", txnRef),
+                (rs, rowNum) -> rs.getObject("invoice_id", UUID.class));
+        return ids.stream().findFirst();
+    }
+
+    /**
+     * PENDING -> {@code status}. Trả về false nếu attempt đã được xử lý bởi callback khác.
+     */
+    public boolean complete(String txnRef, String status, CallbackDetails details) {
+        return jdbcTemplate.update(COMPLETE_ATTEMPT, details.toParams(txnRef).addValue("status", status)) == 1;
+    }
+
+    /**
+     * @return trạng thái cũ của hóa đơn nếu câu lệnh này chuyển nó sang PAID, rỗng nếu hóa đơn đã PAID
+     */
+    public Optional<String> markInvoicePaid(UUID invoiceId, String txnRef, CallbackDetails details) {
+        List<String> previous = jdbcTemplate.query(MARK_INVOICE_PAID,
+                details.toParams(txnRef).addValue("invoiceId", invoiceId),
+                (rs, rowNum) -> rs.getString("status"));
+        return previous.stream().findFirst();
+    }
+
+    public void recordFailedCallback(UUID invoiceId, String txnRef, CallbackDetails details) {
+        jdbcTemplate.update(RECORD_FAILED_CALLBACK, details.toParams(txnRef).addValue("invoiceId", invoiceId));
+    }
+
+    public record CallbackDetails(String responseCode, String transactionNo, String bankCode, String cardType) {
+
+        private MapSqlParameterSource toParams(String txnRef) {
+            return new MapSqlParameterSource()
+                    .addValue("txnRef", txnRef)
+                    .addValue("responseCode", responseCode)
+                    .addValue("transactionNo", transactionNo)
+                    .addValue("bankCode", bankCode)
+                    .addValue("cardType", cardType);
+        }
+    }
+}
@@ -3,18 +3,27 @@ package com.QhomeBase.financebillingservice.service;
 import com.QhomeBase.financebillingservice.client.BaseServiceClient;
 import com.QhomeBase.financebillingservice.dto.BuildingInvoiceSummaryDto;
 import com.QhomeBase.financebillingservice.dto.InvoiceDto;
+import com.QhomeBase.financebillingservice.repository.InvoiceSearchRepository;
+import com.QhomeBase.financebillingservice.util.CsvWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
@@ -25,6 +34,12 @@ public class BillingCycleExportService {
     private final BillingCycleInvoiceService billingCycleInvoiceService;
     private final BaseServiceClient baseServiceClient;
 
+    private static final int SXSSF_WINDOW_SIZE = 200;
+    private static final int STREAM_COLUMN_WIDTH = 20 * 256;
+
+    private static final String[] INVOICE_HEADERS = {"Mã hóa đơn", "Tòa nhà", "Mã tòa", "Ngày phát hành", "Hạn thanh toán",
+            "Trạng thái", "Tổng tiền (VNĐ)", "Đơn vị thanh toán"};
+
     @Transactional(readOnly = true)
     public byte[] exportBillingCycleToExcel(UUID cycleId, String serviceCode, String month, UUID buildingId) {
         try (Workbook wb = new XSSFWorkbook(); ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
@@ -58,46 +73,28 @@ public class BillingCycleExportService {
             createSummarySheet(summarySheet, summaries, headerStyle, currencyStyle);
             autoSizeColumns(summarySheet);
 
-            Map<UUID, String> unitNamesMap = new HashMap<>();
-            
+            // Nạp hóa đơn mỗi tòa một lần, dùng chung cho bước tra cứu căn hộ và bước ghi sheet
+            Map<UUID, List<InvoiceDto>> invoicesByBuilding = new LinkedHashMap<>();
+            Set<UUID> payerUnitIds = new LinkedHashSet<>();
             for (BuildingInvoiceSummaryDto summary : summaries) {
                 if (summary.getBuildingId() == null) continue;
                 
-                UUID currentBuildingId = summary.getBuildingId();
-                List<InvoiceDto> invoices = billingCycleInvoiceService.getInvoicesByBuilding(
-                        cycleId, currentBuildingId, serviceCode, month);
-                
+                List<InvoiceDto> invoices = invoicesByBuilding.computeIfAbsent(summary.getBuildingId(),
+                        id -> billingCycleInvoiceService.getInvoicesByBuilding(cycleId, id, serviceCode, month));
                 for (InvoiceDto invoice : invoices) {
-                    if (invoice.getPayerUnitId() != null && !unitNamesMap.containsKey(invoice.getPayerUnitId())) {
-                        try {
-                            BaseServiceClient.UnitInfo unit = baseServiceClient.getUnitById(invoice.getPayerUnitId());
-                            if (unit != null) {
-                                String displayName = (unit.getName() != null && !unit.getName().trim().isEmpty()) 
-                                    ? unit.getName() 
-                                    : (unit.getCode() != null && !unit.getCode().trim().isEmpty()) 
-                                        ? unit.getCode() 
-                                        : invoice.getPayerUnitId().toString();
-                                if (unit.getFloor() != null) {
-                                    displayName = "Tầng " + unit.getFloor() + " - " + displayName;
-                                }
-                                unitNamesMap.put(invoice.getPayerUnitId(), displayName);
-                            } else {
-                                unitNamesMap.put(invoice.getPayerUnitId(), invoice.getPayerUnitId().toString());
-                            }
-                        } catch (Exception e) {
-                            log.warn("Failed to load unit {}: {}", invoice.getPayerUnitId(), e.getMessage());
-                            unitNamesMap.put(invoice.getPayerUnitId(), invoice.getPayerUnitId().toString());
-                        }
+                    if (invoice.getPayerUnitId() != null) {
+                        payerUnitIds.add(invoice.getPayerUnitId());
                     }
                 }
             }
+
+            Map<UUID, String> unitNamesMap = loadUnitNames(payerUnitIds);
             
             for (BuildingInvoiceSummaryDto summary : summaries) {
                 if (summary.getBuildingId() == null) continue;
                 
                 UUID currentBuildingId = summary.getBuildingId();
-                List<InvoiceDto> invoices = billingCycleInvoiceService.getInvoicesByBuilding(
-                        cycleId, currentBuildingId, serviceCode, month);
+                List<InvoiceDto> invoices = invoicesByBuilding.getOrDefault(currentBuildingId, List.of());
                 
                 String sheetName = generateSheetName(summary);
                 Sheet buildingSheet = wb.createSheet(sheetName);
@@ -111,7 +108,10 @@ public class BillingCycleExportService {
                     emptyRow.createCell(0).setCellValue("Không có hóa đơn");
                 } else {
                     for (InvoiceDto invoice : invoices) {
-                        createInvoiceRow(buildingSheet, rowNum++, invoice, summary, currencyStyle, dateStyle, unitNamesMap);
+                        String unitDisplayName = invoice.getPayerUnitId() != null
+                                ? unitNamesMap.getOrDefault(invoice.getPayerUnitId(), invoice.getPayerUnitId().toString())
+                                : "";
+                        createInvoiceRow(buildingSheet, rowNum++, invoice, summary, currencyStyle, dateStyle, unitDisplayName);
                     }
                 }
                 
@@ -126,6 +126,171 @@ public class BillingCycleExportService {
         }
     }
 
+    /**
+     * Export streaming cho billing cycle: hóa đơn đọc bằng cursor DB, thông tin căn hộ lấy cùng câu join
+     * nên không cần gọi base-service. XLSX dùng SXSSF nên chỉ giữ một cửa sổ dòng mỗi sheet trong bộ nhớ.
+     */
+    public void streamBillingCycleExport(UUID cycleId, String serviceCode, String month, UUID buildingId,
+                                         ExportFormat format, OutputStream out) throws IOException {
+        List<BuildingInvoiceSummaryDto> summaries = billingCycleInvoiceService.summarizeByCycle(cycleId, serviceCode, month);
+        if (buildingId != null) {
+            summaries = summaries.stream()
+                    .filter(s -> s.getBuildingId() != null && buildingId.equals(s.getBuildingId()))
+                    .toList();
+        }
+        try {
+            if (format == ExportFormat.CSV) {
+                streamBillingCycleCsv(cycleId, buildingId, summaries, out);
+            } else {
+                streamBillingCycleXlsx(cycleId, buildingId, summaries, out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void streamBillingCycleXlsx(UUID cycleId, UUID buildingId, List<BuildingInvoiceSummaryDto> summaries,
+                                        OutputStream out) throws IOException {
+        SXSSFWorkbook wb = new SXSSFWorkbook(SXSSF_WINDOW_SIZE);
+        wb.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = createHeaderStyle(wb);
+            CellStyle currencyStyle = createCurrencyStyle(wb);
+            CellStyle dateStyle = createDateStyle(wb);
+
+            SXSSFSheet summarySheet = wb.createSheet("Tổng hợp theo tòa");
+            summarySheet.trackAllColumnsForAutoSizing();
+            createSummarySheet(summarySheet, summaries, headerStyle, currencyStyle);
+            autoSizeColumns(summarySheet);
+
+            // Tạo sẵn sheet theo thứ tự tổng hợp; tòa nhà chưa có trong tổng hợp sẽ được thêm khi gặp
+            Map<UUID, BuildingSheet> sheets = new LinkedHashMap<>();
+            for (BuildingInvoiceSummaryDto summary : summaries) {
+                if (summary.getBuildingId() != null && !sheets.containsKey(summary.getBuildingId())) {
+                    sheets.put(summary.getBuildingId(), createBuildingSheet(wb, summary, headerStyle));
+                }
+            }
+
+            billingCycleInvoiceService.streamInvoicesForExport(cycleId, buildingId, (invoice, row) -> {
+                BuildingSheet buildingSheet = sheets.computeIfAbsent(row.buildingId(), id -> createBuildingSheet(wb,
+                        BuildingInvoiceSummaryDto.builder().buildingId(id).build(), headerStyle));
+                createInvoiceRow(buildingSheet.sheet, buildingSheet.rowNum++, invoice, buildingSheet.summary,
+                        currencyStyle, dateStyle, unitDisplayName(row));
+            });
+
+            for (BuildingSheet buildingSheet : sheets.values()) {
+                if (buildingSheet.rowNum == 1) {
+                    Row emptyRow = buildingSheet.sheet.createRow(buildingSheet.rowNum++);
+                    emptyRow.createCell(0).setCellValue("Không có hóa đơn");
+                }
+            }
+
+            wb.write(out);
+        } finally {
+            wb.dispose();
+            wb.close();
+        }
+    }
+
+    private void streamBillingCycleCsv(UUID cycleId, UUID buildingId, List<BuildingInvoiceSummaryDto> summaries,
+                                       OutputStream out) throws IOException {
+        Map<UUID, BuildingInvoiceSummaryDto> summaryByBuilding = new HashMap<>();
+        for (BuildingInvoiceSummaryDto summary : summaries) {
+            if (summary.getBuildingId() != null) {
+                summaryByBuilding.putIfAbsent(summary.getBuildingId(), summary);
+            }
+        }
+
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeRow((Object[]) INVOICE_HEADERS);
+        billingCycleInvoiceService.streamInvoicesForExport(cycleId, buildingId, (invoice, row) -> {
+            BuildingInvoiceSummaryDto summary = summaryByBuilding.get(row.buildingId());
+            String buildingCode = summary != null && summary.getBuildingCode() != null ? summary.getBuildingCode() : "";
+            String buildingName = summary != null && summary.getBuildingName() != null ? summary.getBuildingName() : buildingCode;
+            try {
+                csv.writeRow(
+                        invoice.getCode(),
+                        buildingName,
+                        buildingCode,
+                        invoice.getIssuedAt() != null ? invoice.getIssuedAt().toLocalDate() : "",
+                        invoice.getDueDate() != null ? invoice.getDueDate() : "",
+                        invoice.getStatus() != null ? invoice.getStatus().toString() : "",
+                        invoice.getTotalAmount() != null ? invoice.getTotalAmount().toPlainString() : "0",
+                        unitDisplayName(row));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        csv.flush();
+    }
+
+    private BuildingSheet createBuildingSheet(Workbook wb, BuildingInvoiceSummaryDto summary, CellStyle headerStyle) {
+        Sheet sheet = wb.createSheet(generateSheetName(summary));
+        createInvoiceHeader(sheet, 0, headerStyle);
+        for (int i = 0; i < INVOICE_HEADERS.length; i++) {
+            sheet.setColumnWidth(i, STREAM_COLUMN_WIDTH);
+        }
+        return new BuildingSheet(sheet, summary);
+    }
+
+    private String unitDisplayName(InvoiceSearchRepository.ExportRow row) {
+        UUID unitId = row.invoice().getPayerUnitId();
+        if (unitId == null) {
+            return "";
+        }
+        String displayName = row.unitCode() != null && !row.unitCode().trim().isEmpty()
+                ? row.unitCode()
+                : unitId.toString();
+        if (row.unitFloor() != null) {
+            displayName = "Tầng " + row.unitFloor() + " - " + displayName;
+        }
+        return displayName;
+    }
+
+    private static final class BuildingSheet {
+        private final Sheet sheet;
+        private final BuildingInvoiceSummaryDto summary;
+        private int rowNum = 1;
+
+        private BuildingSheet(Sheet sheet, BuildingInvoiceSummaryDto summary) {
+            this.sheet = sheet;
+            this.summary = summary;
+        }
+    }
+
+    private Map<UUID, String> loadUnitNames(Set<UUID> unitIds) {
+        Map<UUID, String> unitNamesMap = new HashMap<>();
+        if (unitIds.isEmpty()) {
+            return unitNamesMap;
+        }
+        
+        Map<UUID, BaseServiceClient.UnitInfo> units;
+        try {
+            units = baseServiceClient.getUnitsByIds(unitIds);
+        } catch (Exception e) {
+            log.warn("Failed to load {} units: {}", unitIds.size(), e.getMessage());
+            units = Map.of();
+        }
+        
+        for (UUID unitId : unitIds) {
+            BaseServiceClient.UnitInfo unit = units.get(unitId);
+            if (unit == null) {
+                unitNamesMap.put(unitId, unitId.toString());
+                continue;
+            }
+            String displayName = (unit.getName() != null && !unit.getName().trim().isEmpty()) 
+                ? unit.getName() 
+                : (unit.getCode() != null && !unit.getCode().trim().isEmpty()) 
+                    ? unit.getCode() 
+                    : unitId.toString();
+            if (unit.getFloor() != null) {
+                displayName = "Tầng " + unit.getFloor() + " - " + displayName;
+            }
+            unitNamesMap.put(unitId, displayName);
+        }
+        return unitNamesMap;
+    }
+
     private void createSummarySheet(Sheet sheet, List<BuildingInvoiceSummaryDto> summaries, 
                                    CellStyle headerStyle, CellStyle currencyStyle) {
         int rowNum = 0;
@@ -159,18 +324,16 @@ public class BillingCycleExportService {
 
     private void createInvoiceHeader(Sheet sheet, int rowNum, CellStyle headerStyle) {
         Row headerRow = sheet.createRow(rowNum);
-        String[] headers = {"Mã hóa đơn", "Tòa nhà", "Mã tòa", "Ngày phát hành", "Hạn thanh toán", 
-                           "Trạng thái", "Tổng tiền (VNĐ)", "Đơn vị thanh toán"};
-        for (int i = 0; i < headers.length; i++) {
+        for (int i = 0; i < INVOICE_HEADERS.length; i++) {
             Cell cell = headerRow.createCell(i);
-            cell.setCellValue(headers[i]);
+            cell.setCellValue(INVOICE_HEADERS[i]);
             cell.setCellStyle(headerStyle);
         }
     }
 
     private void createInvoiceRow(Sheet sheet, int rowNum, InvoiceDto invoice, 
                                  BuildingInvoiceSummaryDto summary, CellStyle currencyStyle, CellStyle dateStyle,
-                                 Map<UUID, String> unitNamesMap) {
+                                 String unitDisplayName) {
         Row row = sheet.createRow(rowNum);
         int colNum = 0;
         
@@ -203,10 +366,6 @@ public class BillingCycleExportService {
         amountCell.setCellValue(invoice.getTotalAmount() != null ? invoice.getTotalAmount().doubleValue() : 0);
         amountCell.setCellStyle(currencyStyle);
         
-        String unitDisplayName = "";
-        if (invoice.getPayerUnitId() != null) {
-            unitDisplayName = unitNamesMap.getOrDefault(invoice.getPayerUnitId(), invoice.getPayerUnitId().toString());
-        }
         row.createCell(colNum++).setCellValue(unitDisplayName);
     }
 
@@ -3,14 +3,16 @@ package com.QhomeBase.financebillingservice.service;
 import com.QhomeBase.financebillingservice.dto.BuildingInvoiceSummaryDto;
 import com.QhomeBase.financebillingservice.dto.InvoiceDto;
 import com.QhomeBase.financebillingservice.model.Invoice;
-import com.QhomeBase.financebillingservice.repository.BuildingInvoiceSummary;
 import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceSearchRepository;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -19,27 +21,25 @@ public class BillingCycleInvoiceService {
 
     private final InvoiceRepository invoiceRepository;
     private final InvoiceService invoiceService;
+    private final InvoiceSearchRepository invoiceSearchRepository;
+    private final InvoiceAggregateService invoiceAggregateService;
 
-    public BillingCycleInvoiceService(InvoiceRepository invoiceRepository, @Lazy InvoiceService invoiceService) {
+    public BillingCycleInvoiceService(InvoiceRepository invoiceRepository, @Lazy InvoiceService invoiceService,
+                                      InvoiceSearchRepository invoiceSearchRepository,
+                                      InvoiceAggregateService invoiceAggregateService) {
         this.invoiceRepository = invoiceRepository;
         this.invoiceService = invoiceService;
+        this.invoiceSearchRepository = invoiceSearchRepository;
+        this.invoiceAggregateService = invoiceAggregateService;
     }
 
+    @Transactional(readOnly = true)
     public List<BuildingInvoiceSummaryDto> summarizeByCycle(UUID cycleId, String serviceCode, String month) {
-        List<BuildingInvoiceSummary> summaryRows = invoiceRepository.summarizeByCycleAndBuilding(cycleId);
-        
-        return summaryRows.stream()
-                .map(row -> BuildingInvoiceSummaryDto.builder()
-                        .buildingId(row.getBuildingId())
-                        .buildingCode(row.getBuildingCode())
-                        .buildingName(row.getBuildingName())
-                        .status(row.getStatus())
-                        .totalAmount(row.getTotalAmount())
-                        .invoiceCount(row.getInvoiceCount())
-                        .build())
-                .collect(Collectors.toList());
+        // Đọc từ bảng tổng hợp được cập nhật incremental thay vì quét toàn bộ hóa đơn của kỳ
+        return invoiceAggregateService.summarizeByCycle(cycleId, serviceCode);
     }
 
+    @Transactional(readOnly = true)
     public List<InvoiceDto> getInvoicesByCycle(UUID cycleId, String serviceCode, String month) {
         List<Invoice> invoices = invoiceRepository.findByCycleId(cycleId);
         return invoices.stream()
@@ -47,11 +47,21 @@ public class BillingCycleInvoiceService {
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<InvoiceDto> getInvoicesByBuilding(UUID cycleId, UUID buildingId, String serviceCode, String month) {
         return invoiceRepository.findByCycleIdAndBuildingId(cycleId, buildingId)
                 .stream()
                 .map(invoiceService::mapToDto)
                 .collect(Collectors.toList());
     }
-}
 
+    /**
+     * Duyệt hóa đơn của cycle theo cursor DB cho export streaming; hóa đơn cùng tòa nhà đến liên tiếp nhau.
+     */
+    @Transactional(readOnly = true)
+    public void streamInvoicesForExport(UUID cycleId, UUID buildingId,
+                                        BiConsumer<InvoiceDto, InvoiceSearchRepository.ExportRow> handler) {
+        invoiceSearchRepository.streamCycleForExport(cycleId, buildingId,
+                row -> handler.accept(invoiceService.mapToDto(row.invoice(), row.lines()), row));
+    }
+}
@@ -0,0 +1,35 @@
+package com.QhomeBase.financebillingservice.service;
+
+import org.springframework.http.MediaType;
+
+public enum ExportFormat {
+    XLSX("xlsx", MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet")),
+    CSV("csv", MediaType.parseMediaType("text/csv;charset=UTF-8"));
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    ExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public static ExportFormat fromParam(String format) {
+        if (format == null || format.isBlank()) {
+            return XLSX;
+        }
+        try {
+            return ExportFormat.valueOf(format.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Định dạng export không hỗ trợ: " + format);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.BuildingInvoiceSummaryDto;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.InvoiceAggregateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Duy trì bảng tổng hợp dashboard theo (kỳ, tòa nhà, trạng thái, dịch vụ).
+ * Các hàm on* phải được gọi trong cùng transaction với thay đổi hóa đơn tương ứng;
+ * sai lệch (nếu có) được sửa bởi job reconcile gọi {@link #rebuildCycle}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceAggregateService {
+
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private final InvoiceAggregateRepository invoiceAggregateRepository;
+
+    public void onCreated(Collection<Invoice> invoices) {
+        Map<InvoiceStatus, List<UUID>> idsByStatus = invoices.stream()
+                .filter(invoice -> invoice.getCycleId() != null && invoice.getPayerUnitId() != null)
+                .collect(Collectors.groupingBy(Invoice::getStatus,
+                        Collectors.mapping(Invoice::getId, Collectors.toList())));
+        idsByStatus.forEach((status, ids) -> apply(ids, status, 1));
+    }
+
+    public void onStatusChanged(Invoice invoice, InvoiceStatus oldStatus) {
+        if (invoice.getCycleId() == null || invoice.getPayerUnitId() == null) {
+            return;
+        }
+        onStatusChanged(List.of(invoice.getId()), oldStatus, invoice.getStatus());
+    }
+
+    public void onStatusChanged(Collection<UUID> invoiceIds, InvoiceStatus oldStatus, InvoiceStatus newStatus) {
+        if (oldStatus == newStatus || invoiceIds.isEmpty()) {
+            return;
+        }
+        if (oldStatus != null) {
+            apply(invoiceIds, oldStatus, -1);
+        }
+        if (newStatus != null) {
+            apply(invoiceIds, newStatus, 1);
+        }
+    }
+
+    /**
+     * Gọi trước khi sửa invoice lines của các hóa đơn đang ở trạng thái {@code status}
+     * (rút phần đóng góp cũ), rồi gọi {@link #onAmountsChanged} sau khi sửa xong
+     */
+    public void onAmountsChanging(Collection<UUID> invoiceIds, InvoiceStatus status) {
+        apply(invoiceIds, status, -1);
+    }
+
+    public void onAmountsChanged(Collection<UUID> invoiceIds, InvoiceStatus status) {
+        apply(invoiceIds, status, 1);
+    }
+
+    /**
+     * Tổng hợp theo tòa nhà của một kỳ; {@code serviceCode} rỗng nghĩa là tất cả dịch vụ
+     */
+    @Transactional(readOnly = true)
+    public List<BuildingInvoiceSummaryDto> summarizeByCycle(UUID cycleId, String serviceCode) {
+        String key = serviceCode == null || serviceCode.isBlank()
+                ? InvoiceAggregateRepository.ALL_SERVICES
+                : serviceCode.trim().toUpperCase();
+        return invoiceAggregateRepository.summarizeByCycle(cycleId, key);
+    }
+
+    @Transactional
+    public void rebuildCycle(UUID cycleId) {
+        invoiceAggregateRepository.rebuildCycle(cycleId);
+    }
+
+    public List<UUID> findCycleIds() {
+        return invoiceAggregateRepository.findCycleIds();
+    }
+
+    private void apply(Collection<UUID> invoiceIds, InvoiceStatus status, int sign) {
+        List<UUID> ids = new ArrayList<>(invoiceIds);
+        for (int from = 0; from < ids.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            List<UUID> chunk = ids.subList(from, Math.min(ids.size(), from + IN_CLAUSE_CHUNK_SIZE));
+            invoiceAggregateRepository.applyDelta(chunk, status.name(), sign);
+        }
+    }
+}
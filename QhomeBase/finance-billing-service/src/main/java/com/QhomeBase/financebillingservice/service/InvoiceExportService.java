@@ -3,16 +3,25 @@ package com.QhomeBase.financebillingservice.service;
 import com.QhomeBase.financebillingservice.dto.InvoiceDto;
 import com.QhomeBase.financebillingservice.model.InvoiceLine;
 import com.QhomeBase.financebillingservice.repository.InvoiceLineRepository;
+import com.QhomeBase.financebillingservice.util.CsvWriter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -28,6 +37,23 @@ public class InvoiceExportService {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy");
     private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
+    private static final String OTHER_SERVICE = "OTHER";
+    private static final int SXSSF_WINDOW_SIZE = 200;
+    private static final int STREAM_COLUMN_WIDTH = 20 * 256;
+
+    private static final String[] INVOICE_HEADERS = {
+            "STT", "Mã HĐ", "Ngày phát hành", "Hạn thanh toán", "Người thanh toán",
+            "Địa chỉ", "Mô tả", "Số lượng", "Đơn giá", "Thành tiền",
+            "Trạng thái", "Ngày thanh toán", "Phương thức", "Mã giao dịch"
+    };
+
+    private static final String[] CSV_HEADERS = {
+            "STT", "Mã HĐ", "Ngày phát hành", "Hạn thanh toán", "Người thanh toán",
+            "Địa chỉ", "Dịch vụ", "Mô tả", "Số lượng", "Đơn giá", "Thành tiền",
+            "Trạng thái", "Ngày thanh toán", "Phương thức", "Mã giao dịch"
+    };
+
+    @Transactional(readOnly = true)
     public byte[] exportInvoicesToExcel(
             String serviceCode,
             String status,
@@ -46,9 +72,11 @@ public class InvoiceExportService {
             CellStyle dateStyle = createDateStyle(workbook);
 
             Map<String, List<InvoiceDto>> invoicesByService = new HashMap<>();
+            Map<UUID, List<InvoiceLine>> linesByInvoiceId = invoiceLineRepository.findGroupedByInvoiceIds(
+                    invoices.stream().map(InvoiceDto::getId).toList());
             
             for (InvoiceDto invoice : invoices) {
-                List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
+                List<InvoiceLine> lines = linesByInvoiceId.getOrDefault(invoice.getId(), List.of());
                 
                 if (lines.isEmpty()) {
                     invoicesByService.computeIfAbsent("OTHER", k -> new ArrayList<>()).add(invoice);
@@ -75,22 +103,11 @@ public class InvoiceExportService {
                 Sheet sheet = workbook.createSheet(sheetName);
 
                 int rowNum = 0;
-                Row headerRow = sheet.createRow(rowNum++);
-                String[] headers = {
-                        "STT", "Mã HĐ", "Ngày phát hành", "Hạn thanh toán", "Người thanh toán",
-                        "Địa chỉ", "Mô tả", "Số lượng", "Đơn giá", "Thành tiền",
-                        "Trạng thái", "Ngày thanh toán", "Phương thức", "Mã giao dịch"
-                };
-                
-                for (int i = 0; i < headers.length; i++) {
-                    Cell cell = headerRow.createCell(i);
-                    cell.setCellValue(headers[i]);
-                    cell.setCellStyle(headerStyle);
-                }
+                createHeaderRow(sheet.createRow(rowNum++), headerStyle);
 
                 int stt = 1;
                 for (InvoiceDto invoice : uniqueInvoices) {
-                    List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
+                    List<InvoiceLine> lines = linesByInvoiceId.getOrDefault(invoice.getId(), List.of());
                     
                     List<InvoiceLine> filteredLines = lines.stream()
                             .filter(line -> {
@@ -112,7 +129,7 @@ public class InvoiceExportService {
                     }
                 }
 
-                for (int i = 0; i < headers.length; i++) {
+                for (int i = 0; i < INVOICE_HEADERS.length; i++) {
                     sheet.autoSizeColumn(i);
                 }
             }
@@ -125,6 +142,161 @@ public class InvoiceExportService {
         }
     }
 
+    /**
+     * Export streaming: hóa đơn được đọc bằng cursor DB và ghi thẳng ra {@code out}.
+     * Với XLSX, workbook SXSSF chỉ giữ {@value #SXSSF_WINDOW_SIZE} dòng mỗi sheet trong bộ nhớ,
+     * phần còn lại được đẩy xuống file tạm; với CSV mỗi dòng ghi ra ngay.
+     */
+    @Transactional(readOnly = true)
+    public void streamInvoicesExport(
+            String serviceCode,
+            String status,
+            UUID unitId,
+            UUID buildingId,
+            String startDate,
+            String endDate,
+            ExportFormat format,
+            OutputStream out) throws IOException {
+        try {
+            if (format == ExportFormat.CSV) {
+                streamInvoicesCsv(serviceCode, status, unitId, buildingId, startDate, endDate, out);
+            } else {
+                streamInvoicesXlsx(serviceCode, status, unitId, buildingId, startDate, endDate, out);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void streamInvoicesXlsx(
+            String serviceCode,
+            String status,
+            UUID unitId,
+            UUID buildingId,
+            String startDate,
+            String endDate,
+            OutputStream out) throws IOException {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(SXSSF_WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        try {
+            CellStyle headerStyle = createHeaderStyle(workbook);
+            CellStyle dataStyle = createDataStyle(workbook);
+            CellStyle currencyStyle = createCurrencyStyle(workbook);
+            CellStyle dateStyle = createDateStyle(workbook);
+
+            // Sheet tổng hợp tạo trước để đứng đầu file, nội dung ghi sau khi đã duyệt hết hóa đơn
+            Sheet summarySheet = workbook.createSheet("Tổng hợp");
+            ExportTotals totals = new ExportTotals();
+            Map<String, ServiceGroup> groups = new LinkedHashMap<>();
+
+            invoiceService.streamInvoicesForAdmin(serviceCode, status, unitId, buildingId, startDate, endDate, row -> {
+                InvoiceDto invoice = invoiceService.mapToDto(row.invoice(), row.lines());
+                totals.add(invoice);
+                groupLinesByService(row.lines()).forEach((serviceKey, lines) -> {
+                    ServiceGroup group = groups.computeIfAbsent(serviceKey, key -> {
+                        ServiceGroup created = new ServiceGroup();
+                        created.sheet = workbook.createSheet(getServiceSheetName(key));
+                        createHeaderRow(created.sheet.createRow(created.rowNum++), headerStyle);
+                        for (int i = 0; i < INVOICE_HEADERS.length; i++) {
+                            created.sheet.setColumnWidth(i, STREAM_COLUMN_WIDTH);
+                        }
+                        return created;
+                    });
+                    group.add(invoice);
+                    if (lines.isEmpty()) {
+                        createInvoiceRow(group.sheet.createRow(group.rowNum++), invoice, null, group.invoiceCount,
+                                dataStyle, currencyStyle, dateStyle, false);
+                    }
+                    for (InvoiceLine line : lines) {
+                        createInvoiceRow(group.sheet.createRow(group.rowNum++), invoice, line, group.invoiceCount,
+                                dataStyle, currencyStyle, dateStyle, false);
+                    }
+                });
+            });
+
+            writeSummarySheet(summarySheet, totals, groups, headerStyle, dataStyle, currencyStyle);
+            workbook.write(out);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void streamInvoicesCsv(
+            String serviceCode,
+            String status,
+            UUID unitId,
+            UUID buildingId,
+            String startDate,
+            String endDate,
+            OutputStream out) throws IOException {
+        CsvWriter csv = new CsvWriter(out);
+        csv.writeRow((Object[]) CSV_HEADERS);
+        int[] stt = {0};
+
+        invoiceService.streamInvoicesForAdmin(serviceCode, status, unitId, buildingId, startDate, endDate, row -> {
+            InvoiceDto invoice = invoiceService.mapToDto(row.invoice(), row.lines());
+            stt[0]++;
+            try {
+                if (row.lines().isEmpty()) {
+                    csv.writeRow(toCsvValues(invoice, null, stt[0]));
+                }
+                for (InvoiceLine line : row.lines()) {
+                    csv.writeRow(toCsvValues(invoice, line, stt[0]));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+
+        csv.flush();
+    }
+
+    private Map<String, List<InvoiceLine>> groupLinesByService(List<InvoiceLine> lines) {
+        Map<String, List<InvoiceLine>> byService = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            byService.put(OTHER_SERVICE, List.of());
+            return byService;
+        }
+        for (InvoiceLine line : lines) {
+            String service = line.getServiceCode() != null ? line.getServiceCode() : OTHER_SERVICE;
+            byService.computeIfAbsent(service, k -> new ArrayList<>()).add(line);
+        }
+        return byService;
+    }
+
+    private Object[] toCsvValues(InvoiceDto invoice, InvoiceLine line, int stt) {
+        return new Object[] {
+                stt,
+                invoice.getCode(),
+                invoice.getIssuedAt() != null ? invoice.getIssuedAt().format(DATETIME_FORMATTER) : "",
+                invoice.getDueDate() != null ? invoice.getDueDate().format(DATE_FORMATTER) : "",
+                invoice.getBillToName(),
+                invoice.getBillToAddress(),
+                line != null ? getServiceName(line.getServiceCode()) : "",
+                line != null ? line.getDescription() : "",
+                line != null && line.getQuantity() != null
+                        ? line.getQuantity().toPlainString() + " " + (line.getUnit() != null ? line.getUnit() : "")
+                        : "",
+                line != null && line.getUnitPrice() != null ? line.getUnitPrice().toPlainString() : "",
+                line != null && line.getLineTotal() != null
+                        ? line.getLineTotal().toPlainString()
+                        : invoice.getTotalAmount() != null ? invoice.getTotalAmount().toPlainString() : "",
+                getStatusName(invoice.getStatus() != null ? invoice.getStatus().name() : ""),
+                invoice.getPaidAt() != null ? invoice.getPaidAt().format(DATETIME_FORMATTER) : "",
+                invoice.getPaymentGateway(),
+                invoice.getVnpTransactionRef()
+        };
+    }
+
+    private void createHeaderRow(Row headerRow, CellStyle headerStyle) {
+        for (int i = 0; i < INVOICE_HEADERS.length; i++) {
+            Cell cell = headerRow.createCell(i);
+            cell.setCellValue(INVOICE_HEADERS[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
     private void createInvoiceRow(Row row, InvoiceDto invoice, InvoiceLine line, int stt,
                                   CellStyle dataStyle, CellStyle currencyStyle, CellStyle dateStyle, boolean includeServiceColumn) {
         int colNum = 0;
@@ -292,6 +464,24 @@ public class InvoiceExportService {
     private void createSummarySheet(Sheet sheet, List<InvoiceDto> allInvoices, 
                                     Map<String, List<InvoiceDto>> invoicesByService,
                                     CellStyle headerStyle, CellStyle dataStyle, CellStyle currencyStyle) {
+        ExportTotals totals = new ExportTotals();
+        allInvoices.forEach(totals::add);
+
+        Map<String, ServiceGroup> groups = new LinkedHashMap<>();
+        for (Map.Entry<String, List<InvoiceDto>> entry : invoicesByService.entrySet()) {
+            ServiceGroup group = new ServiceGroup();
+            entry.getValue().stream().distinct().forEach(group::add);
+            groups.put(entry.getKey(), group);
+        }
+
+        writeSummarySheet(sheet, totals, groups, headerStyle, dataStyle, currencyStyle);
+    }
+
+    private void writeSummarySheet(Sheet sheet, ExportTotals totals, Map<String, ServiceGroup> groups,
+                                   CellStyle headerStyle, CellStyle dataStyle, CellStyle currencyStyle) {
+        if (sheet instanceof SXSSFSheet streamingSheet) {
+            streamingSheet.trackAllColumnsForAutoSizing();
+        }
         int rowNum = 0;
 
         Row titleRow = sheet.createRow(rowNum++);
@@ -314,33 +504,12 @@ public class InvoiceExportService {
             cell.setCellStyle(headerStyle);
         }
 
-        int totalInvoices = allInvoices.size();
-        double totalAmount = allInvoices.stream()
-                .mapToDouble(inv -> inv.getTotalAmount() != null ? inv.getTotalAmount().doubleValue() : 0.0)
-                .sum();
-
-        long paidCount = allInvoices.stream()
-                .filter(inv -> inv.getStatus() != null && "PAID".equals(inv.getStatus().name()))
-                .count();
-        double paidAmount = allInvoices.stream()
-                .filter(inv -> inv.getStatus() != null && "PAID".equals(inv.getStatus().name()))
-                .mapToDouble(inv -> inv.getTotalAmount() != null ? inv.getTotalAmount().doubleValue() : 0.0)
-                .sum();
-
-        long publishedCount = allInvoices.stream()
-                .filter(inv -> inv.getStatus() != null && "PUBLISHED".equals(inv.getStatus().name()))
-                .count();
-        double publishedAmount = allInvoices.stream()
-                .filter(inv -> inv.getStatus() != null && "PUBLISHED".equals(inv.getStatus().name()))
-                .mapToDouble(inv -> inv.getTotalAmount() != null ? inv.getTotalAmount().doubleValue() : 0.0)
-                .sum();
-
-        createSummaryRow(sheet, rowNum++, "Tổng số hóa đơn", String.valueOf(totalInvoices), dataStyle);
-        createSummaryRow(sheet, rowNum++, "Tổng giá trị", totalAmount, currencyStyle);
-        createSummaryRow(sheet, rowNum++, "Số hóa đơn đã thanh toán", String.valueOf(paidCount), dataStyle);
-        createSummaryRow(sheet, rowNum++, "Tổng giá trị đã thanh toán", paidAmount, currencyStyle);
-        createSummaryRow(sheet, rowNum++, "Số hóa đơn chưa thanh toán", String.valueOf(publishedCount), dataStyle);
-        createSummaryRow(sheet, rowNum++, "Tổng giá trị chưa thanh toán", publishedAmount, currencyStyle);
+        createSummaryRow(sheet, rowNum++, "Tổng số hóa đơn", String.valueOf(totals.invoiceCount), dataStyle);
+        createSummaryRow(sheet, rowNum++, "Tổng giá trị", totals.totalAmount, currencyStyle);
+        createSummaryRow(sheet, rowNum++, "Số hóa đơn đã thanh toán", String.valueOf(totals.paidCount), dataStyle);
+        createSummaryRow(sheet, rowNum++, "Tổng giá trị đã thanh toán", totals.paidAmount, currencyStyle);
+        createSummaryRow(sheet, rowNum++, "Số hóa đơn chưa thanh toán", String.valueOf(totals.publishedCount), dataStyle);
+        createSummaryRow(sheet, rowNum++, "Tổng giá trị chưa thanh toán", totals.publishedAmount, currencyStyle);
 
         rowNum += 2;
 
@@ -352,22 +521,11 @@ public class InvoiceExportService {
             cell.setCellStyle(headerStyle);
         }
 
-        for (Map.Entry<String, List<InvoiceDto>> entry : invoicesByService.entrySet()) {
-            String serviceCode = entry.getKey();
-            List<InvoiceDto> serviceInvoices = entry.getValue();
-            List<InvoiceDto> uniqueInvoices = serviceInvoices.stream()
-                    .distinct()
-                    .collect(java.util.stream.Collectors.toList());
-            
-            int count = uniqueInvoices.size();
-            double amount = uniqueInvoices.stream()
-                    .mapToDouble(inv -> inv.getTotalAmount() != null ? inv.getTotalAmount().doubleValue() : 0.0)
-                    .sum();
-
+        for (Map.Entry<String, ServiceGroup> entry : groups.entrySet()) {
             Row row = sheet.createRow(rowNum++);
-            createCell(row, 0, getServiceSheetName(serviceCode), dataStyle);
-            createCell(row, 1, String.valueOf(count), dataStyle);
-            createCell(row, 2, amount, currencyStyle);
+            createCell(row, 0, getServiceSheetName(entry.getKey()), dataStyle);
+            createCell(row, 1, String.valueOf(entry.getValue().invoiceCount), dataStyle);
+            createCell(row, 2, entry.getValue().amount, currencyStyle);
         }
 
         for (int i = 0; i < 3; i++) {
@@ -386,5 +544,47 @@ public class InvoiceExportService {
         createCell(row, 0, label, style);
         createCell(row, 1, value, style);
     }
-}
 
+    private static double amountOf(InvoiceDto invoice) {
+        BigDecimal total = invoice.getTotalAmount();
+        return total != null ? total.doubleValue() : 0.0;
+    }
+
+    private static final class ExportTotals {
+        private long invoiceCount;
+        private double totalAmount;
+        private long paidCount;
+        private double paidAmount;
+        private long publishedCount;
+        private double publishedAmount;
+
+        private void add(InvoiceDto invoice) {
+            double amount = amountOf(invoice);
+            invoiceCount++;
+            totalAmount += amount;
+            String statusName = invoice.getStatus() != null ? invoice.getStatus().name() : null;
+            if ("PAID".equals(statusName)) {
+                paidCount++;
+                paidAmount += amount;
+            } else if ("PUBLISHED".equals(statusName)) {
+                publishedCount++;
+                publishedAmount += amount;
+            }
+        }
+    }
+
+    /**
+     * Số liệu của một loại dịch vụ; khi export streaming còn giữ sheet và dòng đang ghi.
+     */
+    private static final class ServiceGroup {
+        private Sheet sheet;
+        private int rowNum;
+        private int invoiceCount;
+        private double amount;
+
+        private void add(InvoiceDto invoice) {
+            invoiceCount++;
+            amount += amountOf(invoice);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.constants.ServiceCode;
+import com.QhomeBase.financebillingservice.event.BillingEventType;
+import com.QhomeBase.financebillingservice.event.InvoicePaidEvent;
+import com.QhomeBase.financebillingservice.event.InvoicePublishedEvent;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceLine;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.OutboxRepository;
+import com.QhomeBase.financebillingservice.repository.OutboxRepository.OutboxEvent;
+import com.QhomeBase.financebillingservice.repository.ResidentRepository;
+import com.QhomeBase.financebillingservice.repository.ResidentRepository.ResidentContact;
+import com.QhomeBase.financebillingservice.util.TimeOrderedUuid;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Ghi sự kiện hóa đơn vào outbox trong cùng transaction với thay đổi hóa đơn.
+ * Việc gửi thông báo / email do customer-interaction-service đảm nhận sau khi OutboxRelayJob đẩy sự kiện lên broker,
+ * nên request tạo / thanh toán hóa đơn không còn phụ thuộc vào độ trễ của các service khác.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceOutboxService {
+
+    private static final String AGGREGATE_INVOICE = "INVOICE";
+    private static final Set<String> METERED_SERVICES = Set.of(ServiceCode.ELECTRIC, ServiceCode.WATER);
+
+    private final OutboxRepository outboxRepository;
+    private final ResidentRepository residentRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Một sự kiện InvoicePublished cho mỗi hóa đơn đã phát hành có căn hộ thanh toán (bỏ qua DRAFT / VOID)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void invoicesPublished(List<Invoice> invoices, Map<UUID, List<InvoiceLine>> linesByInvoiceId) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<OutboxEvent> events = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            if (invoice.getPayerUnitId() == null
+                    || invoice.getStatus() == InvoiceStatus.DRAFT
+                    || invoice.getStatus() == InvoiceStatus.VOID) {
+                continue;
+            }
+            List<InvoiceLine> lines = linesByInvoiceId.getOrDefault(invoice.getId(), List.of());
+            UUID eventId = TimeOrderedUuid.next();
+            Set<String> serviceCodes = new LinkedHashSet<>();
+            for (InvoiceLine line : lines) {
+                if (line.getServiceCode() != null) {
+                    serviceCodes.add(ServiceCode.normalize(line.getServiceCode()));
+                }
+            }
+            InvoicePublishedEvent event = new InvoicePublishedEvent(
+                    eventId,
+                    invoice.getId(),
+                    invoice.getCode(),
+                    invoice.getStatus().name(),
+                    invoice.getPayerUnitId(),
+                    invoice.getPayerResidentId(),
+                    List.copyOf(serviceCodes),
+                    invoice.getTotalAmount(),
+                    invoice.getCurrency(),
+                    invoice.getDueDate(),
+                    meteredUsage(serviceCodes, lines),
+                    meteredUnit(serviceCodes, lines),
+                    now);
+            events.add(toOutboxEvent(eventId, invoice.getId(), BillingEventType.INVOICE_PUBLISHED, event));
+        }
+        outboxRepository.insertAll(events);
+        log.debug(" [InvoiceOutboxService] Queued {} InvoicePublished event(s)", events.size());
+    }
+
+    /**
+     * Sự kiện InvoicePaid; chỉ gọi khi chính transaction hiện tại chuyển hóa đơn sang PAID
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void invoicePaid(Invoice invoice, String txnRef) {
+        String email = null;
+        String name = null;
+        if (invoice.getPayerResidentId() != null) {
+            Optional<ResidentContact> contact = residentRepository.findContactByResidentId(invoice.getPayerResidentId());
+            if (contact.isPresent()) {
+                email = contact.get().email();
+                name = contact.get().fullName();
+            }
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        UUID eventId = TimeOrderedUuid.next();
+        InvoicePaidEvent event = new InvoicePaidEvent(
+                eventId,
+                invoice.getId(),
+                invoice.getCode(),
+                invoice.getPayerUnitId(),
+                invoice.getPayerResidentId(),
+                invoice.getTotalAmount(),
+                invoice.getCurrency(),
+                invoice.getPaidAt() != null ? invoice.getPaidAt() : now,
+                invoice.getPaymentGateway(),
+                txnRef,
+                email,
+                name,
+                now);
+        outboxRepository.insertAll(List.of(toOutboxEvent(eventId, invoice.getId(), BillingEventType.INVOICE_PAID, event)));
+    }
+
+    private OutboxEvent toOutboxEvent(UUID eventId, UUID invoiceId, BillingEventType type, Object payload) {
+        try {
+            return new OutboxEvent(eventId, AGGREGATE_INVOICE, invoiceId, type.type(),
+                    objectMapper.writeValueAsString(payload), 0);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + type.type() + " event for invoice " + invoiceId, e);
+        }
+    }
+
+    /**
+     * Tổng số lượng của các dòng khi hóa đơn chỉ gồm một dịch vụ điện hoặc nước (các bậc giá cộng lại thành lượng tiêu thụ)
+     */
+    private static BigDecimal meteredUsage(Set<String> serviceCodes, List<InvoiceLine> lines) {
+        if (serviceCodes.size() != 1 || !METERED_SERVICES.containsAll(serviceCodes)) {
+            return null;
+        }
+        return lines.stream()
+                .map(InvoiceLine::getQuantity)
+                .filter(quantity -> quantity != null)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private static String meteredUnit(Set<String> serviceCodes, List<InvoiceLine> lines) {
+        if (serviceCodes.size() != 1 || !METERED_SERVICES.containsAll(serviceCodes)) {
+            return null;
+        }
+        return lines.stream()
+                .map(InvoiceLine::getUnit)
+                .filter(unit -> unit != null && !unit.isBlank())
+                .findFirst()
+                .orElse(null);
+    }
+}
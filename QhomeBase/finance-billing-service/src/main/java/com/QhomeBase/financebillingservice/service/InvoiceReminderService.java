@@ -1,26 +1,27 @@
 package com.QhomeBase.financebillingservice.service;
 
-import com.QhomeBase.financebillingservice.client.BaseServiceClient;
-import com.QhomeBase.financebillingservice.model.Invoice;
-import com.QhomeBase.financebillingservice.model.InvoiceLine;
 import com.QhomeBase.financebillingservice.model.InvoiceStatus;
-import com.QhomeBase.financebillingservice.repository.InvoiceLineRepository;
-import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceReminderRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceReminderRepository.DueInvoice;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.text.NumberFormat;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -30,278 +31,233 @@ public class InvoiceReminderService {
     private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
     private static final int REMINDER_INTERVAL_HOURS = 24;
     private static final int FINAL_WARNING_REMINDER = 4; // Lần thứ 4 là cảnh báo cuối (cắt điện)
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
 
-    private final InvoiceRepository invoiceRepository;
-    private final InvoiceLineRepository invoiceLineRepository;
+    private final InvoiceReminderRepository invoiceReminderRepository;
     private final NotificationClient notificationClient;
-    private final BaseServiceClient baseServiceClient;
+    private final InvoiceAggregateService invoiceAggregateService;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${invoice.reminder.enabled:true}")
     private boolean remindersEnabled;
 
-    public InvoiceRepository getInvoiceRepository() {
-        return invoiceRepository;
-    }
-
     /**
-     * Find invoices that need reminder:
-     * 1. Status = PUBLISHED (chưa thanh toán)
-     * 2. Đã qua 24 giờ từ khi tạo (issued_at + 24h <= now)
-     * 3. Chưa nhắc đủ 4 lần (reminder_count < 4: 3 lần nhắc + 1 lần cảnh báo cuối)
-     * 4. Đã qua 24 giờ từ lần nhắc cuối (last_reminder_at + 24h <= now) hoặc chưa nhắc lần nào
+     * Gửi nhắc thanh toán cho các hóa đơn đến hạn nhắc:
+     * 1. Status = PUBLISHED (chưa thanh toán) và có payerResidentId
+     * 2. Đã qua 24 giờ từ khi tạo và từ lần nhắc cuối (nếu có)
+     * 3. Chưa nhắc đủ 4 lần (3 lần nhắc + 1 lần cảnh báo cuối)
+     * Hóa đơn được nhận và cập nhật reminder_count trong một câu UPDATE trước khi gửi,
+     * nên hai instance chạy cùng lúc không gửi trùng. Thông báo được gộp theo cư dân.
+     *
+     * @return số hóa đơn đã được nhắc
      */
-    @Transactional(readOnly = true)
-    public List<Invoice> findInvoicesNeedingReminder() {
+    public int sendDueReminders() {
         if (!remindersEnabled) {
-            return List.of();
+            return 0;
         }
 
         OffsetDateTime now = OffsetDateTime.now(ZONE);
+        List<DueInvoice> due = invoiceReminderRepository.claimReminders(
+                now, now.minusHours(REMINDER_INTERVAL_HOURS), FINAL_WARNING_REMINDER);
+        if (due.isEmpty()) {
+            return 0;
+        }
 
-        // Find invoices that:
-        // 1. Status = PUBLISHED
-        // 2. Issued at least 24 hours ago
-        // 3. Reminder count < 4 (3 lần nhắc + 1 lần cảnh báo cuối)
-        // 4. Last reminder was at least 24 hours ago (or never reminded)
-        List<Invoice> allPublished = invoiceRepository.findByStatus(InvoiceStatus.PUBLISHED);
-        
-        return allPublished.stream()
-                .filter(invoice -> {
-                    // Skip invoices without payerResidentId (cannot send reminder)
-                    if (invoice.getPayerResidentId() == null) {
-                        return false;
-                    }
-                    
-                    // Check if issued at least 24 hours ago
-                    if (invoice.getIssuedAt() == null) {
-                        return false;
-                    }
-                    OffsetDateTime firstReminderTime = invoice.getIssuedAt().plusHours(REMINDER_INTERVAL_HOURS);
-                    if (now.isBefore(firstReminderTime)) {
-                        return false; // Chưa đến 24 giờ từ khi tạo
-                    }
-
-                    // Check reminder count (tối đa 4 lần: 3 nhắc + 1 cảnh báo cuối)
-                    int reminderCount = invoice.getReminderCount() != null ? invoice.getReminderCount() : 0;
-                    if (reminderCount >= FINAL_WARNING_REMINDER) {
-                        return false; // Đã nhắc đủ 4 lần
-                    }
-
-                    // Check if last reminder was at least 24 hours ago (or never reminded)
-                    if (invoice.getLastReminderAt() != null) {
-                        OffsetDateTime nextReminderTime = invoice.getLastReminderAt().plusHours(REMINDER_INTERVAL_HOURS);
-                        if (now.isBefore(nextReminderTime)) {
-                            return false; // Chưa đến 24 giờ từ lần nhắc cuối
-                        }
-                    }
-
-                    return true;
-                })
-                .toList();
+        groupByResident(due).forEach((residentId, invoices) -> {
+            // Cảnh báo cuối được gửi riêng để không lẫn với các lần nhắc thông thường
+            Map<Boolean, List<DueInvoice>> byKind = invoices.stream()
+                    .collect(Collectors.partitioningBy(inv -> inv.reminderCount() == FINAL_WARNING_REMINDER));
+            sendReminder(residentId, byKind.get(false), false);
+            sendReminder(residentId, byKind.get(true), true);
+        });
+        return due.size();
     }
 
     /**
-     * Find invoices that need to be marked as UNPAID:
-     * 1. Status = PUBLISHED
-     * 2. Đã nhắc đủ 4 lần (3 lần nhắc + 1 lần cảnh báo cuối)
-     * 3. Đã qua 24 giờ từ lần cảnh báo cuối
+     * Chuyển sang UNPAID (một câu UPDATE) các hóa đơn đã nhắc đủ 4 lần
+     * và đã qua 24 giờ từ lần cảnh báo cuối, sau đó báo cho cư dân.
+     *
+     * @return số hóa đơn đã chuyển sang UNPAID
      */
-    @Transactional(readOnly = true)
-    public List<Invoice> findInvoicesNeedingUnpaidStatus() {
+    public int markOverdueInvoicesAsUnpaid() {
         if (!remindersEnabled) {
-            return List.of();
+            return 0;
         }
 
         OffsetDateTime now = OffsetDateTime.now(ZONE);
-        List<Invoice> allPublished = invoiceRepository.findByStatus(InvoiceStatus.PUBLISHED);
-        
-        return allPublished.stream()
-                .filter(invoice -> {
-                    int reminderCount = invoice.getReminderCount() != null ? invoice.getReminderCount() : 0;
-                    // Phải đã nhắc đủ 4 lần (3 nhắc + 1 cảnh báo cuối)
-                    if (reminderCount < FINAL_WARNING_REMINDER) {
-                        return false;
-                    }
-                    
-                    // Phải đã qua 24 giờ từ lần cảnh báo cuối
-                    if (invoice.getLastReminderAt() == null) {
-                        return false;
-                    }
-                    OffsetDateTime unpaidTime = invoice.getLastReminderAt().plusHours(REMINDER_INTERVAL_HOURS);
-                    return now.isAfter(unpaidTime) || now.isEqual(unpaidTime);
-                })
-                .toList();
+        // Cập nhật trạng thái và bảng tổng hợp dashboard trong cùng một transaction
+        List<DueInvoice> marked = transactionTemplate.execute(status -> {
+            List<DueInvoice> rows = invoiceReminderRepository.markUnpaid(
+                    now.minusHours(REMINDER_INTERVAL_HOURS), FINAL_WARNING_REMINDER);
+            invoiceAggregateService.onStatusChanged(
+                    rows.stream().map(DueInvoice::id).toList(), InvoiceStatus.PUBLISHED, InvoiceStatus.UNPAID);
+            return rows;
+        });
+        if (marked == null || marked.isEmpty()) {
+            return 0;
+        }
+
+        groupByResident(marked).forEach(this::sendUnpaidNotification);
+        return marked.size();
     }
 
-    /**
-     * Send reminder notification for an invoice
-     */
-    @Transactional
-    public void sendReminder(Invoice invoice) {
-        // This should not happen as we filter invoices without payerResidentId in findInvoicesNeedingReminder
-        // But keep this check as a safety measure
-        if (invoice.getPayerResidentId() == null) {
-            log.debug("ℹ️ [InvoiceReminderService] Skipping reminder: payerResidentId is null for invoice {} (invoice may be old or system-generated)", invoice.getId());
+    private Map<UUID, List<DueInvoice>> groupByResident(List<DueInvoice> invoices) {
+        return invoices.stream()
+                .filter(inv -> inv.residentId() != null)
+                .collect(Collectors.groupingBy(DueInvoice::residentId, LinkedHashMap::new, Collectors.toList()));
+    }
+
+    private void sendReminder(UUID residentId, List<DueInvoice> invoices, boolean finalWarning) {
+        if (invoices.isEmpty()) {
             return;
         }
 
         try {
-            // Get buildingId from unitId
-            UUID buildingId = null;
-            if (invoice.getPayerUnitId() != null) {
-                try {
-                    BaseServiceClient.UnitInfo unitInfo = baseServiceClient.getUnitById(invoice.getPayerUnitId());
-                    if (unitInfo != null && unitInfo.getBuildingId() != null) {
-                        buildingId = unitInfo.getBuildingId();
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ [InvoiceReminderService] Failed to get buildingId from unitId {}: {}", 
-                            invoice.getPayerUnitId(), e.getMessage());
-                }
-            }
-
-            // Calculate total amount
-            BigDecimal totalAmount = invoiceLineRepository.findByInvoiceId(invoice.getId()).stream()
-                    .map(InvoiceLine::getLineTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            DueInvoice first = invoices.get(0);
+            BigDecimal totalAmount = sum(invoices);
+            String amountText = formatAmount(totalAmount);
 
-            // Format amount
-            NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
-            currencyFormat.setMaximumFractionDigits(0);
-            String amountText = currencyFormat.format(totalAmount);
-
-            // Build notification message
-            String invoiceCode = invoice.getCode() != null ? invoice.getCode() : invoice.getId().toString();
-            int reminderCount = invoice.getReminderCount() != null ? invoice.getReminderCount() : 0;
-            int nextReminderCount = reminderCount + 1;
-            
             String title;
             String message;
-            
-            // Lần thứ 4 là cảnh báo cuối (cắt điện)
-            if (nextReminderCount == FINAL_WARNING_REMINDER) {
-                title = "⚠️ CẢNH BÁO CUỐI: Hóa đơn chưa thanh toán - " + invoiceCode;
-                message = String.format(
-                        "CẢNH BÁO: Bạn có hóa đơn chưa thanh toán với số tiền %s. Hạn thanh toán: %s. "
-                        + "Nếu không thanh toán trong vòng 24 giờ tới, dịch vụ sẽ bị cắt điện. Vui lòng thanh toán ngay!",
-                        amountText,
-                        invoice.getDueDate() != null 
-                                ? invoice.getDueDate().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")) 
-                                : "N/A");
+            if (invoices.size() == 1) {
+                String invoiceCode = codeOf(first);
+                String dueDate = first.dueDate() != null ? first.dueDate().format(DUE_DATE_FORMAT) : "N/A";
+                if (finalWarning) {
+                    title = "⚠️ CẢNH BÁO CUỐI: Hóa đơn chưa thanh toán - " + invoiceCode;
+                    message = String.format(
+                            "CẢNH BÁO: Bạn có hóa đơn chưa thanh toán với số tiền %s. Hạn thanh toán: %s. "
+                            + "Nếu không thanh toán trong vòng 24 giờ tới, dịch vụ sẽ bị cắt điện. Vui lòng thanh toán ngay!",
+                            amountText, dueDate);
+                } else {
+                    title = "Nhắc nhở thanh toán hóa đơn - " + invoiceCode;
+                    message = String.format(
+                            "Bạn có hóa đơn chưa thanh toán với số tiền %s. Hạn thanh toán: %s. "
+                            + "Vui lòng thanh toán sớm để tránh gián đoạn dịch vụ.",
+                            amountText, dueDate);
+                }
             } else {
-                // Các lần nhắc thông thường (1-3)
-                title = "Nhắc nhở thanh toán hóa đơn - " + invoiceCode;
-                message = String.format(
-                        "Bạn có hóa đơn chưa thanh toán với số tiền %s. Hạn thanh toán: %s. "
-                        + "Vui lòng thanh toán sớm để tránh gián đoạn dịch vụ.",
-                        amountText,
-                        invoice.getDueDate() != null 
-                                ? invoice.getDueDate().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")) 
-                                : "N/A");
+                String codes = invoices.stream().map(this::codeOf).collect(Collectors.joining(", "));
+                if (finalWarning) {
+                    title = String.format("⚠️ CẢNH BÁO CUỐI: %d hóa đơn chưa thanh toán", invoices.size());
+                    message = String.format(
+                            "CẢNH BÁO: Bạn có %d hóa đơn chưa thanh toán (%s) với tổng số tiền %s. "
+                            + "Nếu không thanh toán trong vòng 24 giờ tới, dịch vụ sẽ bị cắt điện. Vui lòng thanh toán ngay!",
+                            invoices.size(), codes, amountText);
+                } else {
+                    title = String.format("Nhắc nhở thanh toán %d hóa đơn", invoices.size());
+                    message = String.format(
+                            "Bạn có %d hóa đơn chưa thanh toán (%s) với tổng số tiền %s. "
+                            + "Vui lòng thanh toán sớm để tránh gián đoạn dịch vụ.",
+                            invoices.size(), codes, amountText);
+                }
             }
 
-            // Prepare data payload
-            Map<String, String> data = new HashMap<>();
-            data.put("invoiceId", invoice.getId().toString());
-            data.put("invoiceCode", invoiceCode);
-            data.put("amount", totalAmount.toString());
-            data.put("dueDate", invoice.getDueDate() != null ? invoice.getDueDate().toString() : "");
-            data.put("reminderCount", String.valueOf(nextReminderCount));
-            data.put("isFinalWarning", String.valueOf(nextReminderCount == FINAL_WARNING_REMINDER));
+            Map<String, String> data = basePayload(invoices, totalAmount);
+            data.put("dueDate", first.dueDate() != null ? first.dueDate().toString() : "");
+            data.put("reminderCount", String.valueOf(first.reminderCount()));
+            data.put("isFinalWarning", String.valueOf(finalWarning));
 
-            // Send notification
             notificationClient.sendResidentNotification(
-                    invoice.getPayerResidentId(),
-                    buildingId,
+                    residentId,
+                    buildingOf(invoices),
                     "BILL",
                     title,
                     message,
-                    invoice.getId(),
+                    first.id(),
                     "INVOICE_REMINDER",
                     data
             );
 
-            // Update reminder count and last reminder time
-            invoice.setReminderCount(reminderCount + 1);
-            invoice.setLastReminderAt(OffsetDateTime.now(ZONE));
-            invoiceRepository.save(invoice);
-
-            log.info("✅ [InvoiceReminderService] Sent reminder #{} {} to residentId={}, buildingId={}, invoiceId={}", 
-                    nextReminderCount, 
-                    nextReminderCount == FINAL_WARNING_REMINDER ? "(FINAL WARNING)" : "",
-                    invoice.getPayerResidentId(), buildingId, invoice.getId());
+            log.info("✅ [InvoiceReminderService] Sent {} for {} invoice(s) to residentId={}", 
+                    finalWarning ? "FINAL WARNING" : "reminder", invoices.size(), residentId);
         } catch (Exception e) {
-            log.error("❌ [InvoiceReminderService] Failed to send reminder for invoiceId={}: {}", 
-                    invoice.getId(), e.getMessage(), e);
+            log.error("❌ [InvoiceReminderService] Failed to send reminder to residentId={} for {} invoice(s): {}", 
+                    residentId, invoices.size(), e.getMessage(), e);
         }
     }
 
-    /**
-     * Mark invoice as UNPAID status
-     * This is called after final warning (reminder #4) and 24 hours have passed
-     */
-    @Transactional
-    public void markInvoiceAsUnpaid(Invoice invoice) {
-        if (invoice.getStatus() == InvoiceStatus.UNPAID) {
-            log.info("ℹ️ [InvoiceReminderService] Invoice {} is already UNPAID, skipping.", invoice.getId());
-            return;
-        }
-        
-        invoice.setStatus(InvoiceStatus.UNPAID);
-        invoiceRepository.save(invoice);
-        log.info("✅ [InvoiceReminderService] Invoice {} marked as UNPAID.", invoice.getId());
-
-        // Send notification about being marked as UNPAID
+    private void sendUnpaidNotification(UUID residentId, List<DueInvoice> invoices) {
         try {
-            // Get buildingId from unitId
-            UUID buildingId = null;
-            if (invoice.getPayerUnitId() != null) {
-                try {
-                    BaseServiceClient.UnitInfo unitInfo = baseServiceClient.getUnitById(invoice.getPayerUnitId());
-                    if (unitInfo != null && unitInfo.getBuildingId() != null) {
-                        buildingId = unitInfo.getBuildingId();
-                    }
-                } catch (Exception e) {
-                    log.warn("⚠️ [InvoiceReminderService] Failed to get buildingId from unitId {}: {}", 
-                            invoice.getPayerUnitId(), e.getMessage());
-                }
-            }
+            DueInvoice first = invoices.get(0);
+            BigDecimal totalAmount = sum(invoices);
 
-            // Calculate total amount
-            BigDecimal totalAmount = invoiceLineRepository.findByInvoiceId(invoice.getId()).stream()
-                    .map(InvoiceLine::getLineTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
+            String title;
+            String message;
+            if (invoices.size() == 1) {
+                String invoiceCode = codeOf(first);
+                title = "Hóa đơn đã chuyển sang trạng thái CHƯA THANH TOÁN - " + invoiceCode;
+                message = String.format(
+                        "Hóa đơn %s của bạn đã chuyển sang trạng thái CHƯA THANH TOÁN do quá hạn và chưa thanh toán. " +
+                        "Vui lòng thanh toán ngay để khôi phục dịch vụ.",
+                        invoiceCode);
+            } else {
+                String codes = invoices.stream().map(this::codeOf).collect(Collectors.joining(", "));
+                title = String.format("%d hóa đơn đã chuyển sang trạng thái CHƯA THANH TOÁN", invoices.size());
+                message = String.format(
+                        "Các hóa đơn %s của bạn đã chuyển sang trạng thái CHƯA THANH TOÁN do quá hạn và chưa thanh toán. " +
+                        "Vui lòng thanh toán ngay để khôi phục dịch vụ.",
+                        codes);
+            }
 
-            String invoiceCode = invoice.getCode() != null ? invoice.getCode() : invoice.getId().toString();
-            String title = "Hóa đơn đã chuyển sang trạng thái CHƯA THANH TOÁN - " + invoiceCode;
-            String message = String.format(
-                    "Hóa đơn %s của bạn đã chuyển sang trạng thái CHƯA THANH TOÁN do quá hạn và chưa thanh toán. " +
-                    "Vui lòng thanh toán ngay để khôi phục dịch vụ.",
-                    invoiceCode);
-            
-            Map<String, String> data = new HashMap<>();
-            data.put("invoiceId", invoice.getId().toString());
-            data.put("invoiceCode", invoiceCode);
+            Map<String, String> data = basePayload(invoices, totalAmount);
             data.put("status", InvoiceStatus.UNPAID.name());
-            data.put("amount", totalAmount.toString());
 
             notificationClient.sendResidentNotification(
-                    invoice.getPayerResidentId(),
-                    buildingId,
+                    residentId,
+                    buildingOf(invoices),
                     "BILL",
                     title,
                     message,
-                    invoice.getId(),
+                    first.id(),
                     "INVOICE_UNPAID",
                     data
             );
 
-            log.info("✅ [InvoiceReminderService] Sent UNPAID notification to residentId={}, buildingId={}, invoiceId={}", 
-                    invoice.getPayerResidentId(), buildingId, invoice.getId());
+            log.info("✅ [InvoiceReminderService] Sent UNPAID notification for {} invoice(s) to residentId={}", 
+                    invoices.size(), residentId);
         } catch (Exception e) {
-            log.error("❌ [InvoiceReminderService] Failed to send UNPAID notification for invoiceId={}: {}", 
-                    invoice.getId(), e.getMessage(), e);
+            log.error("❌ [InvoiceReminderService] Failed to send UNPAID notification to residentId={}: {}", 
+                    residentId, e.getMessage(), e);
         }
     }
-}
 
+    private Map<String, String> basePayload(List<DueInvoice> invoices, BigDecimal totalAmount) {
+        DueInvoice first = invoices.get(0);
+        Map<String, String> data = new HashMap<>();
+        data.put("invoiceId", first.id().toString());
+        data.put("invoiceCode", codeOf(first));
+        data.put("amount", totalAmount.toString());
+        if (invoices.size() > 1) {
+            data.put("invoiceIds", invoices.stream()
+                    .map(inv -> inv.id().toString())
+                    .collect(Collectors.joining(",")));
+            data.put("invoiceCount", String.valueOf(invoices.size()));
+        }
+        return data;
+    }
+
+    private BigDecimal sum(List<DueInvoice> invoices) {
+        return invoices.stream()
+                .map(DueInvoice::totalAmount)
+                .filter(Objects::nonNull)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    private UUID buildingOf(List<DueInvoice> invoices) {
+        return invoices.stream()
+                .map(DueInvoice::buildingId)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private String codeOf(DueInvoice invoice) {
+        return invoice.code() != null ? invoice.code() : invoice.id().toString();
+    }
+
+    private String formatAmount(BigDecimal amount) {
+        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
+        currencyFormat.setMaximumFractionDigits(0);
+        return currencyFormat.format(amount);
+    }
+}
@@ -2,15 +2,20 @@ package com.QhomeBase.financebillingservice.service;
 
 import com.QhomeBase.financebillingservice.client.BaseServiceClient;
 import com.QhomeBase.financebillingservice.config.VnpayProperties;
+import com.QhomeBase.financebillingservice.constants.InvoiceCategory;
+import com.QhomeBase.financebillingservice.constants.ServiceCode;
 import com.QhomeBase.financebillingservice.dto.*;
 import com.QhomeBase.financebillingservice.model.Invoice;
 import com.QhomeBase.financebillingservice.model.InvoiceLine;
 import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.InvoiceBatchRepository;
 import com.QhomeBase.financebillingservice.repository.InvoiceLineRepository;
 import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceSearchRepository;
 import com.QhomeBase.financebillingservice.repository.ResidentRepository;
-import com.QhomeBase.financebillingservice.repository.ResidentRepository.ResidentContact;
+import com.QhomeBase.financebillingservice.repository.VnpayPaymentAttemptRepository;
 import com.QhomeBase.financebillingservice.service.vnpay.VnpayService;
+import com.QhomeBase.financebillingservice.util.TimeOrderedUuid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -23,7 +28,6 @@ import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -33,8 +37,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -45,14 +48,23 @@ public class InvoiceService {
     
     private final InvoiceRepository invoiceRepository;
     private final InvoiceLineRepository invoiceLineRepository;
+    private final InvoiceBatchRepository invoiceBatchRepository;
+    private final InvoiceTotalsService invoiceTotalsService;
+    private final InvoiceAggregateService invoiceAggregateService;
+    private final UnitConsumptionService unitConsumptionService;
+    private final VnpayCallbackProcessor vnpayCallbackProcessor;
+    private final InvoiceSearchRepository invoiceSearchRepository;
     private final ResidentRepository residentRepository;
     private final VnpayService vnpayService;
     private final VnpayProperties vnpayProperties;
-    private final NotificationEmailService emailService;
-    private final NotificationClient notificationClient;
+    private final InvoiceOutboxService invoiceOutboxService;
     private final BaseServiceClient baseServiceClient;
 
-    private final ConcurrentMap<Long, UUID> orderIdToInvoiceIdMap = new ConcurrentHashMap<>();
+
+    private static final ZoneId BILLING_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final int ADMIN_SEARCH_DEFAULT_PAGE_SIZE = 50;
+    private static final int ADMIN_SEARCH_MAX_PAGE_SIZE = 500;
+    private static final int ADMIN_SEARCH_COUNT_CAP = 10_000;
 
     private static final Map<String, String> CATEGORY_LABELS = Map.of(
             "ELECTRICITY", "Điện",
@@ -73,6 +85,18 @@ public class InvoiceService {
             "CONTRACT_RENEWAL",
             "OTHER"
     );
+
+    /** Nhóm hiển thị ở "Hóa đơn mới": chỉ điện và nước */
+    private static final Set<String> UNPAID_CATEGORIES = Set.of(InvoiceCategory.ELECTRICITY, InvoiceCategory.WATER);
+    /** Nhóm ở lịch sử đã thanh toán có thể chứa line được hiển thị */
+    private static final Set<String> PAID_CATEGORIES = Set.of(InvoiceCategory.ELECTRICITY, InvoiceCategory.WATER,
+            InvoiceCategory.ELEVATOR, InvoiceCategory.CONTRACT_RENEWAL, InvoiceCategory.PARKING, InvoiceCategory.OTHER);
+    /**
+     * Nhóm đã thanh toán mà mọi line đều được hiển thị, nên tổng nhóm lấy được từ category_totals.
+     * PARKING / OTHER chỉ hiển thị một phần line (thẻ xe, thẻ cư dân) nên vẫn cộng từ line.
+     */
+    private static final Set<String> PAID_STORED_TOTAL_CATEGORIES = Set.of(InvoiceCategory.ELECTRICITY,
+            InvoiceCategory.WATER, InvoiceCategory.ELEVATOR, InvoiceCategory.CONTRACT_RENEWAL);
     
     public List<InvoiceDto> getInvoicesByResident(UUID residentId) {
         // Lấy invoice theo cả payerResidentId VÀ payerUnitId của resident đó
@@ -89,9 +113,7 @@ public class InvoiceService {
             invoices = invoiceRepository.findByPayerResidentId(residentId);
         }
         
-        return invoices.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return toDtos(invoices);
     }
     
     public List<InvoiceDto> getInvoicesByResidentAndStatus(UUID residentId, InvoiceStatus status) {
@@ -108,9 +130,7 @@ public class InvoiceService {
             invoices = invoiceRepository.findByPayerResidentIdAndStatus(residentId, status);
         }
         
-        return invoices.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return toDtos(invoices);
     }
     
     public InvoiceDto getInvoiceById(UUID invoiceId) {
@@ -132,9 +152,7 @@ public class InvoiceService {
     
     public List<InvoiceDto> getInvoicesByUnit(UUID unitId) {
         List<Invoice> invoices = invoiceRepository.findByPayerUnitId(unitId);
-        return invoices.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return toDtos(invoices);
     }
     
     public List<InvoiceDto> getInvoicesByServiceCode(String serviceCode) {
@@ -145,9 +163,7 @@ public class InvoiceService {
                 .collect(Collectors.toList());
         
         List<Invoice> invoices = invoiceRepository.findAllById(invoiceIds);
-        return invoices.stream()
-                .map(this::toDto)
-                .collect(Collectors.toList());
+        return toDtos(invoices);
     }
     
     public List<InvoiceDto> getInvoicesByResidentAndServiceCode(UUID residentId, String serviceCode) {
@@ -164,16 +180,15 @@ public class InvoiceService {
             allInvoices = invoiceRepository.findByPayerResidentId(residentId);
         }
         
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = loadLines(allInvoices);
         return allInvoices.stream()
-                .filter(invoice -> {
-                    List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceIdAndServiceCode(
-                            invoice.getId(), serviceCode);
-                    return !lines.isEmpty();
-                })
-                .map(this::toDto)
+                .filter(invoice -> linesByInvoiceId.getOrDefault(invoice.getId(), List.of()).stream()
+                        .anyMatch(line -> serviceCode.equals(line.getServiceCode())))
+                .map(invoice -> toDto(invoice, linesByInvoiceId.getOrDefault(invoice.getId(), List.of())))
                 .collect(Collectors.toList());
     }
     
+    @Transactional(readOnly = true)
     public List<InvoiceDto> getAllInvoicesForAdmin(
             String serviceCode,
             String status,
@@ -181,76 +196,142 @@ public class InvoiceService {
             UUID buildingId,
             String startDate,
             String endDate) {
-        List<Invoice> allInvoices = invoiceRepository.findAll();
-        
-        return allInvoices.stream()
-                .filter(invoice -> {
-                    // Filter by serviceCode
-                    if (serviceCode != null && !serviceCode.isBlank()) {
-                        List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
-                        boolean hasServiceCode = lines.stream()
-                                .anyMatch(line -> serviceCode.equalsIgnoreCase(line.getServiceCode()));
-                        if (!hasServiceCode) {
-                            return false;
-                        }
-                    }
-                    
-                    // Filter by status
-                    if (status != null && !status.isBlank()) {
-                        try {
-                            InvoiceStatus invoiceStatus = InvoiceStatus.valueOf(status.toUpperCase());
-                            if (invoice.getStatus() != invoiceStatus) {
-                                return false;
-                            }
-                        } catch (IllegalArgumentException e) {
-                            // Invalid status, skip filter
-                        }
-                    }
-                    
-                    // Filter by unitId
-                    if (unitId != null && !invoice.getPayerUnitId().equals(unitId)) {
-                        return false;
-                    }
-                    
-                    // Filter by buildingId (need to check via unit)
-                    if (buildingId != null) {
-                        // This would require a join with units table, simplified for now
-                        // You may need to add a repository method for this
-                    }
-                    
-                    // Filter by date range
-                    if (startDate != null && !startDate.isBlank()) {
-                        try {
-                            LocalDate start = LocalDate.parse(startDate);
-                            if (invoice.getIssuedAt() != null && invoice.getIssuedAt().toLocalDate().isBefore(start)) {
-                                return false;
-                            }
-                        } catch (Exception e) {
-                            // Invalid date format, skip filter
-                        }
-                    }
-                    
-                    if (endDate != null && !endDate.isBlank()) {
-                        try {
-                            LocalDate end = LocalDate.parse(endDate);
-                            if (invoice.getIssuedAt() != null && invoice.getIssuedAt().toLocalDate().isAfter(end)) {
-                                return false;
-                            }
-                        } catch (Exception e) {
-                            // Invalid date format, skip filter
-                        }
-                    }
-                    
-                    return true;
-                })
-                .map(this::toDto)
-                .sorted((a, b) -> {
-                    // Sort by issuedAt descending (newest first)
-                    if (a.getIssuedAt() == null && b.getIssuedAt() == null) return 0;
-                    if (a.getIssuedAt() == null) return 1;
-                    if (b.getIssuedAt() == null) return -1;
-                    return b.getIssuedAt().compareTo(a.getIssuedAt());
-                })
+        InvoiceSearchRepository.SearchFilter filter = buildAdminSearchFilter(
+                serviceCode, status, unitId, buildingId, startDate, endDate);
+
+        // Duyệt lần lượt từng trang keyset thay vì findAll() + lọc trong bộ nhớ
+        List<InvoiceDto> result = new ArrayList<>();
+        InvoiceSearchRepository.Cursor after = null;
+        InvoiceSearchRepository.SearchPage page;
+        do {
+            page = invoiceSearchRepository.search(filter, after, ADMIN_SEARCH_MAX_PAGE_SIZE);
+            result.addAll(toDtos(page));
+            if (!page.invoices().isEmpty()) {
+                after = InvoiceSearchRepository.Cursor.of(page.invoices().get(page.invoices().size() - 1));
+            }
+        } while (page.hasMore());
+
+        return result;
+    }
+
+    @Transactional(readOnly = true)
+    public InvoicePageDto searchInvoicesForAdmin(
+            String serviceCode,
+            String status,
+            UUID unitId,
+            UUID buildingId,
+            String startDate,
+            String endDate,
+            String cursor,
+            Integer size) {
+        InvoiceSearchRepository.SearchFilter filter = buildAdminSearchFilter(
+                serviceCode, status, unitId, buildingId, startDate, endDate);
+        int limit = size == null || size <= 0
+                ? ADMIN_SEARCH_DEFAULT_PAGE_SIZE
+                : Math.min(size, ADMIN_SEARCH_MAX_PAGE_SIZE);
+        InvoiceSearchRepository.Cursor after = cursor != null && !cursor.isBlank()
+                ? InvoiceSearchRepository.Cursor.decode(cursor)
+                : null;
+
+        InvoiceSearchRepository.SearchPage page = invoiceSearchRepository.search(filter, after, limit);
+
+        String nextCursor = null;
+        if (page.hasMore() && !page.invoices().isEmpty()) {
+            nextCursor = InvoiceSearchRepository.Cursor.of(page.invoices().get(page.invoices().size() - 1)).encode();
+        }
+
+        // Chỉ đếm ở trang đầu, các trang sau client dùng lại giá trị đã có
+        Long totalEstimate = null;
+        boolean capped = false;
+        if (after == null) {
+            totalEstimate = invoiceSearchRepository.countUpTo(filter, ADMIN_SEARCH_COUNT_CAP);
+            capped = totalEstimate >= ADMIN_SEARCH_COUNT_CAP;
+        }
+
+        return InvoicePageDto.builder()
+                .items(toDtos(page))
+                .nextCursor(nextCursor)
+                .hasMore(page.hasMore())
+                .totalEstimate(totalEstimate)
+                .totalEstimateCapped(capped)
+                .build();
+    }
+
+    /**
+     * Duyệt toàn bộ hóa đơn khớp bộ lọc admin theo cursor DB, dùng cho export streaming.
+     */
+    @Transactional(readOnly = true)
+    public void streamInvoicesForAdmin(
+            String serviceCode,
+            String status,
+            UUID unitId,
+            UUID buildingId,
+            String startDate,
+            String endDate,
+            Consumer<InvoiceSearchRepository.ExportRow> handler) {
+        InvoiceSearchRepository.SearchFilter filter = buildAdminSearchFilter(
+                serviceCode, status, unitId, buildingId, startDate, endDate);
+        invoiceSearchRepository.streamForExport(filter, handler);
+    }
+
+    private InvoiceSearchRepository.SearchFilter buildAdminSearchFilter(
+            String serviceCode,
+            String status,
+            UUID unitId,
+            UUID buildingId,
+            String startDate,
+            String endDate) {
+        InvoiceStatus invoiceStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                invoiceStatus = InvoiceStatus.valueOf(status.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                // Invalid status, skip filter
+            }
+        }
+
+        OffsetDateTime issuedFrom = null;
+        if (startDate != null && !startDate.isBlank()) {
+            try {
+                issuedFrom = LocalDate.parse(startDate).atStartOfDay(BILLING_ZONE).toOffsetDateTime();
+            } catch (Exception e) {
+                // Invalid date format, skip filter
+            }
+        }
+
+        OffsetDateTime issuedBefore = null;
+        if (endDate != null && !endDate.isBlank()) {
+            try {
+                issuedBefore = LocalDate.parse(endDate).plusDays(1).atStartOfDay(BILLING_ZONE).toOffsetDateTime();
+            } catch (Exception e) {
+                // Invalid date format, skip filter
+            }
+        }
+
+        return new InvoiceSearchRepository.SearchFilter(
+                serviceCode != null && !serviceCode.isBlank() ? serviceCode.trim() : null,
+                invoiceStatus,
+                unitId,
+                buildingId,
+                issuedFrom,
+                issuedBefore);
+    }
+
+    private Map<UUID, List<InvoiceLine>> loadLines(List<Invoice> invoices) {
+        return invoiceLineRepository.findGroupedByInvoiceIds(
+                invoices.stream().map(Invoice::getId).collect(Collectors.toList()));
+    }
+
+    private List<InvoiceDto> toDtos(List<Invoice> invoices) {
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = loadLines(invoices);
+        return invoices.stream()
+                .map(invoice -> toDto(invoice, linesByInvoiceId.getOrDefault(invoice.getId(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    private List<InvoiceDto> toDtos(InvoiceSearchRepository.SearchPage page) {
+        return page.invoices().stream()
+                .map(invoice -> toDto(invoice, page.linesByInvoiceId().getOrDefault(invoice.getId(), List.of())))
                 .collect(Collectors.toList());
     }
 
@@ -306,40 +387,104 @@ public class InvoiceService {
                         .build()))
                 .build();
 
-        InvoiceDto created = createInvoice(createRequest);
-
-        Invoice invoice = invoiceRepository.findById(created.getId())
-                .orElseThrow(() -> new IllegalArgumentException("Invoice not found: " + created.getId()));
-
-        invoice.setStatus(InvoiceStatus.PAID);
-        invoice.setPaymentGateway("VNPAY");
-        invoice.setPaidAt(payDate);
-        invoice.setVnpTransactionRef(request.getTransactionRef());
-        invoice.setVnpTransactionNo(request.getTransactionNo());
-        invoice.setVnpBankCode(request.getBankCode());
-        invoice.setVnpCardType(request.getCardType());
-        invoice.setVnpResponseCode(request.getResponseCode());
-        invoiceRepository.save(invoice);
-
-        Map<String, String> params = new HashMap<>();
-        if (request.getTransactionRef() != null) {
-            params.put("vnp_TxnRef", request.getTransactionRef());
-        }
-        notifyPaymentSuccess(invoice, params);
-
-        return toDto(invoice);
+        // Hóa đơn thẻ được ghi thẳng ở trạng thái PAID, không cần tạo rồi đọc lại để cập nhật
+        CreatedInvoice created = insertInvoices(List.of(createRequest), invoice -> {
+            invoice.setStatus(InvoiceStatus.PAID);
+            invoice.setPaymentGateway("VNPAY");
+            invoice.setPaidAt(payDate);
+            invoice.setVnpTransactionRef(request.getTransactionRef());
+            invoice.setVnpTransactionNo(request.getTransactionNo());
+            invoice.setVnpBankCode(request.getBankCode());
+            invoice.setVnpCardType(request.getCardType());
+            invoice.setVnpResponseCode(request.getResponseCode());
+        }).get(0);
+        Invoice invoice = created.invoice();
+
+        invoiceOutboxService.invoicePaid(invoice, request.getTransactionRef());
+
+        return toDto(invoice, created.lines());
     }
     
     @Transactional
     public InvoiceDto createInvoice(CreateInvoiceRequest request) {
         log.info("Creating invoice for unit: {}", request.getPayerUnitId());
+        return createInvoices(List.of(request), true).get(0);
+    }
 
-        String invoiceCode = generateInvoiceCode();
+    /**
+     * Tạo nhiều hóa đơn trong một transaction, kèm sự kiện InvoicePublished để thông báo cho cư dân.
+     */
+    @Transactional
+    public List<InvoiceDto> createInvoices(List<CreateInvoiceRequest> requests) {
+        return createInvoices(requests, true);
+    }
 
-        InvoiceStatus invoiceStatus = request.getStatus() != null ? request.getStatus() : InvoiceStatus.PUBLISHED;
+    /**
+     * Tạo nhiều hóa đơn trong một transaction bằng JDBC batch insert.
+     * Id sinh theo thời gian (UUID v7) nên không cần đọc lại sau khi ghi.
+     * Nếu {@code notifyResidents} = true, sự kiện InvoicePublished được ghi vào outbox trong cùng transaction;
+     * thông báo cho cư dân được gửi bất đồng bộ bởi customer-interaction-service.
+     */
+    @Transactional
+    public List<InvoiceDto> createInvoices(List<CreateInvoiceRequest> requests, boolean notifyResidents) {
+        if (requests == null || requests.isEmpty()) {
+            return List.of();
+        }
+
+        List<CreatedInvoice> created = insertInvoices(requests, invoice -> { });
+        if (notifyResidents) {
+            invoiceOutboxService.invoicesPublished(
+                    created.stream().map(CreatedInvoice::invoice).toList(),
+                    created.stream().collect(Collectors.toMap(c -> c.invoice().getId(), CreatedInvoice::lines)));
+        }
+        return created.stream()
+                .map(c -> toDto(c.invoice(), c.lines()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Dựng entity từ request, cho phép caller chỉnh thêm trạng thái thanh toán trước khi ghi,
+     * rồi insert cả hóa đơn lẫn invoice lines bằng batch statement.
+     */
+    private List<CreatedInvoice> insertInvoices(List<CreateInvoiceRequest> requests, Consumer<Invoice> customizer) {
         OffsetDateTime now = OffsetDateTime.now();
+        List<CreatedInvoice> created = new ArrayList<>(requests.size());
+        List<Invoice> invoices = new ArrayList<>(requests.size());
+        List<InvoiceLine> allLines = new ArrayList<>();
+
+        for (CreateInvoiceRequest request : requests) {
+            InvoiceStatus invoiceStatus = request.getStatus() != null ? request.getStatus() : InvoiceStatus.PUBLISHED;
+            UUID invoiceId = TimeOrderedUuid.next();
+            Invoice invoice = buildInvoice(request, generateInvoiceCode(now, invoiceId), invoiceStatus, now);
+            invoice.setId(invoiceId);
+            customizer.accept(invoice);
+
+            List<InvoiceLine> lines = new ArrayList<>();
+            if (request.getLines() != null) {
+                for (CreateInvoiceLineRequest lineRequest : request.getLines()) {
+                    InvoiceLine line = buildLine(invoice.getId(), lineRequest);
+                    line.setId(TimeOrderedUuid.next());
+                    lines.add(line);
+                }
+            }
+            invoiceTotalsService.applyTotals(invoice, lines);
+            invoices.add(invoice);
+            allLines.addAll(lines);
+            created.add(new CreatedInvoice(invoice, lines));
+        }
+
+        // Đẩy các thay đổi JPA đang chờ (vd. billing cycle mới) xuống trước khi insert bằng JDBC
+        invoiceRepository.flush();
+        invoiceBatchRepository.insertAll(invoices, allLines);
+        invoiceAggregateService.onCreated(invoices);
+        unitConsumptionService.onCreated(invoices);
+        log.info("Batch created {} invoices with {} lines", invoices.size(), allLines.size());
+        return created;
+    }
 
-        Invoice invoice = Invoice.builder()
+    private Invoice buildInvoice(CreateInvoiceRequest request, String invoiceCode,
+                                 InvoiceStatus invoiceStatus, OffsetDateTime now) {
+        return Invoice.builder()
                 .code(invoiceCode)
                 .issuedAt(now)
                 .dueDate(request.getDueDate())
@@ -351,201 +496,34 @@ public class InvoiceService {
                 .payerUnitId(request.getPayerUnitId())
                 .payerResidentId(request.getPayerResidentId())
                 .cycleId(request.getCycleId())
+                .paidAt(invoiceStatus == InvoiceStatus.PAID ? now : null)
                 .build();
-        
-        // Set paidAt after building if status is PAID
-        if (invoiceStatus == InvoiceStatus.PAID) {
-            invoice.setPaidAt(now);
-            log.info("Setting paidAt to current time for PAID invoice: {}", now);
-        }
-        
-        Invoice savedInvoice = invoiceRepository.save(invoice);
-        log.info("Invoice created with ID: {}, code: {}, status: {}, paidAt: {}", 
-                savedInvoice.getId(), savedInvoice.getCode(), savedInvoice.getStatus(), savedInvoice.getPaidAt());
-        
-        // Reload invoice to ensure paidAt is persisted correctly
-        savedInvoice = invoiceRepository.findById(savedInvoice.getId())
-                .orElseThrow(() -> new IllegalStateException("Invoice not found after creation"));
-        log.info("Invoice reloaded - paidAt: {}", savedInvoice.getPaidAt());
-        
-        // If paidAt is still null after reload and status is PAID, set it explicitly
-        if (savedInvoice.getStatus() == InvoiceStatus.PAID && savedInvoice.getPaidAt() == null) {
-            log.warn("⚠️ paidAt is null for PAID invoice {}, setting it now", savedInvoice.getId());
-            savedInvoice.setPaidAt(now);
-            savedInvoice = invoiceRepository.save(savedInvoice);
-            log.info("✅ Updated paidAt for invoice {}: {}", savedInvoice.getId(), savedInvoice.getPaidAt());
-        }
-        
-        if (request.getLines() != null && !request.getLines().isEmpty()) {
-            for (CreateInvoiceLineRequest lineRequest : request.getLines()) {
-                BigDecimal taxAmount = calculateTaxAmount(
-                        lineRequest.getQuantity(),
-                        lineRequest.getUnitPrice(),
-                        lineRequest.getTaxRate()
-                );
-                
-                InvoiceLine line = InvoiceLine.builder()
-                        .invoiceId(savedInvoice.getId())
-                        .serviceDate(lineRequest.getServiceDate())
-                        .description(lineRequest.getDescription())
-                        .quantity(lineRequest.getQuantity())
-                        .unit(lineRequest.getUnit())
-                        .unitPrice(lineRequest.getUnitPrice())
-                        .taxRate(lineRequest.getTaxRate() != null ? lineRequest.getTaxRate() : BigDecimal.ZERO)
-                        .taxAmount(taxAmount)
-                        .serviceCode(lineRequest.getServiceCode())
-                        .externalRefType(lineRequest.getExternalRefType())
-                        .externalRefId(lineRequest.getExternalRefId())
-                        .build();
-                
-                invoiceLineRepository.save(line);
-            }
-            log.info("Created {} invoice lines for invoice: {}", request.getLines().size(), savedInvoice.getId());
-        }
-        
-        // Send notification to resident (only for electricity and water invoices)
-        sendInvoiceNotification(savedInvoice);
-        
-        return toDto(savedInvoice);
     }
-    
-    private void sendInvoiceNotification(Invoice invoice) {
-        if (invoice.getPayerUnitId() == null) {
-            log.warn(" [InvoiceService] Cannot send notification: payerUnitId is null");
-            return;
-        }
-        
-        // Only send notification for electricity and water invoices
-        // Skip notification for card payment invoices (VEHICLE_CARD, ELEVATOR_CARD, RESIDENT_CARD)
-        List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
-        boolean shouldSendNotification = false;
-        
-        for (InvoiceLine line : lines) {
-            String serviceCode = line.getServiceCode();
-            if (serviceCode != null) {
-                String normalized = serviceCode.trim().toUpperCase();
-                // Only send notification for electricity and water invoices
-                if (normalized.contains("ELECTRICITY") || normalized.contains("WATER")) {
-                    shouldSendNotification = true;
-                    break;
-                }
-            }
-        }
-        
-        if (!shouldSendNotification) {
-            log.debug(" [InvoiceService] Skipping notification for invoice {} - not an electricity/water invoice", invoice.getId());
-            return;
-        }
-        
-        try {
-            // Get buildingId from unitId
-            UUID buildingId = null;
-            BaseServiceClient.UnitInfo unitInfo = null;
-            if (invoice.getPayerUnitId() != null) {
-                try {
-                    unitInfo = baseServiceClient.getUnitById(invoice.getPayerUnitId());
-                    if (unitInfo != null && unitInfo.getBuildingId() != null) {
-                        buildingId = unitInfo.getBuildingId();
-                        log.info(" [InvoiceService] Resolved buildingId={} from unitId={}", buildingId, invoice.getPayerUnitId());
-                    }
-                } catch (Exception e) {
-                    log.warn(" [InvoiceService] Failed to get buildingId from unitId {}: {}", invoice.getPayerUnitId(), e.getMessage());
-                }
-            }
-            
-            // Get all residents in the unit (via household)
-            List<UUID> residentIds = new ArrayList<>();
-            if (invoice.getPayerUnitId() != null) {
-                try {
-                    BaseServiceClient.ServiceInfo.HouseholdInfo household = baseServiceClient.getCurrentHouseholdByUnitId(invoice.getPayerUnitId());
-                    if (household != null && household.getId() != null) {
-                        List<BaseServiceClient.ServiceInfo.HouseholdMemberInfo> members = baseServiceClient.getActiveMembersByHouseholdId(household.getId());
-                        for (BaseServiceClient.ServiceInfo.HouseholdMemberInfo member : members) {
-                            if (member.getResidentId() != null) {
-                                residentIds.add(member.getResidentId());
-                            }
-                        }
-                        // Also include primary resident if not already in the list
-                        if (household.getPrimaryResidentId() != null && !residentIds.contains(household.getPrimaryResidentId())) {
-                            residentIds.add(household.getPrimaryResidentId());
-                        }
-                        log.info(" [InvoiceService] Found {} residents in unit {} (household {})", 
-                                residentIds.size(), invoice.getPayerUnitId(), household.getId());
-                    } else {
-                        // Fallback: if no household found, use payerResidentId
-                        if (invoice.getPayerResidentId() != null) {
-                            residentIds.add(invoice.getPayerResidentId());
-                            log.warn(" [InvoiceService] No household found for unit {}, using payerResidentId only", invoice.getPayerUnitId());
-                        }
-                    }
-                } catch (Exception e) {
-                    log.warn(" [InvoiceService] Failed to get residents for unit {}: {}", invoice.getPayerUnitId(), e.getMessage());
-                    // Fallback: use payerResidentId
-                    if (invoice.getPayerResidentId() != null) {
-                        residentIds.add(invoice.getPayerResidentId());
-                    }
-                }
-            }
-            
-            if (residentIds.isEmpty()) {
-                log.warn(" [InvoiceService] No residents found for unit {}, cannot send notification", invoice.getPayerUnitId());
-                return;
-            }
-            
-            // Calculate total amount
-            BigDecimal totalAmount = invoiceLineRepository.findByInvoiceId(invoice.getId()).stream()
-                    .map(InvoiceLine::getLineTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            // Format amount
-            NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
-            currencyFormat.setMaximumFractionDigits(0);
-            String amountText = currencyFormat.format(totalAmount);
-            
-            // Build notification message
-            String invoiceCode = invoice.getCode() != null ? invoice.getCode() : invoice.getId().toString();
-            String title = "Hóa đơn mới - " + invoiceCode;
-            String message = String.format("Bạn có hóa đơn mới với số tiền %s. Hạn thanh toán: %s", 
-                    amountText,
-                    invoice.getDueDate() != null ? invoice.getDueDate().format(java.time.format.DateTimeFormatter.ofPattern("dd/MM/yyyy")) : "N/A");
-            
-            // Prepare data payload
-            Map<String, String> data = new HashMap<>();
-            data.put("invoiceId", invoice.getId().toString());
-            data.put("invoiceCode", invoiceCode);
-            data.put("amount", totalAmount.toString());
-            data.put("dueDate", invoice.getDueDate() != null ? invoice.getDueDate().toString() : "");
-            
-            // Send PRIVATE notification to EACH resident in the unit (one notification per resident)
-            // IMPORTANT: Set buildingId = null to ensure notifications are private (targetResidentId only)
-            int successCount = 0;
-            for (UUID residentId : residentIds) {
-                try {
-                    // Set buildingId = null to make notification private (only visible to targetResidentId)
-                    notificationClient.sendResidentNotification(
-                            residentId,
-                            null, // buildingId = null for private notification
-                            "BILL",
-                            title,
-                            message,
-                            invoice.getId(),
-                            "INVOICE",
-                            data
-                    );
-                    successCount++;
-                } catch (Exception e) {
-                    log.warn(" [InvoiceService] Failed to send notification to residentId {}: {}", residentId, e.getMessage());
-                }
-            }
-            
-            log.info(" [InvoiceService] Sent PRIVATE invoice notification to {}/{} residents in unit {}, invoiceId={}", 
-                    successCount, residentIds.size(), invoice.getPayerUnitId(), invoice.getId());
-        } catch (Exception e) {
-            log.error(" [InvoiceService] Failed to send invoice notification for invoiceId={}: {}", 
-                    invoice.getId(), e.getMessage(), e);
-        }
+
+    private InvoiceLine buildLine(UUID invoiceId, CreateInvoiceLineRequest lineRequest) {
+        BigDecimal taxAmount = calculateTaxAmount(
+                lineRequest.getQuantity(),
+                lineRequest.getUnitPrice(),
+                lineRequest.getTaxRate()
+        );
+        return InvoiceLine.builder()
+                .invoiceId(invoiceId)
+                .serviceDate(lineRequest.getServiceDate())
+                .description(lineRequest.getDescription())
+                .quantity(lineRequest.getQuantity())
+                .unit(lineRequest.getUnit())
+                .unitPrice(lineRequest.getUnitPrice())
+                .taxRate(lineRequest.getTaxRate() != null ? lineRequest.getTaxRate() : BigDecimal.ZERO)
+                .taxAmount(taxAmount)
+                .serviceCode(lineRequest.getServiceCode())
+                .externalRefType(lineRequest.getExternalRefType())
+                .externalRefId(lineRequest.getExternalRefId())
+                .build();
     }
-    
+
+    private record CreatedInvoice(Invoice invoice, List<InvoiceLine> lines) {
+    }
+
     @Transactional
     public InvoiceDto updateInvoiceStatus(UUID invoiceId, UpdateInvoiceStatusRequest request) {
         log.info("Updating invoice status: {} to {}", invoiceId, request.getStatus());
@@ -563,6 +541,8 @@ public class InvoiceService {
         }
         
         Invoice updatedInvoice = invoiceRepository.save(invoice);
+        invoiceAggregateService.onStatusChanged(updatedInvoice, oldStatus);
+        unitConsumptionService.onStatusChanged(updatedInvoice, oldStatus);
         log.info("Invoice {} status updated from {} to {}, paidAt: {}", 
                 invoiceId, oldStatus, request.getStatus(), updatedInvoice.getPaidAt());
         
@@ -580,8 +560,11 @@ public class InvoiceService {
             throw new IllegalStateException("Cannot void a paid invoice. Create a refund instead.");
         }
         
+        InvoiceStatus oldStatus = invoice.getStatus();
         invoice.setStatus(InvoiceStatus.VOID);
         invoiceRepository.save(invoice);
+        invoiceAggregateService.onStatusChanged(invoice, oldStatus);
+        unitConsumptionService.onStatusChanged(invoice, oldStatus);
         
         log.info("Invoice {} voided successfully", invoiceId);
     }
@@ -671,11 +654,13 @@ public class InvoiceService {
         
         log.debug(" [InvoiceService] After filters: {} invoices remain for unit {}", invoices.size(), unitFilter);
         List<InvoiceLineResponseDto> result = new ArrayList<>();
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = loadLines(invoices);
+        Map<UUID, Boolean> ownershipByUnit = new HashMap<>();
         
         for (Invoice invoice : invoices) {
-            List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
+            List<InvoiceLine> lines = linesByInvoiceId.getOrDefault(invoice.getId(), List.of());
             for (InvoiceLine line : lines) {
-                result.add(toInvoiceLineResponseDto(invoice, line, userId));
+                result.add(toInvoiceLineResponseDto(invoice, line, userId, ownershipByUnit));
             }
         }
         
@@ -720,9 +705,7 @@ public class InvoiceService {
             throw new IllegalStateException("Hóa đơn đã được thanh toán trước đó");
         }
 
-        BigDecimal totalAmount = invoiceLineRepository.findByInvoiceId(invoiceId).stream()
-                .map(InvoiceLine::getLineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalAmount = resolveTotalAmount(invoice);
 
         if (totalAmount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new IllegalStateException("Hóa đơn không có số tiền cần thanh toán");
@@ -730,18 +713,10 @@ public class InvoiceService {
 
         String clientIp = resolveClientIp(request);
 
-        // Tạo orderId unique từ invoiceId và timestamp để tránh collision
-        long orderId = Math.abs(invoiceId.hashCode());
-        if (orderId == 0) {
-            orderId = Math.abs(UUID.randomUUID().getMostSignificantBits());
-        }
-        // Đảm bảo orderId là unique bằng cách kiểm tra nếu đã tồn tại
-        // Nếu đã tồn tại orderId trong map và không phải cùng invoice, tạo mới
-        while (orderIdToInvoiceIdMap.containsKey(orderId) && 
-               !orderIdToInvoiceIdMap.get(orderId).equals(invoiceId)) {
-            orderId = Math.abs(UUID.randomUUID().getMostSignificantBits());
-        }
-        orderIdToInvoiceIdMap.put(orderId, invoiceId);
+        // txnRef = orderId_timestamp; ánh xạ txnRef -> hóa đơn được lưu trong bảng attempt (khóa chính txn_ref)
+        long orderId = Math.abs((long) invoiceId.hashCode());
+        String txnRef = vnpayService.newTxnRef(orderId);
+        vnpayCallbackProcessor.registerAttempt(txnRef, invoiceId, totalAmount);
 
         String orderInfo = "Thanh toán hóa đơn " + (invoice.getCode() != null ? invoice.getCode() : invoiceId);
         String returnUrl = vnpayProperties.getReturnUrl();
@@ -752,10 +727,10 @@ public class InvoiceService {
         invoice.setPaymentGateway("VNPAY");
         invoiceRepository.save(invoice);
 
-        log.info("💳 [InvoiceService] Creating VNPAY URL for invoice={}, user={}, amount={}, ip={}, orderId={}, initiatedAt={}",
-                invoiceId, userId, totalAmount, clientIp, orderId, invoice.getVnpayInitiatedAt());
+        log.info("💳 [InvoiceService] Creating VNPAY URL for invoice={}, user={}, amount={}, ip={}, txnRef={}, initiatedAt={}",
+                invoiceId, userId, totalAmount, clientIp, txnRef, invoice.getVnpayInitiatedAt());
 
-        return vnpayService.createPaymentUrl(orderId, orderInfo, totalAmount, clientIp, returnUrl);
+        return vnpayService.createPaymentUrl(txnRef, orderInfo, totalAmount, clientIp, returnUrl);
     }
 
     public VnpayCallbackResult handleVnpayCallback(Map<String, String> params) {
@@ -772,35 +747,34 @@ public class InvoiceService {
             throw new IllegalArgumentException("Thiếu mã giao dịch (vnp_TxnRef) từ VNPAY");
         }
 
-        UUID invoiceId = getInvoiceIdFromTxnRef(txnRef);
-        Invoice invoice = invoiceRepository.findById(invoiceId)
-                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy hóa đơn cho txnRef: " + txnRef));
-
-        log.info(" [InvoiceService] Processing VNPAY callback for invoice {} (txnRef: {}, responseCode: {}, status: {})", 
-                invoiceId, txnRef, responseCode, transactionStatus);
-
-        invoice.setVnpResponseCode(responseCode);
-        invoice.setVnpTransactionRef(txnRef);
-        invoice.setVnpTransactionNo(params.get("vnp_TransactionNo"));
-        invoice.setVnpBankCode(params.get("vnp_BankCode"));
-        invoice.setVnpCardType(params.get("vnp_CardType"));
-
-        boolean alreadyPaid = InvoiceStatus.PAID.equals(invoice.getStatus()) && invoice.getPaidAt() != null;
-
-        if (signatureValid && "00".equals(responseCode) && "00".equals(transactionStatus)) {
-            if (!alreadyPaid) {
-                invoice.setStatus(InvoiceStatus.PAID);
-                invoice.setPaymentGateway("VNPAY");
-                // Use current time for payment date to ensure accurate timestamp
-                invoice.setPaidAt(OffsetDateTime.now());
-                // Clear vnpayInitiatedAt since payment is now complete
-                invoice.setVnpayInitiatedAt(null);
-                invoiceRepository.save(invoice);
-                notifyPaymentSuccess(invoice, params);
+        boolean paymentSuccess = "00".equals(responseCode) && "00".equals(transactionStatus);
+        log.info(" [InvoiceService] Processing VNPAY callback (txnRef: {}, responseCode: {}, status: {})",
+                txnRef, responseCode, transactionStatus);
+
+        if (!signatureValid) {
+            // Callback sai chữ ký không được phép thay đổi attempt hay hóa đơn
+            UUID invoiceId = vnpayCallbackProcessor.resolveInvoiceId(txnRef);
+            log.warn(" [InvoiceService] Invalid VNPAY signature for invoice {} (txnRef: {})", invoiceId, txnRef);
+            return new VnpayCallbackResult(
+                invoiceId, 
+                false, 
+                responseCode, 
+                false,
+                "Thanh toán không thành công. Vui lòng thử lại."
+            );
+        }
+
+        VnpayPaymentAttemptRepository.CallbackDetails details = new VnpayPaymentAttemptRepository.CallbackDetails(
+                responseCode,
+                params.get("vnp_TransactionNo"),
+                params.get("vnp_BankCode"),
+                params.get("vnp_CardType"));
+        VnpayCallbackProcessor.CallbackOutcome outcome = vnpayCallbackProcessor.process(txnRef, paymentSuccess, details);
+        UUID invoiceId = outcome.invoiceId();
+
+        if (paymentSuccess) {
+            if (outcome.newlyPaid()) {
                 log.info(" [InvoiceService] Invoice {} marked as PAID via VNPAY (txnRef: {})", invoiceId, txnRef);
-            } else {
-                log.info(" [InvoiceService] Duplicate VNPAY callback received for already paid invoice {} (txnRef: {})", 
-                        invoiceId, txnRef);
             }
             return new VnpayCallbackResult(
                 invoiceId, 
@@ -811,14 +785,13 @@ public class InvoiceService {
             );
         }
 
-        invoiceRepository.save(invoice);
-        log.warn(" [InvoiceService] VNPAY payment failed for invoice {} (txnRef: {}) - responseCode={}, validSignature={}",
-                invoiceId, txnRef, responseCode, signatureValid);
+        log.warn(" [InvoiceService] VNPAY payment failed for invoice {} (txnRef: {}) - responseCode={}",
+                invoiceId, txnRef, responseCode);
         return new VnpayCallbackResult(
             invoiceId, 
             false, 
             responseCode, 
-            signatureValid,
+            true,
             "Thanh toán không thành công. Vui lòng thử lại."
         );
     }
@@ -827,34 +800,10 @@ public class InvoiceService {
         if (txnRef == null || txnRef.trim().isEmpty()) {
             throw new IllegalArgumentException("Mã giao dịch không được để trống");
         }
-        
-        // Ưu tiên tìm invoice theo vnpTransactionRef từ database (chính xác nhất)
-        Optional<Invoice> invoiceByRef = invoiceRepository.findByVnpTransactionRef(txnRef);
-        if (invoiceByRef.isPresent()) {
-            UUID invoiceId = invoiceByRef.get().getId();
-            log.info(" [InvoiceService] Found invoice {} by vnpTransactionRef: {}", invoiceId, txnRef);
-            return invoiceId;
-        }
-        
-        // Fallback: nếu không tìm thấy theo vnpTransactionRef, thử parse orderId
-        if (!txnRef.contains("_")) {
-            throw new IllegalArgumentException("Sai định dạng mã giao dịch: " + txnRef);
-        }
-        
-        try {
-            Long orderId = Long.parseLong(txnRef.split("_")[0]);
-            UUID invoiceId = orderIdToInvoiceIdMap.get(orderId);
-            if (invoiceId == null) {
-                throw new IllegalArgumentException(
-                        "Không tìm thấy hóa đơn tương ứng với orderId: " + orderId + " và txnRef: " + txnRef);
-            }
-            log.info(" [InvoiceService] Map orderId {} -> invoice {} (from in-memory map)", orderId, invoiceId);
-            return invoiceId;
-        } catch (NumberFormatException ex) {
-            throw new IllegalArgumentException("Không thể phân tích mã giao dịch: " + txnRef, ex);
-        }
+        return vnpayCallbackProcessor.resolveInvoiceId(txnRef);
     }
 
+    @Transactional(readOnly = true)
     public List<InvoiceCategoryResponseDto> getUnpaidInvoicesByCategory(UUID userId, UUID unitFilter, UUID cycleFilter) {
         if (unitFilter == null) {
             throw new IllegalArgumentException("unitId is required");
@@ -918,15 +867,23 @@ public class InvoiceService {
         log.debug(" [InvoiceService] After filters: {} invoices remain for unit {} (buildingId: {})", 
                 invoices.size(), unitFilter, buildingId);
         Map<String, List<InvoiceLineResponseDto>> grouped = new HashMap<>();
+        // Hóa đơn không có tiền điện / nước (theo category_totals) thì không cần tải line
+        List<Invoice> openInvoices = invoices.stream()
+                .filter(invoice -> invoice.getStatus() != InvoiceStatus.PAID && invoice.getStatus() != InvoiceStatus.VOID)
+                .filter(invoice -> hasAnyCategory(invoice, UNPAID_CATEGORIES))
+                .collect(Collectors.toList());
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = loadLines(openInvoices);
+        Map<String, BigDecimal> storedTotals = sumStoredCategoryTotals(openInvoices, UNPAID_CATEGORIES);
+        Map<UUID, Boolean> ownershipByUnit = new HashMap<>();
 
-        for (Invoice invoice : invoices) {
+        for (Invoice invoice : openInvoices) {
             // Include UNPAID invoices - they need to be shown with warning
             // Only exclude PAID and VOID invoices
             if (invoice.getStatus() == InvoiceStatus.PAID || invoice.getStatus() == InvoiceStatus.VOID) {
                 continue;
             }
 
-            List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
+            List<InvoiceLine> lines = linesByInvoiceId.getOrDefault(invoice.getId(), List.of());
             
             // Log for debugging UNPAID invoices
             if (invoice.getStatus() == InvoiceStatus.UNPAID) {
@@ -948,7 +905,7 @@ public class InvoiceService {
             }
             
             for (InvoiceLine line : lines) {
-                InvoiceLineResponseDto dto = toInvoiceLineResponseDto(invoice, line, userId);
+                InvoiceLineResponseDto dto = toInvoiceLineResponseDto(invoice, line, userId, ownershipByUnit);
                 // Include UNPAID invoices - they need to be shown with warning
                 // Only exclude PAID invoices
                 if ("PAID".equalsIgnoreCase(dto.getStatus())) {
@@ -1002,7 +959,7 @@ public class InvoiceService {
             if (items == null || items.isEmpty()) {
                 continue;
             }
-            response.add(buildCategoryResponse(category, items));
+            response.add(buildCategoryResponse(category, items, storedTotals));
             processed.add(category);
         }
 
@@ -1010,7 +967,7 @@ public class InvoiceService {
             if (items == null || items.isEmpty() || processed.contains(category)) {
                 return;
             }
-            response.add(buildCategoryResponse(category, items));
+            response.add(buildCategoryResponse(category, items, storedTotals));
         });
         log.debug(" [InvoiceService] Grouped categories: {}", grouped.keySet());
         log.debug(" [InvoiceService] Returning {} categories", response.size());
@@ -1018,6 +975,7 @@ public class InvoiceService {
         return response;
     }
 
+    @Transactional(readOnly = true)
     public List<InvoiceCategoryResponseDto> getPaidInvoicesByCategory(UUID userId, UUID unitFilter, UUID cycleFilter) {
         if (unitFilter == null) {
             throw new IllegalArgumentException("unitId is required");
@@ -1081,14 +1039,21 @@ public class InvoiceService {
         log.debug(" [InvoiceService] After filters: {} invoices remain for unit {} (buildingId: {})", 
                 invoices.size(), unitFilter, buildingId);
         Map<String, List<InvoiceLineResponseDto>> grouped = new HashMap<>();
+        List<Invoice> paidInvoices = invoices.stream()
+                .filter(invoice -> invoice.getStatus() == InvoiceStatus.PAID)
+                .filter(invoice -> hasAnyCategory(invoice, PAID_CATEGORIES))
+                .collect(Collectors.toList());
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = loadLines(paidInvoices);
+        Map<String, BigDecimal> storedTotals = sumStoredCategoryTotals(paidInvoices, PAID_STORED_TOTAL_CATEGORIES);
+        Map<UUID, Boolean> ownershipByUnit = new HashMap<>();
 
-        for (Invoice invoice : invoices) {
+        for (Invoice invoice : paidInvoices) {
             log.debug(" [InvoiceService] Inspect invoice {} status {}", invoice.getId(), invoice.getStatus());
             if (invoice.getStatus() != InvoiceStatus.PAID) {
                 continue;
             }
 
-            List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
+            List<InvoiceLine> lines = linesByInvoiceId.getOrDefault(invoice.getId(), List.of());
             log.debug(" [InvoiceService] Invoice {} has {} lines", invoice.getId(), lines.size());
             for (InvoiceLine line : lines) {
                 String serviceCode = line.getServiceCode();
@@ -1112,7 +1077,7 @@ public class InvoiceService {
                 }
 
                 String category = determineCategory(line.getServiceCode());
-                InvoiceLineResponseDto dto = toInvoiceLineResponseDto(invoice, line, userId);
+                InvoiceLineResponseDto dto = toInvoiceLineResponseDto(invoice, line, userId, ownershipByUnit);
                 grouped.computeIfAbsent(category, key -> new ArrayList<>()).add(dto);
                 log.debug(" [InvoiceService] Added line {} to category {}", line.getId(), category);
             }
@@ -1126,7 +1091,7 @@ public class InvoiceService {
             if (items == null || items.isEmpty()) {
                 continue;
             }
-            response.add(buildCategoryResponse(category, items));
+            response.add(buildCategoryResponse(category, items, storedTotals));
             processed.add(category);
         }
 
@@ -1134,78 +1099,54 @@ public class InvoiceService {
             if (items == null || items.isEmpty() || processed.contains(category)) {
                 return;
             }
-            response.add(buildCategoryResponse(category, items));
+            response.add(buildCategoryResponse(category, items, storedTotals));
         });
 
         return response;
     }
     
+    /**
+     * Tiền điện theo tháng (mới nhất trước), đọc từ bảng tổng hợp tiêu thụ thay vì gộp invoice lines
+     */
     public List<ElectricityMonthlyDto> getElectricityMonthlyData(UUID userId, UUID unitFilter) {
         UUID residentId = residentRepository.findResidentIdByUserId(userId)
                 .orElseThrow(() -> new IllegalArgumentException("Resident not found for user: " + userId));
         
-        // Lấy invoice theo payerUnitId (căn hộ) nếu có unitFilter
-        // Để tất cả thành viên trong cùng căn hộ có thể xem invoice của căn hộ đó
-        List<Invoice> invoices;
+        // Lấy theo căn hộ nếu có unitFilter để tất cả thành viên trong cùng căn hộ xem được
+        List<ConsumptionPointDto> points;
         if (unitFilter != null) {
             // Validate: user phải thuộc căn hộ này
-            // Chỉ những cư dân thuộc căn hộ này mới có thể xem invoice của căn hộ đó
             validateUserBelongsToUnit(userId, unitFilter);
-            invoices = invoiceRepository.findByPayerUnitId(unitFilter);
-            // Đảm bảo chỉ lấy invoice của căn hộ này
-            invoices = invoices.stream()
-                    .filter(invoice -> unitFilter.equals(invoice.getPayerUnitId()))
-                    .collect(Collectors.toList());
+            points = unitConsumptionService.getMonthlyByUnit(unitFilter, ServiceCode.ELECTRIC);
         } else {
             // Nếu không có unitFilter, lấy theo residentId (fallback - chỉ cho chính resident đó)
             // Lưu ý: Fallback này chỉ nên dùng khi không có unitId, nhưng tốt nhất là luôn cung cấp unitId
             log.warn(" [InvoiceService] getElectricityMonthlyData called without unitId, using residentId fallback");
-            invoices = invoiceRepository.findByPayerResidentId(residentId);
-        }
-        List<InvoiceLine> electricityLines = new ArrayList<>();
-        
-        for (Invoice invoice : invoices) {
-            List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceIdAndServiceCode(
-                    invoice.getId(), "ELECTRIC");
-            electricityLines.addAll(lines);
-        }
-        
-        // Group by month
-        Map<String, List<InvoiceLine>> linesByMonth = electricityLines.stream()
-                .collect(Collectors.groupingBy(line -> {
-                    LocalDate serviceDate = line.getServiceDate();
-                    return String.format("%04d-%02d", serviceDate.getYear(), serviceDate.getMonthValue());
-                }));
-        
-        List<ElectricityMonthlyDto> result = new ArrayList<>();
-        for (Map.Entry<String, List<InvoiceLine>> entry : linesByMonth.entrySet()) {
-            String month = entry.getKey();
-            List<InvoiceLine> lines = entry.getValue();
-            
-            BigDecimal totalAmount = lines.stream()
-                    .map(InvoiceLine::getLineTotal)
-                    .reduce(BigDecimal.ZERO, BigDecimal::add);
-            
-            LocalDate firstDate = lines.get(0).getServiceDate();
-            String monthDisplay = String.format("%02d/%04d", firstDate.getMonthValue(), firstDate.getYear());
-            
-            result.add(ElectricityMonthlyDto.builder()
-                    .month(month)
-                    .monthDisplay(monthDisplay)
-                    .amount(totalAmount)
-                    .year(firstDate.getYear())
-                    .monthNumber(firstDate.getMonthValue())
-                    .build());
+            points = unitConsumptionService.getMonthlyByResident(residentId, ServiceCode.ELECTRIC);
         }
         
-        // Sort by month descending (newest first)
-        result.sort((a, b) -> {
-            int yearCompare = b.getYear().compareTo(a.getYear());
-            if (yearCompare != 0) return yearCompare;
-            return b.getMonthNumber().compareTo(a.getMonthNumber());
-        });
-        
-        return result;
+        return points.stream()
+                .map(point -> ElectricityMonthlyDto.builder()
+                        .month(point.getMonth())
+                        .monthDisplay(point.getMonthDisplay())
+                        .amount(point.getAmount())
+                        .year(point.getYear())
+                        .monthNumber(point.getMonthNumber())
+                        .build())
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Chuỗi tiêu thụ theo tháng cho một hoặc nhiều căn hộ của cư dân
+     */
+    public List<ConsumptionSeriesDto> getConsumptionSeries(UUID userId, List<UUID> unitIds,
+                                                           List<String> serviceCodes, Integer months) {
+        if (unitIds == null || unitIds.isEmpty()) {
+            throw new IllegalArgumentException("unitIds is required");
+        }
+        Set<UUID> units = new LinkedHashSet<>(unitIds);
+        units.forEach(unitId -> validateUserBelongsToUnit(userId, unitId));
+        return unitConsumptionService.getSeries(units, serviceCodes, months);
     }
     
     public record VnpayCallbackResult(UUID invoiceId, boolean success, String responseCode, boolean signatureValid, String message) {
@@ -1214,55 +1155,6 @@ public class InvoiceService {
         }
     }
 
-    private void notifyPaymentSuccess(Invoice invoice, Map<String, String> params) {
-        if (invoice.getPayerResidentId() == null) {
-            return;
-        }
-
-        Optional<ResidentContact> contactOpt = residentRepository.findContactByResidentId(invoice.getPayerResidentId());
-        if (contactOpt.isEmpty() || contactOpt.get().email() == null || contactOpt.get().email().isBlank()) {
-            log.warn(" [InvoiceService] Không tìm thấy email cư dân để gửi thông báo thanh toán");
-            return;
-        }
-
-        ResidentContact contact = contactOpt.get();
-        String email = contact.email();
-        String customerName = contact.fullName() != null ? contact.fullName() : email;
-
-        BigDecimal totalAmount = invoiceLineRepository.findByInvoiceId(invoice.getId()).stream()
-                .map(InvoiceLine::getLineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        NumberFormat currencyFormat = NumberFormat.getCurrencyInstance(new Locale("vi", "VN"));
-        currencyFormat.setMaximumFractionDigits(0);
-
-        String invoiceCode = invoice.getCode() != null ? invoice.getCode() : invoice.getId().toString();
-        String amountText = currencyFormat.format(totalAmount);
-        OffsetDateTime paidAt = Optional.ofNullable(invoice.getPaidAt()).orElse(OffsetDateTime.now(ZoneId.of("Asia/Ho_Chi_Minh")));
-        String paidAtText = paidAt.atZoneSameInstant(ZoneId.of("Asia/Ho_Chi_Minh")).format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-        String txnRef = params.get("vnp_TxnRef");
-
-        String subject = "Thanh toán thành công - Hóa đơn " + invoiceCode;
-        String body = "Xin chào " + customerName + ",\n\n" +
-                "Thanh toán hóa đơn của bạn đã được xử lý thành công.\n\n" +
-                "Thông tin thanh toán:\n" +
-                "- Mã hóa đơn: " + invoiceCode + "\n" +
-                "- Số tiền: " + amountText + "\n" +
-                "- Ngày thanh toán: " + paidAtText + "\n" +
-                "- Phương thức: VNPAY\n" +
-                (txnRef != null ? "- Mã giao dịch: " + txnRef + "\n" : "") +
-                "\nCảm ơn bạn đã sử dụng dịch vụ của QHomeBase!\n\n" +
-                "Trân trọng,\n" +
-                "QHomeBase";
-
-        try {
-            emailService.sendEmail(email, subject, body);
-        } catch (Exception e) {
-            log.error(" [InvoiceService] Không thể gửi email thông báo thanh toán cho {}: {}", email, e.getMessage());
-        }
-    }
-
-
     private String resolveClientIp(HttpServletRequest request) {
         if (request == null) {
             return "127.0.0.1";
@@ -1274,9 +1166,14 @@ public class InvoiceService {
         return request.getRemoteAddr();
     }
 
-    private String generateInvoiceCode() {
-        String timestamp = OffsetDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        return String.format("INV-%s", timestamp);
+    /**
+     * Mã hóa đơn theo từng hóa đơn: thời điểm tạo + 10 ký tự hex cuối (phần ngẫu nhiên) của id,
+     * nên các hóa đơn trong cùng một lô / cùng một giây không trùng mã (unique index uq_invoices_code)
+     */
+    private static String generateInvoiceCode(OffsetDateTime now, UUID invoiceId) {
+        String timestamp = now.format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
+        String hex = invoiceId.toString();
+        return String.format("INV-%s-%s", timestamp, hex.substring(hex.length() - 10).toUpperCase(Locale.ROOT));
     }
     
     private BigDecimal calculateTaxAmount(BigDecimal quantity, BigDecimal unitPrice, BigDecimal taxRate) {
@@ -1287,12 +1184,26 @@ public class InvoiceService {
         return subtotal.multiply(taxRate).divide(BigDecimal.valueOf(100), 4, RoundingMode.HALF_UP);
     }
     
+    /**
+     * Tổng tiền đã lưu trên hóa đơn; hóa đơn cũ chưa backfill thì cộng trực tiếp bằng SQL
+     */
+    private BigDecimal resolveTotalAmount(Invoice invoice) {
+        if (invoice.getTotalAmount() != null) {
+            return invoice.getTotalAmount();
+        }
+        return invoiceLineRepository.sumLineTotalByInvoiceId(invoice.getId());
+    }
+
     private InvoiceDto toDto(Invoice invoice) {
-        List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
-        
-        BigDecimal totalAmount = lines.stream()
-                .map(InvoiceLine::getLineTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return toDto(invoice, invoiceLineRepository.findByInvoiceId(invoice.getId()));
+    }
+
+    private InvoiceDto toDto(Invoice invoice, List<InvoiceLine> lines) {
+        BigDecimal totalAmount = invoice.getTotalAmount() != null
+                ? invoice.getTotalAmount()
+                : lines.stream()
+                        .map(InvoiceLine::getLineTotal)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
         
         return InvoiceDto.builder()
                 .id(invoice.getId())
@@ -1322,6 +1233,10 @@ public class InvoiceService {
     public InvoiceDto mapToDto(Invoice invoice) {
         return toDto(invoice);
     }
+
+    public InvoiceDto mapToDto(Invoice invoice, List<InvoiceLine> lines) {
+        return toDto(invoice, lines);
+    }
     
     private InvoiceLineDto lineToDto(InvoiceLine line) {
         return InvoiceLineDto.builder()
@@ -1346,6 +1261,14 @@ public class InvoiceService {
     }
     
     private InvoiceLineResponseDto toInvoiceLineResponseDto(Invoice invoice, InvoiceLine line, UUID userId) {
+        return toInvoiceLineResponseDto(invoice, line, userId, new HashMap<>());
+    }
+    
+    /**
+     * @param ownershipByUnit kết quả isOwnerOfUnit đã tra trong cùng request, để chỉ gọi base-service một lần mỗi căn hộ
+     */
+    private InvoiceLineResponseDto toInvoiceLineResponseDto(Invoice invoice, InvoiceLine line, UUID userId,
+                                                            Map<UUID, Boolean> ownershipByUnit) {
         // Check permission: isOwner, canPay
         boolean isOwner = false;
         boolean canPay = false;
@@ -1353,7 +1276,8 @@ public class InvoiceService {
         
         if (userId != null && invoice.getPayerUnitId() != null) {
             try {
-                isOwner = baseServiceClient.isOwnerOfUnit(userId, invoice.getPayerUnitId());
+                isOwner = ownershipByUnit.computeIfAbsent(invoice.getPayerUnitId(),
+                        unitId -> baseServiceClient.isOwnerOfUnit(userId, unitId));
                 
                 if (isOwner) {
                     // OWNER/TENANT can pay if invoice is not already paid
@@ -1389,10 +1313,14 @@ public class InvoiceService {
                 .build();
     }
 
-    private InvoiceCategoryResponseDto buildCategoryResponse(String category, List<InvoiceLineResponseDto> invoices) {
-        double total = invoices.stream()
-                .mapToDouble(item -> item.getLineTotal() != null ? item.getLineTotal() : 0.0)
-                .sum();
+    private InvoiceCategoryResponseDto buildCategoryResponse(String category, List<InvoiceLineResponseDto> invoices,
+                                                             Map<String, BigDecimal> storedTotals) {
+        BigDecimal stored = storedTotals != null ? storedTotals.get(category) : null;
+        double total = stored != null
+                ? stored.doubleValue()
+                : invoices.stream()
+                        .mapToDouble(item -> item.getLineTotal() != null ? item.getLineTotal() : 0.0)
+                        .sum();
 
         return InvoiceCategoryResponseDto.builder()
                 .categoryCode(category)
@@ -1403,32 +1331,35 @@ public class InvoiceService {
                 .build();
     }
 
-    private String determineCategory(String serviceCode) {
-        if (serviceCode == null || serviceCode.isBlank()) {
-            return "OTHER";
-        }
-        String normalized = serviceCode.trim().toUpperCase();
+    /**
+     * Hóa đơn có tiền thuộc ít nhất một nhóm cần hiển thị; hóa đơn chưa có category_totals (chưa backfill) luôn được giữ
+     */
+    private static boolean hasAnyCategory(Invoice invoice, Set<String> categories) {
+        Map<String, BigDecimal> totals = invoice.getCategoryTotals();
+        return totals == null || totals.keySet().stream().anyMatch(categories::contains);
+    }
 
-        if (normalized.contains("ELECTRIC")) {
-            return "ELECTRICITY";
-        }
-        if (normalized.contains("WATER")) {
-            return "WATER";
-        }
-        if (normalized.contains("INTERNET") || normalized.contains("WIFI")) {
-            return "INTERNET";
-        }
-        if (normalized.contains("ELEVATOR")) {
-            return "ELEVATOR";
-        }
-        if (normalized.contains("PARK") || normalized.contains("VEHICLE") || normalized.contains("CAR") || normalized.contains("MOTOR")) {
-            return "PARKING";
-        }
-        if (normalized.contains("CONTRACT")) {
-            return "CONTRACT_RENEWAL";
+    /**
+     * Cộng category_totals đã lưu của các hóa đơn cho các nhóm cho trước.
+     * Trả về null khi có hóa đơn chưa được backfill, khi đó tổng nhóm được cộng từ line như trước.
+     */
+    private static Map<String, BigDecimal> sumStoredCategoryTotals(List<Invoice> invoices, Set<String> categories) {
+        Map<String, BigDecimal> totals = new HashMap<>();
+        for (Invoice invoice : invoices) {
+            if (invoice.getCategoryTotals() == null) {
+                return null;
+            }
+            invoice.getCategoryTotals().forEach((category, amount) -> {
+                if (amount != null && categories.contains(category)) {
+                    totals.merge(category, amount, BigDecimal::add);
+                }
+            });
         }
+        return totals;
+    }
 
-        return "OTHER";
+    private String determineCategory(String serviceCode) {
+        return InvoiceCategory.of(serviceCode);
     }
 
     private String resolveCategoryName(String categoryCode) {
@@ -1501,28 +1432,22 @@ public class InvoiceService {
                         .build()))
                 .build();
 
-        InvoiceDto created = createInvoice(createRequest);
-
-        Invoice invoice = invoiceRepository.findById(created.getId())
-                .orElseThrow(() -> new IllegalArgumentException("Invoice not found: " + created.getId()));
-
-        invoice.setStatus(InvoiceStatus.PAID);
-        invoice.setPaymentGateway("VNPAY");
-        invoice.setPaidAt(payDate);
-        invoice.setVnpTransactionRef(request.getTransactionRef());
-        invoice.setVnpTransactionNo(request.getTransactionNo());
-        invoice.setVnpBankCode(request.getBankCode());
-        invoice.setVnpCardType(request.getCardType());
-        invoice.setVnpResponseCode(request.getResponseCode());
-        invoiceRepository.save(invoice);
-
-        Map<String, String> params = new HashMap<>();
-        if (request.getTransactionRef() != null) {
-            params.put("vnp_TxnRef", request.getTransactionRef());
-        }
-        notifyPaymentSuccess(invoice, params);
-
-        return toDto(invoice);
+        // Hóa đơn thẻ được ghi thẳng ở trạng thái PAID, không cần tạo rồi đọc lại để cập nhật
+        CreatedInvoice created = insertInvoices(List.of(createRequest), invoice -> {
+            invoice.setStatus(InvoiceStatus.PAID);
+            invoice.setPaymentGateway("VNPAY");
+            invoice.setPaidAt(payDate);
+            invoice.setVnpTransactionRef(request.getTransactionRef());
+            invoice.setVnpTransactionNo(request.getTransactionNo());
+            invoice.setVnpBankCode(request.getBankCode());
+            invoice.setVnpCardType(request.getCardType());
+            invoice.setVnpResponseCode(request.getResponseCode());
+        }).get(0);
+        Invoice invoice = created.invoice();
+
+        invoiceOutboxService.invoicePaid(invoice, request.getTransactionRef());
+
+        return toDto(invoice, created.lines());
     }
 
     private String buildElevatorCardDescription(ElevatorCardPaymentRequest request) {
@@ -1591,28 +1516,22 @@ public class InvoiceService {
                         .build()))
                 .build();
 
-        InvoiceDto created = createInvoice(createRequest);
-
-        Invoice invoice = invoiceRepository.findById(created.getId())
-                .orElseThrow(() -> new IllegalArgumentException("Invoice not found: " + created.getId()));
-
-        invoice.setStatus(InvoiceStatus.PAID);
-        invoice.setPaymentGateway("VNPAY");
-        invoice.setPaidAt(payDate);
-        invoice.setVnpTransactionRef(request.getTransactionRef());
-        invoice.setVnpTransactionNo(request.getTransactionNo());
-        invoice.setVnpBankCode(request.getBankCode());
-        invoice.setVnpCardType(request.getCardType());
-        invoice.setVnpResponseCode(request.getResponseCode());
-        invoiceRepository.save(invoice);
-
-        Map<String, String> params = new HashMap<>();
-        if (request.getTransactionRef() != null) {
-            params.put("vnp_TxnRef", request.getTransactionRef());
-        }
-        notifyPaymentSuccess(invoice, params);
-
-        return toDto(invoice);
+        // Hóa đơn thẻ được ghi thẳng ở trạng thái PAID, không cần tạo rồi đọc lại để cập nhật
+        CreatedInvoice created = insertInvoices(List.of(createRequest), invoice -> {
+            invoice.setStatus(InvoiceStatus.PAID);
+            invoice.setPaymentGateway("VNPAY");
+            invoice.setPaidAt(payDate);
+            invoice.setVnpTransactionRef(request.getTransactionRef());
+            invoice.setVnpTransactionNo(request.getTransactionNo());
+            invoice.setVnpBankCode(request.getBankCode());
+            invoice.setVnpCardType(request.getCardType());
+            invoice.setVnpResponseCode(request.getResponseCode());
+        }).get(0);
+        Invoice invoice = created.invoice();
+
+        invoiceOutboxService.invoicePaid(invoice, request.getTransactionRef());
+
+        return toDto(invoice, created.lines());
     }
 
     private String buildResidentCardDescription(ResidentCardPaymentRequest request) {
@@ -1633,17 +1552,8 @@ public class InvoiceService {
             throw new IllegalArgumentException("CycleId cannot be null");
         }
         
-        List<Invoice> invoicesInCycle = invoiceRepository.findByCycleId(cycleId);
-        
-        Set<String> servicesWithInvoice = new LinkedHashSet<>();
-        for (Invoice invoice : invoicesInCycle) {
-            List<InvoiceLine> lines = invoiceLineRepository.findByInvoiceId(invoice.getId());
-            for (InvoiceLine line : lines) {
-                if (line.getServiceCode() != null && !line.getServiceCode().isBlank()) {
-                    servicesWithInvoice.add(line.getServiceCode().toUpperCase().trim());
-                }
-            }
-        }
+        Set<String> servicesWithInvoice = new LinkedHashSet<>(
+                invoiceLineRepository.findDistinctServiceCodesByCycleId(cycleId));
         
         List<String> allServices;
         try {
@@ -0,0 +1,82 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.constants.InvoiceCategory;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceLine;
+import com.QhomeBase.financebillingservice.repository.InvoiceBatchRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceLineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Duy trì total_amount và category_totals của hóa đơn.
+ * Mọi chỗ ghi invoice lines phải gọi {@link #applyTotals} (khi tạo) hoặc {@link #recompute} (khi sửa)
+ * trong cùng transaction với thao tác ghi line.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InvoiceTotalsService {
+
+    private final InvoiceLineRepository invoiceLineRepository;
+    private final InvoiceBatchRepository invoiceBatchRepository;
+
+    /**
+     * Gán tổng tiền và tổng theo nhóm dịch vụ cho hóa đơn từ danh sách line trong bộ nhớ
+     */
+    public void applyTotals(Invoice invoice, List<InvoiceLine> lines) {
+        BigDecimal total = BigDecimal.ZERO;
+        Map<String, BigDecimal> byCategory = new TreeMap<>();
+        for (InvoiceLine line : lines) {
+            BigDecimal lineTotal = line.getLineTotal();
+            total = total.add(lineTotal);
+            byCategory.merge(InvoiceCategory.of(line.getServiceCode()), lineTotal, BigDecimal::add);
+        }
+        invoice.setTotalAmount(total);
+        invoice.setCategoryTotals(byCategory);
+    }
+
+    /**
+     * Tính lại tổng tiền cho các hóa đơn có line vừa thay đổi
+     */
+    @Transactional
+    public void recompute(Collection<UUID> invoiceIds) {
+        if (invoiceIds == null || invoiceIds.isEmpty()) {
+            return;
+        }
+        Map<UUID, List<InvoiceLine>> linesByInvoiceId = invoiceLineRepository.findGroupedByInvoiceIds(invoiceIds);
+        List<Invoice> invoices = invoiceIds.stream()
+                .distinct()
+                .map(id -> {
+                    Invoice invoice = Invoice.builder().id(id).build();
+                    applyTotals(invoice, linesByInvoiceId.getOrDefault(id, List.of()));
+                    return invoice;
+                })
+                .toList();
+        invoiceBatchRepository.updateTotals(invoices);
+    }
+
+    /**
+     * Backfill một lô hóa đơn chưa có total_amount; trả về số hóa đơn đã xử lý (0 khi đã xong).
+     * Các lô bị khóa bởi instance khác được bỏ qua (SKIP LOCKED).
+     */
+    @Transactional
+    public int backfillBatch(int batchSize) {
+        List<UUID> invoiceIds = invoiceBatchRepository.lockIdsWithoutTotals(batchSize);
+        if (invoiceIds.isEmpty()) {
+            return 0;
+        }
+        recompute(invoiceIds);
+        log.debug("Backfilled totals for {} invoices", invoiceIds.size());
+        return invoiceIds.size();
+    }
+}
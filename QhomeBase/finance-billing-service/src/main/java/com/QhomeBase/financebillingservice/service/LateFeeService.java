@@ -0,0 +1,143 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.model.ServicePricing;
+import com.QhomeBase.financebillingservice.repository.LateFeeRepository;
+import com.QhomeBase.financebillingservice.repository.LateFeeRepository.LateFeeRate;
+import com.QhomeBase.financebillingservice.repository.LateFeeRepository.LockedInvoice;
+import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Tính phí trả chậm cho các hóa đơn quá hạn (PUBLISHED / UNPAID) theo từng kỳ.
+ * <p>
+ * Mức phí lấy từ {@link ServicePricing} có service_code = LATE_FEE: base_price là phần trăm tổng tiền hóa đơn
+ * tính cho mỗi ngày quá hạn (sau số ngày ân hạn), tax_rate áp dụng cho phí.
+ * Hóa đơn được duyệt theo keyset (không khóa), mỗi chunk là một transaction ngắn: khóa các hóa đơn của chunk
+ * (SKIP LOCKED), upsert line LATE_FEE bằng một câu lệnh, cập nhật tổng tiền và bảng tổng hợp dashboard.
+ * Line LATE_FEE có quantity = số ngày quá hạn nên chạy lại trong ngày không tạo thêm phí.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LateFeeService {
+
+    private final LateFeeRepository lateFeeRepository;
+    private final ServicePricingRepository servicePricingRepository;
+    private final InvoiceTotalsService invoiceTotalsService;
+    private final InvoiceAggregateService invoiceAggregateService;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${billing.late-fee.grace-days:0}")
+    private int graceDays;
+
+    @Value("${billing.late-fee.chunk-size:500}")
+    private int chunkSize;
+
+    /**
+     * Tính phí trả chậm cho mọi kỳ có hóa đơn quá hạn tính đến {@code asOf}
+     */
+    public LateFeeRunResult calculateAll(LocalDate asOf) {
+        Optional<LateFeeRate> rate = findRate(asOf);
+        if (rate.isEmpty()) {
+            log.info("ℹ️ [LateFee] No active LATE_FEE pricing on {}, skipping", asOf);
+            return LateFeeRunResult.EMPTY;
+        }
+
+        LateFeeRunResult total = LateFeeRunResult.EMPTY;
+        for (UUID cycleId : lateFeeRepository.findCyclesWithOverdueInvoices(asOf, graceDays)) {
+            total = total.plus(calculateCycle(cycleId, asOf, rate.get()));
+        }
+        return total;
+    }
+
+    /**
+     * Tính phí trả chậm cho các hóa đơn quá hạn của một kỳ
+     */
+    public LateFeeRunResult calculateForCycle(UUID cycleId, LocalDate asOf) {
+        Optional<LateFeeRate> rate = findRate(asOf);
+        if (rate.isEmpty()) {
+            throw new IllegalArgumentException("No active LATE_FEE pricing on " + asOf);
+        }
+        return calculateCycle(cycleId, asOf, rate.get());
+    }
+
+    private LateFeeRunResult calculateCycle(UUID cycleId, LocalDate asOf, LateFeeRate rate) {
+        LateFeeRunResult result = LateFeeRunResult.EMPTY;
+        UUID afterId = null;
+        List<UUID> page;
+        do {
+            page = lateFeeRepository.findPendingPage(cycleId, asOf, graceDays, afterId, chunkSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            afterId = page.get(page.size() - 1);
+
+            List<UUID> chunk = page;
+            LateFeeRunResult chunkResult = transactionTemplate.execute(status -> processChunk(chunk, asOf, rate));
+            result = result.plus(chunkResult);
+            log.info("⏳ [LateFee] Cycle {} chunk {}: charged {} / {} invoices (skipped locked: {}), total charged {}",
+                    cycleId, result.chunks(), chunkResult.charged(), chunk.size(), chunkResult.skipped(), result.charged());
+        } while (page.size() == chunkSize);
+
+        if (result.chunks() > 0) {
+            log.info("✅ [LateFee] Cycle {} done as of {}: {} invoices charged in {} chunks, {} skipped",
+                    cycleId, asOf, result.charged(), result.chunks(), result.skipped());
+        }
+        return result;
+    }
+
+    private LateFeeRunResult processChunk(List<UUID> invoiceIds, LocalDate asOf, LateFeeRate rate) {
+        List<LockedInvoice> locked = lateFeeRepository.lockChunk(invoiceIds, asOf, graceDays);
+        if (locked.isEmpty()) {
+            return new LateFeeRunResult(1, 0, invoiceIds.size());
+        }
+        Map<InvoiceStatus, List<UUID>> idsByStatus = locked.stream()
+                .collect(Collectors.groupingBy(invoice -> InvoiceStatus.valueOf(invoice.status()),
+                        Collectors.mapping(LockedInvoice::id, Collectors.toList())));
+        List<UUID> lockedIds = locked.stream().map(LockedInvoice::id).toList();
+
+        idsByStatus.forEach(invoiceAggregateService::onAmountsChanging);
+        List<UUID> charged = lateFeeRepository.upsertLateFees(lockedIds, asOf, graceDays, rate);
+        invoiceTotalsService.recompute(charged);
+        idsByStatus.forEach(invoiceAggregateService::onAmountsChanged);
+
+        return new LateFeeRunResult(1, charged.size(), invoiceIds.size() - locked.size());
+    }
+
+    private Optional<LateFeeRate> findRate(LocalDate asOf) {
+        return servicePricingRepository.findActivePriceGlobal(LateFeeRepository.LATE_FEE_SERVICE_CODE, asOf)
+                .filter(pricing -> pricing.getBasePrice() != null && pricing.getBasePrice().signum() > 0)
+                .map(pricing -> new LateFeeRate(
+                        pricing.getBasePrice(),
+                        pricing.getTaxRate() != null ? pricing.getTaxRate() : BigDecimal.ZERO,
+                        pricing.getUnit(),
+                        pricing.getServiceName() != null ? pricing.getServiceName() : "Phí trả chậm"));
+    }
+
+    /**
+     * @param chunks  số chunk đã xử lý
+     * @param charged số hóa đơn có line LATE_FEE được thêm / cập nhật
+     * @param skipped số hóa đơn bị bỏ qua vì đang bị khóa hoặc không còn quá hạn
+     */
+    public record LateFeeRunResult(int chunks, int charged, int skipped) {
+
+        static final LateFeeRunResult EMPTY = new LateFeeRunResult(0, 0, 0);
+
+        LateFeeRunResult plus(LateFeeRunResult other) {
+            return new LateFeeRunResult(chunks + other.chunks, charged + other.charged, skipped + other.skipped);
+        }
+    }
+}
@@ -1,28 +1,35 @@
 package com.QhomeBase.financebillingservice.service;
 
 import com.QhomeBase.financebillingservice.client.BaseServiceClient;
+import com.QhomeBase.financebillingservice.config.MeterReadingImportProperties;
 import com.QhomeBase.financebillingservice.constants.ServiceCode;
 import com.QhomeBase.financebillingservice.dto.CreateInvoiceLineRequest;
 import com.QhomeBase.financebillingservice.dto.CreateInvoiceRequest;
 import com.QhomeBase.financebillingservice.dto.ImportedReadingDto;
 import com.QhomeBase.financebillingservice.dto.InvoiceDto;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportChunkRequest;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportChunkResponse;
 import com.QhomeBase.financebillingservice.dto.MeterReadingImportResponse;
 import com.QhomeBase.financebillingservice.dto.ReadingCycleDto;
 import com.QhomeBase.financebillingservice.model.BillingCycle;
 import com.QhomeBase.financebillingservice.model.Invoice;
-import com.QhomeBase.financebillingservice.model.PricingTier;
 import com.QhomeBase.financebillingservice.repository.BillingCycleRepository;
 import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
-import com.QhomeBase.financebillingservice.repository.PricingTierRepository;
-import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
+import com.QhomeBase.financebillingservice.repository.MeterReadingImportChunkRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
@@ -30,19 +37,26 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MeterReadingImportService {
 
-    private final ServicePricingRepository pricingRepository;
-    private final PricingTierRepository pricingTierRepository;
+    private final TieredPricingEngine tieredPricingEngine;
     private final InvoiceService invoiceService;
     private final BillingCycleRepository billingCycleRepository;
     private final InvoiceRepository invoiceRepository;
     private final BaseServiceClient baseServiceClient;
-    private final NotificationClient notificationClient;
+    private final MeterReadingImportProperties importProperties;
+    private final MeterReadingImportChunkRepository chunkRepository;
+    private final ObjectMapper objectMapper;
+    private final AsyncTaskExecutor meterReadingImportExecutor;
+
     public int importReadings(List<ImportedReadingDto> readings) {
         MeterReadingImportResponse response = importReadingsWithResponse(readings);
         return response.getInvoicesCreated();
     }
 
-    @Transactional
+    /**
+     * Import theo từng giai đoạn: prefetch kỳ đọc / kỳ thanh toán / hóa đơn đã có / căn hộ một lần,
+     * sau đó tính tiền và ghi hóa đơn theo chunk song song — mỗi chunk một transaction riêng,
+     * không giữ một transaction dài cho cả file import.
+     */
     public MeterReadingImportResponse importReadingsWithResponse(List<ImportedReadingDto> readings) {
         if (readings == null || readings.isEmpty()) {
             return MeterReadingImportResponse.builder()
@@ -55,57 +69,164 @@ public class MeterReadingImportService {
 
         // Group by unitId + cycleId + serviceCode to create separate invoices for WATER and ELECTRIC
         Map<String, List<ImportedReadingDto>> grouped = readings.stream()
-                .collect(Collectors.groupingBy(r -> key(r.getUnitId(), r.getCycleId(), r.getServiceCode())));
+                .collect(Collectors.groupingBy(r -> key(r.getUnitId(), r.getCycleId(), r.getServiceCode()),
+                        LinkedHashMap::new, Collectors.toList()));
 
-        Map<UUID, ReadingCycleDto> cycleCache = new HashMap<>();
-        
-        int created = 0;
-        int skipped = 0;
-        List<UUID> invoiceIds = new ArrayList<>();
-        List<String> errors = new ArrayList<>();
-        
-        for (Map.Entry<String, List<ImportedReadingDto>> entry : grouped.entrySet()) {
-            List<ImportedReadingDto> group = entry.getValue();
-            ImportedReadingDto head = group.get(0);
+        ImportResult result = new ImportResult();
+        List<PendingInvoice> pending = prepare(grouped.values(), result);
+
+        List<List<PendingInvoice>> chunks = partition(pending, Math.max(1, importProperties.getChunkSize()));
+        for (ChunkResult chunkResult : processChunks(chunks)) {
+            result.merge(chunkResult);
+        }
+
+        int created = result.created;
+        int skipped = result.skipped;
+        String message;
+        if (created > 0 && skipped == 0) {
+            message = String.format("Successfully imported %d readings and created %d invoices", 
+                    readings.size(), created);
+        } else if (created > 0 && skipped > 0) {
+            message = String.format("Imported %d readings: created %d invoices, skipped %d units", 
+                    readings.size(), created, skipped);
+        } else if (skipped > 0) {
+            message = String.format("Failed to create invoices for %d units. See errors for details.", skipped);
+        } else {
+            message = "No invoices created";
+        }
+
+        return MeterReadingImportResponse.builder()
+                .totalReadings(readings.size())
+                .invoicesCreated(created)
+                .invoicesSkipped(skipped)
+                .invoicesFailed(result.failed)
+                .invoiceIds(result.invoiceIds)
+                .errors(result.errors.isEmpty() ? null : result.errors)
+                .message(message)
+                .build();
+    }
+
+    /**
+     * Import một chunk của lượt export có idempotency key. Chunk đã hoàn tất trả lại kết quả đã lưu,
+     * chunk lỗi (hoặc bị bỏ dở quá {@code chunk-stale-seconds}) được import lại khi gửi lại cùng key.
+     * Chunk có hóa đơn ghi lỗi ({@code invoicesFailed > 0}) không được lưu là hoàn tất mà đánh dấu FAILED,
+     * để lần gửi lại import tiếp các căn hộ đó (hóa đơn đã tạo được bỏ qua nhờ kiểm tra hóa đơn đã có).
+     */
+    public MeterReadingImportChunkResponse importChunk(String idempotencyKey, MeterReadingImportChunkRequest request) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            throw new IllegalArgumentException("Idempotency-Key header is required");
+        }
+        if (idempotencyKey.length() > 200) {
+            throw new IllegalArgumentException("Idempotency-Key must be at most 200 characters");
+        }
+        List<ImportedReadingDto> readings = request.getReadings() != null ? request.getReadings() : List.of();
+        if (readings.size() > importProperties.getMaxChunkReadings()) {
+            throw new IllegalArgumentException(String.format("Chunk has %d readings, maximum is %d",
+                    readings.size(), importProperties.getMaxChunkReadings()));
+        }
+
+        MeterReadingImportChunkResponse.MeterReadingImportChunkResponseBuilder response = MeterReadingImportChunkResponse.builder()
+                .idempotencyKey(idempotencyKey)
+                .chunkNo(request.getChunkNo());
+
+        if (!chunkRepository.claim(idempotencyKey, request.getReadingCycleId(), request.getChunkNo(),
+                readings.size(), importProperties.getChunkStaleSeconds())) {
+            MeterReadingImportChunkRepository.ChunkRecord existing = chunkRepository.find(idempotencyKey)
+                    .orElseThrow(() -> new IllegalStateException("Import chunk disappeared: " + idempotencyKey));
+            if (MeterReadingImportChunkRepository.COMPLETED.equals(existing.status())) {
+                log.info("Import chunk {} (#{}) already completed, replaying stored result", idempotencyKey, request.getChunkNo());
+                return response.status(MeterReadingImportChunkResponse.Status.REPLAYED)
+                        .result(readResponse(existing.responseJson()))
+                        .build();
+            }
+            log.warn("Import chunk {} (#{}) is being processed by another request", idempotencyKey, request.getChunkNo());
+            return response.status(MeterReadingImportChunkResponse.Status.IN_PROGRESS).build();
+        }
+
+        MeterReadingImportResponse result;
+        try {
+            result = importReadingsWithResponse(readings);
+        } catch (RuntimeException e) {
+            chunkRepository.fail(idempotencyKey, e.getMessage());
+            throw e;
+        }
+        if (result.getInvoicesFailed() > 0) {
+            chunkRepository.fail(idempotencyKey, String.format("%d invoice(s) failed to persist", result.getInvoicesFailed()));
+            log.warn("Import chunk {} (#{}, cycle {}): {} invoice(s) failed to persist, chunk left retryable",
+                    idempotencyKey, request.getChunkNo(), request.getReadingCycleId(), result.getInvoicesFailed());
+            return response.status(MeterReadingImportChunkResponse.Status.FAILED)
+                    .result(result)
+                    .build();
+        }
+        chunkRepository.complete(idempotencyKey, writeResponse(result));
+        log.info("Import chunk {} (#{}, cycle {}): {} readings, {} invoices created, {} skipped",
+                idempotencyKey, request.getChunkNo(), request.getReadingCycleId(),
+                readings.size(), result.getInvoicesCreated(), result.getInvoicesSkipped());
+        return response.status(MeterReadingImportChunkResponse.Status.IMPORTED)
+                .result(result)
+                .build();
+    }
+
+    private String writeResponse(MeterReadingImportResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize import result", e);
+        }
+    }
+
+    private MeterReadingImportResponse readResponse(String json) {
+        try {
+            return objectMapper.readValue(json, MeterReadingImportResponse.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored import result", e);
+        }
+    }
 
+    /**
+     * Giai đoạn prefetch + kiểm tra: mỗi kỳ đọc, kỳ thanh toán, danh sách hóa đơn đã có
+     * theo (kỳ, dịch vụ) và thông tin căn hộ chỉ được tải một lần cho cả lô.
+     */
+    private List<PendingInvoice> prepare(Collection<List<ImportedReadingDto>> groups, ImportResult result) {
+        Map<UUID, ReadingCycleDto> readingCycles = new HashMap<>();
+        Set<UUID> missingCycles = new HashSet<>();
+        Map<String, UUID> billingCycleIds = new HashMap<>();
+        Map<String, Map<UUID, UUID>> existingInvoices = new HashMap<>();
+
+        Set<UUID> unitIds = groups.stream()
+                .map(group -> group.get(0).getUnitId())
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<UUID, BaseServiceClient.UnitInfo> units = baseServiceClient.getUnitsByIds(unitIds);
+
+        List<PendingInvoice> pending = new ArrayList<>();
+        for (List<ImportedReadingDto> group : groups) {
+            ImportedReadingDto head = group.get(0);
             UUID unitId = head.getUnitId();
             UUID residentId = head.getResidentId();
-            UUID readingCycleId = head.getCycleId(); 
+            UUID readingCycleId = head.getCycleId();
 
-            try {
-                ReadingCycleDto readingCycle = cycleCache.computeIfAbsent(readingCycleId, cycleId -> {
-                    try {
-                        ReadingCycleDto cycle = baseServiceClient.getReadingCycleById(cycleId);
-                        if (cycle == null) {
-                            log.error("Reading cycle not found: {}", cycleId);
-                            throw new IllegalStateException("Reading cycle not found: " + cycleId);
-                        }
-                        return cycle;
-                    } catch (Exception e) {
-                        log.error("Error fetching reading cycle {}: {}", cycleId, e.getMessage());
-                        throw new RuntimeException("Failed to fetch reading cycle: " + e.getMessage(), e);
-                    }
-                });
-
-                // Allow creating invoices for any cycle status
-                // Removed status validation to allow invoices from OPEN cycles (e.g., from asset inspections)
-                String cycleStatus = readingCycle.status();
-                log.debug("Processing invoice for unit={}, cycle={}, status={}", 
-                        unitId, readingCycleId, cycleStatus);
-            } catch (Exception e) {
-                String errorMsg = String.format("Unit %s, Cycle %s: %s", unitId, readingCycleId, e.getMessage());
-                log.error("Error processing unit={}, cycle={}: {}", unitId, readingCycleId, e.getMessage());
-                errors.add(errorMsg);
-                skipped++;
-                continue;
+            ReadingCycleDto readingCycle = readingCycles.get(readingCycleId);
+            if (readingCycle == null && !missingCycles.contains(readingCycleId)) {
+                try {
+                    readingCycle = baseServiceClient.getReadingCycleById(readingCycleId);
+                } catch (Exception e) {
+                    // Lỗi gọi base-service là lỗi tạm thời, không phải kỳ đọc không tồn tại
+                    log.error("Error fetching reading cycle {}: {}", readingCycleId, e.getMessage());
+                    result.fail(String.format("Unit %s, Cycle %s: Cannot load reading cycle: %s",
+                            unitId, readingCycleId, e.getMessage()));
+                    continue;
+                }
+                if (readingCycle != null) {
+                    readingCycles.put(readingCycleId, readingCycle);
+                } else {
+                    log.error("Reading cycle not found: {}", readingCycleId);
+                    missingCycles.add(readingCycleId);
+                }
             }
-
-            ReadingCycleDto readingCycle = cycleCache.get(readingCycleId);
             if (readingCycle == null) {
-                String errorMsg = String.format("Unit %s, Cycle %s: Reading cycle not found in cache", unitId, readingCycleId);
-                log.error("Reading cycle {} not found in cache for unit={}", readingCycleId, unitId);
-                errors.add(errorMsg);
-                skipped++;
+                result.skip(String.format("Unit %s, Cycle %s: Reading cycle not found: %s",
+                        unitId, readingCycleId, readingCycleId));
                 continue;
             }
 
@@ -117,13 +238,11 @@ public class MeterReadingImportService {
                         .reduce(BigDecimal.ZERO, BigDecimal::add);
                 
                 if (totalUsage.compareTo(BigDecimal.ZERO) == 0) {
-                    String errorMsg = String.format("Unit %s, Cycle %s: Total usage is 0", unitId, readingCycleId);
                     log.warn("Total usage is 0 for unit={}, cycle={}. Readings: {}", 
                             unitId, readingCycleId, group.stream()
                                     .map(r -> String.format("usageKwh=%s", r.getUsageKwh()))
                                     .collect(Collectors.joining(", ")));
-                    errors.add(errorMsg);
-                    skipped++;
+                    result.skip(String.format("Unit %s, Cycle %s: Total usage is 0", unitId, readingCycleId));
                     continue;
                 }
 
@@ -145,211 +264,177 @@ public class MeterReadingImportService {
                 String description = Optional.ofNullable(head.getDescription())
                         .orElse(getDefaultDescription(serviceCode));
 
-                UUID billingCycleId = findOrCreateBillingCycle(readingCycleId, serviceDate);
+                // Kỳ thanh toán chỉ phụ thuộc vào kỳ đọc và tháng của ngày ghi chỉ số
+                UUID billingCycleId = billingCycleIds.computeIfAbsent(
+                        readingCycleId + "|" + YearMonth.from(serviceDate),
+                        k -> findOrCreateBillingCycle(readingCycleId, serviceDate));
 
                 // Check for existing invoice with same unit, cycle, and serviceCode
-                // Since we now create separate invoices for WATER and ELECTRIC, we need to check by serviceCode too
-                // Use the repository method that finds invoices by serviceCode and cycleId
-                List<Invoice> existingInvoicesForService = invoiceRepository.findByServiceCodeAndAndCycle(billingCycleId, serviceCode);
-                Invoice existingInvoiceForService = existingInvoicesForService.stream()
-                        .filter(inv -> unitId.equals(inv.getPayerUnitId()))
-                        .findFirst()
-                        .orElse(null);
-                
-                if (existingInvoiceForService != null) {
+                final String finalServiceCode = serviceCode;
+                Map<UUID, UUID> existingByUnit = existingInvoices.computeIfAbsent(
+                        billingCycleId + "|" + serviceCode,
+                        k -> invoiceRepository.findByServiceCodeAndAndCycle(billingCycleId, finalServiceCode).stream()
+                                .filter(inv -> inv.getPayerUnitId() != null)
+                                .collect(Collectors.toMap(Invoice::getPayerUnitId, Invoice::getId, (a, b) -> a)));
+                UUID existingInvoiceId = existingByUnit.get(unitId);
+                if (existingInvoiceId != null) {
                     log.warn("Invoice already exists for unit={}, cycle={}, serviceCode={}. Invoice ID: {}. Skipping creation.", 
-                            unitId, billingCycleId, serviceCode, existingInvoiceForService.getId());
-                    invoiceIds.add(existingInvoiceForService.getId());
+                            unitId, billingCycleId, serviceCode, existingInvoiceId);
+                    result.invoiceIds.add(existingInvoiceId);
                     continue;
                 }
 
-                List<CreateInvoiceLineRequest> invoiceLines = calculateInvoiceLines(
-                        serviceCode, totalUsage, serviceDate, description);
-                
-                if (invoiceLines.isEmpty()) {
-                    String errorMsg = String.format("Unit %s, Cycle %s: No invoice lines calculated (serviceCode=%s, totalUsage=%s)", 
-                            unitId, readingCycleId, serviceCode, totalUsage);
-                    log.warn("No invoice lines calculated for unit={}, cycle={}, serviceCode={}, totalUsage={}. Skipping invoice creation.", 
-                            unitId, readingCycleId, serviceCode, totalUsage);
-                    errors.add(errorMsg);
-                    skipped++;
-                    continue;
-                }
-                
-                boolean hasValidPrice = invoiceLines.stream()
-                        .anyMatch(line -> line.getUnitPrice() != null && line.getUnitPrice().compareTo(BigDecimal.ZERO) > 0);
-                
-                if (!hasValidPrice) {
-                    String errorMsg = String.format("Unit %s, Cycle %s: No valid pricing found (serviceCode=%s, totalUsage=%s)", 
-                            unitId, readingCycleId, serviceCode, totalUsage);
-                    log.warn("No valid pricing found for unit={}, cycle={}, serviceCode={}, totalUsage={}. Invoice lines: {}. Skipping invoice creation.", 
-                            unitId, readingCycleId, serviceCode, totalUsage, 
-                            invoiceLines.stream()
-                                    .map(line -> String.format("quantity=%s, unitPrice=%s", line.getQuantity(), line.getUnitPrice()))
-                                    .collect(Collectors.joining(", ")));
-                    errors.add(errorMsg);
-                    skipped++;
-                    continue;
-                }
+                BaseServiceClient.UnitInfo unitInfo = units.get(unitId);
+                pending.add(new PendingInvoice(unitId, residentId, readingCycleId, readingCycle, billingCycleId,
+                        serviceCode, serviceDate, totalUsage, description, unitInfo));
+            } catch (Exception e) {
+                log.error("Error processing unit={}, cycle={}: {}", unitId, readingCycleId, e.getMessage(), e);
+                result.fail(String.format("Unit %s, Cycle %s: %s", unitId, readingCycleId, e.getMessage()));
+            }
+        }
+        return pending;
+    }
 
-                LocalDate dueDate = calculateDueDate(readingCycle.periodTo());
-                
-                // Get billToName from primary resident or unit code
-                String billToName = getBillToName(unitId, residentId);
-                
-               
-                com.QhomeBase.financebillingservice.model.InvoiceStatus invoiceStatus = 
-                        "OPEN".equalsIgnoreCase(readingCycle.status()) 
-                        ? com.QhomeBase.financebillingservice.model.InvoiceStatus.PAID 
-                        : null; // null will default to PUBLISHED in InvoiceService
-                
-                CreateInvoiceRequest req = CreateInvoiceRequest.builder()
-                        .payerUnitId(unitId)
-                        .payerResidentId(residentId)
-                        .cycleId(billingCycleId)
-                        .currency("VND")
-                        .dueDate(dueDate)
-                        .billToName(billToName)
-                        .status(invoiceStatus)
-                        .lines(invoiceLines)
-                        .build();
+    private List<ChunkResult> processChunks(List<List<PendingInvoice>> chunks) {
+        if (chunks.isEmpty()) {
+            return List.of();
+        }
+        int total = chunks.size();
+        AtomicInteger completed = new AtomicInteger();
+        if (total == 1) {
+            return List.of(processChunk(chunks.get(0), 1, total, completed));
+        }
 
-                InvoiceDto invoice = invoiceService.createInvoice(req);
-                invoiceIds.add(invoice.getId());
-                created++;
-                
-                log.info("Created invoice {} for unit={}, readingCycle={}, billingCycle={} with usage={} kWh ({} tiers)",
-                        invoice.getId(), unitId, readingCycleId, billingCycleId, totalUsage, invoiceLines.size());
-                
-                // Send notification to resident about new invoice
+        // Chunk chạy trên executor dùng chung (MeterReadingImportConfig) thay vì tạo pool cho mỗi lần import
+        List<Future<ChunkResult>> futures = new ArrayList<>(total);
+        try {
+            for (int i = 0; i < total; i++) {
+                List<PendingInvoice> chunk = chunks.get(i);
+                int chunkNo = i + 1;
+                futures.add(meterReadingImportExecutor.submit(() -> processChunk(chunk, chunkNo, total, completed)));
+            }
+            List<ChunkResult> results = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
                 try {
-                    sendInvoiceNotification(residentId, unitId, invoice, serviceCode, totalUsage);
-                } catch (Exception e) {
-                    log.warn("Failed to send notification for invoice {}: {}", invoice.getId(), e.getMessage());
-                    // Don't fail the import if notification fails
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(ChunkResult.failed(chunks.get(i), e.getCause()));
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Meter reading import interrupted", e);
+        }
+    }
+
+    /**
+     * Tính tiền theo bậc cho từng hóa đơn trong chunk rồi ghi cả chunk trong một transaction
+     * (batch insert). Sự kiện InvoicePublished được ghi vào outbox cùng transaction đó.
+     */
+    private ChunkResult processChunk(List<PendingInvoice> chunk, int chunkNo, int totalChunks, AtomicInteger completed) {
+        ChunkResult result = new ChunkResult();
+        List<PendingInvoice> accepted = new ArrayList<>(chunk.size());
+        List<CreateInvoiceRequest> requests = new ArrayList<>(chunk.size());
+
+        for (PendingInvoice item : chunk) {
+            try {
+                CreateInvoiceRequest req = buildRequest(item, result);
+                if (req != null) {
+                    accepted.add(item);
+                    requests.add(req);
                 }
             } catch (Exception e) {
-                String errorMsg = String.format("Unit %s, Cycle %s: %s", unitId, readingCycleId, e.getMessage());
-                log.error("Error creating invoice for unit={}, cycle={}: {}", unitId, readingCycleId, e.getMessage(), e);
-                errors.add(errorMsg);
-                skipped++;
+                log.error("Error creating invoice for unit={}, cycle={}: {}",
+                        item.unitId(), item.readingCycleId(), e.getMessage(), e);
+                result.fail(String.format("Unit %s, Cycle %s: %s", item.unitId(), item.readingCycleId(), e.getMessage()));
             }
         }
 
-        String message;
-        if (created > 0 && skipped == 0) {
-            message = String.format("Successfully imported %d readings and created %d invoices", 
-                    readings.size(), created);
-        } else if (created > 0 && skipped > 0) {
-            message = String.format("Imported %d readings: created %d invoices, skipped %d units", 
-                    readings.size(), created, skipped);
-        } else if (skipped > 0) {
-            message = String.format("Failed to create invoices for %d units. See errors for details.", skipped);
-        } else {
-            message = "No invoices created";
+        if (!requests.isEmpty()) {
+            try {
+                List<InvoiceDto> invoices = invoiceService.createInvoices(requests, true);
+                for (int i = 0; i < invoices.size(); i++) {
+                    InvoiceDto invoice = invoices.get(i);
+                    PendingInvoice item = accepted.get(i);
+                    result.invoiceIds.add(invoice.getId());
+                    result.created++;
+                    log.debug("Created invoice {} for unit={}, readingCycle={}, billingCycle={} with usage={} kWh",
+                            invoice.getId(), item.unitId(), item.readingCycleId(), item.billingCycleId(), item.totalUsage());
+                }
+            } catch (Exception e) {
+                log.error("Error persisting import chunk {}/{}: {}", chunkNo, totalChunks, e.getMessage(), e);
+                for (PendingInvoice item : accepted) {
+                    result.fail(String.format("Unit %s, Cycle %s: %s", item.unitId(), item.readingCycleId(), e.getMessage()));
+                }
+            }
         }
 
-        return MeterReadingImportResponse.builder()
-                .totalReadings(readings.size())
-                .invoicesCreated(created)
-                .invoicesSkipped(skipped)
-                .invoiceIds(invoiceIds)
-                .errors(errors.isEmpty() ? null : errors)
-                .message(message)
-                .build();
+        log.info("Meter reading import: chunk {}/{} done ({} created, {} skipped) - {}/{} chunks completed",
+                chunkNo, totalChunks, result.created, result.skipped, completed.incrementAndGet(), totalChunks);
+        return result;
     }
 
-    private String key(UUID unitId, UUID cycleId, String serviceCode) {
-        String normalizedServiceCode = serviceCode != null ? normalizeServiceCode(serviceCode) : "UNKNOWN";
-        return unitId + "|" + cycleId + "|" + normalizedServiceCode;
-    }
+    private CreateInvoiceRequest buildRequest(PendingInvoice item, ChunkResult result) {
+        UUID unitId = item.unitId();
+        UUID readingCycleId = item.readingCycleId();
+        String serviceCode = item.serviceCode();
+        BigDecimal totalUsage = item.totalUsage();
 
-    private List<CreateInvoiceLineRequest> calculateInvoiceLines(
-            String serviceCode, BigDecimal totalUsage, LocalDate serviceDate, String baseDescription) {
-        
-        List<PricingTier> tiers = pricingTierRepository.findActiveTiersByServiceAndDate(serviceCode, serviceDate);
+        List<CreateInvoiceLineRequest> invoiceLines = tieredPricingEngine.calculateInvoiceLines(
+                serviceCode, totalUsage, item.serviceDate(), item.description());
         
-        if (tiers.isEmpty()) {
-            BigDecimal unitPrice = resolveUnitPrice(serviceCode, serviceDate);
-            CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                    .serviceDate(serviceDate)
-                    .description(baseDescription)
-                    .quantity(totalUsage)
-                    .unit("kWh")
-                    .unitPrice(unitPrice)
-                    .taxRate(BigDecimal.ZERO)
-                    .serviceCode(serviceCode)
-                    .externalRefType("METER_READING_GROUP")
-                    .externalRefId(null)
-                    .build();
-            return Collections.singletonList(line);
+        if (invoiceLines.isEmpty()) {
+            log.warn("No invoice lines calculated for unit={}, cycle={}, serviceCode={}, totalUsage={}. Skipping invoice creation.", 
+                    unitId, readingCycleId, serviceCode, totalUsage);
+            result.skip(String.format("Unit %s, Cycle %s: No invoice lines calculated (serviceCode=%s, totalUsage=%s)", 
+                    unitId, readingCycleId, serviceCode, totalUsage));
+            return null;
         }
         
-        List<CreateInvoiceLineRequest> lines = new ArrayList<>();
-        BigDecimal previousMax = BigDecimal.ZERO;
+        boolean hasValidPrice = invoiceLines.stream()
+                .anyMatch(line -> line.getUnitPrice() != null && line.getUnitPrice().compareTo(BigDecimal.ZERO) > 0);
         
-        for (PricingTier tier : tiers) {
-            if (previousMax.compareTo(totalUsage) >= 0) {
-                break;
-            }
-            
-            BigDecimal tierEffectiveMax;
-            if (tier.getMaxQuantity() == null) {
-                tierEffectiveMax = totalUsage;
-            } else {
-                tierEffectiveMax = totalUsage.min(tier.getMaxQuantity());
-            }
-            
-            BigDecimal applicableQuantity = tierEffectiveMax.subtract(previousMax).max(BigDecimal.ZERO);
-            
-            if (applicableQuantity.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal tierAmount = applicableQuantity.multiply(tier.getUnitPrice());
-                
-                String maxQtyStr = tier.getMaxQuantity() != null ? tier.getMaxQuantity().toString() : "∞";
-                String tierDescription = String.format("%s (Bậc %d: %s-%s kWh)",
-                        baseDescription,
-                        tier.getTierOrder(),
-                        tier.getMinQuantity(),
-                        maxQtyStr);
-                
-                CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                        .serviceDate(serviceDate)
-                        .description(tierDescription)
-                        .quantity(applicableQuantity)
-                        .unit("kWh")
-                        .unitPrice(tier.getUnitPrice())
-                        .taxRate(BigDecimal.ZERO)
-                        .serviceCode(serviceCode)
-                        .externalRefType("METER_READING_GROUP")
-                        .externalRefId(null)
-                        .build();
-                
-                lines.add(line);
-                previousMax = tierEffectiveMax;
-                
-                log.debug("Tier {}: {} kWh × {} VND/kWh = {} VND", 
-                        tier.getTierOrder(), applicableQuantity, tier.getUnitPrice(), tierAmount);
-            }
+        if (!hasValidPrice) {
+            log.warn("No valid pricing found for unit={}, cycle={}, serviceCode={}, totalUsage={}. Invoice lines: {}. Skipping invoice creation.", 
+                    unitId, readingCycleId, serviceCode, totalUsage, 
+                    invoiceLines.stream()
+                            .map(line -> String.format("quantity=%s, unitPrice=%s", line.getQuantity(), line.getUnitPrice()))
+                            .collect(Collectors.joining(", ")));
+            result.skip(String.format("Unit %s, Cycle %s: No valid pricing found (serviceCode=%s, totalUsage=%s)", 
+                    unitId, readingCycleId, serviceCode, totalUsage));
+            return null;
         }
+
+        com.QhomeBase.financebillingservice.model.InvoiceStatus invoiceStatus = 
+                "OPEN".equalsIgnoreCase(item.readingCycle().status()) 
+                ? com.QhomeBase.financebillingservice.model.InvoiceStatus.PAID 
+                : null; // null will default to PUBLISHED in InvoiceService
         
-        if (lines.isEmpty()) {
-            log.warn("No tiers matched for usage {} kWh, using simple pricing", totalUsage);
-            BigDecimal unitPrice = resolveUnitPrice(serviceCode, serviceDate);
-            CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                    .serviceDate(serviceDate)
-                    .description(baseDescription)
-                    .quantity(totalUsage)
-                    .unit("kWh")
-                    .unitPrice(unitPrice)
-                    .taxRate(BigDecimal.ZERO)
-                    .serviceCode(serviceCode)
-                    .externalRefType("METER_READING_GROUP")
-                    .externalRefId(null)
-                    .build();
-            return Collections.singletonList(line);
+        return CreateInvoiceRequest.builder()
+                .payerUnitId(unitId)
+                .payerResidentId(item.residentId())
+                .cycleId(item.billingCycleId())
+                .currency("VND")
+                .dueDate(calculateDueDate(item.readingCycle().periodTo()))
+                .billToName(getBillToName(item.unitInfo()))
+                .status(invoiceStatus)
+                .lines(invoiceLines)
+                .build();
+    }
+
+    private static <T> List<List<T>> partition(List<T> items, int size) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += size) {
+            chunks.add(items.subList(i, Math.min(items.size(), i + size)));
         }
-        
-        return lines;
+        return chunks;
+    }
+
+    private String key(UUID unitId, UUID cycleId, String serviceCode) {
+        String normalizedServiceCode = serviceCode != null ? normalizeServiceCode(serviceCode) : "UNKNOWN";
+        return unitId + "|" + cycleId + "|" + normalizedServiceCode;
     }
 
     private String normalizeServiceCode(String rawServiceCode) {
@@ -381,13 +466,6 @@ public class MeterReadingImportService {
         return "Tiền dịch vụ";
     }
     
-    private BigDecimal resolveUnitPrice(String serviceCode, LocalDate date) {
-        return pricingRepository.findActivePriceGlobal(serviceCode, date)
-                .map(sp -> sp.getBasePrice())
-                .orElse(BigDecimal.ZERO);
-    }
-
-
     private UUID findOrCreateBillingCycle(UUID readingCycleId, LocalDate serviceDate) {
         if (readingCycleId != null) {
             List<BillingCycle> linkedCycles = billingCycleRepository.findByExternalCycleId(readingCycleId);
@@ -438,94 +516,57 @@ public class MeterReadingImportService {
         return saved.getId();
     }
 
-    private void sendInvoiceNotification(UUID residentId, UUID unitId, InvoiceDto invoice, 
-                                         String serviceCode, BigDecimal totalUsage) {
-        if (residentId == null) {
-            log.warn("Cannot send notification: residentId is null for invoice {}", invoice.getId());
-            return;
+    /**
+     * Get billToName from unit code
+     * Format: "Căn hộ {unitCode}" to match asset inspection invoices
+     */
+    private String getBillToName(BaseServiceClient.UnitInfo unitInfo) {
+        if (unitInfo != null && unitInfo.getCode() != null) {
+            return String.format("Căn hộ %s", unitInfo.getCode());
         }
+        return "Căn hộ";
+    }
 
-        try {
-            // Get unit info to get buildingId
-            BaseServiceClient.UnitInfo unitInfo = baseServiceClient.getUnitById(unitId);
-            UUID buildingId = unitInfo != null ? unitInfo.getBuildingId() : null;
-
-            // Determine notification type based on service code
-            String notificationType = "BILL";
-            String serviceName = "dịch vụ";
-            if (ServiceCode.ELECTRIC.equals(serviceCode)) {
-                notificationType = "ELECTRICITY";
-                serviceName = "điện";
-            } else if (ServiceCode.WATER.equals(serviceCode)) {
-                notificationType = "WATER";
-                serviceName = "nước";
-            }
+    private record PendingInvoice(UUID unitId, UUID residentId, UUID readingCycleId, ReadingCycleDto readingCycle,
+                                  UUID billingCycleId, String serviceCode, LocalDate serviceDate,
+                                  BigDecimal totalUsage, String description, BaseServiceClient.UnitInfo unitInfo) {
+    }
 
-            // Format total amount
-            BigDecimal totalAmount = invoice.getTotalAmount() != null ? invoice.getTotalAmount() : BigDecimal.ZERO;
-            String amountStr = String.format("%,.0f", totalAmount.doubleValue());
-            
-            // Create notification title and message
-            String title = String.format("Hóa đơn %s mới", serviceName);
-            String message = String.format("Hóa đơn %s mới đã được tạo với số tiền %s VND. Số lượng sử dụng: %s kWh. Vui lòng thanh toán trước ngày %s.",
-                    serviceName, amountStr, totalUsage.toString(), 
-                    invoice.getDueDate() != null ? invoice.getDueDate().toString() : "hết hạn");
-
-            // Prepare data payload
-            Map<String, String> data = new HashMap<>();
-            data.put("invoiceId", invoice.getId().toString());
-            data.put("amount", totalAmount.toString());
-            data.put("serviceCode", serviceCode);
-            data.put("usage", totalUsage.toString());
-
-            // Send notification
-            notificationClient.sendResidentNotification(
-                    residentId,
-                    buildingId,
-                    notificationType,
-                    title,
-                    message,
-                    invoice.getId(),
-                    "INVOICE",
-                    data
-            );
-
-            log.info("✅ Sent notification to resident {} for invoice {} ({} - {} kWh)",
-                    residentId, invoice.getId(), serviceName, totalUsage);
-        } catch (Exception e) {
-            log.error("❌ Error sending notification for invoice {}: {}", invoice.getId(), e.getMessage(), e);
-            // Don't throw - notification failure shouldn't break import
+    private static class ChunkResult {
+        int created;
+        int skipped;
+        /** Số hóa đơn bị bỏ qua do lỗi khi tính / ghi (không phải do dữ liệu) — import lại có thể thành công */
+        int failed;
+        final List<UUID> invoiceIds = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+
+        void skip(String error) {
+            errors.add(error);
+            skipped++;
         }
-    }
 
-    /**
-     * Get billToName from primary resident or unit code
-     * Format: "Căn hộ {unitCode}" to match asset inspection invoices
-     */
-    private String getBillToName(UUID unitId, UUID residentId) {
-        try {
-            // Use unit code format to match asset inspection invoices: "Căn hộ {unitCode}"
-            BaseServiceClient.UnitInfo unitInfo = baseServiceClient.getUnitById(unitId);
-            if (unitInfo != null && unitInfo.getCode() != null) {
-                return String.format("Căn hộ %s", unitInfo.getCode());
-            }
-            
-            // Fallback
-            return "Căn hộ";
-        } catch (Exception e) {
-            log.warn("Error getting billToName for unit {}: {}", unitId, e.getMessage());
-            // Fallback to unit code or default
-            try {
-                BaseServiceClient.UnitInfo unitInfo = baseServiceClient.getUnitById(unitId);
-                if (unitInfo != null && unitInfo.getCode() != null) {
-                    return String.format("Căn hộ %s", unitInfo.getCode());
-                }
-            } catch (Exception ex) {
-                log.warn("Error getting unit info for billToName: {}", ex.getMessage());
+        void fail(String error) {
+            skip(error);
+            failed++;
+        }
+
+        static ChunkResult failed(List<PendingInvoice> chunk, Throwable cause) {
+            ChunkResult result = new ChunkResult();
+            String reason = cause != null ? cause.getMessage() : "unknown error";
+            for (PendingInvoice item : chunk) {
+                result.fail(String.format("Unit %s, Cycle %s: %s", item.unitId(), item.readingCycleId(), reason));
             }
-            return "Căn hộ";
+            return result;
         }
     }
-}
-
 
+    private static class ImportResult extends ChunkResult {
+        void merge(ChunkResult other) {
+            created += other.created;
+            skipped += other.skipped;
+            failed += other.failed;
+            invoiceIds.addAll(other.invoiceIds);
+            errors.addAll(other.errors);
+        }
+    }
+}
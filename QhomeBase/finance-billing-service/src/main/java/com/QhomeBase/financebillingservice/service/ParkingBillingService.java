@@ -1,14 +1,13 @@
 package com.QhomeBase.financebillingservice.service;
 
 import com.QhomeBase.financebillingservice.constants.ServiceCode;
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceLineRequest;
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceRequest;
+import com.QhomeBase.financebillingservice.dto.InvoiceDto;
 import com.QhomeBase.financebillingservice.dto.ProRataInvoiceRequest;
 import com.QhomeBase.financebillingservice.dto.ProRataInvoiceResponse;
-import com.QhomeBase.financebillingservice.model.Invoice;
-import com.QhomeBase.financebillingservice.model.InvoiceLine;
 import com.QhomeBase.financebillingservice.model.InvoiceStatus;
 import com.QhomeBase.financebillingservice.model.ServicePricing;
-import com.QhomeBase.financebillingservice.repository.InvoiceLineRepository;
-import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
 import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,8 +18,8 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.UUID;
 
 @Service
@@ -28,8 +27,7 @@ import java.util.UUID;
 @Slf4j
 public class ParkingBillingService {
     
-    private final InvoiceRepository invoiceRepository;
-    private final InvoiceLineRepository invoiceLineRepository;
+    private final InvoiceService invoiceService;
     private final ServicePricingRepository servicePricingRepository;
     
     @Transactional
@@ -74,40 +72,31 @@ public class ParkingBillingService {
         BigDecimal proRataAmount = dailyRate.multiply(BigDecimal.valueOf(chargedDays))
                                            .setScale(0, RoundingMode.HALF_UP);
         
-        String invoiceCode = generateInvoiceCode();
+        String description = String.format("Phí gửi xe %s - %s (%d ngày)", 
+                request.getVehicleKind(), 
+                request.getPlateNo(),
+                chargedDays);
         
-        Invoice invoice = Invoice.builder()
-                .code(invoiceCode)
-                .issuedAt(OffsetDateTime.now())
+        CreateInvoiceRequest createRequest = CreateInvoiceRequest.builder()
                 .dueDate(endOfMonth.plusDays(7))
                 .status(InvoiceStatus.PUBLISHED)
                 .currency("VND")
                 .payerUnitId(request.getUnitId())
                 .payerResidentId(request.getResidentId())
+                .lines(List.of(CreateInvoiceLineRequest.builder()
+                        .serviceDate(activatedDate)
+                        .description(description)
+                        .quantity(BigDecimal.valueOf(chargedDays))
+                        .unit("ngày")
+                        .unitPrice(dailyRate)
+                        .taxRate(BigDecimal.ZERO)
+                        .serviceCode(ServiceCode.PARKING_PRORATA)
+                        .externalRefType("VEHICLE")
+                        .externalRefId(request.getVehicleId())
+                        .build()))
                 .build();
         
-        Invoice savedInvoice = invoiceRepository.save(invoice);
-        
-        String description = String.format("Phí gửi xe %s - %s (%d ngày)", 
-                request.getVehicleKind(), 
-                request.getPlateNo(),
-                chargedDays);
-        
-        InvoiceLine line = InvoiceLine.builder()
-                .invoiceId(savedInvoice.getId())
-                .serviceDate(activatedDate)
-                .description(description)
-                .quantity(BigDecimal.valueOf(chargedDays))
-                .unit("ngày")
-                .unitPrice(dailyRate)
-                .taxRate(BigDecimal.ZERO)
-                .taxAmount(BigDecimal.ZERO)
-                .serviceCode(ServiceCode.PARKING_PRORATA)
-                .externalRefType("VEHICLE")
-                .externalRefId(request.getVehicleId())
-                .build();
-        
-        invoiceLineRepository.save(line);
+        InvoiceDto savedInvoice = invoiceService.createInvoice(createRequest);
         
         return ProRataInvoiceResponse.builder()
                 .invoiceId(savedInvoice.getId())
@@ -124,11 +113,6 @@ public class ParkingBillingService {
                 .build();
     }
     
-    private String generateInvoiceCode() {
-        String timestamp = OffsetDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss"));
-        return String.format("INV-%s", timestamp);
-    }
-    
     private BigDecimal getMonthlyPrice(String vehicleKind, UUID tenantId, LocalDate effectiveDate) {
         String vehicleType = vehicleKind != null ? vehicleKind.toUpperCase() : "CAR";
         String serviceCode;
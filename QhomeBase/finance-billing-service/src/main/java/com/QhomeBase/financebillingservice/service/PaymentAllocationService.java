@@ -0,0 +1,235 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.BulkSettlementRequest;
+import com.QhomeBase.financebillingservice.dto.BulkSettlementResponse;
+import com.QhomeBase.financebillingservice.dto.PaymentAllocationDto;
+import com.QhomeBase.financebillingservice.dto.UnitSettlementRequest;
+import com.QhomeBase.financebillingservice.dto.UnitSettlementResult;
+import com.QhomeBase.financebillingservice.model.AllocationType;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.model.Payment;
+import com.QhomeBase.financebillingservice.model.PaymentAllocation;
+import com.QhomeBase.financebillingservice.model.PaymentMethod;
+import com.QhomeBase.financebillingservice.model.PaymentStatus;
+import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.PaymentBatchRepository;
+import com.QhomeBase.financebillingservice.repository.PaymentBatchRepository.OpenInvoice;
+import com.QhomeBase.financebillingservice.util.TimeOrderedUuid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Engine phân bổ thanh toán: với mỗi khoản tiền của một căn hộ, tất toán các hóa đơn đang mở cũ nhất trước
+ * (theo hạn thanh toán rồi ngày phát hành), hóa đơn cuối cùng có thể chỉ được trả một phần.
+ * Hóa đơn của mọi căn hộ trong lô được đọc và khóa bằng một truy vấn, phân bổ tính trong bộ nhớ,
+ * rồi payment / allocation / trạng thái hóa đơn được ghi bằng batch trong cùng transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentAllocationService {
+
+    private static final DateTimeFormatter RECEIPT_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final PaymentBatchRepository paymentBatchRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceAggregateService invoiceAggregateService;
+    private final InvoiceOutboxService invoiceOutboxService;
+
+    @Value("${billing.payments.bulk.max-items:2000}")
+    private int maxItems;
+
+    @Transactional
+    public BulkSettlementResponse settle(BulkSettlementRequest request) {
+        validate(request);
+        List<UnitSettlementRequest> items = request.getItems();
+        log.info("[PaymentAllocationService] Settling {} payment(s) by {}", items.size(), request.getMethod());
+
+        Set<UUID> unitIds = new LinkedHashSet<>();
+        items.forEach(item -> unitIds.add(item.getUnitId()));
+
+        // Nhiều item cùng căn hộ dùng chung hàng đợi nên item sau tiếp tục từ chỗ item trước dừng
+        Map<UUID, Deque<OpenBalance>> openByUnit = new HashMap<>();
+        for (OpenInvoice invoice : paymentBatchRepository.lockOpenInvoices(unitIds)) {
+            if (invoice.outstanding().signum() > 0) {
+                openByUnit.computeIfAbsent(invoice.unitId(), unitId -> new ArrayDeque<>())
+                        .addLast(new OpenBalance(invoice));
+            }
+        }
+
+        OffsetDateTime now = OffsetDateTime.now();
+        String receiptPrefix = receiptPrefix(request.getMethod(), now);
+        String currency = request.getCurrency() != null ? request.getCurrency() : "VND";
+
+        List<Payment> payments = new ArrayList<>(items.size());
+        List<PaymentAllocation> allocations = new ArrayList<>();
+        List<UnitSettlementResult> results = new ArrayList<>(items.size());
+        Map<UUID, OffsetDateTime> paidAtByInvoice = new LinkedHashMap<>();
+        Map<UUID, OpenBalance> settledInvoices = new LinkedHashMap<>();
+        Map<UUID, String> txnRefByInvoice = new HashMap<>();
+        Set<UUID> touchedInvoices = new HashSet<>();
+
+        for (int i = 0; i < items.size(); i++) {
+            UnitSettlementRequest item = items.get(i);
+            OffsetDateTime paidAt = item.getPaidAt() != null ? item.getPaidAt() : now;
+            Payment payment = Payment.builder()
+                    .id(TimeOrderedUuid.next())
+                    .receiptNo(String.format("%s-%04d", receiptPrefix, i + 1))
+                    .method(request.getMethod())
+                    .cashAccountId(request.getCashAccountId())
+                    .paidAt(paidAt)
+                    .amountTotal(item.getAmount())
+                    .currency(currency)
+                    .status(PaymentStatus.SUCCEEDED)
+                    .note(buildNote(request.getNote(), item.getReference()))
+                    .payerResidentId(item.getPayerResidentId())
+                    .build();
+            payments.add(payment);
+
+            BigDecimal remaining = item.getAmount();
+            List<PaymentAllocationDto> itemAllocations = new ArrayList<>();
+            List<UUID> paidInvoiceIds = new ArrayList<>();
+            Deque<OpenBalance> open = openByUnit.getOrDefault(item.getUnitId(), new ArrayDeque<>());
+            while (remaining.signum() > 0 && !open.isEmpty()) {
+                OpenBalance invoice = open.peekFirst();
+                BigDecimal applied = remaining.min(invoice.outstanding);
+                PaymentAllocation allocation = PaymentAllocation.builder()
+                        .id(TimeOrderedUuid.next())
+                        .paymentId(payment.getId())
+                        .allocationType(AllocationType.INVOICE)
+                        .invoiceId(invoice.source.id())
+                        .amount(applied)
+                        .build();
+                allocations.add(allocation);
+                itemAllocations.add(PaymentAllocationDto.builder()
+                        .id(allocation.getId())
+                        .allocationType(allocation.getAllocationType())
+                        .invoiceId(allocation.getInvoiceId())
+                        .amount(applied)
+                        .build());
+                touchedInvoices.add(invoice.source.id());
+
+                invoice.outstanding = invoice.outstanding.subtract(applied);
+                remaining = remaining.subtract(applied);
+                if (invoice.outstanding.signum() == 0) {
+                    open.pollFirst();
+                    paidAtByInvoice.put(invoice.source.id(), paidAt);
+                    settledInvoices.put(invoice.source.id(), invoice);
+                    txnRefByInvoice.put(invoice.source.id(),
+                            item.getReference() != null ? item.getReference() : payment.getReceiptNo());
+                    paidInvoiceIds.add(invoice.source.id());
+                }
+            }
+
+            results.add(UnitSettlementResult.builder()
+                    .unitId(item.getUnitId())
+                    .paymentId(payment.getId())
+                    .receiptNo(payment.getReceiptNo())
+                    .amount(item.getAmount())
+                    .allocated(item.getAmount().subtract(remaining))
+                    .unapplied(remaining)
+                    .allocations(itemAllocations)
+                    .paidInvoiceIds(paidInvoiceIds)
+                    .build());
+        }
+
+        paymentBatchRepository.insertPayments(payments);
+        paymentBatchRepository.insertAllocations(allocations);
+        paymentBatchRepository.markPaid(paidAtByInvoice);
+
+        Map<InvoiceStatus, List<UUID>> paidByOldStatus = new HashMap<>();
+        settledInvoices.values().forEach(invoice -> paidByOldStatus
+                .computeIfAbsent(InvoiceStatus.valueOf(invoice.source.status()), status -> new ArrayList<>())
+                .add(invoice.source.id()));
+        paidByOldStatus.forEach((oldStatus, ids) ->
+                invoiceAggregateService.onStatusChanged(ids, oldStatus, InvoiceStatus.PAID));
+
+        if (!settledInvoices.isEmpty()) {
+            for (Invoice invoice : invoiceRepository.findAllById(settledInvoices.keySet())) {
+                invoiceOutboxService.invoicePaid(invoice, txnRefByInvoice.get(invoice.getId()));
+            }
+        }
+
+        BigDecimal totalAmount = results.stream().map(UnitSettlementResult::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalUnapplied = results.stream().map(UnitSettlementResult::getUnapplied)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        int partiallyPaid = (int) touchedInvoices.stream().filter(id -> !settledInvoices.containsKey(id)).count();
+
+        log.info("[PaymentAllocationService] Created {} payment(s), {} allocation(s); {} invoice(s) paid, {} partially paid, unapplied {}",
+                payments.size(), allocations.size(), settledInvoices.size(), partiallyPaid, totalUnapplied);
+
+        return BulkSettlementResponse.builder()
+                .paymentsCreated(payments.size())
+                .invoicesPaid(settledInvoices.size())
+                .invoicesPartiallyPaid(partiallyPaid)
+                .totalAmount(totalAmount)
+                .totalAllocated(totalAmount.subtract(totalUnapplied))
+                .totalUnapplied(totalUnapplied)
+                .results(results)
+                .build();
+    }
+
+    private void validate(BulkSettlementRequest request) {
+        if (request.getMethod() == null) {
+            throw new IllegalArgumentException("Payment method is required");
+        }
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new IllegalArgumentException("At least one settlement item is required");
+        }
+        if (request.getItems().size() > maxItems) {
+            throw new IllegalArgumentException("Too many settlement items: " + request.getItems().size()
+                    + " (max " + maxItems + ")");
+        }
+        for (int i = 0; i < request.getItems().size(); i++) {
+            UnitSettlementRequest item = request.getItems().get(i);
+            if (item == null || item.getUnitId() == null) {
+                throw new IllegalArgumentException("Unit ID is required for item #" + (i + 1));
+            }
+            if (item.getAmount() == null || item.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Amount must be greater than zero for item #" + (i + 1));
+            }
+        }
+    }
+
+    private static String receiptPrefix(PaymentMethod method, OffsetDateTime now) {
+        String methodCode = method == PaymentMethod.BANK_TRANSFER ? "BANK" : method.name();
+        return String.format("PAY-%s-%s", methodCode, now.format(RECEIPT_TIMESTAMP));
+    }
+
+    private static String buildNote(String note, String reference) {
+        if (reference == null || reference.isBlank()) {
+            return note;
+        }
+        return note == null || note.isBlank() ? "Ref: " + reference : note + " - Ref: " + reference;
+    }
+
+    private static final class OpenBalance {
+        private final OpenInvoice source;
+        private BigDecimal outstanding;
+
+        private OpenBalance(OpenInvoice source) {
+            this.source = source;
+            this.outstanding = source.outstanding();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.QhomeBase.financebillingservice.service;
 
+import com.QhomeBase.financebillingservice.dto.BulkSettlementRequest;
+import com.QhomeBase.financebillingservice.dto.BulkSettlementResponse;
 import com.QhomeBase.financebillingservice.dto.CreatePaymentRequest;
 import com.QhomeBase.financebillingservice.dto.PaymentAllocationDto;
 import com.QhomeBase.financebillingservice.dto.PaymentDto;
+import com.QhomeBase.financebillingservice.dto.UnitSettlementRequest;
 import com.QhomeBase.financebillingservice.model.*;
 import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
 import com.QhomeBase.financebillingservice.repository.PaymentAllocationRepository;
@@ -27,6 +30,8 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final PaymentAllocationRepository paymentAllocationRepository;
     private final InvoiceRepository invoiceRepository;
+    private final InvoiceAggregateService invoiceAggregateService;
+    private final PaymentAllocationService paymentAllocationService;
     
     @Transactional
     public PaymentDto createPayment(CreatePaymentRequest request) {
@@ -34,6 +39,11 @@ public class PaymentService {
         
         validatePaymentRequest(request);
         
+        if ((request.getAllocations() == null || request.getAllocations().isEmpty())
+                && request.getPayerUnitId() != null) {
+            return autoAllocate(request);
+        }
+        
         String receiptNo = generateReceiptNo(request.getMethod());
         
         Payment payment = Payment.builder()
@@ -75,6 +85,21 @@ public class PaymentService {
         return toDto(savedPayment);
     }
     
+    private PaymentDto autoAllocate(CreatePaymentRequest request) {
+        BulkSettlementResponse response = paymentAllocationService.settle(BulkSettlementRequest.builder()
+                .method(request.getMethod())
+                .cashAccountId(request.getCashAccountId())
+                .currency(request.getCurrency())
+                .note(request.getNote())
+                .items(List.of(UnitSettlementRequest.builder()
+                        .unitId(request.getPayerUnitId())
+                        .amount(request.getAmountTotal())
+                        .payerResidentId(request.getPayerResidentId())
+                        .build()))
+                .build());
+        return getPaymentById(response.getResults().get(0).getPaymentId());
+    }
+    
     public List<PaymentDto> getPaymentsByResident(UUID residentId) {
         List<Payment> payments = paymentRepository.findByPayerResidentId(residentId);
         return payments.stream()
@@ -102,8 +127,10 @@ public class PaymentService {
         // You would need to calculate the actual invoice total here
         // For now, just mark as PAID if there are any allocations
         if (totalPaid.compareTo(BigDecimal.ZERO) > 0) {
+            InvoiceStatus oldStatus = invoice.getStatus();
             invoice.setStatus(InvoiceStatus.PAID);
             invoiceRepository.save(invoice);
+            invoiceAggregateService.onStatusChanged(invoice, oldStatus);
             log.info("Invoice {} marked as PAID", invoiceId);
         }
     }
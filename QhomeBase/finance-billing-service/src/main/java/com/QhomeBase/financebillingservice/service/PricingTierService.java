@@ -6,7 +6,6 @@ import com.QhomeBase.financebillingservice.dto.PricingTierDto;
 import com.QhomeBase.financebillingservice.dto.UpdatePricingTierRequest;
 import com.QhomeBase.financebillingservice.model.PricingTier;
 import com.QhomeBase.financebillingservice.repository.PricingTierRepository;
-import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -15,8 +14,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -25,7 +22,7 @@ import java.util.UUID;
 @Slf4j
 public class PricingTierService {
     private final PricingTierRepository pricingTierRepository;
-    private final ServicePricingRepository pricingRepository;
+    private final TieredPricingEngine tieredPricingEngine;
 
     @Transactional
     public PricingTierDto createPricingTier(CreatePricingTierRequest req, UUID createdBy) {
@@ -85,6 +82,7 @@ public class PricingTierService {
                 .build();
 
         PricingTier saved = pricingTierRepository.save(newPricingTier);
+        tieredPricingEngine.invalidate(serviceCode);
         
         // Removed validateHasFinalTier - no longer require final tier
         
@@ -238,6 +236,7 @@ public class PricingTierService {
         tier.setUpdatedBy(updatedBy);
 
         PricingTier updated = pricingTierRepository.save(tier);
+        tieredPricingEngine.invalidate(updated.getServiceCode());
         
         // Removed validateHasFinalTier - no longer require final tier
         
@@ -254,6 +253,7 @@ public class PricingTierService {
         // Users can now delete final tiers if needed
         
         pricingTierRepository.deleteById(id);
+        tieredPricingEngine.invalidate(tier.getServiceCode());
         
         // Removed validateHasFinalTier - no longer require final tier
         
@@ -274,130 +274,13 @@ public class PricingTierService {
         }
         return pricingTierList.get(pricingTierList.size() - 1).getTierOrder();
     }
-    private BigDecimal resolveUnitPrice(String serviceCode, LocalDate date) {
-        return pricingRepository.findActivePriceGlobal(serviceCode, date)
-                .map(sp -> sp.getBasePrice())
-                .orElse(BigDecimal.ZERO);
-    }
-
     @Transactional(readOnly = true)
     public List<CreateInvoiceLineRequest> calculateInvoiceLines(
             String serviceCode, 
             BigDecimal totalUsage, 
             LocalDate serviceDate, 
             String baseDescription) {
-        
-        List<PricingTier> tiers = pricingTierRepository.findActiveTiersByServiceAndDate(serviceCode, serviceDate);
-        
-        if (tiers.isEmpty()) {
-            BigDecimal unitPrice = resolveUnitPrice(serviceCode, serviceDate);
-            CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                    .serviceDate(serviceDate)
-                    .description(baseDescription)
-                    .quantity(totalUsage)
-                    .unit("kWh")
-                    .unitPrice(unitPrice)
-                    .taxRate(BigDecimal.ZERO)
-                    .serviceCode(serviceCode)
-                    .externalRefType("METER_READING_GROUP")
-                    .externalRefId(null)
-                    .build();
-            return Collections.singletonList(line);
-        }
-        
-        List<CreateInvoiceLineRequest> lines = new ArrayList<>();
-        BigDecimal previousMax = BigDecimal.ZERO;
-        PricingTier lastTier = null;
-        
-        for (PricingTier tier : tiers) {
-            if (previousMax.compareTo(totalUsage) >= 0) {
-                break;
-            }
-            
-            BigDecimal tierEffectiveMax;
-            if (tier.getMaxQuantity() == null) {
-                tierEffectiveMax = totalUsage;
-            } else {
-                tierEffectiveMax = totalUsage.min(tier.getMaxQuantity());
-            }
-            
-            BigDecimal applicableQuantity = tierEffectiveMax.subtract(previousMax).max(BigDecimal.ZERO);
-            
-            if (applicableQuantity.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal tierAmount = applicableQuantity.multiply(tier.getUnitPrice());
-                
-                String maxQtyStr = tier.getMaxQuantity() != null ? tier.getMaxQuantity().toString() : "∞";
-                String tierDescription = String.format("%s (Bậc %d: %s-%s kWh)",
-                        baseDescription,
-                        tier.getTierOrder(),
-                        tier.getMinQuantity(),
-                        maxQtyStr);
-                
-                CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                        .serviceDate(serviceDate)
-                        .description(tierDescription)
-                        .quantity(applicableQuantity)
-                        .unit("kWh")
-                        .unitPrice(tier.getUnitPrice())
-                        .taxRate(BigDecimal.ZERO)
-                        .serviceCode(serviceCode)
-                        .externalRefType("METER_READING_GROUP")
-                        .externalRefId(null)
-                        .build();
-                
-                lines.add(line);
-                previousMax = tierEffectiveMax;
-                lastTier = tier;
-                
-                log.debug("Tier {}: {} kWh × {} VND/kWh = {} VND", 
-                        tier.getTierOrder(), applicableQuantity, tier.getUnitPrice(), tierAmount);
-            }
-        }
-        
-        if (previousMax.compareTo(totalUsage) < 0 && lastTier != null && lastTier.getMaxQuantity() != null) {
-            BigDecimal remainingQuantity = totalUsage.subtract(previousMax);
-            
-            String tierDescription = String.format("%s (Bậc %d: >%s kWh, dùng giá bậc cuối)",
-                    baseDescription,
-                    lastTier.getTierOrder(),
-                    lastTier.getMaxQuantity());
-            
-            CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                    .serviceDate(serviceDate)
-                    .description(tierDescription)
-                    .quantity(remainingQuantity)
-                    .unit("kWh")
-                    .unitPrice(lastTier.getUnitPrice())
-                    .taxRate(BigDecimal.ZERO)
-                    .serviceCode(serviceCode)
-                    .externalRefType("METER_READING_GROUP")
-                    .externalRefId(null)
-                    .build();
-            
-            lines.add(line);
-            
-            log.warn("Usage {} kWh exceeds max tier quantity {} kWh. Using last tier price {} VND/kWh for remaining {} kWh",
-                    totalUsage, lastTier.getMaxQuantity(), lastTier.getUnitPrice(), remainingQuantity);
-        }
-        
-        if (lines.isEmpty()) {
-            log.warn("No tiers matched for usage {} kWh, using simple pricing", totalUsage);
-            BigDecimal unitPrice = resolveUnitPrice(serviceCode, serviceDate);
-            CreateInvoiceLineRequest line = CreateInvoiceLineRequest.builder()
-                    .serviceDate(serviceDate)
-                    .description(baseDescription)
-                    .quantity(totalUsage)
-                    .unit("kWh")
-                    .unitPrice(unitPrice)
-                    .taxRate(BigDecimal.ZERO)
-                    .serviceCode(serviceCode)
-                    .externalRefType("METER_READING_GROUP")
-                    .externalRefId(null)
-                    .build();
-            return Collections.singletonList(line);
-        }
-        
-        return lines;
+        return tieredPricingEngine.calculateInvoiceLines(serviceCode, totalUsage, serviceDate, baseDescription);
     }
 
     private void checkForOverlaps(BigDecimal minQuantity, BigDecimal maxQuantity, 
@@ -1,25 +1,37 @@
 package com.QhomeBase.financebillingservice.service;
 
 import com.QhomeBase.financebillingservice.model.BillingCycle;
-import com.QhomeBase.financebillingservice.model.Invoice;
 import com.QhomeBase.financebillingservice.repository.BillingCycleRepository;
+import com.QhomeBase.scheduling.LeasedJobRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ScheduledBillingService {
     
+    private static final String LATE_FEE_JOB = "billing.late-fees";
+
     private final BillingCycleRepository billingCycleRepository;
     private final InvoiceReminderService invoiceReminderService;
+    private final LateFeeService lateFeeService;
+    private final LeasedJobRunner leasedJobRunner;
+
+    @Value("${billing.late-fee.enabled:true}")
+    private boolean lateFeeEnabled;
+
+    @Value("${billing.late-fee.lease-seconds:1800}")
+    private long lateFeeLeaseSeconds;
     
     /**
      * Scheduled job to create billing cycles automatically
@@ -51,17 +63,33 @@ public class ScheduledBillingService {
         log.info("✅ Scheduled billing cycle creation completed");
     }
 
-    @Scheduled(cron = "0 0 1 * * ?")
-    @Transactional
+    /**
+     * Tính phí trả chậm hằng ngày cho các hóa đơn quá hạn; chỉ một instance chạy (lease billing.late-fees).
+     * Mỗi chunk hóa đơn là một transaction riêng nên không giữ khóa trên bảng invoices suốt cả lần chạy.
+     */
+    @Scheduled(cron = "${billing.late-fee.cron:0 0 1 * * ?}", zone = "Asia/Ho_Chi_Minh")
     public void calculateLateFees() {
+        if (!lateFeeEnabled) {
+            return;
+        }
         log.info("🔄 Starting scheduled late fee calculation...");
         
-        LocalDate today = LocalDate.now();
+        LocalDate today = LocalDate.now(ZoneId.of("Asia/Ho_Chi_Minh"));
         
         log.info("📅 Calculating late fees for invoices overdue as of: {}", today);
         
-        log.warn("⚠️ Late fee calculation is not fully implemented yet.");
-        log.info("✅ Late fee calculation completed");
+        try {
+            boolean ran = leasedJobRunner.runExclusive(LATE_FEE_JOB, Duration.ofSeconds(lateFeeLeaseSeconds), () -> {
+                LateFeeService.LateFeeRunResult result = lateFeeService.calculateAll(today);
+                log.info("✅ Late fee calculation completed: {} invoices charged in {} chunks, {} skipped",
+                        result.charged(), result.chunks(), result.skipped());
+            });
+            if (!ran) {
+                log.info("ℹ️ Late fee calculation is running on another instance");
+            }
+        } catch (Exception e) {
+            log.error("❌ Error in scheduled late fee calculation", e);
+        }
     }
 
     @Scheduled(cron = "0 0 8 * * ?")
@@ -80,50 +108,21 @@ public class ScheduledBillingService {
 
     /**
      * Scheduled job to send invoice payment reminders
-     * Runs every hour to check for invoices that need reminder
-     * Logic:
-     * 1. Find invoices with status = PUBLISHED
-     * 2. Check if 24 hours have passed since invoice was issued
-     * 3. Check if 24 hours have passed since last reminder (or never reminded)
-     * 4. Check if reminder count < 7
-     * 5. Send notification and update reminder count
+     * Runs every hour; a single indexed UPDATE claims PUBLISHED invoices whose
+     * reminder window (24h after issue / last reminder) has opened and that have
+     * fewer than 4 reminders, then notifications are sent grouped per resident.
      */
     @Scheduled(cron = "${invoice.reminder.cron:0 0 * * * *}", zone = "Asia/Ho_Chi_Minh")
-    @Transactional
     public void sendInvoicePaymentReminders() {
-        log.info("🔄 Starting scheduled invoice payment reminder sending...");
+        log.debug("🔄 Starting scheduled invoice payment reminder sending...");
         
         try {
-            List<Invoice> invoicesNeedingReminder = invoiceReminderService.findInvoicesNeedingReminder();
-            
-            if (invoicesNeedingReminder.isEmpty()) {
+            int reminded = invoiceReminderService.sendDueReminders();
+            if (reminded == 0) {
                 log.debug("ℹ️ [InvoiceReminderJob] No invoices need reminder at this time");
                 return;
             }
-            
-            log.info("📧 Found {} invoices that need reminder", invoicesNeedingReminder.size());
-            
-            int sentCount = 0;
-            for (Invoice invoice : invoicesNeedingReminder) {
-                try {
-                    // Double-check status before sending (might have been paid between query and now)
-                    Invoice currentInvoice = invoiceReminderService.getInvoiceRepository().findById(invoice.getId())
-                            .orElse(null);
-                    if (currentInvoice == null || currentInvoice.getStatus() != com.QhomeBase.financebillingservice.model.InvoiceStatus.PUBLISHED) {
-                        log.debug("ℹ️ [InvoiceReminderJob] Invoice {} status changed, skipping", invoice.getId());
-                        continue;
-                    }
-                    
-                    invoiceReminderService.sendReminder(currentInvoice);
-                    sentCount++;
-                } catch (Exception e) {
-                    log.error("❌ [InvoiceReminderJob] Failed to send reminder for invoice {}: {}", 
-                            invoice.getId(), e.getMessage(), e);
-                }
-            }
-            
-            log.info("✅ [InvoiceReminderJob] Sent {} reminders out of {} invoices that needed reminder", 
-                    sentCount, invoicesNeedingReminder.size());
+            log.info("✅ [InvoiceReminderJob] Sent reminders for {} invoices", reminded);
         } catch (Exception e) {
             log.error("❌ [InvoiceReminderJob] Error in scheduled invoice reminder job", e);
         }
@@ -131,55 +130,22 @@ public class ScheduledBillingService {
 
     /**
      * Scheduled job to mark invoices as UNPAID
-     * Runs every hour to check for invoices that need to be marked as UNPAID
-     * Logic:
-     * 1. Find invoices with status = PUBLISHED
-     * 2. Check if reminder count = 4 (3 nhắc + 1 cảnh báo cuối)
-     * 3. Check if 24 hours have passed since final warning
-     * 4. Mark as UNPAID
+     * Runs every hour; PUBLISHED invoices with 4 reminders (3 nhắc + 1 cảnh báo cuối)
+     * whose final warning is older than 24 hours are switched to UNPAID in one bulk UPDATE.
      */
     @Scheduled(cron = "${invoice.reminder.cron:0 0 * * * *}", zone = "Asia/Ho_Chi_Minh")
-    @Transactional
     public void markInvoicesAsUnpaid() {
-        log.info("🔄 Starting scheduled invoice UNPAID status marking...");
+        log.debug("🔄 Starting scheduled invoice UNPAID status marking...");
         
         try {
-            List<Invoice> invoicesNeedingUnpaid = invoiceReminderService.findInvoicesNeedingUnpaidStatus();
-            
-            if (invoicesNeedingUnpaid.isEmpty()) {
+            int marked = invoiceReminderService.markOverdueInvoicesAsUnpaid();
+            if (marked == 0) {
                 log.debug("ℹ️ [InvoiceUnpaidJob] No invoices need to be marked as UNPAID at this time");
                 return;
             }
-            
-            log.info("📧 Found {} invoices that need to be marked as UNPAID", invoicesNeedingUnpaid.size());
-            
-            int markedCount = 0;
-            for (Invoice invoice : invoicesNeedingUnpaid) {
-                try {
-                    // Double-check status before marking (might have been paid between query and now)
-                    Invoice currentInvoice = invoiceReminderService.getInvoiceRepository().findById(invoice.getId())
-                            .orElse(null);
-                    if (currentInvoice == null || currentInvoice.getStatus() != com.QhomeBase.financebillingservice.model.InvoiceStatus.PUBLISHED) {
-                        log.debug("ℹ️ [InvoiceUnpaidJob] Invoice {} status changed, skipping", invoice.getId());
-                        continue;
-                    }
-                    
-                    invoiceReminderService.markInvoiceAsUnpaid(currentInvoice);
-                    markedCount++;
-                } catch (Exception e) {
-                    log.error("❌ [InvoiceUnpaidJob] Failed to mark invoice {} as UNPAID: {}", 
-                            invoice.getId(), e.getMessage(), e);
-                }
-            }
-            
-            log.info("✅ [InvoiceUnpaidJob] Marked {} invoices as UNPAID out of {} invoices that needed marking", 
-                    markedCount, invoicesNeedingUnpaid.size());
+            log.info("✅ [InvoiceUnpaidJob] Marked {} invoices as UNPAID", marked);
         } catch (Exception e) {
             log.error("❌ [InvoiceUnpaidJob] Error in scheduled invoice UNPAID marking job", e);
         }
     }
 }
-
-
-
-
@@ -0,0 +1,251 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceLineRequest;
+import com.QhomeBase.financebillingservice.model.PricingTier;
+import com.QhomeBase.financebillingservice.model.ServicePricing;
+import com.QhomeBase.financebillingservice.repository.PricingTierRepository;
+import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tính tiền theo bậc thang từ bảng giá nạp sẵn trong bộ nhớ.
+ * Mỗi service code có một {@link TierTable} bất biến, đánh chỉ mục theo ngày hiệu lực,
+ * nên việc tính tiền cho hàng nghìn căn hộ trong một lần import không cần truy vấn DB.
+ * Bảng được nạp lại khi bậc giá thay đổi ({@link #invalidate(String)}) hoặc khi quá hạn TTL
+ * (phòng trường hợp bảng giá bị sửa từ instance khác hoặc trực tiếp trong DB).
+ */
+@Service
+@Slf4j
+public class TieredPricingEngine {
+
+    private final PricingTierRepository pricingTierRepository;
+    private final ServicePricingRepository pricingRepository;
+    private final Duration tableTtl;
+    private final ConcurrentMap<String, TierTable> tables = new ConcurrentHashMap<>();
+
+    public TieredPricingEngine(PricingTierRepository pricingTierRepository,
+                               ServicePricingRepository pricingRepository,
+                               @Value("${billing.pricing.table-ttl:PT5M}") Duration tableTtl) {
+        this.pricingTierRepository = pricingTierRepository;
+        this.pricingRepository = pricingRepository;
+        this.tableTtl = tableTtl;
+    }
+
+    public List<CreateInvoiceLineRequest> calculateInvoiceLines(
+            String serviceCode,
+            BigDecimal totalUsage,
+            LocalDate serviceDate,
+            String baseDescription) {
+        TierTable.Segment segment = tableFor(serviceCode).segmentAt(serviceDate);
+        List<Tier> tiers = segment.tiers();
+
+        if (tiers.isEmpty()) {
+            return Collections.singletonList(
+                    line(serviceCode, serviceDate, baseDescription, totalUsage, segment.fallbackUnitPrice()));
+        }
+
+        List<CreateInvoiceLineRequest> lines = new ArrayList<>();
+        BigDecimal previousMax = BigDecimal.ZERO;
+        Tier lastTier = null;
+
+        for (Tier tier : tiers) {
+            if (previousMax.compareTo(totalUsage) >= 0) {
+                break;
+            }
+
+            BigDecimal tierEffectiveMax = tier.maxQuantity() == null
+                    ? totalUsage
+                    : totalUsage.min(tier.maxQuantity());
+            BigDecimal applicableQuantity = tierEffectiveMax.subtract(previousMax).max(BigDecimal.ZERO);
+
+            if (applicableQuantity.compareTo(BigDecimal.ZERO) > 0) {
+                String maxQtyStr = tier.maxQuantity() != null ? tier.maxQuantity().toString() : "∞";
+                String tierDescription = String.format("%s (Bậc %d: %s-%s kWh)",
+                        baseDescription,
+                        tier.tierOrder(),
+                        tier.minQuantity(),
+                        maxQtyStr);
+
+                lines.add(line(serviceCode, serviceDate, tierDescription, applicableQuantity, tier.unitPrice()));
+                previousMax = tierEffectiveMax;
+                lastTier = tier;
+            }
+        }
+
+        if (previousMax.compareTo(totalUsage) < 0 && lastTier != null && lastTier.maxQuantity() != null) {
+            BigDecimal remainingQuantity = totalUsage.subtract(previousMax);
+            String tierDescription = String.format("%s (Bậc %d: >%s kWh, dùng giá bậc cuối)",
+                    baseDescription,
+                    lastTier.tierOrder(),
+                    lastTier.maxQuantity());
+
+            lines.add(line(serviceCode, serviceDate, tierDescription, remainingQuantity, lastTier.unitPrice()));
+
+            log.warn("Usage {} kWh exceeds max tier quantity {} kWh. Using last tier price {} VND/kWh for remaining {} kWh",
+                    totalUsage, lastTier.maxQuantity(), lastTier.unitPrice(), remainingQuantity);
+        }
+
+        if (lines.isEmpty()) {
+            log.warn("No tiers matched for usage {} kWh, using simple pricing", totalUsage);
+            return Collections.singletonList(
+                    line(serviceCode, serviceDate, baseDescription, totalUsage, segment.fallbackUnitPrice()));
+        }
+
+        return lines;
+    }
+
+    /**
+     * Xóa bảng giá đã nạp của service. Nếu đang trong transaction thì xóa thêm lần nữa sau commit,
+     * để request đọc chen giữa không giữ lại bảng giá cũ.
+     */
+    public void invalidate(String serviceCode) {
+        if (serviceCode == null) {
+            return;
+        }
+        tables.remove(serviceCode);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    tables.remove(serviceCode);
+                }
+            });
+        }
+        log.debug("Invalidated pricing table for serviceCode={}", serviceCode);
+    }
+
+    private TierTable tableFor(String serviceCode) {
+        TierTable table = tables.get(serviceCode);
+        if (table == null || table.isExpired(tableTtl)) {
+            table = tables.compute(serviceCode, (code, current) ->
+                    current != null && !current.isExpired(tableTtl) ? current : load(code));
+        }
+        return table;
+    }
+
+    private TierTable load(String serviceCode) {
+        List<Tier> tiers = pricingTierRepository.findByServiceCodeAndActiveOrderByTierOrderAsc(serviceCode, true)
+                .stream()
+                .map(Tier::of)
+                .toList();
+        List<ServicePricing> prices = pricingRepository.findByServiceCodeAndActiveTrue(serviceCode);
+        TierTable table = TierTable.build(tiers, prices);
+        log.debug("Loaded pricing table for serviceCode={}: {} tiers, {} base prices, {} segments",
+                serviceCode, tiers.size(), prices.size(), table.segments.size());
+        return table;
+    }
+
+    private CreateInvoiceLineRequest line(String serviceCode, LocalDate serviceDate, String description,
+                                          BigDecimal quantity, BigDecimal unitPrice) {
+        return CreateInvoiceLineRequest.builder()
+                .serviceDate(serviceDate)
+                .description(description)
+                .quantity(quantity)
+                .unit("kWh")
+                .unitPrice(unitPrice)
+                .taxRate(BigDecimal.ZERO)
+                .serviceCode(serviceCode)
+                .externalRefType("METER_READING_GROUP")
+                .externalRefId(null)
+                .build();
+    }
+
+    /**
+     * Bản sao bất biến của một bậc giá, tách khỏi entity JPA.
+     */
+    record Tier(int tierOrder, BigDecimal minQuantity, BigDecimal maxQuantity, BigDecimal unitPrice,
+                LocalDate effectiveFrom, LocalDate effectiveUntil) {
+
+        static Tier of(PricingTier tier) {
+            return new Tier(tier.getTierOrder(), tier.getMinQuantity(), tier.getMaxQuantity(), tier.getUnitPrice(),
+                    tier.getEffectiveFrom(), tier.getEffectiveUntil());
+        }
+
+        boolean isEffectiveOn(LocalDate date) {
+            return effectiveFrom != null && !date.isBefore(effectiveFrom)
+                    && (effectiveUntil == null || !date.isAfter(effectiveUntil));
+        }
+    }
+
+    /**
+     * Bảng giá của một service, chia thành các đoạn ngày liên tiếp; trong mỗi đoạn tập bậc giá
+     * và giá cơ bản không đổi. Tra cứu theo ngày là một phép floorEntry trên TreeMap.
+     */
+    static final class TierTable {
+        private static final Segment EMPTY = new Segment(List.of(), BigDecimal.ZERO);
+
+        private final NavigableMap<LocalDate, Segment> segments;
+        private final Instant loadedAt;
+
+        private TierTable(NavigableMap<LocalDate, Segment> segments, Instant loadedAt) {
+            this.segments = segments;
+            this.loadedAt = loadedAt;
+        }
+
+        static TierTable build(List<Tier> tiers, List<ServicePricing> prices) {
+            TreeSet<LocalDate> boundaries = new TreeSet<>();
+            for (Tier tier : tiers) {
+                addBoundaries(boundaries, tier.effectiveFrom(), tier.effectiveUntil());
+            }
+            for (ServicePricing price : prices) {
+                addBoundaries(boundaries, price.getEffectiveFrom(), price.getEffectiveUntil());
+            }
+
+            NavigableMap<LocalDate, Segment> segments = new TreeMap<>();
+            for (LocalDate start : boundaries) {
+                List<Tier> active = tiers.stream()
+                        .filter(tier -> tier.isEffectiveOn(start))
+                        .sorted(Comparator.comparingInt(Tier::tierOrder))
+                        .toList();
+                BigDecimal basePrice = prices.stream()
+                        .filter(price -> price.getEffectiveFrom() != null && !start.isBefore(price.getEffectiveFrom())
+                                && (price.getEffectiveUntil() == null || !start.isAfter(price.getEffectiveUntil())))
+                        .max(Comparator.comparing(ServicePricing::getEffectiveFrom))
+                        .map(ServicePricing::getBasePrice)
+                        .orElse(BigDecimal.ZERO);
+                segments.put(start, new Segment(active, basePrice));
+            }
+            return new TierTable(Collections.unmodifiableNavigableMap(segments), Instant.now());
+        }
+
+        private static void addBoundaries(TreeSet<LocalDate> boundaries, LocalDate from, LocalDate until) {
+            if (from == null) {
+                return;
+            }
+            boundaries.add(from);
+            if (until != null && until.isBefore(LocalDate.MAX)) {
+                boundaries.add(until.plusDays(1));
+            }
+        }
+
+        Segment segmentAt(LocalDate date) {
+            Map.Entry<LocalDate, Segment> entry = segments.floorEntry(date);
+            return entry != null ? entry.getValue() : EMPTY;
+        }
+
+        boolean isExpired(Duration ttl) {
+            return loadedAt.plus(ttl).isBefore(Instant.now());
+        }
+
+        record Segment(List<Tier> tiers, BigDecimal fallbackUnitPrice) { }
+    }
+}
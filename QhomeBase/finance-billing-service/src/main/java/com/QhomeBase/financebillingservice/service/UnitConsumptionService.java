@@ -0,0 +1,153 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.constants.ServiceCode;
+import com.QhomeBase.financebillingservice.dto.ConsumptionPointDto;
+import com.QhomeBase.financebillingservice.dto.ConsumptionSeriesDto;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.UnitConsumptionRepository;
+import com.QhomeBase.financebillingservice.repository.UnitConsumptionRepository.MonthlyConsumption;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Duy trì và đọc bảng tiêu thụ theo tháng (căn hộ, dịch vụ, tháng).
+ * Các hàm on* phải được gọi trong cùng transaction với việc ghi invoice lines / đổi trạng thái hóa đơn;
+ * hóa đơn VOID không được tính.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UnitConsumptionService {
+
+    public static final List<String> METERED_SERVICES = List.of(ServiceCode.ELECTRIC, ServiceCode.WATER);
+    public static final int DEFAULT_MONTHS = 12;
+    public static final int MAX_MONTHS = 60;
+
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    private final UnitConsumptionRepository unitConsumptionRepository;
+
+    public void onCreated(Collection<Invoice> invoices) {
+        List<UUID> ids = invoices.stream()
+                .filter(invoice -> invoice.getPayerUnitId() != null && invoice.getStatus() != InvoiceStatus.VOID)
+                .map(Invoice::getId)
+                .toList();
+        apply(ids, 1);
+    }
+
+    /**
+     * Chỉ chuyển vào / ra khỏi VOID mới làm thay đổi lượng tiêu thụ
+     */
+    public void onStatusChanged(Invoice invoice, InvoiceStatus oldStatus) {
+        if (invoice.getPayerUnitId() == null) {
+            return;
+        }
+        boolean wasCounted = oldStatus != InvoiceStatus.VOID;
+        boolean isCounted = invoice.getStatus() != InvoiceStatus.VOID;
+        if (wasCounted != isCounted) {
+            apply(List.of(invoice.getId()), isCounted ? 1 : -1);
+        }
+    }
+
+    /**
+     * Chuỗi theo tháng của {@code months} tháng gần nhất (tính cả tháng hiện tại) cho nhiều căn hộ và dịch vụ,
+     * một series cho mỗi cặp (căn hộ, dịch vụ) có dữ liệu.
+     *
+     * @param serviceCodes rỗng nghĩa là các dịch vụ đo theo chỉ số (điện, nước)
+     */
+    @Transactional(readOnly = true)
+    public List<ConsumptionSeriesDto> getSeries(Collection<UUID> unitIds, Collection<String> serviceCodes, Integer months) {
+        if (unitIds == null || unitIds.isEmpty()) {
+            throw new IllegalArgumentException("unitIds is required");
+        }
+        int monthCount = months == null ? DEFAULT_MONTHS : months;
+        if (monthCount < 1 || monthCount > MAX_MONTHS) {
+            throw new IllegalArgumentException("months must be between 1 and " + MAX_MONTHS);
+        }
+
+        LocalDate toMonth = LocalDate.now().withDayOfMonth(1);
+        LocalDate fromMonth = toMonth.minusMonths(monthCount - 1L);
+        List<MonthlyConsumption> rows = unitConsumptionRepository.findSeries(
+                unitIds, normalize(serviceCodes), fromMonth, toMonth);
+
+        // Dòng đã được sắp theo (unit, service, month): gom liên tiếp là đủ
+        Map<String, ConsumptionSeriesDto> series = new LinkedHashMap<>();
+        for (MonthlyConsumption row : rows) {
+            series.computeIfAbsent(row.unitId() + "|" + row.serviceCode(), key -> ConsumptionSeriesDto.builder()
+                            .unitId(row.unitId())
+                            .serviceCode(row.serviceCode())
+                            .points(new ArrayList<>())
+                            .build())
+                    .getPoints().add(toPoint(row));
+        }
+        return new ArrayList<>(series.values());
+    }
+
+    /**
+     * Toàn bộ các tháng có dữ liệu của một căn hộ, mới nhất trước
+     */
+    @Transactional(readOnly = true)
+    public List<ConsumptionPointDto> getMonthlyByUnit(UUID unitId, String serviceCode) {
+        return toPoints(unitConsumptionRepository.findByUnit(unitId, ServiceCode.normalize(serviceCode)));
+    }
+
+    /**
+     * Dự phòng khi không có unitId: theo các hóa đơn do cư dân thanh toán, mới nhất trước
+     */
+    @Transactional(readOnly = true)
+    public List<ConsumptionPointDto> getMonthlyByResident(UUID residentId, String serviceCode) {
+        return toPoints(unitConsumptionRepository.findByResident(residentId,
+                ServiceCode.normalize(serviceCode)));
+    }
+
+    private static List<ConsumptionPointDto> toPoints(List<MonthlyConsumption> rows) {
+        return rows.stream().map(UnitConsumptionService::toPoint).toList();
+    }
+
+    private static ConsumptionPointDto toPoint(MonthlyConsumption row) {
+        LocalDate month = row.month();
+        return ConsumptionPointDto.builder()
+                .month(String.format("%04d-%02d", month.getYear(), month.getMonthValue()))
+                .monthDisplay(String.format("%02d/%04d", month.getMonthValue(), month.getYear()))
+                .year(month.getYear())
+                .monthNumber(month.getMonthValue())
+                .quantity(row.quantity())
+                .amount(row.amount())
+                .build();
+    }
+
+    private static Set<String> normalize(Collection<String> serviceCodes) {
+        Set<String> codes = new LinkedHashSet<>();
+        if (serviceCodes != null) {
+            for (String code : serviceCodes) {
+                if (code != null && !code.isBlank()) {
+                    codes.add(ServiceCode.normalize(code));
+                }
+            }
+        }
+        if (codes.isEmpty()) {
+            codes.addAll(METERED_SERVICES);
+        }
+        return codes;
+    }
+
+    private void apply(List<UUID> invoiceIds, int sign) {
+        for (int from = 0; from < invoiceIds.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            unitConsumptionRepository.applyDelta(
+                    invoiceIds.subList(from, Math.min(invoiceIds.size(), from + IN_CLAUSE_CHUNK_SIZE)), sign);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.VnpayPaymentAttemptRepository;
+import com.QhomeBase.financebillingservice.repository.VnpayPaymentAttemptRepository.CallbackDetails;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Xử lý callback VNPAY (IPN / return) cho hóa đơn một cách idempotent.
+ * VNPAY gửi lại IPN nhiều lần và các callback của cùng một giao dịch có thể đến song song:
+ * attempt được "nhận" bằng compare-and-set PENDING -> SUCCESS/FAILED, chỉ callback nhận được attempt
+ * mới cập nhật hóa đơn (cũng bằng một câu UPDATE có điều kiện), các callback còn lại là duplicate.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VnpayCallbackProcessor {
+
+    private final VnpayPaymentAttemptRepository attemptRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceAggregateService invoiceAggregateService;
+    private final InvoiceOutboxService invoiceOutboxService;
+
+    /**
+     * Ghi nhận attempt cho URL thanh toán vừa tạo
+     */
+    @Transactional
+    public void registerAttempt(String txnRef, UUID invoiceId, BigDecimal amount) {
+        attemptRepository.insertPending(txnRef, invoiceId, amount);
+    }
+
+    /**
+     * Chỉ gọi cho callback có chữ ký hợp lệ; callback sai chữ ký không được phép "nhận" attempt.
+     *
+     * @param paymentSuccess VNPAY báo giao dịch thành công (responseCode và transactionStatus = 00)
+     */
+    @Transactional
+    public CallbackOutcome process(String txnRef, boolean paymentSuccess, CallbackDetails details) {
+        UUID invoiceId = resolveInvoiceId(txnRef);
+        // Giao dịch tạo trước khi có bảng attempt: tạo attempt tại chỗ để vẫn đi qua compare-and-set
+        attemptRepository.insertPending(txnRef, invoiceId, null);
+
+        String attemptStatus = paymentSuccess ? VnpayPaymentAttemptRepository.SUCCESS : VnpayPaymentAttemptRepository.FAILED;
+        if (!attemptRepository.complete(txnRef, attemptStatus, details)) {
+            log.info(" [VnpayCallbackProcessor] Duplicate VNPAY callback for invoice {} (txnRef: {})", invoiceId, txnRef);
+            return new CallbackOutcome(invoiceId, false, true);
+        }
+
+        if (!paymentSuccess) {
+            attemptRepository.recordFailedCallback(invoiceId, txnRef, details);
+            return new CallbackOutcome(invoiceId, false, false);
+        }
+
+        Optional<String> previousStatus = attemptRepository.markInvoicePaid(invoiceId, txnRef, details);
+        if (previousStatus.isEmpty()) {
+            // Hóa đơn đã được thanh toán bởi một giao dịch khác
+            log.warn(" [VnpayCallbackProcessor] Invoice {} already PAID, txnRef {} recorded without status change",
+                    invoiceId, txnRef);
+            return new CallbackOutcome(invoiceId, false, false);
+        }
+
+        invoiceAggregateService.onStatusChanged(List.of(invoiceId),
+                InvoiceStatus.valueOf(previousStatus.get()), InvoiceStatus.PAID);
+        // Email xác nhận đi qua outbox, cùng transaction với việc chuyển PAID
+        invoiceRepository.findById(invoiceId)
+                .ifPresent(invoice -> invoiceOutboxService.invoicePaid(invoice, txnRef));
+        return new CallbackOutcome(invoiceId, true, false);
+    }
+
+    public UUID resolveInvoiceId(String txnRef) {
+        return attemptRepository.findInvoiceId(txnRef)
+                .or(() -> invoiceRepository.findByVnpTransactionRef(txnRef).map(Invoice::getId))
+                .orElseThrow(() -> new IllegalArgumentException("Không tìm thấy hóa đơn cho txnRef: " + txnRef));
+    }
+
+    /**
+     * @param newlyPaid callback này đã chuyển hóa đơn sang PAID (chỉ khi đó mới ghi sự kiện InvoicePaid)
+     * @param duplicate attempt đã được một callback khác xử lý trước
+     */
+    public record CallbackOutcome(UUID invoiceId, boolean newlyPaid, boolean duplicate) {
+    }
+}
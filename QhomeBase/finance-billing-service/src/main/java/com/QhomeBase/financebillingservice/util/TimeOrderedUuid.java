@@ -0,0 +1,26 @@
+package com.QhomeBase.financebillingservice.util;
+
+import java.security.SecureRandom;
+import java.util.UUID;
+
+/**
+ * Sinh UUID version 7 (RFC 9562): 48 bit đầu là epoch millis nên id tăng dần theo thời gian,
+ * insert hàng loạt sẽ ghi vào cuối B-tree index thay vì rải ngẫu nhiên như UUID v4.
+ */
+public final class TimeOrderedUuid {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private TimeOrderedUuid() {
+    }
+
+    public static UUID next() {
+        long millis = System.currentTimeMillis();
+        long randA = RANDOM.nextInt(1 << 12);
+        long randB = RANDOM.nextLong();
+
+        long msb = (millis << 16) | 0x7000L | randA;
+        long lsb = (randB & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
@@ -0,0 +1,14 @@
+-- Indexes supporting the admin invoice search (keyset pagination on issued_at, id)
+
+CREATE INDEX IF NOT EXISTS idx_invoices_issued_at_id
+ON billing.invoices(issued_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_invoices_status_issued_at
+ON billing.invoices(status, issued_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_invoices_payer_unit_issued_at
+ON billing.invoices(payer_unit_id, issued_at DESC, id DESC);
+
+-- Filter by service code is case-insensitive (UPPER(service_code) = :serviceCode)
+CREATE INDEX IF NOT EXISTS idx_invoice_lines_service_code_upper
+ON billing.invoice_lines(UPPER(service_code), invoice_id);
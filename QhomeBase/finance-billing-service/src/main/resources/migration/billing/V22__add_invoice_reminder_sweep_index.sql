@@ -0,0 +1,7 @@
+-- Partial index for the hourly reminder / UNPAID sweep.
+-- Only PUBLISHED invoices are indexed, keyed by the time the next reminder window opens from,
+-- so a sweep with nothing due is a single empty index range scan.
+
+CREATE INDEX IF NOT EXISTS idx_invoices_published_reminder_at
+ON billing.invoices ((COALESCE(last_reminder_at, issued_at)))
+WHERE status = 'PUBLISHED';
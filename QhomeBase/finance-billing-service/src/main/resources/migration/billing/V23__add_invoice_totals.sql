@@ -0,0 +1,9 @@
+-- Materialized invoice totals, maintained by the application whenever invoice lines are written.
+-- total_amount = SUM(quantity * unit_price + tax_amount) over the invoice's lines.
+-- category_totals = the same sum broken down by category code (ELECTRICITY, WATER, PARKING, ...).
+-- Rows created before this migration stay NULL until the backfill job fills them;
+-- readers fall back to summing lines while total_amount IS NULL.
+
+ALTER TABLE billing.invoices
+    ADD COLUMN IF NOT EXISTS total_amount NUMERIC(14,4),
+    ADD COLUMN IF NOT EXISTS category_totals JSONB;
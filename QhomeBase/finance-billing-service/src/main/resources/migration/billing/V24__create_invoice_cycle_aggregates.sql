@@ -0,0 +1,39 @@
+-- Precomputed billing dashboard rows per (cycle, building, status, service code).
+-- service_code = 'ALL' holds whole-invoice counts/totals; other rows hold the per-service breakdown
+-- (invoice_count there = invoices having at least one line of that service).
+-- Maintained incrementally by the application on invoice create / status change and rebuilt
+-- from source by the reconcile job.
+
+CREATE TABLE IF NOT EXISTS billing.invoice_cycle_aggregates (
+    cycle_id      UUID          NOT NULL,
+    building_id   UUID          NOT NULL,
+    status        TEXT          NOT NULL,
+    service_code  TEXT          NOT NULL,
+    invoice_count BIGINT        NOT NULL DEFAULT 0,
+    total_amount  NUMERIC(18,4) NOT NULL DEFAULT 0,
+    updated_at    TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    CONSTRAINT pk_invoice_cycle_aggregates PRIMARY KEY (cycle_id, building_id, status, service_code)
+);
+
+INSERT INTO billing.invoice_cycle_aggregates
+    (cycle_id, building_id, status, service_code, invoice_count, total_amount, updated_at)
+SELECT i.cycle_id, u.building_id, i.status::text, x.service_code, COUNT(*), SUM(x.amount), now()
+FROM billing.invoices i
+JOIN data.units u ON u.id = i.payer_unit_id
+CROSS JOIN LATERAL (
+    SELECT 'ALL' AS service_code,
+           COALESCE(i.total_amount,
+                    (SELECT SUM(l.quantity * l.unit_price + l.tax_amount)
+                     FROM billing.invoice_lines l
+                     WHERE l.invoice_id = i.id),
+                    0) AS amount
+    UNION ALL
+    SELECT COALESCE(UPPER(l.service_code), 'UNKNOWN'), SUM(l.quantity * l.unit_price + l.tax_amount)
+    FROM billing.invoice_lines l
+    WHERE l.invoice_id = i.id
+    GROUP BY COALESCE(UPPER(l.service_code), 'UNKNOWN')
+) x
+WHERE i.cycle_id IS NOT NULL
+  AND u.building_id IS NOT NULL
+GROUP BY i.cycle_id, u.building_id, i.status, x.service_code
+ON CONFLICT (cycle_id, building_id, status, service_code) DO NOTHING;
@@ -0,0 +1,26 @@
+-- One row per VNPAY payment URL issued for an invoice.
+-- txn_ref is the unique key VNPAY echoes back on IPN / return callbacks, so a retried or concurrent
+-- callback resolves its invoice with a primary-key lookup and claims the attempt with a single
+-- compare-and-set UPDATE (status = 'PENDING' -> SUCCESS / FAILED).
+
+CREATE TABLE IF NOT EXISTS billing.vnpay_payment_attempts (
+    txn_ref         VARCHAR(100) PRIMARY KEY,
+    invoice_id      UUID         NOT NULL REFERENCES billing.invoices(id) ON DELETE CASCADE,
+    amount          NUMERIC(14,2),
+    status          VARCHAR(20)  NOT NULL DEFAULT 'PENDING',
+    response_code   VARCHAR(10),
+    transaction_no  VARCHAR(100),
+    bank_code       VARCHAR(50),
+    card_type       VARCHAR(50),
+    created_at      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    processed_at    TIMESTAMPTZ,
+    CONSTRAINT ck_vnpay_payment_attempts_status CHECK (status IN ('PENDING', 'SUCCESS', 'FAILED'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_vnpay_payment_attempts_invoice
+ON billing.vnpay_payment_attempts (invoice_id);
+
+-- Fallback lookup for callbacks of payments issued before attempts were recorded
+CREATE INDEX IF NOT EXISTS idx_invoices_vnp_transaction_ref
+ON billing.invoices (vnp_transaction_ref)
+WHERE vnp_transaction_ref IS NOT NULL;
@@ -0,0 +1,14 @@
+-- Leases for scheduled jobs (scheduling-common JobLeaseManager): one row per job / job shard,
+-- so only one replica runs a given sweep at a time.
+CREATE TABLE IF NOT EXISTS billing.job_leases (
+    lease_name  VARCHAR(150) PRIMARY KEY,
+    owner_id    VARCHAR(255) NOT NULL,
+    acquired_at TIMESTAMPTZ  NOT NULL,
+    lease_until TIMESTAMPTZ  NOT NULL
+);
+
+-- Only invoices with a VNPay payment in flight are indexed, so the expiry sweep
+-- is an index range scan over a handful of rows.
+CREATE INDEX IF NOT EXISTS idx_invoices_vnpay_initiated_at
+ON billing.invoices (vnpay_initiated_at)
+WHERE vnpay_initiated_at IS NOT NULL;
@@ -0,0 +1,33 @@
+-- Monthly consumption rollup per (unit, service code, month) for the resident consumption charts.
+-- month is the first day of the line's service month; quantity is the metered usage (kWh, m3, ...),
+-- amount the billed total (quantity * unit_price + tax). Lines of VOID invoices are not counted.
+-- Maintained by the application when invoice lines are written and when an invoice is voided / un-voided.
+
+CREATE TABLE IF NOT EXISTS billing.unit_consumption_monthly (
+    unit_id      UUID          NOT NULL,
+    service_code TEXT          NOT NULL,
+    month        DATE          NOT NULL,
+    quantity     NUMERIC(18,4) NOT NULL DEFAULT 0,
+    amount       NUMERIC(18,4) NOT NULL DEFAULT 0,
+    line_count   BIGINT        NOT NULL DEFAULT 0,
+    updated_at   TIMESTAMPTZ   NOT NULL DEFAULT now(),
+    CONSTRAINT pk_unit_consumption_monthly PRIMARY KEY (unit_id, service_code, month)
+);
+
+INSERT INTO billing.unit_consumption_monthly
+    (unit_id, service_code, month, quantity, amount, line_count, updated_at)
+SELECT i.payer_unit_id,
+       UPPER(l.service_code),
+       CAST(date_trunc('month', l.service_date) AS DATE),
+       SUM(l.quantity),
+       SUM(l.quantity * l.unit_price + l.tax_amount),
+       COUNT(*),
+       now()
+FROM billing.invoice_lines l
+JOIN billing.invoices i ON i.id = l.invoice_id
+WHERE i.payer_unit_id IS NOT NULL
+  AND i.status <> 'VOID'
+  AND l.service_code IS NOT NULL
+  AND l.service_date IS NOT NULL
+GROUP BY i.payer_unit_id, UPPER(l.service_code), CAST(date_trunc('month', l.service_date) AS DATE)
+ON CONFLICT (unit_id, service_code, month) DO NOTHING;
@@ -0,0 +1,10 @@
+-- Late fees: one LATE_FEE line per invoice, upserted by the daily late-fee batch
+-- (quantity = overdue days), so re-running on the same day changes nothing.
+CREATE UNIQUE INDEX IF NOT EXISTS uq_invoice_lines_late_fee
+ON billing.invoice_lines (invoice_id)
+WHERE service_code = 'LATE_FEE';
+
+-- Keyset scan of open invoices per cycle for the late-fee batch
+CREATE INDEX IF NOT EXISTS idx_invoices_open_by_cycle
+ON billing.invoices (cycle_id, id)
+WHERE status IN ('PUBLISHED', 'UNPAID');
@@ -0,0 +1,24 @@
+-- Transactional outbox: invoice events are written in the same transaction as the invoice change
+-- and relayed to RabbitMQ (exchange billing.events.exchange) by OutboxRelayJob.
+CREATE TABLE IF NOT EXISTS billing.outbox_events (
+    id              UUID         PRIMARY KEY,
+    aggregate_type  VARCHAR(50)  NOT NULL,
+    aggregate_id    UUID         NOT NULL,
+    event_type      VARCHAR(100) NOT NULL,
+    payload         JSONB        NOT NULL,
+    created_at      TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    published_at    TIMESTAMPTZ,
+    attempts        INTEGER      NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    last_error      TEXT
+);
+
+-- Only unpublished events are indexed, so the relay poll stays cheap as the table grows.
+CREATE INDEX IF NOT EXISTS idx_outbox_events_pending
+ON billing.outbox_events (next_attempt_at, created_at)
+WHERE published_at IS NULL;
+
+-- Lets the cleanup step drop old published events by age.
+CREATE INDEX IF NOT EXISTS idx_outbox_events_published_at
+ON billing.outbox_events (published_at)
+WHERE published_at IS NOT NULL;
@@ -0,0 +1,17 @@
+-- Chunked meter-reading import from base-service: one row per chunk, keyed by the Idempotency-Key header.
+-- A retried or resumed export replays the stored result of completed chunks instead of importing them again.
+CREATE TABLE IF NOT EXISTS billing.meter_reading_import_chunks (
+    idempotency_key  VARCHAR(200) PRIMARY KEY,
+    reading_cycle_id UUID,
+    chunk_no         INTEGER      NOT NULL,
+    reading_count    INTEGER      NOT NULL,
+    status           VARCHAR(20)  NOT NULL,
+    response         JSONB,
+    last_error       TEXT,
+    created_at       TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    updated_at       TIMESTAMPTZ  NOT NULL DEFAULT now(),
+    CONSTRAINT ck_meter_reading_import_chunks_status CHECK (status IN ('PROCESSING', 'COMPLETED', 'FAILED'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_meter_reading_import_chunks_cycle
+ON billing.meter_reading_import_chunks (reading_cycle_id, created_at);
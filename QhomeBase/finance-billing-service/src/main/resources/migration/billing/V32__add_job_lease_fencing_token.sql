@@ -0,0 +1,4 @@
+-- Fencing token for scheduling-common leases: incremented every time a lease changes hands,
+-- so a stalled former leader can no longer write once another replica has taken over.
+ALTER TABLE billing.job_leases
+    ADD COLUMN IF NOT EXISTS fencing_token BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,15 @@
+-- Invoice codes are generated per invoice again (timestamp + random part of the id).
+-- The per-tenant unique constraint went away with tenant_id in V9; restore uniqueness on code.
+-- Bulk runs before this migration could give a whole batch the same code: keep the earliest
+-- invoice's code and suffix the others with the tail of their id so the index can be built.
+UPDATE billing.invoices i
+SET code = i.code || '-' || UPPER(RIGHT(i.id::text, 10))
+FROM (
+    SELECT id, ROW_NUMBER() OVER (PARTITION BY code ORDER BY issued_at, id) AS rn
+    FROM billing.invoices
+) d
+WHERE d.id = i.id
+  AND d.rn > 1;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_invoices_code
+ON billing.invoices (code);
@@ -0,0 +1,13 @@
+-- Payment allocation engine: amount already allocated per invoice (direct and via invoice lines)
+CREATE INDEX IF NOT EXISTS idx_allocations_invoice
+ON finance.payment_allocations (invoice_id)
+WHERE invoice_id IS NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_allocations_invoice_line
+ON finance.payment_allocations (invoice_line_id)
+WHERE invoice_line_id IS NOT NULL;
+
+-- Open invoices of a unit, oldest first (settlement order)
+CREATE INDEX IF NOT EXISTS idx_invoices_open_by_unit_due
+ON billing.invoices (payer_unit_id, due_date, issued_at, id)
+WHERE status IN ('PUBLISHED', 'UNPAID');
@@ -0,0 +1,76 @@
+package com.QhomeBase.financebillingservice.client;
+
+import com.QhomeBase.financebillingservice.config.BaseServiceCacheProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cache quyền chủ căn hộ: lỗi tạm thời khi tra hộ gia đình không được cache, còn "chưa có hộ gia đình" thì có.
+ */
+class BaseServiceClientTest {
+
+        private static final UUID USER = UUID.randomUUID();
+        private static final UUID UNIT = UUID.randomUUID();
+        private static final UUID RESIDENT = UUID.randomUUID();
+
+        private final AtomicInteger householdCalls = new AtomicInteger();
+        private final Deque<ClientResponse> householdResponses = new ArrayDeque<>();
+
+        @Test
+        void shouldNotCacheOwnershipWhenHouseholdLookupFails() {
+                householdResponses.add(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+                householdResponses.add(json("{\"id\":\"" + UUID.randomUUID() + "\",\"unitId\":\"" + UNIT
+                                + "\",\"primaryResidentId\":\"" + RESIDENT + "\",\"kind\":\"OWNER\"}"));
+                BaseServiceClient client = client();
+
+                assertThat(client.isOwnerOfUnit(USER, UNIT)).isFalse();
+                assertThat(client.isOwnerOfUnit(USER, UNIT)).isTrue();
+                assertThat(householdCalls).hasValue(2);
+        }
+
+        @Test
+        void shouldCacheOwnershipWhenUnitHasNoHousehold() {
+                householdResponses.add(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+                BaseServiceClient client = client();
+
+                assertThat(client.isOwnerOfUnit(USER, UNIT)).isFalse();
+                assertThat(client.isOwnerOfUnit(USER, UNIT)).isFalse();
+                assertThat(householdCalls).hasValue(1);
+        }
+
+        private BaseServiceClient client() {
+                WebClient webClient = WebClient.builder()
+                                .exchangeFunction(request -> {
+                                        String path = request.url().getPath();
+                                        if (path.equals("/api/households/units/" + UNIT + "/current")) {
+                                                householdCalls.incrementAndGet();
+                                                return Mono.just(householdResponses.poll());
+                                        }
+                                        if (path.equals("/api/residents/by-user/" + USER)) {
+                                                return Mono.just(json("{\"id\":\"" + RESIDENT + "\"}"));
+                                        }
+                                        return Mono.just(ClientResponse.create(HttpStatus.NOT_FOUND).build());
+                                })
+                                .build();
+                return new BaseServiceClient(webClient, new BaseServiceCacheProperties());
+        }
+
+        private static ClientResponse json(String body) {
+                return ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .body(body)
+                                .build();
+        }
+}
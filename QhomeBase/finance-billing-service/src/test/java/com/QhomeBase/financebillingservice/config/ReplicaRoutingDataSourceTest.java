@@ -0,0 +1,58 @@
+package com.QhomeBase.financebillingservice.config;
+
+import com.QhomeBase.financebillingservice.config.ReplicaRoutingDataSource.Pool;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+class ReplicaRoutingDataSourceTest {
+
+        private ReplicaLagMonitor lagMonitor;
+        private SimpleMeterRegistry meterRegistry;
+        private ReplicaRoutingDataSource dataSource;
+
+        @BeforeEach
+        void setUp() {
+                lagMonitor = Mockito.mock(ReplicaLagMonitor.class);
+                meterRegistry = new SimpleMeterRegistry();
+                dataSource = new ReplicaRoutingDataSource(lagMonitor, meterRegistry);
+        }
+
+        @AfterEach
+        void tearDown() {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+        }
+
+        @Test
+        void readWriteTransactionsAlwaysUsePrimary() {
+                when(lagMonitor.isReplicaUsable()).thenReturn(true);
+
+                assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(Pool.PRIMARY);
+                assertThat(count("primary", "read-write")).isEqualTo(1.0);
+        }
+
+        @Test
+        void readOnlyTransactionsUseReplicaWhileItKeepsUp() {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+                when(lagMonitor.isReplicaUsable()).thenReturn(true, false);
+
+                assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(Pool.REPLICA);
+                assertThat(dataSource.determineCurrentLookupKey()).isEqualTo(Pool.PRIMARY);
+                assertThat(count("replica", "read-only")).isEqualTo(1.0);
+                assertThat(count("primary", "replica-fallback")).isEqualTo(1.0);
+        }
+
+        private double count(String pool, String reason) {
+                return meterRegistry.get("billing.datasource.connections")
+                                .tag("pool", pool)
+                                .tag("reason", reason)
+                                .counter()
+                                .count();
+        }
+}
@@ -5,8 +5,10 @@ import com.QhomeBase.financebillingservice.dto.CreateInvoiceRequest;
 import com.QhomeBase.financebillingservice.dto.InvoiceCategoryResponseDto;
 import com.QhomeBase.financebillingservice.dto.InvoiceDto;
 import com.QhomeBase.financebillingservice.dto.InvoiceLineResponseDto;
+import com.QhomeBase.financebillingservice.dto.InvoicePageDto;
 import com.QhomeBase.financebillingservice.dto.UpdateInvoiceStatusRequest;
 import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.service.ExportFormat;
 import com.QhomeBase.financebillingservice.service.InvoiceExportService;
 import com.QhomeBase.financebillingservice.service.InvoiceService;
 import com.QhomeBase.financebillingservice.service.vnpay.VnpayService;
@@ -31,12 +33,15 @@ import java.util.UUID;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
@@ -95,6 +100,36 @@ class InvoiceControllerTest {
                                 .andExpect(jsonPath("$.code").value("INV-001"));
         }
 
+        @Test
+        void shouldCreateInvoicesInBulk() throws Exception {
+                UUID first = UUID.randomUUID();
+                UUID second = UUID.randomUUID();
+                Mockito.when(invoiceService.createInvoices(Mockito.<List<CreateInvoiceRequest>>any()))
+                                .thenReturn(List.of(
+                                                InvoiceDto.builder().id(first).status(InvoiceStatus.PUBLISHED).build(),
+                                                InvoiceDto.builder().id(second).status(InvoiceStatus.PUBLISHED).build()));
+
+                var line = CreateInvoiceLineRequest.builder()
+                                .description("Service")
+                                .quantity(BigDecimal.ONE)
+                                .unit("EA")
+                                .unitPrice(BigDecimal.valueOf(100000))
+                                .serviceCode("SVC")
+                                .build();
+                var req = CreateInvoiceRequest.builder()
+                                .currency("VND")
+                                .lines(List.of(line))
+                                .build();
+
+                mockMvc.perform(post("/api/invoices/bulk")
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .content(objectMapper.writeValueAsString(List.of(req, req))))
+                                .andExpect(status().isCreated())
+                                .andExpect(jsonPath("$.length()").value(2))
+                                .andExpect(jsonPath("$[0].id").value(first.toString()))
+                                .andExpect(jsonPath("$[1].id").value(second.toString()));
+        }
+
         @Test
         void shouldGetInvoiceById() throws Exception {
                 UUID id = UUID.randomUUID();
@@ -139,6 +174,46 @@ class InvoiceControllerTest {
                                 .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM));
         }
 
+        @Test
+        void shouldSearchInvoicesForAdmin() throws Exception {
+                UUID id = UUID.randomUUID();
+                var page = InvoicePageDto.builder()
+                                .items(List.of(InvoiceDto.builder().id(id).status(InvoiceStatus.PUBLISHED).build()))
+                                .nextCursor("next")
+                                .hasMore(true)
+                                .totalEstimate(120L)
+                                .build();
+                Mockito.when(invoiceService.searchInvoicesForAdmin(any(), any(), any(), any(), any(), any(), any(), any()))
+                                .thenReturn(page);
+
+                mockMvc.perform(get("/api/invoices/admin/search")
+                                .param("status", "PUBLISHED")
+                                .param("size", "20"))
+                                .andExpect(status().isOk())
+                                .andExpect(jsonPath("$.items[0].id").value(id.toString()))
+                                .andExpect(jsonPath("$.nextCursor").value("next"))
+                                .andExpect(jsonPath("$.hasMore").value(true))
+                                .andExpect(jsonPath("$.totalEstimate").value(120));
+        }
+
+        @Test
+        void shouldStreamInvoicesExportAsCsv() throws Exception {
+                var result = mockMvc.perform(get("/api/invoices/admin/export/stream")
+                                .param("format", "csv")
+                                .param("month", "2025-01"))
+                                .andExpect(request().asyncStarted())
+                                .andReturn();
+
+                mockMvc.perform(asyncDispatch(result))
+                                .andExpect(status().isOk())
+                                .andExpect(header().string(HttpHeaders.CONTENT_DISPOSITION,
+                                                "attachment; filename=\"danh_sach_hoa_don_202501.csv\""));
+
+                Mockito.verify(invoiceExportService).streamInvoicesExport(
+                                nullable(String.class), nullable(String.class), nullable(UUID.class), nullable(UUID.class),
+                                nullable(String.class), nullable(String.class), Mockito.eq(ExportFormat.CSV), any());
+        }
+
         @Test
         void shouldReturn401ForMyInvoicesWhenTokenInvalid() throws Exception {
                 Mockito.when(jwtUtil.getUserIdFromHeader(any(String.class))).thenReturn(null);
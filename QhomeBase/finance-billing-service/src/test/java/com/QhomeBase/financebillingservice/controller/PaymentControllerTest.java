@@ -4,6 +4,7 @@ import com.QhomeBase.financebillingservice.dto.CreatePaymentRequest;
 import com.QhomeBase.financebillingservice.dto.PaymentDto;
 import com.QhomeBase.financebillingservice.model.PaymentMethod;
 import com.QhomeBase.financebillingservice.model.PaymentStatus;
+import com.QhomeBase.financebillingservice.service.PaymentAllocationService;
 import com.QhomeBase.financebillingservice.service.PaymentService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
@@ -40,6 +41,9 @@ class PaymentControllerTest {
         @MockitoBean
         private PaymentService paymentService;
 
+        @MockitoBean
+        private PaymentAllocationService paymentAllocationService;
+
         @Test
         void shouldCreatePayment() throws Exception {
                 UUID id = UUID.randomUUID();
@@ -0,0 +1,148 @@
+package com.QhomeBase.financebillingservice.jobs;
+
+import com.QhomeBase.financebillingservice.repository.OutboxRepository;
+import com.QhomeBase.financebillingservice.repository.OutboxRepository.OutboxEvent;
+import com.QhomeBase.scheduling.LeasedJobRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Relay với RabbitTemplate giả lập: chỉ đánh dấu đã gửi sau khi broker xác nhận, lỗi thì lùi lịch thử lại.
+ */
+class OutboxRelayJobTest {
+
+        private static final String EXCHANGE = "qhome.billing.events";
+
+        private OutboxRepository outboxRepository;
+        private RabbitOperations operations;
+        private RabbitTemplate rabbitTemplate;
+        private OutboxRelayJob job;
+
+        @BeforeEach
+        @SuppressWarnings("unchecked")
+        void setUp() {
+                outboxRepository = Mockito.mock(OutboxRepository.class);
+                operations = Mockito.mock(RabbitOperations.class);
+                rabbitTemplate = Mockito.mock(RabbitTemplate.class);
+                when(rabbitTemplate.invoke(any(RabbitOperations.OperationsCallback.class)))
+                                .thenAnswer(inv -> inv.<RabbitOperations.OperationsCallback<Object>>getArgument(0)
+                                                .doInRabbit(operations));
+                TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+                when(transactionTemplate.execute(any()))
+                                .thenAnswer(inv -> inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+                job = new OutboxRelayJob(outboxRepository, rabbitTemplate, transactionTemplate,
+                                Mockito.mock(LeasedJobRunner.class));
+                ReflectionTestUtils.setField(job, "exchange", EXCHANGE);
+                ReflectionTestUtils.setField(job, "enabled", true);
+                ReflectionTestUtils.setField(job, "batchSize", 2);
+                ReflectionTestUtils.setField(job, "confirmTimeoutMs", 1000L);
+                ReflectionTestUtils.setField(job, "retryBaseSeconds", 5L);
+                ReflectionTestUtils.setField(job, "retryMaxSeconds", 600L);
+                job.registerReturnsCallback();
+        }
+
+        @Test
+        void publishesEventsWithRoutingKeyAndMessageIdThenMarksThemPublished() {
+                OutboxEvent published = event("InvoicePublished");
+                OutboxEvent paid = event("InvoicePaid");
+                when(outboxRepository.claimPending(2)).thenReturn(List.of(published, paid), List.of());
+
+                job.relay();
+
+                ArgumentCaptor<Message> messages = ArgumentCaptor.forClass(Message.class);
+                verify(operations).send(eq(EXCHANGE), eq("invoice.published"), messages.capture());
+                verify(operations).send(eq(EXCHANGE), eq("invoice.paid"), messages.capture());
+                verify(operations).waitForConfirmsOrDie(1000L);
+                assertThat(messages.getAllValues())
+                                .extracting(message -> message.getMessageProperties().getMessageId())
+                                .containsExactly(published.id().toString(), paid.id().toString());
+                assertThat(new String(messages.getAllValues().get(0).getBody())).isEqualTo(published.payload());
+                verify(outboxRepository).markPublished(List.of(published.id(), paid.id()));
+                // Lô đầy nên relay lấy tiếp lô sau cho đến khi hết sự kiện
+                verify(outboxRepository, times(2)).claimPending(2);
+        }
+
+        @Test
+        void nackedBatchIsScheduledForRetryInsteadOfMarkedPublished() {
+                OutboxEvent event = event("InvoicePublished");
+                when(outboxRepository.claimPending(2)).thenReturn(List.of(event));
+                doThrow(new AmqpException("nack")).when(operations).waitForConfirmsOrDie(anyLong());
+
+                job.relay();
+
+                verify(outboxRepository, never()).markPublished(anyList());
+                verify(outboxRepository).markFailed(List.of(event.id()), "nack", 5L, 600L);
+        }
+
+        @Test
+        void returnedUnroutableEventIsScheduledForRetryWhileOthersAreMarkedPublished() {
+                OutboxEvent routed = event("InvoicePublished");
+                OutboxEvent unroutable = event("InvoicePaid");
+                when(outboxRepository.claimPending(2)).thenReturn(List.of(routed, unroutable), List.of());
+                ArgumentCaptor<RabbitTemplate.ReturnsCallback> returnsCallback =
+                                ArgumentCaptor.forClass(RabbitTemplate.ReturnsCallback.class);
+                verify(rabbitTemplate).setMandatory(true);
+                verify(rabbitTemplate).setReturnsCallback(returnsCallback.capture());
+                // Broker trả tin về (basic.return) trước khi ack, nên callback chạy trước khi chờ confirm xong
+                doAnswer(inv -> {
+                        Message message = MessageBuilder.withBody(new byte[0])
+                                        .setMessageId(unroutable.id().toString())
+                                        .build();
+                        returnsCallback.getValue().returnedMessage(
+                                        new ReturnedMessage(message, 312, "NO_ROUTE", EXCHANGE, "invoice.paid"));
+                        return null;
+                }).when(operations).waitForConfirmsOrDie(anyLong());
+
+                job.relay();
+
+                verify(outboxRepository).markPublished(List.of(routed.id()));
+                verify(outboxRepository).markFailed(eq(List.of(unroutable.id())),
+                                eq("Returned 312 NO_ROUTE (exchange=qhome.billing.events, routingKey=invoice.paid)"),
+                                eq(5L), eq(600L));
+                // Lô không được gửi trọn vẹn nên relay dừng, lần chạy sau sẽ gửi lại sự kiện bị trả về
+                verify(outboxRepository, times(1)).claimPending(2);
+        }
+
+        @Test
+        void emptyOutboxPublishesNothing() {
+                when(outboxRepository.claimPending(2)).thenReturn(List.of());
+
+                job.relay();
+
+                verify(operations, never()).send(anyString(), anyString(), any(Message.class));
+                verify(outboxRepository, never()).markPublished(anyList());
+        }
+
+        private static OutboxEvent event(String type) {
+                UUID id = UUID.randomUUID();
+                return new OutboxEvent(id, "INVOICE", UUID.randomUUID(), type, "{\"eventId\":\"" + id + "\"}", 0);
+        }
+}
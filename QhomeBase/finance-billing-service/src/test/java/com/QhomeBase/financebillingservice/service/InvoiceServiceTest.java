@@ -0,0 +1,72 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.client.BaseServiceClient;
+import com.QhomeBase.financebillingservice.config.VnpayProperties;
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceRequest;
+import com.QhomeBase.financebillingservice.dto.InvoiceDto;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.repository.InvoiceBatchRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceLineRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceSearchRepository;
+import com.QhomeBase.financebillingservice.repository.ResidentRepository;
+import com.QhomeBase.financebillingservice.service.vnpay.VnpayService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.verify;
+
+class InvoiceServiceTest {
+
+        private InvoiceBatchRepository invoiceBatchRepository;
+        private InvoiceService service;
+
+        @BeforeEach
+        void setUp() {
+                invoiceBatchRepository = Mockito.mock(InvoiceBatchRepository.class);
+                service = new InvoiceService(
+                                Mockito.mock(InvoiceRepository.class),
+                                Mockito.mock(InvoiceLineRepository.class),
+                                invoiceBatchRepository,
+                                Mockito.mock(InvoiceTotalsService.class),
+                                Mockito.mock(InvoiceAggregateService.class),
+                                Mockito.mock(UnitConsumptionService.class),
+                                Mockito.mock(VnpayCallbackProcessor.class),
+                                Mockito.mock(InvoiceSearchRepository.class),
+                                Mockito.mock(ResidentRepository.class),
+                                Mockito.mock(VnpayService.class),
+                                Mockito.mock(VnpayProperties.class),
+                                Mockito.mock(InvoiceOutboxService.class),
+                                Mockito.mock(BaseServiceClient.class));
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void shouldGenerateDistinctCodePerInvoiceInBatch() {
+                List<CreateInvoiceRequest> requests = List.of(request(), request(), request(), request());
+
+                List<InvoiceDto> created = service.createInvoices(requests, false);
+
+                ArgumentCaptor<List<Invoice>> invoices = ArgumentCaptor.forClass(List.class);
+                verify(invoiceBatchRepository).insertAll(invoices.capture(), anyList());
+                List<String> codes = invoices.getValue().stream().map(Invoice::getCode).toList();
+                assertThat(codes).hasSize(4).doesNotHaveDuplicates()
+                                .allMatch(code -> code.matches("INV-\\d{14}-[0-9A-F]{10}"));
+                assertThat(created).extracting(InvoiceDto::getCode).containsExactlyElementsOf(codes);
+        }
+
+        private static CreateInvoiceRequest request() {
+                return CreateInvoiceRequest.builder()
+                                .dueDate(LocalDate.of(2025, 4, 15))
+                                .payerUnitId(UUID.randomUUID())
+                                .build();
+        }
+}
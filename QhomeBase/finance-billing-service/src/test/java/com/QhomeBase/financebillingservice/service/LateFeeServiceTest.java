@@ -0,0 +1,149 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.model.ServicePricing;
+import com.QhomeBase.financebillingservice.repository.LateFeeRepository;
+import com.QhomeBase.financebillingservice.repository.LateFeeRepository.LateFeeRate;
+import com.QhomeBase.financebillingservice.repository.LateFeeRepository.LockedInvoice;
+import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LateFeeServiceTest {
+
+        private static final LocalDate AS_OF = LocalDate.of(2025, 3, 20);
+        private static final UUID CYCLE = UUID.randomUUID();
+
+        private LateFeeRepository lateFeeRepository;
+        private ServicePricingRepository servicePricingRepository;
+        private InvoiceTotalsService invoiceTotalsService;
+        private InvoiceAggregateService invoiceAggregateService;
+        private LateFeeService service;
+
+        @BeforeEach
+        @SuppressWarnings("unchecked")
+        void setUp() {
+                lateFeeRepository = Mockito.mock(LateFeeRepository.class);
+                servicePricingRepository = Mockito.mock(ServicePricingRepository.class);
+                invoiceTotalsService = Mockito.mock(InvoiceTotalsService.class);
+                invoiceAggregateService = Mockito.mock(InvoiceAggregateService.class);
+                TransactionTemplate transactionTemplate = Mockito.mock(TransactionTemplate.class);
+                when(transactionTemplate.execute(any()))
+                                .thenAnswer(inv -> inv.<TransactionCallback<Object>>getArgument(0).doInTransaction(null));
+
+                service = new LateFeeService(lateFeeRepository, servicePricingRepository, invoiceTotalsService,
+                                invoiceAggregateService, transactionTemplate);
+                ReflectionTestUtils.setField(service, "graceDays", 0);
+                ReflectionTestUtils.setField(service, "chunkSize", 2);
+        }
+
+        @Test
+        void shouldSkipWhenNoLateFeePricing() {
+                when(servicePricingRepository.findActivePriceGlobal(eq("LATE_FEE"), eq(AS_OF))).thenReturn(Optional.empty());
+
+                LateFeeService.LateFeeRunResult result = service.calculateAll(AS_OF);
+
+                assertThat(result.chunks()).isZero();
+                verify(lateFeeRepository, never()).findCyclesWithOverdueInvoices(any(), anyInt());
+        }
+
+        @Test
+        void shouldProcessCycleInChunksAndSkipLockedInvoices() {
+                givenPricing();
+                UUID a = UUID.randomUUID();
+                UUID b = UUID.randomUUID();
+                UUID c = UUID.randomUUID();
+                when(lateFeeRepository.findCyclesWithOverdueInvoices(AS_OF, 0)).thenReturn(List.of(CYCLE));
+                when(lateFeeRepository.findPendingPage(eq(CYCLE), eq(AS_OF), eq(0), isNull(), eq(2))).thenReturn(List.of(a, b));
+                when(lateFeeRepository.findPendingPage(eq(CYCLE), eq(AS_OF), eq(0), eq(b), eq(2))).thenReturn(List.of(c));
+                // b đang bị khóa bởi giao dịch thanh toán
+                when(lateFeeRepository.lockChunk(List.of(a, b), AS_OF, 0))
+                                .thenReturn(List.of(new LockedInvoice(a, "PUBLISHED")));
+                when(lateFeeRepository.lockChunk(List.of(c), AS_OF, 0))
+                                .thenReturn(List.of(new LockedInvoice(c, "UNPAID")));
+                when(lateFeeRepository.upsertLateFees(eq(List.of(a)), eq(AS_OF), eq(0), any())).thenReturn(List.of(a));
+                when(lateFeeRepository.upsertLateFees(eq(List.of(c)), eq(AS_OF), eq(0), any())).thenReturn(List.of(c));
+
+                LateFeeService.LateFeeRunResult result = service.calculateAll(AS_OF);
+
+                assertThat(result.chunks()).isEqualTo(2);
+                assertThat(result.charged()).isEqualTo(2);
+                assertThat(result.skipped()).isEqualTo(1);
+
+                InOrder order = Mockito.inOrder(invoiceAggregateService, lateFeeRepository, invoiceTotalsService);
+                order.verify(invoiceAggregateService).onAmountsChanging(List.of(a), InvoiceStatus.PUBLISHED);
+                order.verify(lateFeeRepository).upsertLateFees(eq(List.of(a)), eq(AS_OF), eq(0), any());
+                order.verify(invoiceTotalsService).recompute(List.of(a));
+                order.verify(invoiceAggregateService).onAmountsChanged(List.of(a), InvoiceStatus.PUBLISHED);
+                verify(invoiceAggregateService).onAmountsChanged(List.of(c), InvoiceStatus.UNPAID);
+        }
+
+        @Test
+        void shouldNotTouchTotalsWhenRerunFindsNothingPending() {
+                givenPricing();
+                when(lateFeeRepository.findCyclesWithOverdueInvoices(AS_OF, 0)).thenReturn(List.of(CYCLE));
+                when(lateFeeRepository.findPendingPage(eq(CYCLE), eq(AS_OF), eq(0), isNull(), eq(2))).thenReturn(List.of());
+
+                LateFeeService.LateFeeRunResult result = service.calculateAll(AS_OF);
+
+                assertThat(result.charged()).isZero();
+                verify(lateFeeRepository, never()).lockChunk(any(), any(), anyInt());
+                verify(invoiceTotalsService, times(0)).recompute(any());
+        }
+
+        @Test
+        void shouldDefaultMissingTaxRateToZero() {
+                when(servicePricingRepository.findActivePriceGlobal(eq("LATE_FEE"), eq(AS_OF)))
+                                .thenReturn(Optional.of(ServicePricing.builder()
+                                                .serviceCode("LATE_FEE")
+                                                .basePrice(new BigDecimal("0.05"))
+                                                .unit("ngày")
+                                                .build()));
+                UUID a = UUID.randomUUID();
+                when(lateFeeRepository.findCyclesWithOverdueInvoices(AS_OF, 0)).thenReturn(List.of(CYCLE));
+                when(lateFeeRepository.findPendingPage(eq(CYCLE), eq(AS_OF), eq(0), isNull(), eq(2))).thenReturn(List.of(a));
+                when(lateFeeRepository.lockChunk(List.of(a), AS_OF, 0))
+                                .thenReturn(List.of(new LockedInvoice(a, "UNPAID")));
+                when(lateFeeRepository.upsertLateFees(eq(List.of(a)), eq(AS_OF), eq(0), any())).thenReturn(List.of(a));
+
+                service.calculateAll(AS_OF);
+
+                ArgumentCaptor<LateFeeRate> rate = ArgumentCaptor.forClass(LateFeeRate.class);
+                verify(lateFeeRepository).upsertLateFees(eq(List.of(a)), eq(AS_OF), eq(0), rate.capture());
+                assertThat(rate.getValue().taxRate()).isEqualByComparingTo(BigDecimal.ZERO);
+                assertThat(rate.getValue().description()).isEqualTo("Phí trả chậm");
+        }
+
+        private void givenPricing() {
+                when(servicePricingRepository.findActivePriceGlobal(eq("LATE_FEE"), eq(AS_OF)))
+                                .thenReturn(Optional.of(ServicePricing.builder()
+                                                .serviceCode("LATE_FEE")
+                                                .serviceName("Phí trả chậm")
+                                                .basePrice(new BigDecimal("0.05"))
+                                                .taxRate(BigDecimal.ZERO)
+                                                .unit("ngày")
+                                                .build()));
+        }
+}
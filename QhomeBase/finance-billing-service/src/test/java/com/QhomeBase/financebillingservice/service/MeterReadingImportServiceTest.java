@@ -0,0 +1,219 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.client.BaseServiceClient;
+import com.QhomeBase.financebillingservice.config.MeterReadingImportProperties;
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceLineRequest;
+import com.QhomeBase.financebillingservice.dto.ImportedReadingDto;
+import com.QhomeBase.financebillingservice.dto.InvoiceDto;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportChunkRequest;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportChunkResponse;
+import com.QhomeBase.financebillingservice.dto.MeterReadingImportResponse;
+import com.QhomeBase.financebillingservice.dto.ReadingCycleDto;
+import com.QhomeBase.financebillingservice.model.BillingCycle;
+import com.QhomeBase.financebillingservice.repository.BillingCycleRepository;
+import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.MeterReadingImportChunkRepository;
+import com.QhomeBase.financebillingservice.repository.MeterReadingImportChunkRepository.ChunkRecord;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MeterReadingImportServiceTest {
+
+        private static final String KEY = "meter-export:cycle:chunk-1";
+        private static final UUID READING_CYCLE = UUID.randomUUID();
+        private static final UUID BILLING_CYCLE = UUID.randomUUID();
+        private static final UUID UNIT = UUID.randomUUID();
+
+        private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        private TieredPricingEngine tieredPricingEngine;
+        private InvoiceService invoiceService;
+        private InvoiceRepository invoiceRepository;
+        private MeterReadingImportChunkRepository chunkRepository;
+        private MeterReadingImportProperties importProperties;
+        private final AtomicInteger executedChunks = new AtomicInteger();
+        private MeterReadingImportService service;
+
+        @BeforeEach
+        void setUp() {
+                tieredPricingEngine = Mockito.mock(TieredPricingEngine.class);
+                invoiceService = Mockito.mock(InvoiceService.class);
+                invoiceRepository = Mockito.mock(InvoiceRepository.class);
+                chunkRepository = Mockito.mock(MeterReadingImportChunkRepository.class);
+                BillingCycleRepository billingCycleRepository = Mockito.mock(BillingCycleRepository.class);
+                BaseServiceClient baseServiceClient = Mockito.mock(BaseServiceClient.class);
+
+                when(baseServiceClient.getUnitsByIds(any())).thenReturn(Map.of());
+                when(baseServiceClient.getReadingCycleById(READING_CYCLE)).thenReturn(new ReadingCycleDto(
+                                READING_CYCLE, "2025-03", LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31),
+                                "COMPLETED", null, null, "ELECTRIC", null, null, null, null));
+                when(billingCycleRepository.findByExternalCycleId(READING_CYCLE))
+                                .thenReturn(List.of(BillingCycle.builder().id(BILLING_CYCLE).build()));
+                when(invoiceRepository.findByServiceCodeAndAndCycle(eq(BILLING_CYCLE), anyString())).thenReturn(List.of());
+                when(tieredPricingEngine.calculateInvoiceLines(anyString(), any(), any(), any()))
+                                .thenReturn(List.of(CreateInvoiceLineRequest.builder()
+                                                .quantity(BigDecimal.TEN)
+                                                .unitPrice(new BigDecimal("3000"))
+                                                .build()));
+
+                importProperties = new MeterReadingImportProperties();
+                TaskExecutorAdapter executor = new TaskExecutorAdapter(task -> {
+                        executedChunks.incrementAndGet();
+                        task.run();
+                });
+                service = new MeterReadingImportService(tieredPricingEngine, invoiceService, billingCycleRepository,
+                                invoiceRepository, baseServiceClient, importProperties, chunkRepository,
+                                objectMapper, executor);
+        }
+
+        @Test
+        void shouldImportAndCompleteClaimedChunk() {
+                UUID invoiceId = UUID.randomUUID();
+                when(chunkRepository.claim(eq(KEY), eq(READING_CYCLE), eq(1), eq(1), anyLong())).thenReturn(true);
+                when(invoiceService.createInvoices(anyList(), anyBoolean()))
+                                .thenReturn(List.of(InvoiceDto.builder().id(invoiceId).build()));
+
+                MeterReadingImportChunkResponse response = service.importChunk(KEY, request());
+
+                assertThat(response.getStatus()).isEqualTo(MeterReadingImportChunkResponse.Status.IMPORTED);
+                assertThat(response.getResult().getInvoicesCreated()).isEqualTo(1);
+                assertThat(response.getResult().getInvoiceIds()).containsExactly(invoiceId);
+                verify(chunkRepository).complete(eq(KEY), anyString());
+                verify(chunkRepository, never()).fail(anyString(), anyString());
+        }
+
+        @Test
+        void shouldReplayCompletedChunkWithoutImporting() throws Exception {
+                MeterReadingImportResponse stored = MeterReadingImportResponse.builder()
+                                .totalReadings(1)
+                                .invoicesCreated(1)
+                                .invoiceIds(List.of(UUID.randomUUID()))
+                                .build();
+                when(chunkRepository.claim(eq(KEY), any(), anyInt(), anyInt(), anyLong())).thenReturn(false);
+                when(chunkRepository.find(KEY)).thenReturn(Optional.of(new ChunkRecord(
+                                MeterReadingImportChunkRepository.COMPLETED, objectMapper.writeValueAsString(stored))));
+
+                MeterReadingImportChunkResponse response = service.importChunk(KEY, request());
+
+                assertThat(response.getStatus()).isEqualTo(MeterReadingImportChunkResponse.Status.REPLAYED);
+                assertThat(response.getResult().getInvoiceIds()).isEqualTo(stored.getInvoiceIds());
+                verify(invoiceService, never()).createInvoices(anyList(), anyBoolean());
+                verify(chunkRepository, never()).complete(anyString(), anyString());
+        }
+
+        @Test
+        void shouldReportChunkInProgressElsewhere() {
+                when(chunkRepository.claim(eq(KEY), any(), anyInt(), anyInt(), anyLong())).thenReturn(false);
+                when(chunkRepository.find(KEY)).thenReturn(Optional.of(
+                                new ChunkRecord(MeterReadingImportChunkRepository.PROCESSING, null)));
+
+                MeterReadingImportChunkResponse response = service.importChunk(KEY, request());
+
+                assertThat(response.getStatus()).isEqualTo(MeterReadingImportChunkResponse.Status.IN_PROGRESS);
+                verify(invoiceService, never()).createInvoices(anyList(), anyBoolean());
+        }
+
+        @Test
+        void shouldMarkChunkFailedWhenInvoicesFailToPersistAndImportThemOnRetry() {
+                UUID invoiceId = UUID.randomUUID();
+                when(chunkRepository.claim(eq(KEY), any(), anyInt(), anyInt(), anyLong())).thenReturn(true);
+                when(invoiceService.createInvoices(anyList(), anyBoolean()))
+                                .thenThrow(new IllegalStateException("connection reset"))
+                                .thenReturn(List.of(InvoiceDto.builder().id(invoiceId).build()));
+
+                MeterReadingImportChunkResponse first = service.importChunk(KEY, request());
+
+                assertThat(first.getStatus()).isEqualTo(MeterReadingImportChunkResponse.Status.FAILED);
+                assertThat(first.getResult().getInvoicesCreated()).isZero();
+                assertThat(first.getResult().getInvoicesFailed()).isEqualTo(1);
+                verify(chunkRepository).fail(eq(KEY), anyString());
+                verify(chunkRepository, never()).complete(anyString(), anyString());
+
+                // Key ở trạng thái FAILED nên claim lại thành công và căn hộ được import
+                MeterReadingImportChunkResponse retry = service.importChunk(KEY, request());
+
+                assertThat(retry.getStatus()).isEqualTo(MeterReadingImportChunkResponse.Status.IMPORTED);
+                assertThat(retry.getResult().getInvoiceIds()).containsExactly(invoiceId);
+                assertThat(retry.getResult().getInvoicesFailed()).isZero();
+                verify(chunkRepository).complete(eq(KEY), anyString());
+        }
+
+        @Test
+        void shouldCompleteChunkWhenRowsAreSkippedForDataReasons() {
+                when(chunkRepository.claim(eq(KEY), any(), anyInt(), anyInt(), anyLong())).thenReturn(true);
+                MeterReadingImportChunkRequest request = request();
+                request.getReadings().get(0).setUsageKwh(BigDecimal.ZERO);
+
+                MeterReadingImportChunkResponse response = service.importChunk(KEY, request);
+
+                assertThat(response.getStatus()).isEqualTo(MeterReadingImportChunkResponse.Status.IMPORTED);
+                assertThat(response.getResult().getInvoicesSkipped()).isEqualTo(1);
+                assertThat(response.getResult().getInvoicesFailed()).isZero();
+                verify(chunkRepository).complete(eq(KEY), anyString());
+        }
+
+        @Test
+        void shouldRunChunksOnSharedExecutor() {
+                importProperties.setChunkSize(1);
+                when(invoiceService.createInvoices(anyList(), anyBoolean()))
+                                .thenAnswer(inv -> List.of(InvoiceDto.builder().id(UUID.randomUUID()).build()));
+                ImportedReadingDto other = ImportedReadingDto.builder()
+                                .unitId(UUID.randomUUID())
+                                .cycleId(READING_CYCLE)
+                                .readingDate(LocalDate.of(2025, 3, 25))
+                                .usageKwh(new BigDecimal("20"))
+                                .serviceCode("ELECTRIC")
+                                .build();
+
+                MeterReadingImportResponse response = service.importReadingsWithResponse(
+                                List.of(request().getReadings().get(0), other));
+
+                assertThat(response.getInvoicesCreated()).isEqualTo(2);
+                assertThat(executedChunks).hasValue(2);
+        }
+
+        @Test
+        void shouldRequireIdempotencyKey() {
+                assertThatThrownBy(() -> service.importChunk(" ", request()))
+                                .isInstanceOf(IllegalArgumentException.class);
+                verify(chunkRepository, never()).claim(any(), any(), anyInt(), anyInt(), anyLong());
+        }
+
+        private static MeterReadingImportChunkRequest request() {
+                return MeterReadingImportChunkRequest.builder()
+                                .readingCycleId(READING_CYCLE)
+                                .chunkNo(1)
+                                .readings(new ArrayList<>(List.of(ImportedReadingDto.builder()
+                                                .unitId(UNIT)
+                                                .cycleId(READING_CYCLE)
+                                                .readingDate(LocalDate.of(2025, 3, 25))
+                                                .usageKwh(new BigDecimal("10"))
+                                                .serviceCode("ELECTRIC")
+                                                .build())))
+                                .build();
+        }
+}
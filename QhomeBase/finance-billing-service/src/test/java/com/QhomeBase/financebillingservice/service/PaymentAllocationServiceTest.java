@@ -0,0 +1,165 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.BulkSettlementRequest;
+import com.QhomeBase.financebillingservice.dto.BulkSettlementResponse;
+import com.QhomeBase.financebillingservice.dto.PaymentAllocationDto;
+import com.QhomeBase.financebillingservice.dto.UnitSettlementRequest;
+import com.QhomeBase.financebillingservice.dto.UnitSettlementResult;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.model.Payment;
+import com.QhomeBase.financebillingservice.model.PaymentAllocation;
+import com.QhomeBase.financebillingservice.model.PaymentMethod;
+import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.PaymentBatchRepository;
+import com.QhomeBase.financebillingservice.repository.PaymentBatchRepository.OpenInvoice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PaymentAllocationServiceTest {
+
+        private static final UUID UNIT_A = UUID.randomUUID();
+        private static final UUID UNIT_B = UUID.randomUUID();
+
+        private PaymentBatchRepository paymentBatchRepository;
+        private InvoiceRepository invoiceRepository;
+        private InvoiceAggregateService invoiceAggregateService;
+        private InvoiceOutboxService invoiceOutboxService;
+        private PaymentAllocationService service;
+
+        @BeforeEach
+        void setUp() {
+                paymentBatchRepository = Mockito.mock(PaymentBatchRepository.class);
+                invoiceRepository = Mockito.mock(InvoiceRepository.class);
+                invoiceAggregateService = Mockito.mock(InvoiceAggregateService.class);
+                invoiceOutboxService = Mockito.mock(InvoiceOutboxService.class);
+                service = new PaymentAllocationService(paymentBatchRepository, invoiceRepository,
+                                invoiceAggregateService, invoiceOutboxService);
+                ReflectionTestUtils.setField(service, "maxItems", 10);
+                when(invoiceRepository.findAllById(any())).thenAnswer(inv -> {
+                        List<Invoice> invoices = new ArrayList<>();
+                        inv.<Iterable<UUID>>getArgument(0).forEach(id -> invoices.add(Invoice.builder().id(id).build()));
+                        return invoices;
+                });
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void settlesOldestInvoicesFirstAndLeavesLastOnePartiallyPaid() {
+                OpenInvoice january = open(UNIT_A, "PUBLISHED", "100000", "0", 1);
+                OpenInvoice february = open(UNIT_A, "UNPAID", "200000", "50000", 2);
+                OpenInvoice march = open(UNIT_A, "PUBLISHED", "300000", "0", 3);
+                when(paymentBatchRepository.lockOpenInvoices(anyCollection()))
+                                .thenReturn(List.of(january, february, march));
+
+                BulkSettlementResponse response = service.settle(request(item(UNIT_A, "400000", "FT123")));
+
+                UnitSettlementResult result = response.getResults().get(0);
+                assertThat(result.getAllocations())
+                                .extracting(PaymentAllocationDto::getInvoiceId, PaymentAllocationDto::getAmount)
+                                .containsExactly(
+                                                tuple(january.id(), new BigDecimal("100000")),
+                                                tuple(february.id(), new BigDecimal("150000")),
+                                                tuple(march.id(), new BigDecimal("150000")));
+                assertThat(result.getPaidInvoiceIds()).containsExactly(january.id(), february.id());
+                assertThat(result.getUnapplied()).isEqualByComparingTo("0");
+                assertThat(response.getInvoicesPaid()).isEqualTo(2);
+                assertThat(response.getInvoicesPartiallyPaid()).isEqualTo(1);
+
+                ArgumentCaptor<Map<UUID, OffsetDateTime>> paid = ArgumentCaptor.forClass(Map.class);
+                verify(paymentBatchRepository).markPaid(paid.capture());
+                assertThat(paid.getValue()).containsOnlyKeys(january.id(), february.id());
+                verify(invoiceAggregateService).onStatusChanged(List.of(january.id()), InvoiceStatus.PUBLISHED, InvoiceStatus.PAID);
+                verify(invoiceAggregateService).onStatusChanged(List.of(february.id()), InvoiceStatus.UNPAID, InvoiceStatus.PAID);
+                verify(invoiceOutboxService, times(2)).invoicePaid(any(Invoice.class), eq("FT123"));
+        }
+
+        @Test
+        @SuppressWarnings("unchecked")
+        void writesEverythingInBatchesAndContinuesDuplicateUnitsWhereThePreviousItemStopped() {
+                OpenInvoice first = open(UNIT_A, "PUBLISHED", "100000", "0", 1);
+                OpenInvoice second = open(UNIT_A, "PUBLISHED", "100000", "0", 2);
+                OpenInvoice other = open(UNIT_B, "PUBLISHED", "80000", "0", 1);
+                when(paymentBatchRepository.lockOpenInvoices(anyCollection())).thenReturn(List.of(first, second, other));
+
+                BulkSettlementResponse response = service.settle(request(
+                                item(UNIT_A, "150000", null),
+                                item(UNIT_B, "100000", null),
+                                item(UNIT_A, "70000", null)));
+
+                // Một truy vấn cho mọi căn hộ, mỗi căn hộ một lần
+                verify(paymentBatchRepository).lockOpenInvoices(Set.of(UNIT_A, UNIT_B));
+                ArgumentCaptor<List<Payment>> payments = ArgumentCaptor.forClass(List.class);
+                ArgumentCaptor<List<PaymentAllocation>> allocations = ArgumentCaptor.forClass(List.class);
+                verify(paymentBatchRepository).insertPayments(payments.capture());
+                verify(paymentBatchRepository).insertAllocations(allocations.capture());
+                assertThat(payments.getValue()).hasSize(3)
+                                .extracting(Payment::getReceiptNo).doesNotHaveDuplicates();
+                assertThat(allocations.getValue()).hasSize(4);
+
+                UnitSettlementResult third = response.getResults().get(2);
+                assertThat(third.getAllocations()).singleElement()
+                                .satisfies(allocation -> {
+                                        assertThat(allocation.getInvoiceId()).isEqualTo(second.id());
+                                        assertThat(allocation.getAmount()).isEqualByComparingTo("50000");
+                                });
+                assertThat(third.getUnapplied()).isEqualByComparingTo("20000");
+                assertThat(response.getResults().get(1).getUnapplied()).isEqualByComparingTo("20000");
+                assertThat(response.getInvoicesPaid()).isEqualTo(3);
+                assertThat(response.getTotalUnapplied()).isEqualByComparingTo("40000");
+        }
+
+        @Test
+        void rejectsInvalidItemsBeforeTouchingInvoices() {
+                assertThatThrownBy(() -> service.settle(request(item(UNIT_A, "0", null))))
+                                .isInstanceOf(IllegalArgumentException.class);
+                assertThatThrownBy(() -> service.settle(request(item(null, "1000", null))))
+                                .isInstanceOf(IllegalArgumentException.class);
+                verify(paymentBatchRepository, never()).lockOpenInvoices(anyCollection());
+                verify(paymentBatchRepository, never()).insertPayments(anyList());
+        }
+
+        private static BulkSettlementRequest request(UnitSettlementRequest... items) {
+                return BulkSettlementRequest.builder()
+                                .method(PaymentMethod.BANK_TRANSFER)
+                                .items(List.of(items))
+                                .build();
+        }
+
+        private static UnitSettlementRequest item(UUID unitId, String amount, String reference) {
+                return UnitSettlementRequest.builder()
+                                .unitId(unitId)
+                                .amount(new BigDecimal(amount))
+                                .reference(reference)
+                                .build();
+        }
+
+        private static OpenInvoice open(UUID unitId, String status, String total, String paid, int month) {
+                return new OpenInvoice(UUID.randomUUID(), unitId, "INV-" + month, status,
+                                LocalDate.of(2025, month, 10), new BigDecimal(total), new BigDecimal(paid));
+        }
+}
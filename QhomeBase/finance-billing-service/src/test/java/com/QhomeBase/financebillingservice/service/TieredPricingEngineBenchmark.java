@@ -0,0 +1,205 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceLineRequest;
+import com.QhomeBase.financebillingservice.model.PricingTier;
+import com.QhomeBase.financebillingservice.model.ServicePricing;
+import com.QhomeBase.financebillingservice.repository.PricingTierRepository;
+import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tính tiền cho 10k căn hộ: {@link TieredPricingEngine} (bảng giá nạp một lần, tra trong bộ nhớ) so với cách cũ
+ * của MeterReadingImportService (mỗi căn hộ một truy vấn bậc giá, thêm truy vấn giá cơ bản khi không có bậc).
+ * Repository là proxy trả dữ liệu cố định, mỗi lần gọi chờ {@code roundTripMicros} để mô phỏng một round trip DB.
+ * Chạy: {@code mvn -pl finance-billing-service test-compile} rồi gọi {@link #main} với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TieredPricingEngineBenchmark {
+
+    private static final int UNITS = 10_000;
+    private static final LocalDate SERVICE_DATE = LocalDate.of(2025, 3, 15);
+    private static final String ELECTRIC = "ELECTRIC";
+    private static final String WATER = "WATER";
+
+    /** 0 = chỉ đo chi phí CPU; 200 µs ≈ một truy vấn đơn giản qua mạng nội bộ */
+    @Param({"0", "200"})
+    public long roundTripMicros;
+
+    private PricingTierRepository pricingTierRepository;
+    private ServicePricingRepository pricingRepository;
+    private List<BigDecimal> usages;
+
+    @Setup
+    public void setUp() {
+        List<PricingTier> tiers = List.of(
+                tier(1, "0", "50", "1678"),
+                tier(2, "51", "100", "1734"),
+                tier(3, "101", "200", "2014"),
+                tier(4, "201", "300", "2536"),
+                tier(5, "301", "400", "2834"),
+                tier(6, "401", null, "2927"));
+        ServicePricing waterPrice = ServicePricing.builder()
+                .serviceCode(WATER)
+                .basePrice(new BigDecimal("15929"))
+                .effectiveFrom(LocalDate.of(2024, 1, 1))
+                .active(true)
+                .build();
+
+        pricingTierRepository = repository(PricingTierRepository.class, (method, args) -> switch (method) {
+            case "findByServiceCodeAndActiveOrderByTierOrderAsc", "findActiveTiersByServiceAndDate" ->
+                    ELECTRIC.equals(args[0]) ? tiers : List.of();
+            default -> throw new UnsupportedOperationException(method);
+        });
+        pricingRepository = repository(ServicePricingRepository.class, (method, args) -> switch (method) {
+            case "findByServiceCodeAndActiveTrue" -> WATER.equals(args[0]) ? List.of(waterPrice) : List.of();
+            case "findActivePriceGlobal" -> WATER.equals(args[0]) ? Optional.of(waterPrice) : Optional.empty();
+            default -> throw new UnsupportedOperationException(method);
+        });
+
+        usages = new ArrayList<>(UNITS);
+        for (int unit = 0; unit < UNITS; unit++) {
+            usages.add(BigDecimal.valueOf(unit % 450 + 1));
+        }
+    }
+
+    @Benchmark
+    public void inMemoryEngine(Blackhole blackhole) {
+        // Engine mới cho mỗi lần đo: tính cả chi phí nạp bảng giá (một lần cho mỗi dịch vụ)
+        TieredPricingEngine engine = new TieredPricingEngine(pricingTierRepository, pricingRepository, Duration.ofMinutes(5));
+        for (int unit = 0; unit < UNITS; unit++) {
+            String serviceCode = unit % 2 == 0 ? ELECTRIC : WATER;
+            blackhole.consume(engine.calculateInvoiceLines(serviceCode, usages.get(unit), SERVICE_DATE, "Tiền dịch vụ"));
+        }
+    }
+
+    @Benchmark
+    public void perCallRepository(Blackhole blackhole) {
+        for (int unit = 0; unit < UNITS; unit++) {
+            String serviceCode = unit % 2 == 0 ? ELECTRIC : WATER;
+            blackhole.consume(legacyCalculateInvoiceLines(serviceCode, usages.get(unit), SERVICE_DATE, "Tiền dịch vụ"));
+        }
+    }
+
+    /**
+     * Cách tính trước khi có {@link TieredPricingEngine} (MeterReadingImportService.calculateInvoiceLines cũ)
+     */
+    private List<CreateInvoiceLineRequest> legacyCalculateInvoiceLines(
+            String serviceCode, BigDecimal totalUsage, LocalDate serviceDate, String baseDescription) {
+        List<PricingTier> tiers = pricingTierRepository.findActiveTiersByServiceAndDate(serviceCode, serviceDate);
+        if (tiers.isEmpty()) {
+            return Collections.singletonList(legacyLine(serviceCode, baseDescription, totalUsage,
+                    legacyUnitPrice(serviceCode, serviceDate), serviceDate));
+        }
+
+        List<CreateInvoiceLineRequest> lines = new ArrayList<>();
+        BigDecimal previousMax = BigDecimal.ZERO;
+        for (PricingTier tier : tiers) {
+            if (previousMax.compareTo(totalUsage) >= 0) {
+                break;
+            }
+            BigDecimal tierEffectiveMax = tier.getMaxQuantity() == null ? totalUsage : totalUsage.min(tier.getMaxQuantity());
+            BigDecimal applicableQuantity = tierEffectiveMax.subtract(previousMax).max(BigDecimal.ZERO);
+            if (applicableQuantity.compareTo(BigDecimal.ZERO) > 0) {
+                String maxQtyStr = tier.getMaxQuantity() != null ? tier.getMaxQuantity().toString() : "∞";
+                String tierDescription = String.format("%s (Bậc %d: %s-%s kWh)",
+                        baseDescription, tier.getTierOrder(), tier.getMinQuantity(), maxQtyStr);
+                lines.add(legacyLine(serviceCode, tierDescription, applicableQuantity, tier.getUnitPrice(), serviceDate));
+                previousMax = tierEffectiveMax;
+            }
+        }
+        if (lines.isEmpty()) {
+            return Collections.singletonList(legacyLine(serviceCode, baseDescription, totalUsage,
+                    legacyUnitPrice(serviceCode, serviceDate), serviceDate));
+        }
+        return lines;
+    }
+
+    private BigDecimal legacyUnitPrice(String serviceCode, LocalDate date) {
+        return pricingRepository.findActivePriceGlobal(serviceCode, date)
+                .map(ServicePricing::getBasePrice)
+                .orElse(BigDecimal.ZERO);
+    }
+
+    private static CreateInvoiceLineRequest legacyLine(String serviceCode, String description, BigDecimal quantity,
+                                                       BigDecimal unitPrice, LocalDate serviceDate) {
+        return CreateInvoiceLineRequest.builder()
+                .serviceDate(serviceDate)
+                .description(description)
+                .quantity(quantity)
+                .unit("kWh")
+                .unitPrice(unitPrice)
+                .taxRate(BigDecimal.ZERO)
+                .serviceCode(serviceCode)
+                .externalRefType("METER_READING_GROUP")
+                .build();
+    }
+
+    private interface Query {
+        Object run(String method, Object[] args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T repository(Class<T> type, Query query) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName();
+                };
+            }
+            if (roundTripMicros > 0) {
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(roundTripMicros));
+            }
+            return query.run(method.getName(), args);
+        });
+    }
+
+    private static PricingTier tier(int order, String min, String max, String price) {
+        return PricingTier.builder()
+                .serviceCode(ELECTRIC)
+                .tierOrder(order)
+                .minQuantity(new BigDecimal(min))
+                .maxQuantity(max != null ? new BigDecimal(max) : null)
+                .unitPrice(new BigDecimal(price))
+                .effectiveFrom(LocalDate.of(2024, 10, 1))
+                .active(true)
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TieredPricingEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,119 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.CreateInvoiceLineRequest;
+import com.QhomeBase.financebillingservice.model.PricingTier;
+import com.QhomeBase.financebillingservice.model.ServicePricing;
+import com.QhomeBase.financebillingservice.repository.PricingTierRepository;
+import com.QhomeBase.financebillingservice.repository.ServicePricingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TieredPricingEngineTest {
+
+        private static final String ELECTRIC = "ELECTRIC";
+        private static final LocalDate JAN = LocalDate.of(2025, 1, 15);
+        private static final LocalDate JUL = LocalDate.of(2025, 7, 15);
+
+        private PricingTierRepository pricingTierRepository;
+        private ServicePricingRepository pricingRepository;
+        private TieredPricingEngine engine;
+
+        @BeforeEach
+        void setUp() {
+                pricingTierRepository = Mockito.mock(PricingTierRepository.class);
+                pricingRepository = Mockito.mock(ServicePricingRepository.class);
+                engine = new TieredPricingEngine(pricingTierRepository, pricingRepository, Duration.ofMinutes(5));
+
+                LocalDate from = LocalDate.of(2025, 1, 1);
+                LocalDate until = LocalDate.of(2025, 6, 30);
+                LocalDate newFrom = LocalDate.of(2025, 7, 1);
+                when(pricingTierRepository.findByServiceCodeAndActiveOrderByTierOrderAsc(eq(ELECTRIC), eq(true)))
+                                .thenReturn(List.of(
+                                                tier(1, "0", "50", "1000", from, until),
+                                                tier(2, "51", "100", "2000", from, until),
+                                                tier(1, "0", null, "3000", newFrom, null)));
+                when(pricingRepository.findByServiceCodeAndActiveTrue(anyString())).thenReturn(List.of());
+        }
+
+        @Test
+        void shouldSplitUsageAcrossTiersEffectiveOnServiceDate() {
+                List<CreateInvoiceLineRequest> lines = engine.calculateInvoiceLines(
+                                ELECTRIC, new BigDecimal("80"), JAN, "Tiền điện");
+
+                assertThat(lines).hasSize(2);
+                assertThat(lines.get(0).getQuantity()).isEqualByComparingTo("50");
+                assertThat(lines.get(0).getUnitPrice()).isEqualByComparingTo("1000");
+                assertThat(lines.get(1).getQuantity()).isEqualByComparingTo("30");
+                assertThat(lines.get(1).getUnitPrice()).isEqualByComparingTo("2000");
+
+                List<CreateInvoiceLineRequest> julyLines = engine.calculateInvoiceLines(
+                                ELECTRIC, new BigDecimal("80"), JUL, "Tiền điện");
+                assertThat(julyLines).hasSize(1);
+                assertThat(julyLines.get(0).getUnitPrice()).isEqualByComparingTo("3000");
+        }
+
+        @Test
+        void shouldBillOverflowAtLastTierPrice() {
+                List<CreateInvoiceLineRequest> lines = engine.calculateInvoiceLines(
+                                ELECTRIC, new BigDecimal("120"), JAN, "Tiền điện");
+
+                assertThat(lines).hasSize(3);
+                assertThat(lines.get(2).getQuantity()).isEqualByComparingTo("20");
+                assertThat(lines.get(2).getUnitPrice()).isEqualByComparingTo("2000");
+        }
+
+        @Test
+        void shouldFallBackToBasePriceWhenNoTierApplies() {
+                ServicePricing water = ServicePricing.builder()
+                                .serviceCode("WATER")
+                                .basePrice(new BigDecimal("15000"))
+                                .effectiveFrom(LocalDate.of(2024, 1, 1))
+                                .active(true)
+                                .build();
+                when(pricingRepository.findByServiceCodeAndActiveTrue("WATER")).thenReturn(List.of(water));
+
+                List<CreateInvoiceLineRequest> lines = engine.calculateInvoiceLines(
+                                "WATER", new BigDecimal("12"), JAN, "Tiền nước");
+
+                assertThat(lines).hasSize(1);
+                assertThat(lines.get(0).getUnitPrice()).isEqualByComparingTo("15000");
+        }
+
+        @Test
+        void shouldLoadTablesOnceForTenThousandUnitsUntilInvalidated() {
+                for (int unit = 0; unit < 10_000; unit++) {
+                        engine.calculateInvoiceLines(ELECTRIC, BigDecimal.valueOf(unit % 200 + 1), JAN, "Tiền điện");
+                }
+                verify(pricingTierRepository, times(1)).findByServiceCodeAndActiveOrderByTierOrderAsc(ELECTRIC, true);
+
+                engine.invalidate(ELECTRIC);
+                engine.calculateInvoiceLines(ELECTRIC, BigDecimal.TEN, JAN, "Tiền điện");
+                verify(pricingTierRepository, times(2)).findByServiceCodeAndActiveOrderByTierOrderAsc(ELECTRIC, true);
+        }
+
+        private static PricingTier tier(int order, String min, String max, String price, LocalDate from, LocalDate until) {
+                return PricingTier.builder()
+                                .serviceCode(ELECTRIC)
+                                .tierOrder(order)
+                                .minQuantity(new BigDecimal(min))
+                                .maxQuantity(max != null ? new BigDecimal(max) : null)
+                                .unitPrice(new BigDecimal(price))
+                                .effectiveFrom(from)
+                                .effectiveUntil(until)
+                                .active(true)
+                                .build();
+        }
+}
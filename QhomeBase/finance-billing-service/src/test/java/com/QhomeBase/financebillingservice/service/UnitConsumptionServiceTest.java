@@ -0,0 +1,110 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.dto.ConsumptionSeriesDto;
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.UnitConsumptionRepository;
+import com.QhomeBase.financebillingservice.repository.UnitConsumptionRepository.MonthlyConsumption;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnitConsumptionServiceTest {
+
+        private static final UUID UNIT_A = UUID.randomUUID();
+        private static final UUID UNIT_B = UUID.randomUUID();
+
+        private UnitConsumptionRepository repository;
+        private UnitConsumptionService service;
+
+        @BeforeEach
+        void setUp() {
+                repository = Mockito.mock(UnitConsumptionRepository.class);
+                service = new UnitConsumptionService(repository);
+        }
+
+        @Test
+        void shouldCountCreatedInvoicesExceptVoidAndUnitless() {
+                Invoice counted = invoice(UNIT_A, InvoiceStatus.PUBLISHED);
+                Invoice voided = invoice(UNIT_A, InvoiceStatus.VOID);
+                Invoice noUnit = invoice(null, InvoiceStatus.PUBLISHED);
+
+                service.onCreated(List.of(counted, voided, noUnit));
+
+                verify(repository).applyDelta(List.of(counted.getId()), 1);
+        }
+
+        @Test
+        void shouldOnlyApplyDeltaWhenInvoiceMovesInOrOutOfVoid() {
+                Invoice invoice = invoice(UNIT_A, InvoiceStatus.UNPAID);
+                service.onStatusChanged(invoice, InvoiceStatus.PUBLISHED);
+                verify(repository, never()).applyDelta(any(), anyInt());
+
+                invoice.setStatus(InvoiceStatus.VOID);
+                service.onStatusChanged(invoice, InvoiceStatus.PUBLISHED);
+                verify(repository).applyDelta(List.of(invoice.getId()), -1);
+
+                invoice.setStatus(InvoiceStatus.PUBLISHED);
+                service.onStatusChanged(invoice, InvoiceStatus.VOID);
+                verify(repository).applyDelta(List.of(invoice.getId()), 1);
+        }
+
+        @Test
+        void shouldGroupRowsIntoSeriesPerUnitAndService() {
+                LocalDate toMonth = LocalDate.now().withDayOfMonth(1);
+                LocalDate fromMonth = toMonth.minusMonths(5);
+                when(repository.findSeries(eq(Set.of(UNIT_A, UNIT_B)), eq(Set.of("ELECTRIC", "WATER")),
+                                eq(fromMonth), eq(toMonth)))
+                                .thenReturn(List.of(
+                                                row(UNIT_A, "ELECTRIC", fromMonth, "120"),
+                                                row(UNIT_A, "ELECTRIC", toMonth, "150"),
+                                                row(UNIT_A, "WATER", toMonth, "8"),
+                                                row(UNIT_B, "ELECTRIC", toMonth, "90")));
+
+                List<ConsumptionSeriesDto> series = service.getSeries(Set.of(UNIT_A, UNIT_B), List.of("electricity", "WATER"), 6);
+
+                assertThat(series).hasSize(3);
+                assertThat(series.get(0).getUnitId()).isEqualTo(UNIT_A);
+                assertThat(series.get(0).getServiceCode()).isEqualTo("ELECTRIC");
+                assertThat(series.get(0).getPoints()).hasSize(2);
+                assertThat(series.get(0).getPoints().get(1).getQuantity()).isEqualByComparingTo("150");
+                assertThat(series.get(1).getServiceCode()).isEqualTo("WATER");
+                assertThat(series.get(2).getUnitId()).isEqualTo(UNIT_B);
+        }
+
+        @Test
+        void shouldRejectOutOfRangeMonths() {
+                assertThatThrownBy(() -> service.getSeries(Set.of(UNIT_A), null, 0))
+                                .isInstanceOf(IllegalArgumentException.class);
+                assertThatThrownBy(() -> service.getSeries(Set.of(UNIT_A), null, UnitConsumptionService.MAX_MONTHS + 1))
+                                .isInstanceOf(IllegalArgumentException.class);
+        }
+
+        private static Invoice invoice(UUID unitId, InvoiceStatus status) {
+                return Invoice.builder()
+                                .id(UUID.randomUUID())
+                                .payerUnitId(unitId)
+                                .status(status)
+                                .build();
+        }
+
+        private static MonthlyConsumption row(UUID unitId, String serviceCode, LocalDate month, String quantity) {
+                BigDecimal qty = new BigDecimal(quantity);
+                return new MonthlyConsumption(unitId, serviceCode, month, qty, qty.multiply(BigDecimal.valueOf(3000)));
+        }
+}
@@ -0,0 +1,176 @@
+package com.QhomeBase.financebillingservice.service;
+
+import com.QhomeBase.financebillingservice.model.Invoice;
+import com.QhomeBase.financebillingservice.model.InvoiceStatus;
+import com.QhomeBase.financebillingservice.repository.InvoiceRepository;
+import com.QhomeBase.financebillingservice.repository.VnpayPaymentAttemptRepository;
+import com.QhomeBase.financebillingservice.repository.VnpayPaymentAttemptRepository.CallbackDetails;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Phát lại callback VNPAY trùng lặp và song song. Repository giả lập đúng ngữ nghĩa của các câu UPDATE
+ * có điều kiện (chỉ một lần compare-and-set thành công cho mỗi txn_ref / hóa đơn).
+ */
+class VnpayCallbackProcessorTest {
+
+        private static final int THREADS = 16;
+        private static final int CALLBACKS_PER_TXN = 200;
+
+        private VnpayPaymentAttemptRepository attemptRepository;
+        private InvoiceAggregateService invoiceAggregateService;
+        private InvoiceOutboxService invoiceOutboxService;
+        private VnpayCallbackProcessor processor;
+
+        private final Map<String, UUID> attemptInvoice = new ConcurrentHashMap<>();
+        private final Map<String, String> attemptStatus = new ConcurrentHashMap<>();
+        private final Map<UUID, InvoiceStatus> invoiceStatus = new ConcurrentHashMap<>();
+
+        private final CallbackDetails details = new CallbackDetails("00", "14000001", "NCB", "ATM");
+
+        @BeforeEach
+        void setUp() {
+                attemptRepository = Mockito.mock(VnpayPaymentAttemptRepository.class);
+                invoiceAggregateService = Mockito.mock(InvoiceAggregateService.class);
+                invoiceOutboxService = Mockito.mock(InvoiceOutboxService.class);
+                InvoiceRepository invoiceRepository = Mockito.mock(InvoiceRepository.class);
+                when(invoiceRepository.findById(any()))
+                        .thenAnswer(inv -> Optional.of(Invoice.builder().id(inv.getArgument(0)).build()));
+                processor = new VnpayCallbackProcessor(attemptRepository, invoiceRepository,
+                        invoiceAggregateService, invoiceOutboxService);
+
+                Mockito.doAnswer(inv -> {
+                        attemptInvoice.putIfAbsent(inv.getArgument(0), inv.getArgument(1));
+                        attemptStatus.putIfAbsent(inv.getArgument(0), VnpayPaymentAttemptRepository.PENDING);
+                        return null;
+                }).when(attemptRepository).insertPending(anyString(), any(), any());
+                when(attemptRepository.findInvoiceId(anyString()))
+                        .thenAnswer(inv -> Optional.ofNullable(attemptInvoice.get(inv.<String>getArgument(0))));
+                when(attemptRepository.complete(anyString(), anyString(), any()))
+                        .thenAnswer(inv -> attemptStatus.replace(inv.getArgument(0),
+                                VnpayPaymentAttemptRepository.PENDING, inv.getArgument(1)));
+                when(attemptRepository.markInvoicePaid(any(), anyString(), any())).thenAnswer(inv -> {
+                        UUID invoiceId = inv.getArgument(0);
+                        InvoiceStatus previous = invoiceStatus.get(invoiceId);
+                        if (previous == InvoiceStatus.PAID
+                                || !invoiceStatus.replace(invoiceId, previous, InvoiceStatus.PAID)) {
+                                return Optional.empty();
+                        }
+                        return Optional.of(previous.name());
+                });
+        }
+
+        @Test
+        void duplicateCallbackIsProcessedOnce() {
+                UUID invoiceId = registerInvoice("1_1");
+
+                VnpayCallbackProcessor.CallbackOutcome first = processor.process("1_1", true, details);
+                VnpayCallbackProcessor.CallbackOutcome replay = processor.process("1_1", true, details);
+
+                assertThat(first.newlyPaid()).isTrue();
+                assertThat(replay.duplicate()).isTrue();
+                assertThat(replay.newlyPaid()).isFalse();
+                assertThat(invoiceStatus.get(invoiceId)).isEqualTo(InvoiceStatus.PAID);
+                verify(attemptRepository, times(1)).markInvoicePaid(eq(invoiceId), eq("1_1"), any());
+                verify(invoiceAggregateService, times(1))
+                        .onStatusChanged(List.of(invoiceId), InvoiceStatus.PUBLISHED, InvoiceStatus.PAID);
+                verify(invoiceOutboxService, times(1)).invoicePaid(any(), eq("1_1"));
+        }
+
+        @Test
+        void failedCallbackDoesNotMarkInvoicePaid() {
+                UUID invoiceId = registerInvoice("2_1");
+
+                VnpayCallbackProcessor.CallbackOutcome outcome = processor.process("2_1", false, details);
+
+                assertThat(outcome.newlyPaid()).isFalse();
+                assertThat(attemptStatus.get("2_1")).isEqualTo(VnpayPaymentAttemptRepository.FAILED);
+                assertThat(invoiceStatus.get(invoiceId)).isEqualTo(InvoiceStatus.PUBLISHED);
+                verify(attemptRepository).recordFailedCallback(invoiceId, "2_1", details);
+                verify(attemptRepository, never()).markInvoicePaid(any(), anyString(), any());
+                verify(invoiceOutboxService, never()).invoicePaid(any(), anyString());
+        }
+
+        @Test
+        void concurrentReplayedCallbacksMarkEachInvoicePaidExactlyOnce() throws Exception {
+                // Hai hóa đơn, mỗi hóa đơn có hai attempt (khách bấm thanh toán hai lần), mọi callback gửi lại nhiều lần
+                List<String> txnRefs = new ArrayList<>();
+                List<UUID> invoices = new ArrayList<>();
+                for (int i = 0; i < 2; i++) {
+                        UUID invoiceId = registerInvoice(i + "_1");
+                        attemptInvoice.put(i + "_2", invoiceId);
+                        attemptStatus.put(i + "_2", VnpayPaymentAttemptRepository.PENDING);
+                        invoices.add(invoiceId);
+                        txnRefs.add(i + "_1");
+                        txnRefs.add(i + "_2");
+                }
+
+                ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<VnpayCallbackProcessor.CallbackOutcome>> futures = new ArrayList<>();
+                try {
+                        for (int n = 0; n < CALLBACKS_PER_TXN; n++) {
+                                for (String txnRef : txnRefs) {
+                                        futures.add(executor.submit(() -> {
+                                                start.await();
+                                                return processor.process(txnRef, true, details);
+                                        }));
+                                }
+                        }
+                        start.countDown();
+
+                        int newlyPaid = 0;
+                        int duplicates = 0;
+                        for (Future<VnpayCallbackProcessor.CallbackOutcome> future : futures) {
+                                VnpayCallbackProcessor.CallbackOutcome outcome = future.get(30, TimeUnit.SECONDS);
+                                if (outcome.newlyPaid()) {
+                                        newlyPaid++;
+                                }
+                                if (outcome.duplicate()) {
+                                        duplicates++;
+                                }
+                        }
+
+                        assertThat(newlyPaid).isEqualTo(invoices.size());
+                        assertThat(duplicates).isEqualTo(futures.size() - txnRefs.size());
+                        assertThat(attemptStatus.values()).containsOnly(VnpayPaymentAttemptRepository.SUCCESS);
+                        for (UUID invoiceId : invoices) {
+                                assertThat(invoiceStatus.get(invoiceId)).isEqualTo(InvoiceStatus.PAID);
+                                verify(invoiceAggregateService, times(1))
+                                        .onStatusChanged(List.of(invoiceId), InvoiceStatus.PUBLISHED, InvoiceStatus.PAID);
+                        }
+                } finally {
+                        executor.shutdownNow();
+                }
+        }
+
+        private UUID registerInvoice(String txnRef) {
+                UUID invoiceId = UUID.randomUUID();
+                invoiceStatus.put(invoiceId, InvoiceStatus.PUBLISHED);
+                attemptInvoice.put(txnRef, invoiceId);
+                attemptStatus.put(txnRef, VnpayPaymentAttemptRepository.PENDING);
+                return invoiceId;
+        }
+}
@@ -0,0 +1,67 @@
+package com.QhomeBase.scheduling;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Lease đang được replica này giữ, kèm fencing token. Token tăng mỗi khi lease đổi chủ (hoặc được lấy lại sau khi hết hạn),
+ * nên replica cũ bị treo rồi chạy tiếp không thể ghi đè kết quả của leader mới:
+ * <ul>
+ *     <li>job JPA gọi {@link #ensureHeld()} trước mỗi bước có tác dụng phụ (lưu, gửi thông báo)</li>
+ *     <li>job JDBC thêm {@link JobLeaseManager#fencingPredicate()} vào câu UPDATE, tham số lấy từ {@link #addTo}</li>
+ * </ul>
+ */
+public final class JobLease {
+
+    private final JobLeaseManager manager;
+    private final String name;
+    private final long fencingToken;
+    private volatile boolean lost;
+
+    JobLease(JobLeaseManager manager, String name, long fencingToken) {
+        this.manager = manager;
+        this.name = name;
+        this.fencingToken = fencingToken;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long fencingToken() {
+        return fencingToken;
+    }
+
+    /**
+     * Kiểm tra trên DB rằng lease vẫn thuộc replica này với đúng token và chưa hết hạn
+     */
+    public boolean isHeld() {
+        return !lost && manager.isHeld(this);
+    }
+
+    /**
+     * @throws LeaseLostException nếu replica khác đã lấy lease (hoặc lease đã hết hạn mà không được gia hạn)
+     */
+    public void ensureHeld() {
+        if (!isHeld()) {
+            lost = true;
+            throw new LeaseLostException(name, fencingToken);
+        }
+    }
+
+    public MapSqlParameterSource addTo(MapSqlParameterSource params) {
+        return params.addValue("leaseName", name).addValue("fencingToken", fencingToken);
+    }
+
+    boolean isLost() {
+        return lost;
+    }
+
+    void markLost() {
+        lost = true;
+    }
+
+    @Override
+    public String toString() {
+        return name + "@" + fencingToken;
+    }
+}
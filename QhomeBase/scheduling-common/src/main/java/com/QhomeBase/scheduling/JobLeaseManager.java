@@ -0,0 +1,156 @@
+package com.QhomeBase.scheduling;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Lease theo tên trong một bảng PostgreSQL, dùng để chỉ một replica chạy một job (hoặc một shard của job) tại một thời điểm.
+ * Thời hạn lease tính theo đồng hồ DB ({@code now()}), không phụ thuộc đồng hồ của từng replica.
+ * Mỗi lần lease đổi chủ, {@code fencing_token} tăng lên (xem {@link JobLease}).
+ * <p>
+ * Mỗi service tạo bảng trong schema của mình:
+ * <pre>
+ * CREATE TABLE &lt;schema&gt;.job_leases (
+ *     lease_name    VARCHAR(150) PRIMARY KEY,
+ *     owner_id      VARCHAR(255) NOT NULL,
+ *     acquired_at   TIMESTAMPTZ  NOT NULL,
+ *     lease_until   TIMESTAMPTZ  NOT NULL,
+ *     fencing_token BIGINT       NOT NULL DEFAULT 0
+ * );
+ * </pre>
+ */
+public class JobLeaseManager {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[a-z_][a-z0-9_]*(\\.[a-z_][a-z0-9_]*)?");
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final String ownerId;
+    private final String acquireSql;
+    private final String renewSql;
+    private final String heldSql;
+    private final String releaseSql;
+    private final String releaseFencedSql;
+    private final String fencingPredicate;
+
+    public JobLeaseManager(DataSource dataSource, String table) {
+        this(new NamedParameterJdbcTemplate(dataSource), table, defaultOwnerId());
+    }
+
+    public JobLeaseManager(NamedParameterJdbcTemplate jdbcTemplate, String table, String ownerId) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid lease table name: " + table);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.ownerId = ownerId;
+        // Lấy được lease khi chưa có dòng, lease cũ đã hết hạn, hoặc chính replica này đang giữ (gia hạn).
+        // Token chỉ giữ nguyên khi gia hạn lease còn hiệu lực của chính mình, mọi lần lấy mới đều tăng token.
+        this.acquireSql = """
+                INSERT INTO %s AS l (lease_name, owner_id, acquired_at, lease_until, fencing_token)
+                VALUES (:leaseName, :ownerId, now(), now() + make_interval(secs => :ttlSeconds), 1)
+                ON CONFLICT (lease_name) DO UPDATE
+                SET owner_id = EXCLUDED.owner_id,
+                    acquired_at = EXCLUDED.acquired_at,
+                    lease_until = EXCLUDED.lease_until,
+                    fencing_token = CASE
+                        WHEN l.owner_id = EXCLUDED.owner_id AND l.lease_until >= now() THEN l.fencing_token
+                        ELSE l.fencing_token + 1
+                    END
+                WHERE l.lease_until < now() OR l.owner_id = EXCLUDED.owner_id
+                RETURNING l.fencing_token
+                """.formatted(table);
+        // Gia hạn chỉ thành công khi token chưa đổi, tức là chưa replica nào lấy lease trong lúc job chạy
+        this.renewSql = """
+                UPDATE %s
+                SET lease_until = now() + make_interval(secs => :ttlSeconds)
+                WHERE lease_name = :leaseName AND owner_id = :ownerId AND fencing_token = :fencingToken
+                """.formatted(table);
+        this.heldSql = """
+                SELECT COUNT(*) FROM %s
+                WHERE lease_name = :leaseName AND owner_id = :ownerId AND fencing_token = :fencingToken
+                  AND lease_until > now()
+                """.formatted(table);
+        this.releaseSql = """
+                UPDATE %s
+                SET lease_until = now()
+                WHERE lease_name = :leaseName AND owner_id = :ownerId
+                """.formatted(table);
+        this.releaseFencedSql = releaseSql.strip() + " AND fencing_token = :fencingToken";
+        this.fencingPredicate = """
+                EXISTS (SELECT 1 FROM %s fl
+                        WHERE fl.lease_name = :leaseName AND fl.fencing_token = :fencingToken
+                          AND fl.lease_until > now())""".formatted(table);
+    }
+
+    /**
+     * Lấy (hoặc gia hạn) lease trong {@code ttl}. Không chờ: trả về rỗng ngay nếu replica khác đang giữ.
+     * Câu lệnh chạy autocommit, không nên gọi bên trong transaction của job.
+     */
+    public Optional<JobLease> acquire(String leaseName, Duration ttl) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("leaseName", leaseName)
+                .addValue("ownerId", ownerId)
+                .addValue("ttlSeconds", ttl.toMillis() / 1000.0);
+        List<Long> tokens = jdbcTemplate.queryForList(acquireSql, params, Long.class);
+        return tokens.isEmpty() ? Optional.empty() : Optional.of(new JobLease(this, leaseName, tokens.get(0)));
+    }
+
+    public boolean tryAcquire(String leaseName, Duration ttl) {
+        return acquire(leaseName, ttl).isPresent();
+    }
+
+    /**
+     * Gia hạn lease đang giữ thêm {@code ttl} tính từ bây giờ
+     *
+     * @return false nếu lease đã thuộc về token khác (replica khác đã tiếp quản)
+     */
+    public boolean renew(JobLease lease, Duration ttl) {
+        MapSqlParameterSource params = lease.addTo(new MapSqlParameterSource())
+                .addValue("ownerId", ownerId)
+                .addValue("ttlSeconds", ttl.toMillis() / 1000.0);
+        return jdbcTemplate.update(renewSql, params) > 0;
+    }
+
+    public boolean isHeld(JobLease lease) {
+        Long count = jdbcTemplate.queryForObject(heldSql,
+                lease.addTo(new MapSqlParameterSource()).addValue("ownerId", ownerId), Long.class);
+        return count != null && count > 0;
+    }
+
+    /**
+     * Điều kiện SQL chặn ghi từ leader cũ, dùng tham số {@code :leaseName} / {@code :fencingToken} (xem {@link JobLease#addTo})
+     */
+    public String fencingPredicate() {
+        return fencingPredicate;
+    }
+
+    /**
+     * Trả lease sớm để lần chạy kế tiếp (ở bất kỳ replica nào) không phải chờ hết hạn
+     */
+    public void release(String leaseName) {
+        jdbcTemplate.update(releaseSql, new MapSqlParameterSource()
+                .addValue("leaseName", leaseName)
+                .addValue("ownerId", ownerId));
+    }
+
+    public void release(JobLease lease) {
+        jdbcTemplate.update(releaseFencedSql, lease.addTo(new MapSqlParameterSource())
+                .addValue("ownerId", ownerId));
+    }
+
+    public String getOwnerId() {
+        return ownerId;
+    }
+
+    private static String defaultOwnerId() {
+        // pid@host, thêm hậu tố ngẫu nhiên để hai lần khởi động cùng pid (container) không bị coi là một
+        return ManagementFactory.getRuntimeMXBean().getName() + "#" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,11 @@
+package com.QhomeBase.scheduling;
+
+/**
+ * Job phát hiện lease đã bị replica khác lấy: dừng ngay, leader mới sẽ làm tiếp phần còn lại
+ */
+public class LeaseLostException extends RuntimeException {
+
+    public LeaseLostException(String leaseName, long fencingToken) {
+        super("Lease " + leaseName + " (fencing token " + fencingToken + ") is no longer held by this replica");
+    }
+}
@@ -0,0 +1,195 @@
+package com.QhomeBase.scheduling;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Chạy job theo lease để nhiều replica không làm trùng việc:
+ * <ul>
+ *     <li>{@link #runAsLeader}: cả job chỉ chạy ở replica lấy được lease; job nhận {@link JobLease} để kiểm tra fencing token</li>
+ *     <li>{@link #runExclusive}: như trên cho job không cần token</li>
+ *     <li>{@link #runSharded}: mỗi shard là một lease riêng; các replica bắt đầu từ các shard khác nhau
+ *     nên cùng chạy thì chia nhau tập dòng, chỉ còn một replica thì nó xử lý hết</li>
+ * </ul>
+ * Trong lúc job chạy lease được gia hạn mỗi {@code ttl / 3}, nên TTL chỉ cần đủ dài để phát hiện replica chết
+ * (không phụ thuộc thời gian chạy job): replica chết thì lease hết hạn sau tối đa một TTL và replica khác tiếp quản
+ * với token mới. Gia hạn thất bại đánh dấu lease bị mất, {@link JobLease#ensureHeld()} sẽ dừng job.
+ * <p>
+ * Khi có {@link MeterRegistry}, mỗi job ghi:
+ * {@code scheduling.job.runs{job,outcome}} (success / failure / skipped / lease_lost),
+ * {@code scheduling.job.duration{job,outcome}} và {@code scheduling.job.last.success{job}} (epoch giây).
+ */
+public class LeasedJobRunner implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LeasedJobRunner.class);
+
+    static final String OUTCOME_SUCCESS = "success";
+    static final String OUTCOME_FAILURE = "failure";
+    static final String OUTCOME_SKIPPED = "skipped";
+    static final String OUTCOME_LEASE_LOST = "lease_lost";
+
+    private final JobLeaseManager leaseManager;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService heartbeat;
+    private final Map<String, AtomicLong> lastSuccess = new ConcurrentHashMap<>();
+
+    public LeasedJobRunner(JobLeaseManager leaseManager) {
+        this(leaseManager, null);
+    }
+
+    public LeasedJobRunner(JobLeaseManager leaseManager, MeterRegistry meterRegistry) {
+        this.leaseManager = leaseManager;
+        this.meterRegistry = meterRegistry;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "job-lease-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return false nếu replica khác đang chạy job, hoặc lease bị mất giữa chừng
+     */
+    public boolean runExclusive(String jobName, Duration ttl, Runnable task) {
+        return runAsLeader(jobName, ttl, lease -> task.run());
+    }
+
+    /**
+     * Chạy job ở leader. Lỗi của job được ném lại sau khi trả lease; riêng {@link LeaseLostException} chỉ ghi log.
+     *
+     * @return false nếu replica khác đang chạy job, hoặc lease bị mất giữa chừng
+     */
+    public boolean runAsLeader(String jobName, Duration ttl, Consumer<JobLease> task) {
+        Optional<JobLease> acquired = leaseManager.acquire(jobName, ttl);
+        if (acquired.isEmpty()) {
+            log.debug("[LeasedJobRunner] {} is running on another replica, skipping", jobName);
+            record(jobName, OUTCOME_SKIPPED, 0);
+            return false;
+        }
+        return runHoldingLease(jobName, acquired.get(), ttl, task);
+    }
+
+    /**
+     * @return số shard replica này đã xử lý
+     */
+    public int runSharded(String jobName, int shardCount, Duration ttl, Consumer<Shard> task) {
+        if (shardCount <= 1) {
+            return runExclusive(jobName, ttl, () -> task.accept(Shard.ALL)) ? 1 : 0;
+        }
+        int start = Math.floorMod(leaseManager.getOwnerId().hashCode(), shardCount);
+        int processed = 0;
+        for (int i = 0; i < shardCount; i++) {
+            Shard shard = new Shard((start + i) % shardCount, shardCount);
+            Optional<JobLease> lease = leaseManager.acquire(jobName + "#" + shard.index(), ttl);
+            if (lease.isEmpty()) {
+                continue;
+            }
+            try {
+                if (runHoldingLease(jobName, lease.get(), ttl, ignored -> task.accept(shard))) {
+                    processed++;
+                }
+            } catch (RuntimeException e) {
+                // Một shard lỗi không chặn các shard còn lại
+                log.error("[LeasedJobRunner] {} shard {} failed", jobName, shard, e);
+            }
+        }
+        if (processed == 0) {
+            record(jobName, OUTCOME_SKIPPED, 0);
+        }
+        return processed;
+    }
+
+    private boolean runHoldingLease(String jobName, JobLease lease, Duration ttl, Consumer<JobLease> task) {
+        long startedAt = System.nanoTime();
+        ScheduledFuture<?> renewal = scheduleRenewal(lease, ttl);
+        try {
+            task.accept(lease);
+            record(jobName, OUTCOME_SUCCESS, System.nanoTime() - startedAt);
+            return true;
+        } catch (LeaseLostException e) {
+            log.warn("[LeasedJobRunner] {} stopped: {}", jobName, e.getMessage());
+            record(jobName, OUTCOME_LEASE_LOST, System.nanoTime() - startedAt);
+            return false;
+        } catch (RuntimeException e) {
+            record(jobName, OUTCOME_FAILURE, System.nanoTime() - startedAt);
+            throw e;
+        } finally {
+            if (renewal != null) {
+                renewal.cancel(false);
+            }
+            if (!lease.isLost()) {
+                leaseManager.release(lease);
+            }
+        }
+    }
+
+    private ScheduledFuture<?> scheduleRenewal(JobLease lease, Duration ttl) {
+        long periodMillis = Math.max(1000, ttl.toMillis() / 3);
+        if (periodMillis >= ttl.toMillis()) {
+            return null;
+        }
+        return heartbeat.scheduleAtFixedRate(() -> {
+            if (lease.isLost()) {
+                return;
+            }
+            try {
+                if (!leaseManager.renew(lease, ttl)) {
+                    lease.markLost();
+                    log.warn("[LeasedJobRunner] Lease {} was taken over by another replica", lease);
+                }
+            } catch (RuntimeException e) {
+                // Lỗi DB tạm thời: thử lại ở nhịp sau, lease vẫn còn hạn tới lúc đó
+                log.warn("[LeasedJobRunner] Failed to renew lease {}: {}", lease, e.getMessage());
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void record(String jobName, String outcome, long durationNanos) {
+        if (meterRegistry == null) {
+            return;
+        }
+        Counter.builder("scheduling.job.runs")
+                .tag("job", jobName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+        if (OUTCOME_SKIPPED.equals(outcome)) {
+            return;
+        }
+        Timer.builder("scheduling.job.duration")
+                .tag("job", jobName)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+        if (OUTCOME_SUCCESS.equals(outcome)) {
+            lastSuccess.computeIfAbsent(jobName, name -> {
+                AtomicLong value = new AtomicLong();
+                Gauge.builder("scheduling.job.last.success", value, AtomicLong::get)
+                        .tag("job", name)
+                        .baseUnit("seconds")
+                        .register(meterRegistry);
+                return value;
+            }).set(System.currentTimeMillis() / 1000);
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeat.shutdownNow();
+    }
+}
@@ -0,0 +1,36 @@
+package com.QhomeBase.scheduling;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Một phần của tập dòng cần xử lý, chia theo hash của khóa: dòng thuộc shard {@code index}
+ * khi {@code (hashtext(key) & 2147483647) % count = index}.
+ */
+public record Shard(int index, int count) {
+
+    public static final Shard ALL = new Shard(0, 1);
+
+    public Shard {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + "/" + count);
+        }
+    }
+
+    /**
+     * Điều kiện SQL cho shard, dùng tham số {@code :shardIndex} / {@code :shardCount} (xem {@link #addTo})
+     *
+     * @param keyExpression biểu thức khóa, vd. {@code t.id}
+     */
+    public static String predicate(String keyExpression) {
+        return "(hashtext(CAST(" + keyExpression + " AS text)) & 2147483647) % :shardCount = :shardIndex";
+    }
+
+    public MapSqlParameterSource addTo(MapSqlParameterSource params) {
+        return params.addValue("shardIndex", index).addValue("shardCount", count);
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,137 @@
+package com.QhomeBase.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LeasedJobRunnerTest {
+
+        private static final Duration TTL = Duration.ofMinutes(5);
+
+        private JobLeaseManager leaseManager;
+        private SimpleMeterRegistry meterRegistry;
+        private LeasedJobRunner runner;
+
+        @BeforeEach
+        void setUp() {
+                leaseManager = Mockito.mock(JobLeaseManager.class);
+                when(leaseManager.getOwnerId()).thenReturn("replica-a");
+                when(leaseManager.acquire(anyString(), any())).thenReturn(Optional.empty());
+                meterRegistry = new SimpleMeterRegistry();
+                runner = new LeasedJobRunner(leaseManager, meterRegistry);
+        }
+
+        private JobLease lease(String name, long token) {
+                JobLease lease = new JobLease(leaseManager, name, token);
+                when(leaseManager.acquire(name, TTL)).thenReturn(Optional.of(lease));
+                return lease;
+        }
+
+        private double runs(String job, String outcome) {
+                return meterRegistry.counter("scheduling.job.runs", "job", job, "outcome", outcome).count();
+        }
+
+        @Test
+        void skipsJobWhenLeaseIsHeldElsewhere() {
+                List<String> runs = new ArrayList<>();
+
+                boolean ran = runner.runExclusive("expiry", TTL, () -> runs.add("run"));
+
+                assertThat(ran).isFalse();
+                assertThat(runs).isEmpty();
+                verify(leaseManager, never()).release(any(JobLease.class));
+                assertThat(runs("expiry", LeasedJobRunner.OUTCOME_SKIPPED)).isEqualTo(1);
+        }
+
+        @Test
+        void releasesLeaseEvenWhenJobFails() {
+                JobLease lease = lease("expiry", 7);
+
+                assertThatThrownBy(() -> runner.runExclusive("expiry", TTL, () -> {
+                        throw new IllegalStateException("boom");
+                })).isInstanceOf(IllegalStateException.class);
+
+                verify(leaseManager).release(lease);
+                assertThat(runs("expiry", LeasedJobRunner.OUTCOME_FAILURE)).isEqualTo(1);
+        }
+
+        @Test
+        void stopsJobWhenFencingTokenIsSuperseded() {
+                JobLease lease = lease("reminders", 3);
+                when(leaseManager.isHeld(lease)).thenReturn(false);
+                List<String> steps = new ArrayList<>();
+
+                boolean ran = runner.runAsLeader("reminders", TTL, held -> {
+                        steps.add("query");
+                        held.ensureHeld();
+                        steps.add("notify");
+                });
+
+                assertThat(ran).isFalse();
+                assertThat(steps).containsExactly("query");
+                // Leader mới đang giữ lease với token lớn hơn, không được trả hộ
+                verify(leaseManager, never()).release(any(JobLease.class));
+                assertThat(runs("reminders", LeasedJobRunner.OUTCOME_LEASE_LOST)).isEqualTo(1);
+        }
+
+        @Test
+        void recordsSuccessfulRunWithFencingToken() {
+                JobLease lease = lease("reminders", 12);
+                when(leaseManager.isHeld(lease)).thenReturn(true);
+                List<Long> tokens = new ArrayList<>();
+
+                boolean ran = runner.runAsLeader("reminders", TTL, held -> {
+                        held.ensureHeld();
+                        tokens.add(held.fencingToken());
+                });
+
+                assertThat(ran).isTrue();
+                assertThat(tokens).containsExactly(12L);
+                verify(leaseManager).release(lease);
+                assertThat(runs("reminders", LeasedJobRunner.OUTCOME_SUCCESS)).isEqualTo(1);
+                assertThat(meterRegistry.get("scheduling.job.last.success").tag("job", "reminders").gauge().value())
+                        .isPositive();
+        }
+
+        @Test
+        void processesOnlyShardsWhoseLeaseWasAcquired() {
+                lease("expiry#0", 1);
+                JobLease failingShard = lease("expiry#2", 1);
+                lease("expiry#3", 1);
+                List<Integer> shards = new ArrayList<>();
+
+                int processed = runner.runSharded("expiry", 4, TTL, shard -> {
+                        if (shard.index() == 2) {
+                                throw new IllegalStateException("shard failure");
+                        }
+                        shards.add(shard.index());
+                });
+
+                assertThat(processed).isEqualTo(2);
+                assertThat(shards).containsExactlyInAnyOrder(0, 3);
+                verify(leaseManager).release(failingShard);
+                verify(leaseManager, never()).release(Mockito.<JobLease>argThat(l -> l.name().equals("expiry#1")));
+        }
+
+        @Test
+        void rejectsInvalidShard() {
+                assertThatThrownBy(() -> new Shard(3, 3)).isInstanceOf(IllegalArgumentException.class);
+                assertThat(Shard.ALL.addTo(new MapSqlParameterSource())
+                        .getValue("shardCount")).isEqualTo(1);
+        }
+}
@@ -0,0 +1,23 @@
+package com.QhomeBase.servicescardservice.config;
+
+import com.QhomeBase.scheduling.JobLeaseManager;
+import com.QhomeBase.scheduling.LeasedJobRunner;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+@Configuration
+public class JobLeaseConfig {
+
+    @Bean
+    public JobLeaseManager jobLeaseManager(DataSource dataSource) {
+        return new JobLeaseManager(dataSource, "card.job_leases");
+    }
+
+    @Bean
+    public LeasedJobRunner leasedJobRunner(JobLeaseManager jobLeaseManager, MeterRegistry meterRegistry) {
+        return new LeasedJobRunner(jobLeaseManager, meterRegistry);
+    }
+}
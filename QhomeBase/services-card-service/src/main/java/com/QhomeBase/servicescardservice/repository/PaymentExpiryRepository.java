@@ -0,0 +1,122 @@
+package com.QhomeBase.servicescardservice.repository;
+
+import com.QhomeBase.scheduling.Shard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Hết hạn thanh toán của các đăng ký thẻ bằng UPDATE hàng loạt.
+ * Mỗi lô là một câu {@code UPDATE ... RETURNING} trên tối đa {@code batchSize} dòng của một shard,
+ * các dòng đang bị transaction khác khóa được bỏ qua (SKIP LOCKED) và xử lý ở lần quét sau.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentExpiryRepository {
+
+    private static final String ADMIN_NOTE_IF_BLANK = "admin_note = COALESCE(NULLIF(BTRIM(admin_note), ''), :note)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * PAYMENT_IN_PROGRESS (VNPAY) quá hạn -> PAYMENT_FAILED, để cư dân thấy nút "Thanh toán lại"
+     */
+    public int expireInProgressPayments(RegistrationTable table, OffsetDateTime threshold, String note,
+                                        Shard shard, int batchSize) {
+        String where = table == RegistrationTable.VEHICLE
+                ? "UPPER(t.payment_status) = 'PAYMENT_IN_PROGRESS'"
+                : "t.payment_status = 'PAYMENT_IN_PROGRESS' AND (t.payment_gateway = 'VNPAY' OR t.vnpay_transaction_ref IS NOT NULL)";
+        return sweep(table, where + " AND t.vnpay_initiated_at < :threshold",
+                "payment_status = 'PAYMENT_FAILED', " + ADMIN_NOTE_IF_BLANK,
+                threshold, note, shard, batchSize);
+    }
+
+    /**
+     * Xe đăng ký trước đây dùng trạng thái PAYMENT_APPROVAL (không có vnpay_initiated_at) -> PAYMENT_FAILED
+     */
+    public int expireLegacyVehicleApprovals(OffsetDateTime threshold, String note, Shard shard, int batchSize) {
+        return sweep(RegistrationTable.VEHICLE, "t.payment_status = 'PAYMENT_APPROVAL' AND t.updated_at < :threshold",
+                "payment_status = 'PAYMENT_FAILED', " + ADMIN_NOTE_IF_BLANK,
+                threshold, note, shard, batchSize);
+    }
+
+    /**
+     * PAYMENT_PENDING quá hạn -> UNPAID / READY_FOR_PAYMENT. {@code note} null thì không ghi chú.
+     */
+    public int resetPendingPayments(RegistrationTable table, OffsetDateTime threshold, String note,
+                                    Shard shard, int batchSize) {
+        String set = "payment_status = 'UNPAID', status = 'READY_FOR_PAYMENT'"
+                + (note != null ? ", " + ADMIN_NOTE_IF_BLANK : "");
+        return sweep(table, "t.payment_status = 'PAYMENT_PENDING' AND t.updated_at < :threshold",
+                set, threshold, note, shard, batchSize);
+    }
+
+    /**
+     * READY_FOR_PAYMENT không được thanh toán trong thời hạn -> CANCELLED
+     */
+    public int cancelUnpaidReadyForPayment(RegistrationTable table, OffsetDateTime threshold, String note,
+                                           Shard shard, int batchSize) {
+        return sweep(table, "t.status = 'READY_FOR_PAYMENT' AND t.updated_at < :threshold",
+                "status = 'CANCELLED', payment_status = 'UNPAID', " + ADMIN_NOTE_IF_BLANK,
+                threshold, note, shard, batchSize);
+    }
+
+    private int sweep(RegistrationTable table, String where, String set, OffsetDateTime threshold, String note,
+                      Shard shard, int batchSize) {
+        // updated_at = now() giữ đúng hành vi @UpdateTimestamp của entity
+        String sql = """
+                WITH batch AS (
+                    SELECT t.id
+                    FROM %1$s t
+                    WHERE %2$s
+                      AND %3$s
+                    LIMIT :batchSize
+                    FOR UPDATE SKIP LOCKED
+                )
+                UPDATE %1$s u
+                SET %4$s, updated_at = now()
+                FROM batch
+                WHERE u.id = batch.id
+                RETURNING u.id
+                """.formatted(table.qualifiedName(), where, Shard.predicate("t.id"), set);
+        MapSqlParameterSource params = shard.addTo(new MapSqlParameterSource()
+                .addValue("threshold", threshold)
+                .addValue("note", note)
+                .addValue("batchSize", batchSize));
+
+        int total = 0;
+        List<UUID> updated;
+        do {
+            updated = jdbcTemplate.queryForList(sql, params, UUID.class);
+            total += updated.size();
+        } while (updated.size() == batchSize);
+        return total;
+    }
+
+    public enum RegistrationTable {
+        RESIDENT("card.resident_card_registration", "resident-card"),
+        ELEVATOR("card.elevator_card_registration", "elevator-card"),
+        VEHICLE("card.register_vehicle", "vehicle");
+
+        private final String qualifiedName;
+        private final String tag;
+
+        RegistrationTable(String qualifiedName, String tag) {
+            this.qualifiedName = qualifiedName;
+            this.tag = tag;
+        }
+
+        public String qualifiedName() {
+            return qualifiedName;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+-- Leases for scheduled jobs (scheduling-common JobLeaseManager): one row per job / job shard,
+-- so only one replica sweeps a given set of registrations at a time.
+CREATE TABLE IF NOT EXISTS card.job_leases (
+    lease_name  VARCHAR(150) PRIMARY KEY,
+    owner_id    VARCHAR(255) NOT NULL,
+    acquired_at TIMESTAMPTZ  NOT NULL,
+    lease_until TIMESTAMPTZ  NOT NULL
+);
+
+-- Partial indexes for the payment expiry sweep: only registrations waiting on a payment are indexed,
+-- so a sweep with nothing expired is an empty index range scan instead of a full table scan.
+CREATE INDEX IF NOT EXISTS idx_resident_card_payment_sweep
+ON card.resident_card_registration (updated_at)
+WHERE payment_status = 'PAYMENT_PENDING' OR status = 'READY_FOR_PAYMENT';
+
+CREATE INDEX IF NOT EXISTS idx_resident_card_vnpay_in_progress
+ON card.resident_card_registration (vnpay_initiated_at)
+WHERE payment_status = 'PAYMENT_IN_PROGRESS';
+
+CREATE INDEX IF NOT EXISTS idx_elevator_card_payment_sweep
+ON card.elevator_card_registration (updated_at)
+WHERE payment_status = 'PAYMENT_PENDING' OR status = 'READY_FOR_PAYMENT';
+
+CREATE INDEX IF NOT EXISTS idx_elevator_card_vnpay_in_progress
+ON card.elevator_card_registration (vnpay_initiated_at)
+WHERE payment_status = 'PAYMENT_IN_PROGRESS';
+
+CREATE INDEX IF NOT EXISTS idx_register_vehicle_payment_sweep
+ON card.register_vehicle (updated_at)
+WHERE payment_status IN ('PAYMENT_PENDING', 'PAYMENT_APPROVAL') OR status = 'READY_FOR_PAYMENT';
+
+CREATE INDEX IF NOT EXISTS idx_register_vehicle_vnpay_in_progress
+ON card.register_vehicle (vnpay_initiated_at)
+WHERE UPPER(payment_status) = 'PAYMENT_IN_PROGRESS';
@@ -0,0 +1,213 @@
+package com.QhomeBase.vnpay;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Ký URL thanh toán và xác thực callback VNPAY (HMAC-SHA512) dùng chung cho các service.
+ * <p>
+ * Chuỗi ký gồm các tham số sắp xếp theo tên, dạng {@code key=URLEncode(value)} nối bằng {@code &};
+ * tham số rỗng bị bỏ qua. Mỗi thread giữ sẵn một {@link Mac} đã nạp khóa, chuỗi ký và query
+ * được dựng trong cùng một lượt với {@link StringBuilder} cấp phát đủ kích thước,
+ * chữ ký nhận về được so sánh constant-time. Thread-safe, nên dùng một instance cho mỗi hash secret.
+ */
+public final class VnpaySigner {
+
+    public static final String ALGORITHM = "HmacSHA512";
+    public static final String SECURE_HASH = "vnp_SecureHash";
+    public static final String SECURE_HASH_TYPE = "vnp_SecureHashType";
+
+    private static final String PARAM_PREFIX = "vnp_";
+    private static final int HASH_BYTES = 64;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    public VnpaySigner(String hashSecret) {
+        // Secret rỗng chỉ báo lỗi khi ký / xác thực, để service không có cấu hình VNPAY vẫn khởi động được
+        this.key = hashSecret == null || hashSecret.isEmpty()
+                ? null
+                : new SecretKeySpec(hashSecret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * @return {@code baseUrl?<query>&vnp_SecureHash=<hex>}
+     */
+    public String buildPaymentUrl(String baseUrl, Map<String, String> params) {
+        int estimate = estimateLength(params);
+        StringBuilder hashData = new StringBuilder(estimate);
+        StringBuilder url = new StringBuilder(baseUrl.length() + estimate + SECURE_HASH.length() + HASH_BYTES * 2 + 3);
+        url.append(baseUrl).append('?');
+
+        String[] keys = sortedKeys(params, false);
+        for (String name : keys) {
+            String value = params.get(name);
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            if (hashData.length() > 0) {
+                hashData.append('&');
+                url.append('&');
+            }
+            hashData.append(name).append('=');
+            int valueStart = hashData.length();
+            appendEncoded(hashData, value);
+
+            appendEncoded(url, name);
+            url.append('=').append(hashData, valueStart, hashData.length());
+        }
+
+        url.append('&').append(SECURE_HASH).append('=');
+        appendHex(url, mac(hashData));
+        return url.toString();
+    }
+
+    /**
+     * Xác thực chữ ký callback. Chỉ các tham số {@code vnp_*} (trừ chính chữ ký) được ký,
+     * tham số tự thêm vào return URL bị bỏ qua.
+     */
+    public boolean verify(Map<String, String> params) {
+        if (params == null) {
+            return false;
+        }
+        byte[] received = decodeHex(params.get(SECURE_HASH));
+        if (received == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(mac(hashData(params)), received);
+    }
+
+    private StringBuilder hashData(Map<String, String> params) {
+        StringBuilder hashData = new StringBuilder(estimateLength(params));
+        for (String name : sortedKeys(params, true)) {
+            String value = params.get(name);
+            if (value == null || value.isEmpty()) {
+                continue;
+            }
+            if (hashData.length() > 0) {
+                hashData.append('&');
+            }
+            hashData.append(name).append('=');
+            appendEncoded(hashData, value);
+        }
+        return hashData;
+    }
+
+    /**
+     * HMAC-SHA512 dạng hex chữ thường
+     */
+    public String sign(CharSequence data) {
+        StringBuilder hex = new StringBuilder(HASH_BYTES * 2);
+        appendHex(hex, mac(data));
+        return hex.toString();
+    }
+
+    private byte[] mac(CharSequence data) {
+        Mac mac = macs.get();
+        // doFinal tự reset Mac, instance dùng lại được cho lần ký tiếp theo
+        return mac.doFinal(toBytes(data));
+    }
+
+    private Mac newMac() {
+        if (key == null) {
+            throw new IllegalStateException("VNPAY hash secret is not configured");
+        }
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + ALGORITHM, e);
+        }
+    }
+
+    private static String[] sortedKeys(Map<String, String> params, boolean callbackOnly) {
+        String[] keys = new String[params.size()];
+        int count = 0;
+        for (String name : params.keySet()) {
+            if (callbackOnly && (!name.startsWith(PARAM_PREFIX)
+                    || SECURE_HASH.equals(name) || SECURE_HASH_TYPE.equals(name))) {
+                continue;
+            }
+            keys[count++] = name;
+        }
+        if (count < keys.length) {
+            keys = Arrays.copyOf(keys, count);
+        }
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static int estimateLength(Map<String, String> params) {
+        int length = 0;
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            String value = entry.getValue();
+            // Ký tự cần encode phình ra tối đa vài lần; dư 25% là đủ cho đa số tham số VNPAY
+            length += entry.getKey().length() + 2 + (value == null ? 0 : value.length() + (value.length() >> 2));
+        }
+        return length;
+    }
+
+    /**
+     * Giống {@link URLEncoder#encode(String, java.nio.charset.Charset)}; chuỗi không có ký tự cần encode
+     * (đa số tham số VNPAY) được chép thẳng, không cấp phát thêm.
+     */
+    static void appendEncoded(StringBuilder target, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isUnreserved(value.charAt(i))) {
+                target.append(URLEncoder.encode(value, StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        target.append(value);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '.' || c == '-' || c == '*' || c == '_';
+    }
+
+    private static byte[] toBytes(CharSequence data) {
+        int length = data.length();
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c >= 0x80) {
+                // Chuỗi đã URL-encode luôn là ASCII; chỉ tên tham số lạ mới rơi vào nhánh này
+                return data.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            bytes[i] = (byte) c;
+        }
+        return bytes;
+    }
+
+    private static void appendHex(StringBuilder target, byte[] bytes) {
+        for (byte b : bytes) {
+            target.append(HEX[(b >> 4) & 0x0F]).append(HEX[b & 0x0F]);
+        }
+    }
+
+    private static byte[] decodeHex(String hex) {
+        if (hex == null || hex.length() != HASH_BYTES * 2) {
+            return null;
+        }
+        byte[] bytes = new byte[HASH_BYTES];
+        for (int i = 0; i < HASH_BYTES; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+}
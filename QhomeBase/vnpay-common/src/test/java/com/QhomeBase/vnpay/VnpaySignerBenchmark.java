@@ -0,0 +1,79 @@
+package com.QhomeBase.vnpay;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput ký URL / xác thực callback: {@link VnpaySigner} so với cách cũ
+ * (TreeMap + String.join + Mac.getInstance mỗi lần gọi).
+ * Chạy: {@code mvn -pl vnpay-common test-compile} rồi gọi {@link #main} với classpath test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class VnpaySignerBenchmark {
+
+    private static final String VNP_URL = "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html";
+
+    private VnpaySigner signer;
+    private Map<String, String> paymentParams;
+    private Map<String, String> callback;
+
+    @Setup
+    public void setUp() {
+        signer = new VnpaySigner("TESTSECRETKEY0123456789ABCDEFGHIJ");
+        paymentParams = VnpaySignerTest.paymentParams();
+        callback = VnpaySignerTest.signedCallback();
+    }
+
+    @Benchmark
+    public String signPaymentUrl() {
+        return signer.buildPaymentUrl(VNP_URL, paymentParams);
+    }
+
+    @Benchmark
+    public boolean verifyCallback() {
+        return signer.verify(callback);
+    }
+
+    @Benchmark
+    public String legacySignPaymentUrl() {
+        String hashData = VnpaySignerTest.legacyJoin(paymentParams, false);
+        return VNP_URL + "?" + VnpaySignerTest.legacyJoin(paymentParams, true)
+                + "&vnp_SecureHash=" + VnpaySignerTest.legacyHmac(hashData);
+    }
+
+    @Benchmark
+    public boolean legacyVerifyCallback() {
+        Map<String, String> copy = new HashMap<>(callback);
+        String received = copy.remove(VnpaySigner.SECURE_HASH);
+        copy.remove(VnpaySigner.SECURE_HASH_TYPE);
+        return VnpaySignerTest.legacyHmac(VnpaySignerTest.legacyJoin(copy, false)).equalsIgnoreCase(received);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(VnpaySignerBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
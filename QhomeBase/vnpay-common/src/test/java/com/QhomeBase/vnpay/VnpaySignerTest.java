@@ -0,0 +1,129 @@
+package com.QhomeBase.vnpay;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VnpaySignerTest {
+
+        private static final String SECRET = "TESTSECRETKEY0123456789ABCDEFGHIJ";
+        private static final String VNP_URL = "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html";
+
+        private final VnpaySigner signer = new VnpaySigner(SECRET);
+
+        @Test
+        void paymentUrlMatchesLegacySigning() {
+                Map<String, String> params = paymentParams();
+
+                String url = signer.buildPaymentUrl(VNP_URL, params);
+
+                String legacyHashData = legacyJoin(params, false);
+                String expected = VNP_URL + "?" + legacyJoin(params, true)
+                        + "&vnp_SecureHash=" + legacyHmac(legacyHashData);
+                assertThat(url).isEqualTo(expected);
+        }
+
+        @Test
+        void verifiesCallbackSignedByVnpay() {
+                Map<String, String> callback = signedCallback();
+
+                assertThat(signer.verify(callback)).isTrue();
+
+                // VNPAY có thể trả chữ ký chữ hoa; tham số tự thêm vào return URL không được ký
+                callback.put(VnpaySigner.SECURE_HASH, callback.get(VnpaySigner.SECURE_HASH).toUpperCase());
+                callback.put("contractId", "123");
+                assertThat(signer.verify(callback)).isTrue();
+        }
+
+        @Test
+        void rejectsTamperedOrMalformedSignature() {
+                Map<String, String> tampered = signedCallback();
+                tampered.put("vnp_Amount", "100");
+                assertThat(signer.verify(tampered)).isFalse();
+
+                Map<String, String> truncated = signedCallback();
+                truncated.put(VnpaySigner.SECURE_HASH, truncated.get(VnpaySigner.SECURE_HASH).substring(2));
+                assertThat(signer.verify(truncated)).isFalse();
+
+                Map<String, String> missing = signedCallback();
+                missing.remove(VnpaySigner.SECURE_HASH);
+                assertThat(signer.verify(missing)).isFalse();
+
+                assertThat(new VnpaySigner("other-secret").verify(signedCallback())).isFalse();
+        }
+
+        @Test
+        void failsOnlyWhenUsedWithoutSecret() {
+                VnpaySigner unconfigured = new VnpaySigner(null);
+
+                assertThatThrownBy(() -> unconfigured.sign("a=b")).isInstanceOf(IllegalStateException.class);
+        }
+
+        static Map<String, String> paymentParams() {
+                Map<String, String> params = new HashMap<>();
+                params.put("vnp_Version", "2.1.0");
+                params.put("vnp_Command", "pay");
+                params.put("vnp_TmnCode", "QHOME001");
+                params.put("vnp_Amount", "125000000");
+                params.put("vnp_CurrCode", "VND");
+                params.put("vnp_TxnRef", "1234567_1700000000000");
+                params.put("vnp_OrderInfo", "Thanh toán hóa đơn INV-20250101 (điện, nước)");
+                params.put("vnp_OrderType", "other");
+                params.put("vnp_Locale", "vn");
+                params.put("vnp_ReturnUrl", "https://qhome.example/api/invoices/vnpay/redirect?source=app");
+                params.put("vnp_IpAddr", "127.0.0.1");
+                params.put("vnp_CreateDate", "20250101120000");
+                return params;
+        }
+
+        static Map<String, String> signedCallback() {
+                Map<String, String> callback = new HashMap<>();
+                callback.put("vnp_Amount", "125000000");
+                callback.put("vnp_BankCode", "NCB");
+                callback.put("vnp_CardType", "ATM");
+                callback.put("vnp_OrderInfo", "Thanh toán hóa đơn INV-20250101");
+                callback.put("vnp_PayDate", "20250101120500");
+                callback.put("vnp_ResponseCode", "00");
+                callback.put("vnp_TmnCode", "QHOME001");
+                callback.put("vnp_TransactionNo", "14000001");
+                callback.put("vnp_TransactionStatus", "00");
+                callback.put("vnp_TxnRef", "1234567_1700000000000");
+                callback.put(VnpaySigner.SECURE_HASH, legacyHmac(legacyJoin(callback, false)));
+                callback.put(VnpaySigner.SECURE_HASH_TYPE, "HmacSHA512");
+                return callback;
+        }
+
+        /**
+         * Cách ký cũ của từng VnpayService: TreeMap + URLEncoder + Mac.getInstance mỗi lần gọi
+         */
+        static String legacyJoin(Map<String, String> params, boolean encodeKeys) {
+                List<String> parts = new ArrayList<>();
+                for (Map.Entry<String, String> entry : new TreeMap<>(params).entrySet()) {
+                        String name = encodeKeys ? URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) : entry.getKey();
+                        parts.add(name + "=" + URLEncoder.encode(entry.getValue(), StandardCharsets.UTF_8));
+                }
+                return String.join("&", parts);
+        }
+
+        static String legacyHmac(String data) {
+                try {
+                        Mac mac = Mac.getInstance("HmacSHA512");
+                        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+                        return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+                } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                }
+        }
+}